@@ -42,13 +42,19 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-thymeleaf")
 	implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.2.0")
 	implementation("org.springdoc:springdoc-openapi-starter-webmvc-api:2.2.0")
+	implementation("com.openhtmltopdf:openhtmltopdf-pdfbox:1.0.10")
 	developmentOnly("org.springframework.boot:spring-boot-devtools")
 	runtimeOnly("com.mysql:mysql-connector-j")
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testImplementation("org.springframework.security:spring-security-test")
+	testRuntimeOnly("com.h2database:h2")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 tasks.withType<Test> {
 	useJUnitPlatform()
+	// Test chay trong JVM rieng nen co -D tren dong lenh gradle phai duoc chuyen tiep thu cong
+	listOf("clinicsystem.benchmark", "clinicsystem.stress").forEach { name ->
+		System.getProperty(name)?.let { systemProperty(name, it) }
+	}
 }
@@ -33,10 +33,26 @@ public class AsyncConfig {
         executor.setMaxPoolSize(10);
         executor.setQueueCapacity(50);
         executor.setThreadNamePrefix("ClinicSystem-Batch-");
+        // Dùng để chia nhóm song song, nơi gọi luôn chờ kết quả nên tự chạy phần dư là cách giảm tải
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(120);
         executor.initialize();
         return executor;
     }
+
+    // Tác vụ nền lưu trong bảng batch_jobs: bị từ chối khi hàng đợi đầy thay vì chạy trên luồng của request
+    @Bean(name = "batchJobExecutor")
+    public Executor batchJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("ClinicSystem-Job-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(120);
+        executor.initialize();
+        return executor;
+    }
 }
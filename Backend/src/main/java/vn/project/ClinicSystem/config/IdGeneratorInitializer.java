@@ -0,0 +1,52 @@
+package vn.project.ClinicSystem.config;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import jakarta.persistence.metamodel.EntityType;
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.service.IdBlockAllocator;
+
+/**
+ * Khởi tạo bộ đếm id cho mọi entity dùng {@link TableGenerator} trước khi ứng dụng nhận request,
+ * để id mới luôn lớn hơn id đã sinh bằng AUTO_INCREMENT trước đây.
+ */
+@Component
+@Slf4j
+public class IdGeneratorInitializer implements SmartInitializingSingleton {
+    private final EntityManagerFactory entityManagerFactory;
+    private final IdBlockAllocator idBlockAllocator;
+
+    public IdGeneratorInitializer(EntityManagerFactory entityManagerFactory, IdBlockAllocator idBlockAllocator) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.idBlockAllocator = idBlockAllocator;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        idBlockAllocator.ensureTable();
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            Class<?> type = entity.getJavaType();
+            Table table = type.getAnnotation(Table.class);
+            if (table == null || !hasTableGenerator(type)) {
+                continue;
+            }
+            try {
+                idBlockAllocator.seed(table.name());
+            } catch (RuntimeException ex) {
+                log.warn("Không thể khởi tạo bộ đếm id cho bảng {}", table.name(), ex);
+            }
+        }
+    }
+
+    private boolean hasTableGenerator(Class<?> type) {
+        try {
+            return type.getDeclaredField("id").isAnnotationPresent(TableGenerator.class);
+        } catch (NoSuchFieldException ex) {
+            return false;
+        }
+    }
+}
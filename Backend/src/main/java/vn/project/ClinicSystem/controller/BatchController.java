@@ -1,9 +1,16 @@
 package vn.project.ClinicSystem.controller;
 
+import java.io.IOException;
 import java.util.List;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -11,10 +18,18 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import vn.project.ClinicSystem.model.BatchJob;
 import vn.project.ClinicSystem.model.Doctor;
 import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.dto.BulkDeleteResultDTO;
+import vn.project.ClinicSystem.model.dto.LabResultImportReport;
+import vn.project.ClinicSystem.model.dto.PatientImportReport;
+import vn.project.ClinicSystem.service.BatchJobService;
 import vn.project.ClinicSystem.service.BatchService;
+import vn.project.ClinicSystem.service.LabResultImportService;
+import vn.project.ClinicSystem.service.PatientImportService;
 
 @RestController
 @RequestMapping("/api/batch")
@@ -22,6 +37,9 @@ import vn.project.ClinicSystem.service.BatchService;
 public class BatchController {
 
     private final BatchService batchService;
+    private final BatchJobService batchJobService;
+    private final PatientImportService patientImportService;
+    private final LabResultImportService labResultImportService;
 
     @PostMapping("/doctors")
     public ResponseEntity<List<Doctor>> batchCreateDoctors(@RequestBody List<Doctor> doctors) {
@@ -43,43 +61,105 @@ public class BatchController {
         }
     }
 
+    /**
+     * Nhập bệnh nhân từ thân request dạng CSV (có dòng tiêu đề) hoặc NDJSON, đọc theo luồng.
+     */
+    @PostMapping(value = "/patients/import", consumes = { "text/csv", "text/plain", "application/x-ndjson" })
+    public ResponseEntity<PatientImportReport> importPatients(HttpServletRequest request,
+            @RequestParam(value = "format", required = false) String format) throws IOException {
+        String resolvedFormat = format;
+        if (resolvedFormat == null) {
+            String contentType = request.getContentType();
+            resolvedFormat = contentType != null && contentType.contains("ndjson")
+                    ? PatientImportService.FORMAT_NDJSON
+                    : PatientImportService.FORMAT_CSV;
+        }
+        return ResponseEntity.ok(patientImportService.importPatients(request.getInputStream(), resolvedFormat));
+    }
+
+    /**
+     * Nhập kết quả xét nghiệm từ tệp xuất của máy xét nghiệm (CSV hoặc HL7 v2), đọc theo luồng.
+     */
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @PostMapping(value = "/lab-results/import", consumes = { "text/csv", "text/plain", "application/hl7-v2" })
+    public ResponseEntity<LabResultImportReport> importLabResults(HttpServletRequest request,
+            @RequestParam(value = "format", required = false) String format) throws IOException {
+        String resolvedFormat = format;
+        if (resolvedFormat == null) {
+            String contentType = request.getContentType();
+            resolvedFormat = contentType != null && contentType.contains("hl7")
+                    ? LabResultImportService.FORMAT_HL7
+                    : LabResultImportService.FORMAT_CSV;
+        }
+        return ResponseEntity.ok(labResultImportService.importResults(request.getInputStream(), resolvedFormat));
+    }
+
     @PutMapping("/doctors/async")
-    public ResponseEntity<String> asyncBatchUpdateDoctors(@RequestBody List<Doctor> doctors) {
+    public ResponseEntity<BatchJob> asyncBatchUpdateDoctors(@RequestBody List<Doctor> doctors,
+            @RequestParam(value = "chunkSize", required = false) Integer chunkSize) {
         try {
-            batchService.asyncBatchUpdateDoctors(doctors);
-            return ResponseEntity.ok("Batch update đã được khởi tạo cho " + doctors.size() + " doctors");
+            BatchJob job = batchService.asyncBatchUpdateDoctors(doctors, chunkSize);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @PutMapping("/patients/async")
-    public ResponseEntity<String> asyncBatchUpdatePatients(@RequestBody List<Patient> patients) {
+    public ResponseEntity<BatchJob> asyncBatchUpdatePatients(@RequestBody List<Patient> patients,
+            @RequestParam(value = "chunkSize", required = false) Integer chunkSize) {
         try {
-            batchService.asyncBatchUpdatePatients(patients);
-            return ResponseEntity.ok("Batch update đã được khởi tạo cho " + patients.size() + " patients");
+            BatchJob job = batchService.asyncBatchUpdatePatients(patients, chunkSize);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @GetMapping("/jobs")
+    public ResponseEntity<Page<BatchJob>> getJobs(
+            @RequestParam(value = "type", required = false) String type,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(batchJobService.findAll(type, PageRequest.of(page, size)));
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<BatchJob> getJob(@PathVariable("id") Long id) {
+        return ResponseEntity.ok(batchJobService.getById(id));
+    }
+
+    @PostMapping("/jobs/{id}/restart")
+    public ResponseEntity<BatchJob> restartJob(@PathVariable("id") Long id) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(batchJobService.restart(id));
+    }
+
     @DeleteMapping("/doctors")
-    public ResponseEntity<String> bulkDeleteDoctors(@RequestParam List<Long> ids) {
+    public ResponseEntity<BulkDeleteResultDTO> bulkDeleteDoctors(@RequestParam List<Long> ids) {
         try {
-            batchService.bulkDeleteDoctors(ids);
-            return ResponseEntity.ok("Đã xóa " + ids.size() + " doctors");
+            return ResponseEntity.ok(batchService.bulkDeleteDoctors(ids));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @DeleteMapping("/patients")
-    public ResponseEntity<String> bulkDeletePatients(@RequestParam List<Long> ids) {
+    public ResponseEntity<BulkDeleteResultDTO> bulkDeletePatients(@RequestParam List<Long> ids) {
         try {
-            batchService.bulkDeletePatients(ids);
-            return ResponseEntity.ok("Đã xóa " + ids.size() + " patients");
+            return ResponseEntity.ok(batchService.bulkDeletePatients(ids));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    // Danh sách id lớn không vừa query string: gửi trong thân request
+    @PostMapping("/doctors/bulk-delete")
+    public ResponseEntity<BulkDeleteResultDTO> bulkDeleteDoctorsByBody(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(batchService.bulkDeleteDoctors(ids));
+    }
+
+    @PostMapping("/patients/bulk-delete")
+    public ResponseEntity<BulkDeleteResultDTO> bulkDeletePatientsByBody(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(batchService.bulkDeletePatients(ids));
+    }
 }
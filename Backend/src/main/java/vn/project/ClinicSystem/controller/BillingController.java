@@ -1,11 +1,15 @@
 package vn.project.ClinicSystem.controller;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -17,6 +21,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import vn.project.ClinicSystem.model.Billing;
@@ -24,16 +29,25 @@ import vn.project.ClinicSystem.model.BillingItem;
 import vn.project.ClinicSystem.model.dto.BillingItemCreateRequest;
 import vn.project.ClinicSystem.model.dto.BillingItemUpdateRequest;
 import vn.project.ClinicSystem.model.dto.BillingStatusUpdateRequest;
+import vn.project.ClinicSystem.model.dto.BulkInvoiceResultDTO;
+import vn.project.ClinicSystem.model.enums.DocumentFormat;
 import vn.project.ClinicSystem.service.BillingService;
+import vn.project.ClinicSystem.service.BulkInvoiceService;
+import vn.project.ClinicSystem.service.DocumentRenderingService;
 
 @RestController
 @RequestMapping("/billings")
 public class BillingController {
 
     private final BillingService billingService;
+    private final BulkInvoiceService bulkInvoiceService;
+    private final DocumentRenderingService documentRenderingService;
 
-    public BillingController(BillingService billingService) {
+    public BillingController(BillingService billingService, BulkInvoiceService bulkInvoiceService,
+            DocumentRenderingService documentRenderingService) {
         this.billingService = billingService;
+        this.bulkInvoiceService = bulkInvoiceService;
+        this.documentRenderingService = documentRenderingService;
     }
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
@@ -70,6 +84,14 @@ public class BillingController {
         return ResponseEntity.status(HttpStatus.CREATED).body(billing);
     }
 
+    // Chốt ngày: lập hóa đơn cho mọi hồ sơ đã hoàn tất trong ngày mà chưa có hóa đơn
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/bulk-generate")
+    public ResponseEntity<BulkInvoiceResultDTO> generateBillingsForDay(
+            @RequestParam(value = "date", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(bulkInvoiceService.generateForDay(date));
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PutMapping("/{id}/status")
     public ResponseEntity<Billing> updateStatus(
@@ -100,8 +122,33 @@ public class BillingController {
     @DeleteMapping("/{billingId}/items/{itemId}")
     public ResponseEntity<Void> deleteItem(
             @PathVariable("billingId") Long billingId,
-            @PathVariable("itemId") Long itemId) {
-        billingService.deleteItem(billingId, itemId);
+            @PathVariable("itemId") Long itemId,
+            @RequestParam(value = "version", required = false) Long version) {
+        billingService.deleteItem(billingId, itemId, version);
         return ResponseEntity.noContent().build();
     }
+
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @GetMapping("/{id}/document")
+    public ResponseEntity<byte[]> printBilling(@PathVariable("id") Long id,
+            @RequestParam(value = "format", defaultValue = "PDF") DocumentFormat format) {
+        byte[] content = documentRenderingService.renderInvoice(id, format);
+        return ResponseEntity.ok()
+                .contentType(format == DocumentFormat.PDF ? MediaType.APPLICATION_PDF : MediaType.TEXT_HTML)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"hoa-don-" + id
+                        + (format == DocumentFormat.PDF ? ".pdf" : ".html") + "\"")
+                .body(content);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/documents")
+    public ResponseEntity<StreamingResponseBody> printDailyBillings(
+            @RequestParam("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(value = "format", defaultValue = "PDF") DocumentFormat format) {
+        StreamingResponseBody body = out -> documentRenderingService.writeDailyInvoices(date, format, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"hoa-don-" + date + ".zip\"")
+                .body(body);
+    }
 }
@@ -0,0 +1,40 @@
+package vn.project.ClinicSystem.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import vn.project.ClinicSystem.model.dto.CriticalResultAlertDTO;
+import vn.project.ClinicSystem.service.CriticalResultAlertService;
+import vn.project.ClinicSystem.util.SecurityUtil;
+
+@RestController
+@RequestMapping("/critical-alerts")
+public class CriticalResultAlertController {
+
+    private final CriticalResultAlertService criticalResultAlertService;
+
+    public CriticalResultAlertController(CriticalResultAlertService criticalResultAlertService) {
+        this.criticalResultAlertService = criticalResultAlertService;
+    }
+
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @GetMapping
+    public ResponseEntity<List<CriticalResultAlertDTO>> getPendingAlerts() {
+        return ResponseEntity.ok(criticalResultAlertService.getPendingAlerts());
+    }
+
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @PostMapping("/{id}/acknowledge")
+    public ResponseEntity<CriticalResultAlertDTO> acknowledge(@PathVariable("id") Long id) {
+        String username = SecurityUtil.getCurrentUserLogin()
+                .orElseThrow(() -> new IllegalStateException("Không thể xác định người dùng đang đăng nhập"));
+        return ResponseEntity.ok(criticalResultAlertService.acknowledge(id, username));
+    }
+}
@@ -1,10 +1,12 @@
 package vn.project.ClinicSystem.controller;
 
+import java.time.Instant;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -20,18 +22,42 @@ import org.springframework.web.bind.annotation.RestController;
 
 import jakarta.validation.Valid;
 import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.dto.InventoryAlertView;
 import vn.project.ClinicSystem.model.dto.MedicationCreateRequest;
+import vn.project.ClinicSystem.model.dto.MedicationForecastDTO;
+import vn.project.ClinicSystem.model.dto.MedicationSuggestionDTO;
 import vn.project.ClinicSystem.model.dto.MedicationUpdateRequest;
+import vn.project.ClinicSystem.model.dto.StockReconciliationReport;
+import vn.project.ClinicSystem.service.InventoryAlertScanner;
+import vn.project.ClinicSystem.service.MedicationAutocompleteService;
+import vn.project.ClinicSystem.service.MedicationForecastService;
 import vn.project.ClinicSystem.service.MedicationService;
+import vn.project.ClinicSystem.service.StockLedgerService;
+import vn.project.ClinicSystem.service.StockReconciler;
 
 @RestController
 @RequestMapping("/medications")
 public class MedicationController {
 
     private final MedicationService medicationService;
+    private final StockLedgerService stockLedgerService;
+    private final StockReconciler stockReconciler;
+    private final InventoryAlertScanner inventoryAlertScanner;
+    private final MedicationForecastService medicationForecastService;
+    private final MedicationAutocompleteService autocompleteService;
 
-    public MedicationController(MedicationService medicationService) {
+    public MedicationController(MedicationService medicationService,
+            StockLedgerService stockLedgerService,
+            StockReconciler stockReconciler,
+            InventoryAlertScanner inventoryAlertScanner,
+            MedicationForecastService medicationForecastService,
+            MedicationAutocompleteService autocompleteService) {
         this.medicationService = medicationService;
+        this.stockLedgerService = stockLedgerService;
+        this.stockReconciler = stockReconciler;
+        this.inventoryAlertScanner = inventoryAlertScanner;
+        this.medicationForecastService = medicationForecastService;
+        this.autocompleteService = autocompleteService;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -50,11 +76,46 @@ public class MedicationController {
         return ResponseEntity.ok(medications);
     }
 
+    @GetMapping("/suggest")
+    public ResponseEntity<List<MedicationSuggestionDTO>> suggestMedications(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(autocompleteService.suggest(query, limit));
+    }
+
+    @GetMapping("/alerts")
+    public ResponseEntity<InventoryAlertView> getInventoryAlerts() {
+        return ResponseEntity.ok(inventoryAlertScanner.currentAlerts());
+    }
+
+    @GetMapping("/forecasts")
+    public ResponseEntity<List<MedicationForecastDTO>> getForecasts() {
+        return ResponseEntity.ok(medicationForecastService.getForecasts());
+    }
+
+    @GetMapping("/{id}/forecast")
+    public ResponseEntity<MedicationForecastDTO> getForecast(@PathVariable("id") Long id) {
+        return ResponseEntity.ok(medicationForecastService.getForecast(id));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Medication> getMedication(@PathVariable("id") Long id) {
         return ResponseEntity.ok(medicationService.getById(id));
     }
 
+    @GetMapping("/{id}/stock-at")
+    public ResponseEntity<Long> getStockAt(
+            @PathVariable("id") Long id,
+            @RequestParam("at") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        return ResponseEntity.ok(stockLedgerService.stockAt(id, at));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/stock/reconcile")
+    public ResponseEntity<StockReconciliationReport> reconcileStock() {
+        return ResponseEntity.ok(stockReconciler.reconcile());
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PutMapping("/{id}")
     public ResponseEntity<Medication> updateMedication(
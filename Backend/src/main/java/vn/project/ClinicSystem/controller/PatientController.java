@@ -1,5 +1,6 @@
 package vn.project.ClinicSystem.controller;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -31,16 +32,30 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 
 import jakarta.validation.Valid;
 import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.dto.LabSeriesDTO;
+import vn.project.ClinicSystem.model.dto.PatientDedupReport;
+import vn.project.ClinicSystem.model.dto.PatientMergeResultDTO;
+import vn.project.ClinicSystem.model.dto.PatientTimelineDTO;
+import vn.project.ClinicSystem.service.LabSeriesService;
+import vn.project.ClinicSystem.service.PatientDeduplicationService;
 import vn.project.ClinicSystem.service.PatientService;
+import vn.project.ClinicSystem.service.PatientTimelineService;
 
 @RestController
 @RequestMapping("/patients")
 @Tag(name = "Patient Management", description = "API quản lý bệnh nhân")
 public class PatientController {
     private final PatientService patientService;
+    private final PatientTimelineService patientTimelineService;
+    private final PatientDeduplicationService patientDeduplicationService;
+    private final LabSeriesService labSeriesService;
 
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService, PatientTimelineService patientTimelineService,
+            PatientDeduplicationService patientDeduplicationService, LabSeriesService labSeriesService) {
         this.patientService = patientService;
+        this.patientTimelineService = patientTimelineService;
+        this.patientDeduplicationService = patientDeduplicationService;
+        this.labSeriesService = labSeriesService;
     }
 
     @Operation(
@@ -192,4 +207,70 @@ public class PatientController {
         return ResponseEntity.ok(patientService.searchPatients(fullName, dateOfBirth, phone));
     }
 
+    @Operation(
+        summary = "Dòng thời gian khám chữa bệnh",
+        description = "Lịch hẹn, hồ sơ khám, chỉ định dịch vụ, đơn thuốc và hóa đơn của bệnh nhân, mới nhất trước, phân trang bằng cursor"
+    )
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @GetMapping("/{id}/timeline")
+    public ResponseEntity<PatientTimelineDTO> getTimeline(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "Cursor trả về từ trang trước")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(patientTimelineService.getTimeline(id, from, to, cursor, limit));
+    }
+
+    @Operation(
+        summary = "Các chỉ số xét nghiệm của bệnh nhân",
+        description = "Mỗi chỉ số đã có kết quả kèm số lần đo, giá trị nhỏ nhất, lớn nhất, gần nhất và xu hướng"
+    )
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @GetMapping("/{id}/lab-series")
+    public ResponseEntity<List<LabSeriesDTO>> getLabSeries(@PathVariable("id") Long id) {
+        return ResponseEntity.ok(labSeriesService.listSeries(id));
+    }
+
+    @Operation(
+        summary = "Diễn biến một chỉ số xét nghiệm",
+        description = "Chuỗi giá trị theo thời gian của một chỉ số để vẽ biểu đồ, có thể lấy N lần đo cuối và rút gọn số điểm"
+    )
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @GetMapping("/{id}/lab-series/{indicatorId}")
+    public ResponseEntity<LabSeriesDTO> getLabSeriesTrend(
+            @PathVariable("id") Long id,
+            @PathVariable("indicatorId") Long indicatorId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(value = "last", required = false) Integer last,
+            @Parameter(description = "Số điểm tối đa trả về, rút gọn khi chuỗi dài hơn")
+            @RequestParam(value = "maxPoints", required = false) Integer maxPoints) {
+        return ResponseEntity.ok(labSeriesService.getSeries(id, indicatorId, from, to, last, maxPoints));
+    }
+
+    @Operation(
+        summary = "Dò hồ sơ bệnh nhân trùng",
+        description = "Chấm điểm các cặp hồ sơ nghi trùng theo họ tên, ngày sinh, số điện thoại và email"
+    )
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/duplicates")
+    public ResponseEntity<PatientDedupReport> findDuplicates(
+            @RequestParam(value = "minScore", defaultValue = "0.7") double minScore,
+            @RequestParam(value = "limit", defaultValue = "500") int limit) {
+        return ResponseEntity.ok(patientDeduplicationService.findDuplicates(minScore, limit));
+    }
+
+    @Operation(
+        summary = "Gộp hồ sơ bệnh nhân trùng",
+        description = "Chuyển lịch hẹn, hồ sơ khám, hóa đơn của hồ sơ trùng sang hồ sơ giữ lại rồi xóa hồ sơ trùng"
+    )
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/{id}/merge")
+    public ResponseEntity<PatientMergeResultDTO> mergePatient(@PathVariable("id") Long id,
+            @RequestParam("duplicateId") Long duplicateId) {
+        return ResponseEntity.ok(patientDeduplicationService.merge(id, duplicateId));
+    }
+
 }
@@ -1,11 +1,16 @@
 package vn.project.ClinicSystem.controller;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -17,11 +22,15 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import vn.project.ClinicSystem.model.Prescription;
 import vn.project.ClinicSystem.model.dto.PrescriptionCreateRequest;
+import vn.project.ClinicSystem.model.dto.PrescriptionSummaryDTO;
 import vn.project.ClinicSystem.model.dto.PrescriptionUpdateRequest;
+import vn.project.ClinicSystem.model.enums.DocumentFormat;
+import vn.project.ClinicSystem.service.DocumentRenderingService;
 import vn.project.ClinicSystem.service.PrescriptionService;
 
 @RestController
@@ -29,9 +38,12 @@ import vn.project.ClinicSystem.service.PrescriptionService;
 public class PrescriptionController {
 
     private final PrescriptionService prescriptionService;
+    private final DocumentRenderingService documentRenderingService;
 
-    public PrescriptionController(PrescriptionService prescriptionService) {
+    public PrescriptionController(PrescriptionService prescriptionService,
+            DocumentRenderingService documentRenderingService) {
         this.prescriptionService = prescriptionService;
+        this.documentRenderingService = documentRenderingService;
     }
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
@@ -66,6 +78,30 @@ public class PrescriptionController {
         return ResponseEntity.ok(prescriptions);
     }
 
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @GetMapping("/summaries")
+    public ResponseEntity<Page<PrescriptionSummaryDTO>> getPrescriptionSummaries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(value = "visitId", required = false) Long visitId) {
+        Pageable pageable = PageRequest.of(page, size);
+        if (visitId != null) {
+            return ResponseEntity.ok(prescriptionService.findSummariesByVisit(visitId, pageable));
+        }
+        return ResponseEntity.ok(prescriptionService.findSummaries(pageable));
+    }
+
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @GetMapping("/summaries/export")
+    public ResponseEntity<StreamingResponseBody> exportPrescriptionSummaries() {
+        StreamingResponseBody body = out -> prescriptionService.exportSummariesCsv(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"don-thuoc.csv\"")
+                .body(body);
+    }
+
     @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
     @PutMapping("/{id}")
     public ResponseEntity<Prescription> updatePrescription(
@@ -81,4 +117,16 @@ public class PrescriptionController {
         prescriptionService.delete(id);
         return ResponseEntity.noContent().build();
     }
+
+    @PreAuthorize("hasRole('ADMIN') or hasRole('DOCTOR')")
+    @GetMapping("/{id}/document")
+    public ResponseEntity<byte[]> printPrescription(@PathVariable("id") Long id,
+            @RequestParam(value = "format", defaultValue = "PDF") DocumentFormat format) {
+        byte[] content = documentRenderingService.renderPrescription(id, format);
+        return ResponseEntity.ok()
+                .contentType(format == DocumentFormat.PDF ? MediaType.APPLICATION_PDF : MediaType.TEXT_HTML)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"don-thuoc-" + id
+                        + (format == DocumentFormat.PDF ? ".pdf" : ".html") + "\"")
+                .body(content);
+    }
 }
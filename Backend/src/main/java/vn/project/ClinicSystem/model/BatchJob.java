@@ -0,0 +1,97 @@
+package vn.project.ClinicSystem.model;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import lombok.Getter;
+import lombok.Setter;
+import vn.project.ClinicSystem.model.enums.BatchJobStatus;
+
+/**
+ * Tác vụ chạy nền được lưu lại để theo dõi tiến độ và chạy tiếp từ khối đã commit gần nhất.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "batch_jobs", indexes = {
+        @Index(name = "idx_batch_job_status", columnList = "status")
+})
+public class BatchJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "batch_jobs")
+    @TableGenerator(name = "batch_jobs", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "batch_jobs",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
+    private Long id;
+
+    @Column(nullable = false, length = 60)
+    private String jobType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private BatchJobStatus status = BatchJobStatus.QUEUED;
+
+    // Danh sách phần tử cần xử lý dạng JSON
+    @JsonIgnore
+    @Lob
+    @Column(nullable = false, columnDefinition = "LONGTEXT")
+    private String payload;
+
+    @Column(nullable = false)
+    private int chunkSize;
+
+    @Column(nullable = false)
+    private int totalItems;
+
+    @Column(nullable = false)
+    private int totalChunks;
+
+    // Số khối đã commit; khi chạy lại sẽ bắt đầu từ khối này
+    @Column(nullable = false)
+    private int committedChunks;
+
+    @Column(nullable = false)
+    private int processedItems;
+
+    private Integer failedChunk;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    @PrePersist
+    public void handleBeforeCreate() {
+        Instant now = Instant.now();
+        this.createdAt = now;
+        this.updatedAt = now;
+    }
+
+    @PreUpdate
+    public void handleBeforeUpdate() {
+        this.updatedAt = Instant.now();
+    }
+}
@@ -24,9 +24,12 @@ import jakarta.persistence.OneToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotNull;
 import lombok.Getter;
 import lombok.Setter;
+import vn.project.ClinicSystem.model.enums.BillingItemType;
 import vn.project.ClinicSystem.model.enums.BillingStatus;
 
 @Getter
@@ -36,7 +39,10 @@ import vn.project.ClinicSystem.model.enums.BillingStatus;
 public class Billing {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "billings")
+    @TableGenerator(name = "billings", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "billings",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @OneToOne(fetch = FetchType.LAZY, optional = false)
@@ -71,12 +77,20 @@ public class Billing {
     @Column(length = 255)
     private String notes;
 
+    // Phiên bản bảng giá dùng khi lập hóa đơn, phục vụ đối soát
+    private Long pricingCatalogVersion;
+
     @NotNull
     private LocalDateTime issuedAt = LocalDateTime.now();
 
     @OneToMany(mappedBy = "billing", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<BillingItem> items = new ArrayList<>();
 
+    // Khóa lạc quan: hai thu ngân sửa cùng hóa đơn thì người commit sau nhận lỗi xung đột
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version = 0L;
+
     private Instant createdAt;
     private Instant updatedAt;
 
@@ -92,6 +106,47 @@ public class Billing {
         items.clear();
     }
 
+    /**
+     * Cộng dồn tổng tiền khi thêm một mục, không duyệt lại toàn bộ danh sách mục.
+     */
+    public void applyItemAdded(BillingItem item) {
+        applyDelta(item.getItemType(), item.getAmount());
+    }
+
+    public void applyItemRemoved(BillingItem item) {
+        if (item.getAmount() != null) {
+            applyDelta(item.getItemType(), item.getAmount().negate());
+        }
+    }
+
+    /**
+     * Điều chỉnh tổng tiền khi một mục đổi loại hoặc đổi thành tiền.
+     */
+    public void applyItemChanged(BillingItemType previousType, BigDecimal previousAmount, BillingItem item) {
+        if (previousAmount != null) {
+            applyDelta(previousType, previousAmount.negate());
+        }
+        applyDelta(item.getItemType(), item.getAmount());
+    }
+
+    private void applyDelta(BillingItemType type, BigDecimal delta) {
+        if (delta == null || delta.signum() == 0) {
+            return;
+        }
+        if (type == BillingItemType.SERVICE) {
+            serviceTotal = nullToZero(serviceTotal).add(delta);
+        } else if (type == BillingItemType.MEDICATION) {
+            medicationTotal = nullToZero(medicationTotal).add(delta);
+        } else {
+            otherTotal = nullToZero(otherTotal).add(delta);
+        }
+        totalAmount = nullToZero(totalAmount).add(delta);
+    }
+
+    private static BigDecimal nullToZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
     public void recalculateTotals() {
         BigDecimal service = BigDecimal.ZERO;
         BigDecimal medication = BigDecimal.ZERO;
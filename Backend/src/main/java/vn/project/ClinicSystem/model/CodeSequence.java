@@ -0,0 +1,42 @@
+package vn.project.ClinicSystem.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Bộ đếm dùng để cấp phát mã theo khối (ví dụ mã bệnh nhân BNxxxxxxxx).
+ * Mỗi dòng giữ giá trị kế tiếp chưa được cấp phát của một dãy mã.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "code_sequences")
+public class CodeSequence {
+
+    @Id
+    @Column(length = 60)
+    private String name;
+
+    @Column(nullable = false)
+    private Long nextValue;
+
+    private Instant updatedAt;
+
+    @PrePersist
+    public void handleBeforeCreate() {
+        this.updatedAt = Instant.now();
+    }
+
+    @PreUpdate
+    public void handleBeforeUpdate() {
+        this.updatedAt = Instant.now();
+    }
+}
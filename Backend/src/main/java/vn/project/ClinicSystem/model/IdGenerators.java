@@ -0,0 +1,16 @@
+package vn.project.ClinicSystem.model;
+
+/**
+ * Cấu hình chung cho bộ sinh id dạng bảng (MySQL không có sequence).
+ * Mỗi bảng một dòng trong {@value #TABLE}; Hibernate lấy trước {@value #ALLOCATION_SIZE} id một lần
+ * theo thuật toán pooled nên các lệnh INSERT có thể gom batch.
+ */
+public final class IdGenerators {
+    public static final String TABLE = "id_generators";
+    public static final String NAME_COLUMN = "sequence_name";
+    public static final String VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 50;
+
+    private IdGenerators() {
+    }
+}
@@ -11,10 +11,12 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.validation.constraints.Size;
@@ -24,11 +26,16 @@ import lombok.Setter;
 @Getter
 @Setter
 @Entity
-@Table(name = "medications")
+@Table(name = "medications", indexes = {
+    @Index(name = "idx_medication_updated_at", columnList = "updated_at")
+})
 public class Medication {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "medications")
+    @TableGenerator(name = "medications", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "medications",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @NotBlank(message = "Tên thuốc không được để trống")
@@ -48,9 +55,15 @@ public class Medication {
     @Column(length = 30)
     private String unit;
 
+    // Không ghi qua dirty checking: tồn kho chỉ đổi bằng UPDATE nguyên tử trong MedicationRepository
     @PositiveOrZero(message = "Tồn kho phải >= 0")
+    @Column(updatable = false)
     private Integer stockQuantity = 0;
 
+    // Ngưỡng đặt hàng lại; để trống thì dùng ngưỡng mặc định của hệ thống
+    @PositiveOrZero(message = "Ngưỡng đặt hàng phải >= 0")
+    private Integer reorderLevel;
+
     @JsonIgnore
     @OneToMany(mappedBy = "medication")
     private List<PrescriptionItem> prescriptionItems = new ArrayList<>();
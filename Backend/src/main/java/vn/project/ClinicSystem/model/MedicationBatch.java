@@ -12,11 +12,13 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -26,11 +28,18 @@ import lombok.Setter;
 @Getter
 @Setter
 @Entity
-@Table(name = "medication_batches")
+@Table(name = "medication_batches", indexes = {
+    @Index(name = "idx_batch_medication_expiry", columnList = "medication_id, expiry_date"),
+    @Index(name = "idx_batch_expiry_quantity", columnList = "expiry_date, quantity_on_hand"),
+    @Index(name = "idx_batch_updated_at", columnList = "updated_at")
+})
 public class MedicationBatch {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "medication_batches")
+    @TableGenerator(name = "medication_batches", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "medication_batches",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -54,8 +63,9 @@ public class MedicationBatch {
     @Column(nullable = false, precision = 12, scale = 2)
     private BigDecimal unitPrice;
 
+    // Không ghi qua dirty checking: tồn kho chỉ đổi bằng UPDATE nguyên tử trong MedicationBatchRepository
     @Min(value = 0, message = "Tồn kho phải >= 0")
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer quantityOnHand = 0;
 
     @Min(value = 0, message = "Số hộp phải >= 0")
@@ -20,11 +20,14 @@ import jakarta.persistence.OneToMany;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import jakarta.persistence.Transient;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.Getter;
 import lombok.Setter;
+import vn.project.ClinicSystem.model.dto.MedicationInteractionResponseDTO;
 
 @Getter
 @Setter
@@ -33,7 +36,10 @@ import lombok.Setter;
 public class Prescription {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "prescriptions")
+    @TableGenerator(name = "prescriptions", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "prescriptions",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -57,6 +63,10 @@ public class Prescription {
     @OneToMany(mappedBy = "prescription", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<PrescriptionItem> items = new ArrayList<>();
 
+    // Cảnh báo tương tác thuốc khi kê đơn, chỉ trả về trong phản hồi, không lưu
+    @Transient
+    private List<MedicationInteractionResponseDTO.InteractionWarning> interactionWarnings = new ArrayList<>();
+
     @Column(nullable = false)
     private Instant createdAt;
 
@@ -0,0 +1,70 @@
+package vn.project.ClinicSystem.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import lombok.Getter;
+import lombok.Setter;
+import vn.project.ClinicSystem.model.enums.StockMovementType;
+
+/**
+ * Một dòng sổ kho: chỉ thêm mới, không sửa hay xóa. Tồn kho tại một thời điểm bằng
+ * snapshot gần nhất cộng các dòng phát sinh sau snapshot đó.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_movements", indexes = {
+        @Index(name = "idx_stock_movement_medication_time", columnList = "medication_id, occurred_at"),
+        @Index(name = "idx_stock_movement_time", columnList = "occurred_at")
+})
+public class StockMovement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "stock_movements")
+    @TableGenerator(name = "stock_movements", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "stock_movements",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
+    private Long id;
+
+    @Column(name = "medication_id", nullable = false, updatable = false)
+    private Long medicationId;
+
+    // Để trống khi phát sinh trên tồn kho thuốc không gắn với lô nào
+    @Column(name = "batch_id", updatable = false)
+    private Long batchId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20, updatable = false)
+    private StockMovementType type;
+
+    // Số lượng có dấu: nhập/trả là dương, cấp thuốc là âm
+    @Column(nullable = false, updatable = false)
+    private int quantity;
+
+    @Column(length = 60, updatable = false)
+    private String reference;
+
+    @Column(name = "occurred_at", nullable = false, updatable = false)
+    private Instant occurredAt;
+
+    public static StockMovement of(StockMovementType type, Long medicationId, Long batchId, int quantity,
+            String reference) {
+        StockMovement movement = new StockMovement();
+        movement.setType(type);
+        movement.setMedicationId(medicationId);
+        movement.setBatchId(batchId);
+        movement.setQuantity(quantity);
+        movement.setReference(reference);
+        movement.setOccurredAt(Instant.now());
+        return movement;
+    }
+}
@@ -0,0 +1,44 @@
+package vn.project.ClinicSystem.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Tồn kho của một thuốc tính đến thời điểm {@code asOf}, bằng tổng các dòng sổ kho có occurredAt <= asOf.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_snapshots", indexes = {
+        @Index(name = "idx_stock_snapshot_medication_asof", columnList = "medication_id, as_of"),
+        @Index(name = "idx_stock_snapshot_asof", columnList = "as_of")
+})
+public class StockSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "stock_snapshots")
+    @TableGenerator(name = "stock_snapshots", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "stock_snapshots",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
+    private Long id;
+
+    @Column(name = "medication_id", nullable = false)
+    private Long medicationId;
+
+    @Column(nullable = false)
+    private long quantity;
+
+    @Column(name = "as_of", nullable = false)
+    private Instant asOf;
+
+    private Instant createdAt;
+}
@@ -7,7 +7,10 @@ import java.time.LocalTime;
 @Table(name = "system_settings")
 public class SystemSettings {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "system_settings")
+    @TableGenerator(name = "system_settings", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "system_settings",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "clinic_name", nullable = false)
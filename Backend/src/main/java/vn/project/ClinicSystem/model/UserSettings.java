@@ -7,7 +7,10 @@ import java.time.LocalDateTime;
 @Table(name = "user_settings")
 public class UserSettings {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_settings")
+    @TableGenerator(name = "user_settings", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "user_settings",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "user_id", nullable = false)
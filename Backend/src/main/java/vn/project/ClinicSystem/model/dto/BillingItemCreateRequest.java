@@ -27,4 +27,7 @@ public class BillingItemCreateRequest {
 
     @NotNull(message = "Cần nhập đơn giá")
     private BigDecimal unitPrice;
+
+    // Version hóa đơn client đang xem; bỏ trống thì không kiểm tra
+    private Long version;
 }
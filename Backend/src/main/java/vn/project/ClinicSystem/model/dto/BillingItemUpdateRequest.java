@@ -21,4 +21,7 @@ public class BillingItemUpdateRequest {
     private Integer quantity;
 
     private BigDecimal unitPrice;
+
+    // Version hóa đơn client đang xem; bỏ trống thì không kiểm tra
+    private Long version;
 }
@@ -18,4 +18,7 @@ public class BillingStatusUpdateRequest {
 
     @Size(max = 255, message = "Ghi chú tối đa 255 ký tự")
     private String notes;
+
+    // Version hóa đơn client đang xem; bỏ trống thì không kiểm tra
+    private Long version;
 }
@@ -0,0 +1,19 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class BulkDeleteResultDTO {
+    private int requested;
+    private int deleted;
+    private int notFound;
+    private int chunks;
+    private long durationMs;
+    // Id còn dữ liệu tham chiếu nên được giữ lại
+    private List<Long> skippedReferencedIds = new ArrayList<>();
+}
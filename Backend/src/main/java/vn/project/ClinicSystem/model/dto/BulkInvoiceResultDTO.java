@@ -0,0 +1,31 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class BulkInvoiceResultDTO {
+    private LocalDate date;
+    private int candidateVisits;
+    private int billed;
+    private int failed;
+    private int partitions;
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+    private long durationMs;
+    private List<VisitFailure> failures = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VisitFailure {
+        private Long visitId;
+        private String message;
+    }
+}
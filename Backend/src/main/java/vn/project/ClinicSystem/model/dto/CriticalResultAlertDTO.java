@@ -0,0 +1,27 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.project.ClinicSystem.model.enums.IndicatorResultLevel;
+
+@Data
+@NoArgsConstructor
+public class CriticalResultAlertDTO {
+    private Long id;
+    private Long serviceOrderId;
+    private Long visitId;
+    private String patientName;
+    private String indicatorName;
+    private BigDecimal measuredValue;
+    private String unit;
+    private IndicatorResultLevel level;
+    // Để trống khi phiếu chưa có bác sĩ phụ trách: cảnh báo gửi thẳng cho mọi người đang theo dõi
+    private Long doctorId;
+    private Instant raisedAt;
+    private int escalations;
+    private Instant acknowledgedAt;
+    private String acknowledgedBy;
+}
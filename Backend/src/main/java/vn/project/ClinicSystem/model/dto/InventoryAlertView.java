@@ -0,0 +1,42 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class InventoryAlertView {
+    private Instant scannedAt;
+    private List<ExpiringBatch> expiringBatches = new ArrayList<>();
+    private List<LowStockMedication> lowStockMedications = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ExpiringBatch {
+        private Long batchId;
+        private String batchCode;
+        private Long medicationId;
+        private String medicationName;
+        private LocalDate expiryDate;
+        private int quantityOnHand;
+        // Cửa sổ cảnh báo nhỏ nhất chứa ngày hết hạn; 0 nghĩa là lô đã hết hạn
+        private int horizonDays;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LowStockMedication {
+        private Long medicationId;
+        private String name;
+        private int stockQuantity;
+        private int reorderLevel;
+    }
+}
@@ -0,0 +1,44 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class LabResultImportReport {
+    private long totalRows;
+    private long importedResults;
+    private long failedRows;
+    private long criticalResults;
+    // Số phiếu có ít nhất một dòng hợp lệ
+    private long orders;
+    private long completedOrders;
+    private long durationMs;
+    private long rowsPerSecond;
+    private boolean errorsTruncated;
+    private List<RowError> errors = new ArrayList<>();
+    // Phiếu đã nhận kết quả nhưng còn thiếu chỉ số bắt buộc, chưa chuyển trạng thái
+    private List<IncompleteOrder> incompleteOrders = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private Long serviceOrderId;
+        private String indicator;
+        private String message;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class IncompleteOrder {
+        private Long serviceOrderId;
+        private List<String> missingIndicators;
+    }
+}
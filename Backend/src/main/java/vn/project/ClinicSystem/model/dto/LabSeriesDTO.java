@@ -0,0 +1,25 @@
+package vn.project.ClinicSystem.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class LabSeriesDTO {
+    private Long patientId;
+    private Long indicatorId;
+    private String indicatorName;
+    private String unit;
+    // Số điểm trong khoảng thời gian yêu cầu, trước khi rút gọn
+    private int totalPoints;
+    private boolean downsampled;
+    // Thời điểm thực hiện (epoch millis) và giá trị đo, cùng độ dài
+    private long[] timestamps;
+    private double[] values;
+    private Double min;
+    private Double max;
+    private Double last;
+    private Long lastAt;
+    // Độ dốc hồi quy tuyến tính, đơn vị đo mỗi ngày
+    private Double slopePerDay;
+}
@@ -25,4 +25,7 @@ public class MedicationCreateRequest {
 
     @PositiveOrZero(message = "Tồn kho phải >= 0")
     private Integer stockQuantity = 0;
+
+    @PositiveOrZero(message = "Ngưỡng đặt hàng phải >= 0")
+    private Integer reorderLevel;
 }
@@ -0,0 +1,21 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.time.LocalDate;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class MedicationForecastDTO {
+    private Long medicationId;
+    private String name;
+    private int stockQuantity;
+    // Lượng dùng trung bình mỗi ngày theo làm trơn hàm mũ
+    private double dailyRate;
+    // Để trống khi thuốc không còn được kê
+    private Double daysOfStockRemaining;
+    private int reorderPoint;
+    private int suggestedReorderQuantity;
+    private LocalDate dataThrough;
+}
@@ -0,0 +1,16 @@
+package vn.project.ClinicSystem.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicationSuggestionDTO {
+    private Long id;
+    private String name;
+    private String activeIngredient;
+    private String form;
+    private String unit;
+}
@@ -23,4 +23,7 @@ public class MedicationUpdateRequest {
 
     @PositiveOrZero(message = "Tồn kho phải >= 0")
     private Integer stockQuantity;
+
+    @PositiveOrZero(message = "Ngưỡng đặt hàng phải >= 0")
+    private Integer reorderLevel;
 }
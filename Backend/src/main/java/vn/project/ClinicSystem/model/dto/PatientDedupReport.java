@@ -0,0 +1,34 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class PatientDedupReport {
+    private long scannedPatients;
+    private long blocks;
+    private long skippedOversizedBlocks;
+    private long comparisons;
+    private long durationMs;
+    private long totalCandidates;
+    private List<Candidate> candidates = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Candidate {
+        private Long primaryId;
+        private String primaryName;
+        private Long duplicateId;
+        private String duplicateName;
+        private LocalDate dateOfBirth;
+        private double score;
+        private List<String> matchedOn;
+    }
+}
@@ -0,0 +1,29 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class PatientImportReport {
+    private long totalRows;
+    private long importedRows;
+    private long failedRows;
+    private long durationMs;
+    private long rowsPerSecond;
+    private boolean errorsTruncated;
+    private List<RowError> errors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String code;
+        private String message;
+    }
+}
@@ -0,0 +1,18 @@
+package vn.project.ClinicSystem.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatientMergeResultDTO {
+    private Long targetId;
+    private Long mergedId;
+    private String mergedCode;
+    private int appointments;
+    private int visits;
+    private int billings;
+    private int appointmentRequests;
+}
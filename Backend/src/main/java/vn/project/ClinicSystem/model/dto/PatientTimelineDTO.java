@@ -0,0 +1,105 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatientTimelineDTO {
+    private Long patientId;
+    private List<TimelineEntry> entries;
+    private String nextCursor;
+    private boolean hasMore;
+
+    @Data
+    @NoArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class TimelineEntry {
+        private String type; // APPOINTMENT, VISIT
+        private Long id;
+        private LocalDateTime occurredAt;
+        private String status;
+
+        // Lịch hẹn
+        private String reason;
+        private Integer duration;
+        private Long doctorId;
+        private String doctorSpecialty;
+        private String clinicRoomName;
+
+        // Hồ sơ khám
+        private Long appointmentId;
+        private String provisionalDiagnosis;
+        private String clinicalNote;
+        private List<ServiceOrderEntry> serviceOrders;
+        private List<PrescriptionEntry> prescriptions;
+        private BillingEntry billing;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ServiceOrderEntry {
+        private Long id;
+        private Long medicalServiceId;
+        private String medicalServiceName;
+        private String status;
+        private LocalDateTime performedAt;
+        private String resultNote;
+        private List<IndicatorResultEntry> results = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class IndicatorResultEntry {
+        private Long indicatorId;
+        private String indicatorName;
+        private String unit;
+        private BigDecimal value;
+        private String evaluation;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PrescriptionEntry {
+        private Long id;
+        private LocalDateTime issuedAt;
+        private String notes;
+        private List<PrescriptionItemEntry> items = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PrescriptionItemEntry {
+        private Long id;
+        private Long medicationId;
+        private String medicationName;
+        private String dosage;
+        private String frequency;
+        private String duration;
+        private Integer quantity;
+        private BigDecimal amount;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BillingEntry {
+        private Long id;
+        private String status;
+        private BigDecimal totalAmount;
+        private LocalDateTime issuedAt;
+    }
+}
@@ -26,4 +26,7 @@ public class PrescriptionCreateRequest {
 
     @NotEmpty(message = "Đơn thuốc phải có ít nhất 1 thuốc")
     private List<@Valid PrescriptionItemRequest> items;
+
+    // Bác sĩ đã xem và chấp nhận cảnh báo chống chỉ định phối hợp
+    private Boolean acknowledgeInteractions;
 }
@@ -0,0 +1,21 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrescriptionSummaryDTO {
+    private Long id;
+    private Long visitId;
+    private String patientName;
+    private String doctorName;
+    private LocalDateTime issuedAt;
+    private Long itemCount;
+    private BigDecimal totalAmount;
+}
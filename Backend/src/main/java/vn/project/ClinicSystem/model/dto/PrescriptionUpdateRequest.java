@@ -22,4 +22,7 @@ public class PrescriptionUpdateRequest {
     private String notes;
 
     private List<@Valid PrescriptionItemRequest> items;
+
+    // Bác sĩ đã xem và chấp nhận cảnh báo chống chỉ định phối hợp
+    private Boolean acknowledgeInteractions;
 }
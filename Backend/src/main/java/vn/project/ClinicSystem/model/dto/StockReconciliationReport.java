@@ -0,0 +1,30 @@
+package vn.project.ClinicSystem.model.dto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class StockReconciliationReport {
+    private Instant checkedAt;
+    private int checkedMedications;
+    private int failed;
+    private long durationMs;
+    private List<Mismatch> mismatches = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Mismatch {
+        private Long medicationId;
+        // Để trống khi lệch ở tồn kho thuốc, có giá trị khi lệch ở một lô
+        private Long batchId;
+        private long counterQuantity;
+        private long ledgerQuantity;
+    }
+}
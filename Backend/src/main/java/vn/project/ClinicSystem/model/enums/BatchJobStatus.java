@@ -0,0 +1,8 @@
+package vn.project.ClinicSystem.model.enums;
+
+public enum BatchJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,6 @@
+package vn.project.ClinicSystem.model.enums;
+
+public enum DocumentFormat {
+    HTML,
+    PDF
+}
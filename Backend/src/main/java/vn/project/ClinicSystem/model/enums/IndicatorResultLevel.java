@@ -1,8 +1,14 @@
 package vn.project.ClinicSystem.model.enums;
 
 public enum IndicatorResultLevel {
+    CRITICAL_LOW,
     LOW,
     NORMAL,
     HIGH,
-    UNKNOWN
+    CRITICAL_HIGH,
+    UNKNOWN;
+
+    public boolean isCritical() {
+        return this == CRITICAL_LOW || this == CRITICAL_HIGH;
+    }
 }
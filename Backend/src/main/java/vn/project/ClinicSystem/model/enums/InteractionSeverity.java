@@ -0,0 +1,18 @@
+package vn.project.ClinicSystem.model.enums;
+
+public enum InteractionSeverity {
+    CONTRAINDICATED("Chống chỉ định"),
+    MAJOR("Cao"),
+    MODERATE("Trung bình"),
+    MINOR("Thấp");
+
+    private final String label;
+
+    InteractionSeverity(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
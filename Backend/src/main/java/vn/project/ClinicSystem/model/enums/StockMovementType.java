@@ -0,0 +1,8 @@
+package vn.project.ClinicSystem.model.enums;
+
+public enum StockMovementType {
+    RECEIPT,
+    DISPENSE,
+    RETURN,
+    ADJUST
+}
@@ -6,10 +6,12 @@ import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.project.ClinicSystem.model.Appointment;
+import vn.project.ClinicSystem.model.Patient;
 import vn.project.ClinicSystem.model.enums.AppointmentStatus;
 
 @Repository
@@ -59,6 +61,26 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
                         @Param("endAt") LocalDateTime endAt,
                         @Param("ignoreAppointmentId") Long ignoreAppointmentId);
 
+        @Query("""
+                        SELECT a.id AS id,
+                               a.scheduledAt AS scheduledAt,
+                               a.status AS status,
+                               a.reason AS reason,
+                               a.duration AS duration,
+                               a.doctor.id AS doctorId,
+                               a.doctor.specialty AS doctorSpecialty,
+                               a.clinicRoom.name AS clinicRoomName
+                        FROM Appointment a
+                        WHERE a.patient.id = :patientId
+                          AND a.scheduledAt >= :from
+                          AND a.scheduledAt <= :to
+                        ORDER BY a.scheduledAt DESC, a.id DESC
+                        """)
+        List<TimelineAppointmentView> findTimelineAppointments(@Param("patientId") Long patientId,
+                        @Param("from") LocalDateTime from,
+                        @Param("to") LocalDateTime to,
+                        Pageable pageable);
+
         // Dashboard methods
         Long countByAppointmentDate(LocalDate date);
         
@@ -70,4 +92,26 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
         
         List<Appointment> findByStatus(String status);
 
+        @Modifying
+        @Query("UPDATE Appointment a SET a.patient = :target WHERE a.patient = :source")
+        int reassignPatient(@Param("source") Patient source, @Param("target") Patient target);
+
+        interface TimelineAppointmentView {
+                Long getId();
+
+                LocalDateTime getScheduledAt();
+
+                AppointmentStatus getStatus();
+
+                String getReason();
+
+                Integer getDuration();
+
+                Long getDoctorId();
+
+                String getDoctorSpecialty();
+
+                String getClinicRoomName();
+        }
+
 }
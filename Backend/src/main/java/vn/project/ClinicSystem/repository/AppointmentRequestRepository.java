@@ -4,9 +4,13 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import vn.project.ClinicSystem.model.AppointmentRequest;
+import vn.project.ClinicSystem.model.Patient;
 import vn.project.ClinicSystem.model.enums.AppointmentRequestStatus;
 
 @Repository
@@ -17,4 +21,8 @@ public interface AppointmentRequestRepository extends JpaRepository<AppointmentR
     List<AppointmentRequest> findAllByOrderByCreatedAtDesc();
 
     Optional<AppointmentRequest> findByIdAndStatus(Long id, AppointmentRequestStatus status);
+
+    @Modifying
+    @Query("UPDATE AppointmentRequest r SET r.patient = :target WHERE r.patient = :source")
+    int reassignPatient(@Param("source") Patient source, @Param("target") Patient target);
 }
@@ -0,0 +1,22 @@
+package vn.project.ClinicSystem.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import vn.project.ClinicSystem.model.BatchJob;
+import vn.project.ClinicSystem.model.enums.BatchJobStatus;
+
+@Repository
+public interface BatchJobRepository extends JpaRepository<BatchJob, Long> {
+
+    List<BatchJob> findByStatusInOrderByCreatedAtAsc(Collection<BatchJobStatus> statuses);
+
+    Page<BatchJob> findAllByOrderByCreatedAtDesc(Pageable pageable);
+
+    Page<BatchJob> findByJobTypeOrderByCreatedAtDesc(String jobType, Pageable pageable);
+}
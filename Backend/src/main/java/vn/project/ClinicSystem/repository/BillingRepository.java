@@ -1,30 +1,58 @@
 package vn.project.ClinicSystem.repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.LockModeType;
 import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.Patient;
 
 @Repository
 public interface BillingRepository extends JpaRepository<Billing, Long> {
 
     Optional<Billing> findByVisitId(Long visitId);
 
+    // Tăng version khi commit kể cả khi chỉ thêm/xóa mục, để các lần sửa đồng thời bị phát hiện
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @Query("SELECT b FROM Billing b WHERE b.id = :id")
+    Optional<Billing> findWithLockById(@Param("id") Long id);
+
     List<Billing> findByPatientIdOrderByIssuedAtDesc(Long patientId);
     
     Page<Billing> findByPatientIdOrderByIssuedAtDesc(Long patientId, Pageable pageable);
     
     Page<Billing> findByVisitId(Long visitId, Pageable pageable);
+
+    // In hóa đơn: nạp kèm các mục và bệnh nhân để render ngoài transaction
+    @EntityGraph(attributePaths = { "items", "patient" })
+    @Query("SELECT b FROM Billing b WHERE b.id = :id")
+    Optional<Billing> findForPrintById(@Param("id") Long id);
+
+    @EntityGraph(attributePaths = { "items", "patient" })
+    @Query("SELECT DISTINCT b FROM Billing b WHERE b.id IN :ids ORDER BY b.id")
+    List<Billing> findForPrintByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT b.id FROM Billing b WHERE b.issuedAt >= :from AND b.issuedAt < :to ORDER BY b.id")
+    List<Long> findIdsByIssuedAtRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
     
     // Dashboard methods
     @Query("SELECT COALESCE(SUM(b.totalAmount), 0) FROM Billing b WHERE b.issuedAt BETWEEN :startDate AND :endDate")
     Double calculateRevenueByDateRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    @Modifying
+    @Query("UPDATE Billing b SET b.patient = :target WHERE b.patient = :source")
+    int reassignPatient(@Param("source") Patient source, @Param("target") Patient target);
 }
@@ -1,11 +1,15 @@
 package vn.project.ClinicSystem.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import vn.project.ClinicSystem.model.Doctor;
@@ -21,4 +25,24 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     Optional<Doctor> findByLicenseNumberIgnoreCase(String licenseNumber);
 
     boolean existsByLicenseNumberIgnoreCase(String licenseNumber);
+
+    // Bác sĩ trong danh sách còn lịch hẹn, phiếu dịch vụ hoặc đơn thuốc (không được xóa)
+    @Query("""
+                SELECT a.doctor.id FROM Appointment a WHERE a.doctor.id IN :ids
+                UNION
+                SELECT o.assignedDoctor.id FROM ServiceOrder o WHERE o.assignedDoctor.id IN :ids
+                UNION
+                SELECT o.performedBy.id FROM ServiceOrder o WHERE o.performedBy.id IN :ids
+                UNION
+                SELECT p.prescribedBy.id FROM Prescription p WHERE p.prescribedBy.id IN :ids
+            """)
+    List<Long> findReferencedIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM DoctorSchedule s WHERE s.doctor.id IN :ids")
+    int deleteSchedulesByDoctorIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Doctor d WHERE d.id IN :ids")
+    int bulkDeleteByIdIn(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import vn.project.ClinicSystem.model.MedicalService;
@@ -22,4 +23,14 @@ public interface MedicalServiceRepository extends JpaRepository<MedicalService,
     
     // Dashboard methods
     List<MedicalService> findTop5ByOrderByUsageCountDesc();
+
+    // Nạp bảng giá dịch vụ cho PricingCatalog
+    @Query("SELECT s.id AS id, s.basePrice AS basePrice FROM MedicalService s WHERE s.basePrice IS NOT NULL")
+    List<ServicePriceView> findAllPrices();
+
+    interface ServicePriceView {
+        Long getId();
+
+        Long getBasePrice();
+    }
 }
@@ -1,9 +1,16 @@
 package vn.project.ClinicSystem.repository;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import vn.project.ClinicSystem.model.MedicationBatch;
@@ -14,4 +21,71 @@ public interface MedicationBatchRepository extends JpaRepository<MedicationBatch
     List<MedicationBatch> findByMedicationIdOrderByExpiryDateAsc(Long medicationId);
 
     Optional<MedicationBatch> findByMedicationIdAndBatchCode(Long medicationId, String batchCode);
+
+    // Lô còn hàng và chưa hết hạn của một thuốc, theo thứ tự hết hạn trước (dùng index medication_id, expiry_date)
+    @Query("SELECT b FROM MedicationBatch b WHERE b.medication.id = :medicationId AND b.quantityOnHand > 0 "
+            + "AND (b.expiryDate IS NULL OR b.expiryDate >= :today) ORDER BY b.expiryDate ASC, b.id ASC")
+    List<MedicationBatch> findDispensableBatches(@Param("medicationId") Long medicationId,
+            @Param("today") LocalDate today);
+
+    // Tồn kho chỉ được sửa bằng các câu UPDATE nguyên tử dưới đây; trả về 0 khi lô không đủ hàng
+    @Modifying
+    @Query("UPDATE MedicationBatch b SET b.quantityOnHand = b.quantityOnHand - :quantity "
+            + "WHERE b.id = :id AND b.quantityOnHand >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("UPDATE MedicationBatch b SET b.quantityOnHand = b.quantityOnHand + :quantity WHERE b.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // Đặt lại tồn kho khi kiểm kê; trả về 0 nếu tồn kho đã bị người khác thay đổi
+    @Modifying
+    @Query("UPDATE MedicationBatch b SET b.quantityOnHand = :quantity WHERE b.id = :id AND b.quantityOnHand = :expected")
+    int replaceStock(@Param("id") Long id, @Param("expected") int expected, @Param("quantity") int quantity);
+
+    @Query("SELECT b.quantityOnHand FROM MedicationBatch b WHERE b.id = :id")
+    Integer findQuantityOnHand(@Param("id") Long id);
+
+    // Nạp bảng giá lô thuốc cho PricingCatalog
+    @Query("SELECT b.id AS id, b.unitPrice AS unitPrice FROM MedicationBatch b WHERE b.unitPrice IS NOT NULL")
+    List<BatchPriceView> findAllPrices();
+
+    // Quét hạn dùng theo index (expiry_date, quantity_on_hand): lô còn hàng hết hạn đến ngày :to
+    @Query(EXPIRY_VIEW_SELECT + "WHERE b.expiryDate <= :to AND b.quantityOnHand > 0")
+    List<ExpiryView> findExpiringUntil(@Param("to") LocalDate to);
+
+    // Lô vừa lọt vào cửa sổ cảnh báo kể từ lần quét trước: hạn dùng trong (from, to]
+    @Query(EXPIRY_VIEW_SELECT + "WHERE b.expiryDate > :from AND b.expiryDate <= :to AND b.quantityOnHand > 0")
+    List<ExpiryView> findExpiringBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query(EXPIRY_VIEW_SELECT + "WHERE b.id IN :ids")
+    List<ExpiryView> findExpiryViewsByIds(@Param("ids") Collection<Long> ids);
+
+    // Theo index updated_at; tách khỏi truy vấn theo id vì "id IN ... OR updated_at > ..." quét cả bảng
+    @Query(EXPIRY_VIEW_SELECT + "WHERE b.updatedAt > :since")
+    List<ExpiryView> findExpiryViewsUpdatedSince(@Param("since") Instant since);
+
+    String EXPIRY_VIEW_SELECT = "SELECT b.id AS batchId, b.batchCode AS batchCode, m.id AS medicationId, "
+            + "m.name AS medicationName, b.expiryDate AS expiryDate, b.quantityOnHand AS quantityOnHand "
+            + "FROM MedicationBatch b JOIN b.medication m ";
+
+    interface ExpiryView {
+        Long getBatchId();
+
+        String getBatchCode();
+
+        Long getMedicationId();
+
+        String getMedicationName();
+
+        LocalDate getExpiryDate();
+
+        Integer getQuantityOnHand();
+    }
+
+    interface BatchPriceView {
+        Long getId();
+
+        BigDecimal getUnitPrice();
+    }
 }
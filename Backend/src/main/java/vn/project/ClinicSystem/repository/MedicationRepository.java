@@ -1,8 +1,14 @@
 package vn.project.ClinicSystem.repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import vn.project.ClinicSystem.model.Medication;
@@ -13,4 +19,85 @@ public interface MedicationRepository extends JpaRepository<Medication, Long> {
     Optional<Medication> findByNameIgnoreCase(String name);
 
     boolean existsByNameIgnoreCase(String name);
+
+    // Tồn kho chỉ được sửa bằng các câu UPDATE nguyên tử dưới đây; trả về 0 khi không đủ hàng
+    @Modifying
+    @Query("UPDATE Medication m SET m.stockQuantity = COALESCE(m.stockQuantity, 0) - :quantity "
+            + "WHERE m.id = :id AND COALESCE(m.stockQuantity, 0) >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("UPDATE Medication m SET m.stockQuantity = COALESCE(m.stockQuantity, 0) + :quantity WHERE m.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // Đặt lại tồn kho khi kiểm kê; trả về 0 nếu tồn kho đã bị người khác thay đổi
+    @Modifying
+    @Query("UPDATE Medication m SET m.stockQuantity = :quantity "
+            + "WHERE m.id = :id AND COALESCE(m.stockQuantity, 0) = :expected")
+    int replaceStock(@Param("id") Long id, @Param("expected") int expected, @Param("quantity") int quantity);
+
+    @Query("SELECT m.id FROM Medication m ORDER BY m.id")
+    List<Long> findAllIds();
+
+    @Query("SELECT m.stockQuantity FROM Medication m WHERE m.id = :id")
+    Integer findStockQuantity(@Param("id") Long id);
+
+    // Đọc khóa dòng: trong REPEATABLE READ câu SELECT thường chỉ thấy snapshot cũ của transaction
+    @Query(value = "SELECT stock_quantity FROM medications WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Integer findStockQuantityForUpdate(@Param("id") Long id);
+
+    // Thuốc dưới ngưỡng đặt hàng (ngưỡng riêng của thuốc, nếu không có thì ngưỡng mặc định)
+    @Query(STOCK_LEVEL_SELECT + "WHERE COALESCE(m.stockQuantity, 0) < COALESCE(m.reorderLevel, :defaultLevel)")
+    List<StockLevelView> findBelowReorderLevel(@Param("defaultLevel") int defaultLevel);
+
+    @Query(STOCK_LEVEL_SELECT)
+    List<StockLevelView> findAllStockLevels();
+
+    @Query(STOCK_LEVEL_SELECT + "WHERE m.id IN :ids")
+    List<StockLevelView> findStockLevelsByIds(@Param("ids") Collection<Long> ids);
+
+    // Theo index updated_at; tách khỏi truy vấn theo id vì "id IN ... OR updated_at > ..." quét cả bảng
+    @Query(STOCK_LEVEL_SELECT + "WHERE m.updatedAt > :since")
+    List<StockLevelView> findStockLevelsUpdatedSince(@Param("since") Instant since);
+
+    // Tên thuốc và hoạt chất cho bộ kiểm tra tương tác thuốc
+    @Query("SELECT m.name AS name, m.activeIngredient AS activeIngredient FROM Medication m "
+            + "WHERE m.activeIngredient IS NOT NULL")
+    List<IngredientView> findAllIngredients();
+
+    // Danh mục cho bộ gợi ý tên thuốc
+    @Query("SELECT m.id AS id, m.name AS name, m.activeIngredient AS activeIngredient, m.form AS form, "
+            + "m.unit AS unit FROM Medication m")
+    List<SearchView> findAllForSearch();
+
+    interface SearchView {
+        Long getId();
+
+        String getName();
+
+        String getActiveIngredient();
+
+        String getForm();
+
+        String getUnit();
+    }
+
+    interface IngredientView {
+        String getName();
+
+        String getActiveIngredient();
+    }
+
+    String STOCK_LEVEL_SELECT = "SELECT m.id AS id, m.name AS name, m.stockQuantity AS stockQuantity, "
+            + "m.reorderLevel AS reorderLevel FROM Medication m ";
+
+    interface StockLevelView {
+        Long getId();
+
+        String getName();
+
+        Integer getStockQuantity();
+
+        Integer getReorderLevel();
+    }
 }
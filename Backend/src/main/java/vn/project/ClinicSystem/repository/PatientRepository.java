@@ -1,12 +1,14 @@
 package vn.project.ClinicSystem.repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -34,7 +36,59 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
             @Param("dateOfBirth") LocalDate dateOfBirth,
             @Param("phone") String phone);
 
+    @Query(value = """
+                SELECT COALESCE(MAX(CAST(SUBSTRING(p.code, 3) AS UNSIGNED)), 0)
+                FROM patients p
+                WHERE p.code REGEXP '^BN[0-9]{10}$'
+            """, nativeQuery = true)
+    Long findMaxAllocatedCode();
+
+    @Query("SELECT p.code FROM Patient p WHERE p.code IN :codes")
+    List<String> findExistingCodes(@Param("codes") Collection<String> codes);
+
+    /**
+     * Đọc theo khóa (id > afterId) chỉ các cột cần cho dò trùng, tránh nạp toàn bộ entity.
+     */
+    @Query("""
+                SELECT p.id AS id, p.fullName AS fullName, p.dateOfBirth AS dateOfBirth,
+                       p.phone AS phone, p.email AS email
+                FROM Patient p
+                WHERE p.id > :afterId
+                ORDER BY p.id
+            """)
+    List<DedupView> findDedupSlice(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Bệnh nhân trong danh sách còn lịch hẹn, hồ sơ khám hoặc hóa đơn (không được xóa)
+    @Query("""
+                SELECT a.patient.id FROM Appointment a WHERE a.patient.id IN :ids
+                UNION
+                SELECT v.patient.id FROM PatientVisit v WHERE v.patient.id IN :ids
+                UNION
+                SELECT b.patient.id FROM Billing b WHERE b.patient.id IN :ids
+            """)
+    List<Long> findReferencedIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE AppointmentRequest r SET r.patient = null WHERE r.patient.id IN :ids")
+    int detachAppointmentRequests(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Patient p WHERE p.id IN :ids")
+    int bulkDeleteByIdIn(@Param("ids") Collection<Long> ids);
+
     // Dashboard methods
     Long countByCreatedDateBetween(LocalDate startDate, LocalDate endDate);
 
+    interface DedupView {
+        Long getId();
+
+        String getFullName();
+
+        LocalDate getDateOfBirth();
+
+        String getPhone();
+
+        String getEmail();
+    }
+
 }
@@ -1,12 +1,18 @@
 package vn.project.ClinicSystem.repository;
 
+import java.time.Instant;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import vn.project.ClinicSystem.model.Patient;
 import vn.project.ClinicSystem.model.PatientVisit;
 import vn.project.ClinicSystem.model.enums.VisitStatus;
 
@@ -19,6 +25,37 @@ public interface PatientVisitRepository extends JpaRepository<PatientVisit, Long
     List<PatientVisit> findByStatus(VisitStatus status);
 
     boolean existsByPrimaryAppointmentId(Long primaryAppointmentId);
+
+    @EntityGraph(attributePaths = { "billing" })
+    @Query("""
+                SELECT v
+                FROM PatientVisit v
+                WHERE v.patient.id = :patientId
+                  AND v.createdAt >= :from
+                  AND v.createdAt <= :to
+                ORDER BY v.createdAt DESC, v.id DESC
+            """)
+    List<PatientVisit> findTimelineVisits(@Param("patientId") Long patientId,
+            @Param("from") Instant from,
+            @Param("to") Instant to,
+            Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE PatientVisit v SET v.patient = :target WHERE v.patient = :source")
+    int reassignPatient(@Param("source") Patient source, @Param("target") Patient target);
+
+    @Query("""
+                SELECT v.id
+                FROM PatientVisit v
+                WHERE v.status = :status
+                  AND v.createdAt >= :from
+                  AND v.createdAt < :to
+                  AND NOT EXISTS (SELECT 1 FROM Billing b WHERE b.visit = v)
+                ORDER BY v.id
+            """)
+    List<Long> findUnbilledVisitIds(@Param("status") VisitStatus status,
+            @Param("from") Instant from,
+            @Param("to") Instant to);
     
     // Dashboard methods
     Long countByStatus(String status);
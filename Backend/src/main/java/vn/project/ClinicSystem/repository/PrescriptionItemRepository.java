@@ -0,0 +1,42 @@
+package vn.project.ClinicSystem.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import vn.project.ClinicSystem.model.PrescriptionItem;
+
+@Repository
+public interface PrescriptionItemRepository extends JpaRepository<PrescriptionItem, Long> {
+
+    // Tổng số lượng đã kê theo thuốc và theo ngày kê đơn trong [from, to)
+    @Query("SELECT i.medication.id AS medicationId, CAST(p.issuedAt AS LocalDate) AS day, "
+            + "SUM(i.quantity) AS quantity FROM PrescriptionItem i JOIN i.prescription p "
+            + "WHERE i.medication IS NOT NULL AND p.issuedAt >= :from AND p.issuedAt < :to "
+            + "GROUP BY i.medication.id, CAST(p.issuedAt AS LocalDate)")
+    List<DailyQuantityView> sumDailyQuantities(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Số lần mỗi thuốc được kê, dùng để xếp hạng gợi ý
+    @Query("SELECT i.medication.id AS medicationId, COUNT(i) AS count FROM PrescriptionItem i "
+            + "WHERE i.medication IS NOT NULL GROUP BY i.medication.id")
+    List<MedicationCountView> countByMedication();
+
+    interface MedicationCountView {
+        Long getMedicationId();
+
+        Long getCount();
+    }
+
+    interface DailyQuantityView {
+        Long getMedicationId();
+
+        LocalDate getDay();
+
+        Long getQuantity();
+    }
+}
@@ -1,18 +1,105 @@
 package vn.project.ClinicSystem.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
 import vn.project.ClinicSystem.model.Prescription;
+import vn.project.ClinicSystem.model.dto.PrescriptionSummaryDTO;
 
 @Repository
 public interface PrescriptionRepository extends JpaRepository<Prescription, Long> {
 
+    String SUMMARY_SELECT = "SELECT new vn.project.ClinicSystem.model.dto.PrescriptionSummaryDTO("
+            + "p.id, v.id, pt.fullName, a.fullName, p.issuedAt, COUNT(i.id), SUM(i.amount)) "
+            + "FROM Prescription p JOIN p.visit v JOIN v.patient pt "
+            + "LEFT JOIN p.prescribedBy d LEFT JOIN d.account a LEFT JOIN p.items i ";
+    String SUMMARY_GROUP_ORDER = "GROUP BY p.id, v.id, pt.fullName, a.fullName, p.issuedAt "
+            + "ORDER BY p.issuedAt DESC, p.id DESC";
+
+    // Chi tiết đơn thuốc: nạp cùng một truy vấn mọi quan hệ mà JSON trả về sẽ chạm tới (dòng thuốc, lô,
+    // hồ sơ khám, lịch hẹn, bác sĩ) để serialize không phát sinh lazy load cho từng đơn; visit.billing là
+    // phía mappedBy của quan hệ một-một nên luôn bị nạp, đưa vào graph để khỏi mỗi đơn một truy vấn
+    @EntityGraph(attributePaths = { "items", "items.medication", "items.medicationBatch",
+            "items.medicationBatch.medication", "visit", "visit.patient", "visit.primaryAppointment",
+            "visit.primaryAppointment.patient", "visit.primaryAppointment.doctor",
+            "visit.primaryAppointment.doctor.account", "visit.primaryAppointment.clinicRoom",
+            "visit.primaryAppointment.createdBy", "visit.primaryAppointment.request",
+            "visit.primaryAppointment.request.patient", "visit.primaryAppointment.request.processedBy",
+            "visit.billing", "prescribedBy", "prescribedBy.account" })
+    @Query("SELECT p FROM Prescription p WHERE p.id = :id")
+    Optional<Prescription> findDetailedById(@Param("id") Long id);
+
+    @EntityGraph(attributePaths = { "items", "items.medication", "items.medicationBatch",
+            "items.medicationBatch.medication", "visit", "visit.patient", "visit.primaryAppointment",
+            "visit.primaryAppointment.patient", "visit.primaryAppointment.doctor",
+            "visit.primaryAppointment.doctor.account", "visit.primaryAppointment.clinicRoom",
+            "visit.primaryAppointment.createdBy", "visit.primaryAppointment.request",
+            "visit.primaryAppointment.request.patient", "visit.primaryAppointment.request.processedBy",
+            "visit.billing", "prescribedBy", "prescribedBy.account" })
+    @Query("SELECT DISTINCT p FROM Prescription p WHERE p.id IN :ids")
+    List<Prescription> findDetailedByIdIn(@Param("ids") Collection<Long> ids);
+
+    @EntityGraph(attributePaths = { "items", "items.medication", "items.medicationBatch",
+            "items.medicationBatch.medication", "visit", "visit.patient", "visit.primaryAppointment",
+            "visit.primaryAppointment.patient", "visit.primaryAppointment.doctor",
+            "visit.primaryAppointment.doctor.account", "visit.primaryAppointment.clinicRoom",
+            "visit.primaryAppointment.createdBy", "visit.primaryAppointment.request",
+            "visit.primaryAppointment.request.patient", "visit.primaryAppointment.request.processedBy",
+            "visit.billing", "prescribedBy", "prescribedBy.account" })
     List<Prescription> findByVisitIdOrderByIssuedAtDesc(Long visitId);
-    
-    Page<Prescription> findByVisitIdOrderByIssuedAtDesc(Long visitId, Pageable pageable);
+
+    // Phân trang hai bước: trang id trước rồi mới nạp chi tiết, tránh Hibernate cắt trang trong bộ nhớ
+    // khi fetch join collection
+    @Query(value = "SELECT p.id FROM Prescription p ORDER BY p.issuedAt DESC, p.id DESC",
+            countQuery = "SELECT COUNT(p) FROM Prescription p")
+    Page<Long> findPageIds(Pageable pageable);
+
+    @Query(value = "SELECT p.id FROM Prescription p WHERE p.visit.id = :visitId ORDER BY p.issuedAt DESC, p.id DESC",
+            countQuery = "SELECT COUNT(p) FROM Prescription p WHERE p.visit.id = :visitId")
+    Page<Long> findPageIdsByVisitId(@Param("visitId") Long visitId, Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + SUMMARY_GROUP_ORDER,
+            countQuery = "SELECT COUNT(p) FROM Prescription p")
+    Page<PrescriptionSummaryDTO> findSummaries(Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + "WHERE v.id = :visitId " + SUMMARY_GROUP_ORDER,
+            countQuery = "SELECT COUNT(p) FROM Prescription p WHERE p.visit.id = :visitId")
+    Page<PrescriptionSummaryDTO> findSummariesByVisitId(@Param("visitId") Long visitId, Pageable pageable);
+
+    // Duyệt toàn bộ đơn thuốc theo luồng; fetch size MIN_VALUE để MySQL trả từng dòng thay vì nạp hết kết quả
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "-2147483648"))
+    @Query(SUMMARY_SELECT + SUMMARY_GROUP_ORDER)
+    Stream<PrescriptionSummaryDTO> streamSummaries();
+
+    @EntityGraph(attributePaths = { "items" })
+    List<Prescription> findByVisitIdInOrderByIssuedAtDesc(Collection<Long> visitIds);
+
+    // Lập hóa đơn: lấy kèm dòng thuốc, thuốc và lô thuốc trong cùng một truy vấn
+    @EntityGraph(attributePaths = { "items", "items.medication", "items.medicationBatch",
+            "items.medicationBatch.medication" })
+    @Query("SELECT p FROM Prescription p WHERE p.visit.id = :visitId ORDER BY p.issuedAt DESC")
+    List<Prescription> findForBillingByVisitId(@Param("visitId") Long visitId);
+
+    @EntityGraph(attributePaths = { "items", "items.medication", "items.medicationBatch",
+            "items.medicationBatch.medication" })
+    @Query("SELECT p FROM Prescription p WHERE p.visit.id IN :visitIds ORDER BY p.issuedAt DESC")
+    List<Prescription> findForBillingByVisitIdIn(@Param("visitIds") Collection<Long> visitIds);
+
+    // In đơn thuốc: nạp đủ dữ liệu để render ngoài transaction
+    @EntityGraph(attributePaths = { "items", "items.medication", "visit", "visit.patient",
+            "prescribedBy", "prescribedBy.account" })
+    @Query("SELECT p FROM Prescription p WHERE p.id = :id")
+    Optional<Prescription> findForPrintById(@Param("id") Long id);
 }
@@ -1,7 +1,11 @@
 package vn.project.ClinicSystem.repository;
 
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import vn.project.ClinicSystem.model.ServiceOrder;
@@ -11,5 +15,46 @@ import vn.project.ClinicSystem.model.enums.ServiceOrderStatus;
 public interface ServiceOrderRepository extends JpaRepository<ServiceOrder, Long> {
     List<ServiceOrder> findByVisitId(Long visitId);
 
-    List<ServiceOrder> findByVisitIdAndStatus(Long visitId, ServiceOrderStatus status);
+    // Số phiếu theo từng trạng thái của một hồ sơ khám, một truy vấn thay cho mỗi trạng thái một lần
+    @Query("SELECT o.status AS status, COUNT(o) AS total FROM ServiceOrder o WHERE o.visit.id = :visitId "
+            + "GROUP BY o.status")
+    List<StatusCountView> countByStatus(@Param("visitId") Long visitId);
+
+    @EntityGraph(attributePaths = { "medicalService", "indicatorResults" })
+    List<ServiceOrder> findByVisitIdIn(Collection<Long> visitIds);
+
+    // Lập hóa đơn: lấy kèm dịch vụ trong cùng một truy vấn
+    @Query("SELECT o FROM ServiceOrder o JOIN FETCH o.medicalService WHERE o.visit.id = :visitId ORDER BY o.id")
+    List<ServiceOrder> findForBillingByVisitId(@Param("visitId") Long visitId);
+
+    @Query("SELECT o FROM ServiceOrder o JOIN FETCH o.medicalService WHERE o.visit.id IN :visitIds ORDER BY o.id")
+    List<ServiceOrder> findForBillingByVisitIdIn(@Param("visitIds") Collection<Long> visitIds);
+
+    // Nhập kết quả hàng loạt: thông tin tối thiểu của các phiếu trong một khối, không nạp entity
+    @Query("SELECT o.id AS id, o.medicalService.id AS medicalServiceId, o.status AS status, v.id AS visitId, "
+            + "p.id AS patientId, p.fullName AS patientName, o.assignedDoctor.id AS doctorId "
+            + "FROM ServiceOrder o JOIN o.visit v JOIN v.patient p WHERE o.id IN :ids")
+    List<ImportTargetView> findImportTargets(@Param("ids") Collection<Long> ids);
+
+    interface StatusCountView {
+        ServiceOrderStatus getStatus();
+
+        long getTotal();
+    }
+
+    interface ImportTargetView {
+        Long getId();
+
+        Long getMedicalServiceId();
+
+        ServiceOrderStatus getStatus();
+
+        Long getVisitId();
+
+        Long getPatientId();
+
+        String getPatientName();
+
+        Long getDoctorId();
+    }
 }
@@ -1,8 +1,13 @@
 package vn.project.ClinicSystem.repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import vn.project.ClinicSystem.model.ServiceOrderResult;
@@ -13,4 +18,36 @@ public interface ServiceOrderResultRepository extends JpaRepository<ServiceOrder
     List<ServiceOrderResult> findByServiceOrderIdOrderByIdAsc(Long serviceOrderId);
 
     void deleteByServiceOrderId(Long serviceOrderId);
+
+    // Dữ liệu dựng chuỗi chỉ số theo thời gian của một bệnh nhân, không nạp entity
+    @Query("SELECT i.id AS indicatorId, r.indicatorNameSnapshot AS indicatorName, r.unitSnapshot AS unit, "
+            + "o.id AS serviceOrderId, o.performedAt AS performedAt, r.measuredValue AS measuredValue "
+            + "FROM ServiceOrderResult r JOIN r.serviceOrder o JOIN r.indicator i "
+            + "WHERE o.visit.patient.id = :patientId AND o.performedAt IS NOT NULL "
+            + "ORDER BY o.performedAt ASC, o.id ASC")
+    List<SeriesPointView> findSeriesPointsByPatientId(@Param("patientId") Long patientId);
+
+    @Query("SELECT r.serviceOrder.id AS serviceOrderId, r.indicator.id AS indicatorId "
+            + "FROM ServiceOrderResult r WHERE r.serviceOrder.id IN :orderIds")
+    List<OrderIndicatorView> findOrderIndicators(@Param("orderIds") Collection<Long> orderIds);
+
+    interface OrderIndicatorView {
+        Long getServiceOrderId();
+
+        Long getIndicatorId();
+    }
+
+    interface SeriesPointView {
+        Long getIndicatorId();
+
+        String getIndicatorName();
+
+        String getUnit();
+
+        Long getServiceOrderId();
+
+        LocalDateTime getPerformedAt();
+
+        BigDecimal getMeasuredValue();
+    }
 }
@@ -0,0 +1,55 @@
+package vn.project.ClinicSystem.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import vn.project.ClinicSystem.model.StockMovement;
+
+@Repository
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+
+    // Phần đuôi sau snapshot: (from, to]; from = Instant.EPOCH nghĩa là từ đầu sổ
+    @Query("SELECT COALESCE(SUM(m.quantity), 0) FROM StockMovement m WHERE m.medicationId = :medicationId "
+            + "AND m.occurredAt > :from AND m.occurredAt <= :to")
+    long sumQuantity(@Param("medicationId") Long medicationId, @Param("from") Instant from,
+            @Param("to") Instant to);
+
+    @Query("SELECT m.medicationId AS medicationId, SUM(m.quantity) AS quantity FROM StockMovement m "
+            + "WHERE m.occurredAt > :from AND m.occurredAt <= :to GROUP BY m.medicationId")
+    List<QuantityView> sumByMedication(@Param("from") Instant from, @Param("to") Instant to);
+
+    @Query("SELECT m.batchId AS batchId, SUM(m.quantity) AS quantity FROM StockMovement m "
+            + "WHERE m.medicationId = :medicationId AND m.batchId IS NOT NULL GROUP BY m.batchId")
+    List<BatchQuantityView> sumByBatch(@Param("medicationId") Long medicationId);
+
+    @Query("SELECT DISTINCT m.medicationId FROM StockMovement m")
+    List<Long> findMedicationIdsWithMovements();
+
+    // Thuốc và lô có phát sinh kho sau thời điểm :since (dùng index occurred_at)
+    @Query("SELECT DISTINCT m.medicationId AS medicationId, m.batchId AS batchId FROM StockMovement m "
+            + "WHERE m.occurredAt > :since")
+    List<TouchedView> findTouchedSince(@Param("since") Instant since);
+
+    interface TouchedView {
+        Long getMedicationId();
+
+        Long getBatchId();
+    }
+
+    interface QuantityView {
+        Long getMedicationId();
+
+        Long getQuantity();
+    }
+
+    interface BatchQuantityView {
+        Long getBatchId();
+
+        Long getQuantity();
+    }
+}
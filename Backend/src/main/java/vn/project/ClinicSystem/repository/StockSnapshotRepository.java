@@ -0,0 +1,23 @@
+package vn.project.ClinicSystem.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import vn.project.ClinicSystem.model.StockSnapshot;
+
+@Repository
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+
+    Optional<StockSnapshot> findFirstByMedicationIdAndAsOfLessThanEqualOrderByAsOfDesc(Long medicationId,
+            Instant asOf);
+
+    @Query("SELECT MAX(s.asOf) FROM StockSnapshot s")
+    Instant findLatestAsOf();
+
+    List<StockSnapshot> findByAsOf(Instant asOf);
+}
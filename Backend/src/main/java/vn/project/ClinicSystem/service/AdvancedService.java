@@ -2,12 +2,19 @@ package vn.project.ClinicSystem.service;
 
 import org.springframework.stereotype.Service;
 import vn.project.ClinicSystem.model.dto.*;
+import vn.project.ClinicSystem.model.enums.InteractionSeverity;
 
 import java.util.*;
 
 @Service
 public class AdvancedService {
 
+    private final DrugInteractionEngine drugInteractionEngine;
+
+    public AdvancedService(DrugInteractionEngine drugInteractionEngine) {
+        this.drugInteractionEngine = drugInteractionEngine;
+    }
+
     /**
      * AI hỗ trợ chẩn đoán dựa trên triệu chứng và kết quả xét nghiệm
      */
@@ -49,48 +56,31 @@ public class AdvancedService {
     }
 
     /**
-     * Kiểm tra tương tác thuốc
+     * Kiểm tra tương tác thuốc theo hoạt chất bằng DrugInteractionEngine
      */
     public MedicationInteractionResponseDTO checkMedicationInteractions(MedicationInteractionDTO request) {
         List<MedicationInteractionResponseDTO.InteractionWarning> interactions = new ArrayList<>();
-        List<String> medications = request.getMedications();
-        
-        // Simulate drug interaction checking
-        for (int i = 0; i < medications.size(); i++) {
-            for (int j = i + 1; j < medications.size(); j++) {
-                String med1 = medications.get(i);
-                String med2 = medications.get(j);
-                
-                // Simulate known interactions
-                if ((med1.toLowerCase().contains("warfarin") && med2.toLowerCase().contains("aspirin")) ||
-                    (med1.toLowerCase().contains("aspirin") && med2.toLowerCase().contains("warfarin"))) {
-                    interactions.add(new MedicationInteractionResponseDTO.InteractionWarning(
-                        med1, med2, "Cao", 
-                        "Tăng nguy cơ chảy máu", 
-                        "Theo dõi chặt chẽ thời gian đông máu"
-                    ));
-                } else if ((med1.toLowerCase().contains("digoxin") && med2.toLowerCase().contains("furosemide")) ||
-                          (med1.toLowerCase().contains("furosemide") && med2.toLowerCase().contains("digoxin"))) {
-                    interactions.add(new MedicationInteractionResponseDTO.InteractionWarning(
-                        med1, med2, "Trung bình", 
-                        "Có thể gây rối loạn điện giải", 
-                        "Theo dõi nồng độ kali và digoxin"
-                    ));
-                }
+        InteractionSeverity highest = null;
+        Set<String> recommendations = new LinkedHashSet<>();
+
+        for (DrugInteractionEngine.Finding finding : drugInteractionEngine.check(request.getMedications())) {
+            DrugInteractionEngine.Interaction interaction = finding.getInteraction();
+            interactions.add(finding.toWarning());
+            recommendations.add(interaction.getRecommendation());
+            if (highest == null || interaction.getSeverity().compareTo(highest) < 0) {
+                highest = interaction.getSeverity();
             }
         }
 
-        String overallRisk = interactions.isEmpty() ? "Thấp" : 
-                            interactions.stream().anyMatch(i -> i.getSeverity().equals("Cao")) ? "Cao" : "Trung bình";
-        
-        List<String> recommendations = Arrays.asList(
+        String overallRisk = highest != null ? highest.getLabel() : InteractionSeverity.MINOR.getLabel();
+        recommendations.addAll(Arrays.asList(
             "Theo dõi chặt chẽ các dấu hiệu bất thường",
             "Thông báo cho bác sĩ nếu có tác dụng phụ",
             "Không tự ý thay đổi liều lượng"
-        );
+        ));
 
         return new MedicationInteractionResponseDTO(interactions, overallRisk, 
-                                                   recommendations, !interactions.isEmpty());
+                                                   new ArrayList<>(recommendations), !interactions.isEmpty());
     }
 
     /**
@@ -0,0 +1,14 @@
+package vn.project.ClinicSystem.service;
+
+import java.util.List;
+
+/**
+ * Xử lý một loại tác vụ nền theo từng khối. Mỗi lần gọi {@link #processChunk(List)} chạy trong
+ * một transaction riêng cùng với việc ghi tiến độ, nên một khối hoặc được commit trọn vẹn hoặc không.
+ */
+public interface BatchJobHandler<T> {
+
+    Class<T> itemType();
+
+    void processChunk(List<T> items);
+}
@@ -0,0 +1,287 @@
+package vn.project.ClinicSystem.service;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.BatchJob;
+import vn.project.ClinicSystem.model.enums.BatchJobStatus;
+import vn.project.ClinicSystem.repository.BatchJobRepository;
+
+/**
+ * Chạy tác vụ nền theo khối trên batchJobExecutor.
+ * Mỗi khối được commit cùng tiến độ của tác vụ, lỗi ở một khối dừng tác vụ ở trạng thái FAILED và
+ * có thể chạy lại từ khối đó. Số khối chạy đồng thời bị giới hạn bởi semaphore và giữa các khối có
+ * khoảng nghỉ để tác vụ nền không chiếm hết kết nối database của request thường.
+ * Hàng đợi đầy thì tác vụ chuyển sang FAILED để chạy lại sau, không chạy trên luồng của request.
+ */
+@Service
+@Slf4j
+public class BatchJobService {
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final String QUEUE_FULL_MESSAGE = "Hàng đợi tác vụ nền đã đầy, vui lòng chạy lại sau";
+
+    private final BatchJobRepository batchJobRepository;
+    private final ObjectMapper objectMapper;
+    private final Executor batchJobExecutor;
+    private final TransactionTemplate transactionTemplate;
+    // Ghi trạng thái lỗi trong giao dịch riêng, kể cả khi được gọi từ afterCommit của giao dịch khác
+    private final TransactionTemplate statusTransaction;
+    private final Semaphore chunkPermits;
+    private final int defaultChunkSize;
+    private final long chunkPauseMs;
+    private final Map<String, BatchJobHandler<?>> handlers = new ConcurrentHashMap<>();
+    // Tác vụ đang chạy trong tiến trình này, tránh một tác vụ bị đưa vào hàng đợi hai lần
+    private final Map<Long, Boolean> activeJobs = new ConcurrentHashMap<>();
+
+    public BatchJobService(BatchJobRepository batchJobRepository,
+            ObjectMapper objectMapper,
+            @Qualifier("batchJobExecutor") Executor batchJobExecutor,
+            PlatformTransactionManager transactionManager,
+            @Value("${clinicsystem.batch.chunk-size:200}") int defaultChunkSize,
+            @Value("${clinicsystem.batch.max-concurrent-chunks:2}") int maxConcurrentChunks,
+            @Value("${clinicsystem.batch.chunk-pause-ms:50}") long chunkPauseMs) {
+        this.batchJobRepository = batchJobRepository;
+        this.objectMapper = objectMapper;
+        this.batchJobExecutor = batchJobExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.statusTransaction = new TransactionTemplate(transactionManager);
+        this.statusTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkPermits = new Semaphore(Math.max(1, maxConcurrentChunks), true);
+        this.defaultChunkSize = Math.max(1, defaultChunkSize);
+        this.chunkPauseMs = Math.max(0, chunkPauseMs);
+    }
+
+    public <T> void registerHandler(String jobType, BatchJobHandler<T> handler) {
+        if (handlers.putIfAbsent(jobType, handler) != null) {
+            throw new IllegalStateException("Loại tác vụ đã được đăng ký: " + jobType);
+        }
+    }
+
+    public BatchJob submit(String jobType, List<?> items) {
+        return submit(jobType, items, null);
+    }
+
+    public BatchJob submit(String jobType, List<?> items, Integer chunkSize) {
+        if (!handlers.containsKey(jobType)) {
+            throw new IllegalArgumentException("Loại tác vụ không được hỗ trợ: " + jobType);
+        }
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách cần xử lý không được để trống");
+        }
+        int size = chunkSize != null && chunkSize > 0 ? chunkSize : defaultChunkSize;
+
+        BatchJob job = new BatchJob();
+        job.setJobType(jobType);
+        job.setStatus(BatchJobStatus.QUEUED);
+        job.setPayload(writePayload(items));
+        job.setChunkSize(size);
+        job.setTotalItems(items.size());
+        job.setTotalChunks((items.size() + size - 1) / size);
+        BatchJob saved = transactionTemplate.execute(status -> batchJobRepository.save(job));
+        return dispatch(saved.getId()) ? saved : getById(saved.getId());
+    }
+
+    public BatchJob restart(Long jobId) {
+        BatchJob job = transactionTemplate.execute(status -> {
+            BatchJob existing = getById(jobId);
+            if (existing.getStatus() != BatchJobStatus.FAILED) {
+                throw new IllegalStateException("Chỉ có thể chạy lại tác vụ đã thất bại");
+            }
+            existing.setStatus(BatchJobStatus.QUEUED);
+            existing.setLastError(null);
+            existing.setFailedChunk(null);
+            existing.setFinishedAt(null);
+            return batchJobRepository.save(existing);
+        });
+        return dispatch(job.getId()) ? job : getById(job.getId());
+    }
+
+    public BatchJob getById(Long jobId) {
+        return batchJobRepository.findById(jobId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy tác vụ với id: " + jobId));
+    }
+
+    public Page<BatchJob> findAll(String jobType, Pageable pageable) {
+        if (jobType == null || jobType.isBlank()) {
+            return batchJobRepository.findAllByOrderByCreatedAtDesc(pageable);
+        }
+        return batchJobRepository.findByJobTypeOrderByCreatedAtDesc(jobType.trim(), pageable);
+    }
+
+    /**
+     * Tác vụ đang QUEUED/RUNNING khi ứng dụng dừng sẽ được chạy tiếp từ khối đã commit.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        List<BatchJob> pending = batchJobRepository.findByStatusInOrderByCreatedAtAsc(
+                EnumSet.of(BatchJobStatus.QUEUED, BatchJobStatus.RUNNING));
+        for (BatchJob job : pending) {
+            log.info("Chạy tiếp tác vụ {} ({}) từ khối {}/{}", job.getId(), job.getJobType(),
+                    job.getCommittedChunks(), job.getTotalChunks());
+            dispatch(job.getId());
+        }
+    }
+
+    // Trả về false khi tác vụ bị từ chối và đã chuyển sang FAILED
+    private boolean dispatch(Long jobId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Chỉ đưa vào hàng đợi khi bản ghi tác vụ đã được commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(jobId);
+                }
+            });
+            return true;
+        }
+        return enqueue(jobId);
+    }
+
+    private boolean enqueue(Long jobId) {
+        try {
+            batchJobExecutor.execute(() -> run(jobId));
+            return true;
+        } catch (TaskRejectedException ex) {
+            log.warn("Hàng đợi tác vụ nền đã đầy, tác vụ {} chuyển sang FAILED", jobId);
+            markFailed(jobId, null, QUEUE_FULL_MESSAGE);
+            return false;
+        }
+    }
+
+    private void run(Long jobId) {
+        if (activeJobs.putIfAbsent(jobId, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            execute(jobId);
+        } finally {
+            activeJobs.remove(jobId);
+        }
+    }
+
+    private void execute(Long jobId) {
+        BatchJob job = transactionTemplate.execute(status -> {
+            BatchJob current = batchJobRepository.findById(jobId).orElse(null);
+            if (current == null || current.getStatus() == BatchJobStatus.COMPLETED
+                    || current.getStatus() == BatchJobStatus.FAILED) {
+                return null;
+            }
+            current.setStatus(BatchJobStatus.RUNNING);
+            current.setAttempts(current.getAttempts() + 1);
+            if (current.getStartedAt() == null) {
+                current.setStartedAt(Instant.now());
+            }
+            return batchJobRepository.save(current);
+        });
+        if (job == null) {
+            return;
+        }
+
+        BatchJobHandler<?> handler = handlers.get(job.getJobType());
+        if (handler == null) {
+            markFailed(jobId, job.getCommittedChunks(), "Không có bộ xử lý cho loại tác vụ: " + job.getJobType());
+            return;
+        }
+
+        try {
+            processChunks(job, handler);
+        } catch (InterruptedException ex) {
+            // Tác vụ giữ trạng thái RUNNING và sẽ được chạy tiếp ở lần khởi động sau
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> void processChunks(BatchJob job, BatchJobHandler<T> handler) throws InterruptedException {
+        List<T> items;
+        try {
+            items = readPayload(job.getPayload(), handler.itemType());
+        } catch (JsonProcessingException ex) {
+            markFailed(job.getId(), job.getCommittedChunks(), "Dữ liệu tác vụ không hợp lệ: " + ex.getOriginalMessage());
+            return;
+        }
+
+        int chunkSize = job.getChunkSize();
+        for (int chunk = job.getCommittedChunks(); chunk < job.getTotalChunks(); chunk++) {
+            int from = chunk * chunkSize;
+            List<T> slice = items.subList(from, Math.min(items.size(), from + chunkSize));
+            int chunkIndex = chunk;
+
+            chunkPermits.acquire();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    handler.processChunk(slice);
+                    BatchJob current = getById(job.getId());
+                    current.setCommittedChunks(chunkIndex + 1);
+                    current.setProcessedItems(current.getProcessedItems() + slice.size());
+                    if (chunkIndex + 1 == current.getTotalChunks()) {
+                        current.setStatus(BatchJobStatus.COMPLETED);
+                        current.setFinishedAt(Instant.now());
+                    }
+                    batchJobRepository.save(current);
+                });
+            } catch (RuntimeException ex) {
+                log.error("Tác vụ {} lỗi ở khối {}", job.getId(), chunkIndex, ex);
+                markFailed(job.getId(), chunkIndex, ex.getMessage());
+                return;
+            } finally {
+                chunkPermits.release();
+            }
+
+            if (chunkPauseMs > 0 && chunk + 1 < job.getTotalChunks()) {
+                Thread.sleep(chunkPauseMs);
+            }
+        }
+        log.info("Hoàn thành tác vụ {} ({}): {} phần tử", job.getId(), job.getJobType(), job.getTotalItems());
+    }
+
+    // chunkIndex null: tác vụ chưa chạy, lần chạy lại bắt đầu từ khối đã commit
+    private void markFailed(Long jobId, Integer chunkIndex, String message) {
+        statusTransaction.executeWithoutResult(status -> {
+            BatchJob current = getById(jobId);
+            current.setStatus(BatchJobStatus.FAILED);
+            current.setFailedChunk(chunkIndex != null ? chunkIndex : current.getCommittedChunks());
+            String error = message != null ? message : "Lỗi không xác định";
+            current.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+            current.setFinishedAt(Instant.now());
+            batchJobRepository.save(current);
+        });
+    }
+
+    private String writePayload(List<?> items) {
+        try {
+            return objectMapper.writeValueAsString(items);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Không thể lưu dữ liệu tác vụ: " + ex.getOriginalMessage());
+        }
+    }
+
+    private <T> List<T> readPayload(String payload, Class<T> itemType) throws JsonProcessingException {
+        JavaType type = objectMapper.getTypeFactory().constructCollectionType(List.class, itemType);
+        return objectMapper.readValue(payload, type);
+    }
+}
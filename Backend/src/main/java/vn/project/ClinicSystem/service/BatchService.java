@@ -1,16 +1,24 @@
 package vn.project.ClinicSystem.service;
 
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
+import vn.project.ClinicSystem.model.BatchJob;
 import vn.project.ClinicSystem.model.Doctor;
 import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.dto.BulkDeleteResultDTO;
 import vn.project.ClinicSystem.repository.DoctorRepository;
 import vn.project.ClinicSystem.repository.PatientRepository;
 
@@ -18,9 +26,41 @@ import vn.project.ClinicSystem.repository.PatientRepository;
 @RequiredArgsConstructor
 @Slf4j
 public class BatchService {
+    static final String JOB_UPDATE_DOCTORS = "UPDATE_DOCTORS";
+    static final String JOB_UPDATE_PATIENTS = "UPDATE_PATIENTS";
+    private static final int DELETE_CHUNK_SIZE = 1000;
     
     private final DoctorRepository doctorRepository;
     private final PatientRepository patientRepository;
+    private final PatientCodeAllocator patientCodeAllocator;
+    private final BatchJobService batchJobService;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void registerJobHandlers() {
+        batchJobService.registerHandler(JOB_UPDATE_DOCTORS, new BatchJobHandler<Doctor>() {
+            @Override
+            public Class<Doctor> itemType() {
+                return Doctor.class;
+            }
+
+            @Override
+            public void processChunk(List<Doctor> items) {
+                doctorRepository.saveAll(items);
+            }
+        });
+        batchJobService.registerHandler(JOB_UPDATE_PATIENTS, new BatchJobHandler<Patient>() {
+            @Override
+            public Class<Patient> itemType() {
+                return Patient.class;
+            }
+
+            @Override
+            public void processChunk(List<Patient> items) {
+                patientRepository.saveAll(items);
+            }
+        });
+    }
 
     @Transactional
     public List<Doctor> batchCreateDoctors(List<Doctor> doctors) {
@@ -33,48 +73,115 @@ public class BatchService {
     @Transactional
     public List<Patient> batchCreatePatients(List<Patient> patients) {
         log.info("Bắt đầu batch create {} patients", patients.size());
+        assignMissingCodes(patients);
         List<Patient> savedPatients = patientRepository.saveAll(patients);
         log.info("Hoàn thành batch create {} patients", savedPatients.size());
         return savedPatients;
     }
 
-    @Async
-    public CompletableFuture<Void> asyncBatchUpdateDoctors(List<Doctor> doctors) {
-        log.info("Bắt đầu async batch update {} doctors", doctors.size());
-        try {
-            doctorRepository.saveAll(doctors);
-            log.info("Hoàn thành async batch update {} doctors", doctors.size());
-        } catch (Exception e) {
-            log.error("Lỗi trong async batch update doctors", e);
-            throw e;
-        }
-        return CompletableFuture.completedFuture(null);
+    public BatchJob asyncBatchUpdateDoctors(List<Doctor> doctors, Integer chunkSize) {
+        log.info("Tạo tác vụ batch update {} doctors", doctors.size());
+        return batchJobService.submit(JOB_UPDATE_DOCTORS, doctors, chunkSize);
     }
 
-    @Async
-    public CompletableFuture<Void> asyncBatchUpdatePatients(List<Patient> patients) {
-        log.info("Bắt đầu async batch update {} patients", patients.size());
-        try {
-            patientRepository.saveAll(patients);
-            log.info("Hoàn thành async batch update {} patients", patients.size());
-        } catch (Exception e) {
-            log.error("Lỗi trong async batch update patients", e);
-            throw e;
-        }
-        return CompletableFuture.completedFuture(null);
+    public BatchJob asyncBatchUpdatePatients(List<Patient> patients, Integer chunkSize) {
+        log.info("Tạo tác vụ batch update {} patients", patients.size());
+        return batchJobService.submit(JOB_UPDATE_PATIENTS, patients, chunkSize);
     }
 
-    @Transactional
-    public void bulkDeleteDoctors(List<Long> doctorIds) {
+    /**
+     * Xóa bác sĩ theo từng khối bằng DELETE ... WHERE id IN, mỗi khối một transaction ngắn.
+     * Bác sĩ còn lịch hẹn, phiếu dịch vụ hoặc đơn thuốc được bỏ qua và trả về trong kết quả.
+     */
+    @CacheEvict(value = "doctors", allEntries = true)
+    public BulkDeleteResultDTO bulkDeleteDoctors(List<Long> doctorIds) {
         log.info("Bắt đầu bulk delete {} doctors", doctorIds.size());
-        doctorRepository.deleteAllById(doctorIds);
-        log.info("Hoàn thành bulk delete {} doctors", doctorIds.size());
+        BulkDeleteResultDTO result = bulkDelete(doctorIds, chunk -> {
+            List<Long> referenced = doctorRepository.findReferencedIds(chunk);
+            List<Long> deletable = without(chunk, referenced);
+            int deleted = 0;
+            if (!deletable.isEmpty()) {
+                // Bulk delete của Hibernate dọn luôn bảng schedule_days của lịch làm việc
+                doctorRepository.deleteSchedulesByDoctorIdIn(deletable);
+                deleted = doctorRepository.bulkDeleteByIdIn(deletable);
+            }
+            return new ChunkOutcome(deleted, referenced);
+        });
+        log.info("Hoàn thành bulk delete doctors: xóa {}, bỏ qua {}", result.getDeleted(),
+                result.getSkippedReferencedIds().size());
+        return result;
     }
 
-    @Transactional
-    public void bulkDeletePatients(List<Long> patientIds) {
+    /**
+     * Xóa bệnh nhân theo từng khối bằng DELETE ... WHERE id IN, mỗi khối một transaction ngắn.
+     * Bệnh nhân còn lịch hẹn, hồ sơ khám hoặc hóa đơn được bỏ qua và trả về trong kết quả.
+     */
+    public BulkDeleteResultDTO bulkDeletePatients(List<Long> patientIds) {
         log.info("Bắt đầu bulk delete {} patients", patientIds.size());
-        patientRepository.deleteAllById(patientIds);
-        log.info("Hoàn thành bulk delete {} patients", patientIds.size());
+        BulkDeleteResultDTO result = bulkDelete(patientIds, chunk -> {
+            List<Long> referenced = patientRepository.findReferencedIds(chunk);
+            List<Long> deletable = without(chunk, referenced);
+            int deleted = 0;
+            if (!deletable.isEmpty()) {
+                patientRepository.detachAppointmentRequests(deletable);
+                deleted = patientRepository.bulkDeleteByIdIn(deletable);
+            }
+            return new ChunkOutcome(deleted, referenced);
+        });
+        log.info("Hoàn thành bulk delete patients: xóa {}, bỏ qua {}", result.getDeleted(),
+                result.getSkippedReferencedIds().size());
+        return result;
+    }
+
+    private BulkDeleteResultDTO bulkDelete(List<Long> ids, Function<List<Long>, ChunkOutcome> deleteChunk) {
+        long startedAt = System.nanoTime();
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        BulkDeleteResultDTO result = new BulkDeleteResultDTO();
+        result.setRequested(distinctIds.size());
+        for (int from = 0; from < distinctIds.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(distinctIds.size(), from + DELETE_CHUNK_SIZE));
+            ChunkOutcome outcome = transactionTemplate.execute(status -> deleteChunk.apply(chunk));
+            result.setChunks(result.getChunks() + 1);
+            result.setDeleted(result.getDeleted() + outcome.deleted);
+            result.getSkippedReferencedIds().addAll(outcome.referenced);
+        }
+        result.setNotFound(result.getRequested() - result.getDeleted() - result.getSkippedReferencedIds().size());
+        result.setDurationMs((System.nanoTime() - startedAt) / 1_000_000);
+        return result;
+    }
+
+    private List<Long> without(List<Long> ids, List<Long> excluded) {
+        if (excluded.isEmpty()) {
+            return ids;
+        }
+        Set<Long> skip = new HashSet<>(excluded);
+        return ids.stream().filter(id -> !skip.contains(id)).toList();
+    }
+
+    private static final class ChunkOutcome {
+        final int deleted;
+        final List<Long> referenced;
+
+        ChunkOutcome(int deleted, List<Long> referenced) {
+            this.deleted = deleted;
+            this.referenced = referenced;
+        }
+    }
+
+    private void assignMissingCodes(List<Patient> patients) {
+        long missing = patients.stream().filter(p -> p.getCode() == null || p.getCode().isBlank()).count();
+        Iterator<String> codes = patientCodeAllocator.nextCodes((int) missing).iterator();
+        for (Patient patient : patients) {
+            if (patient.getCode() == null || patient.getCode().isBlank()) {
+                patient.setCode(codes.next());
+            } else {
+                patient.setCode(patient.getCode().trim().toUpperCase());
+                if (PatientCodeAllocator.isAllocatorCode(patient.getCode())) {
+                    throw new IllegalArgumentException(
+                            "Mã bệnh nhân dạng BN + 10 chữ số do hệ thống tự cấp, không được nhập tay: "
+                                    + patient.getCode());
+                }
+            }
+        }
     }
 }
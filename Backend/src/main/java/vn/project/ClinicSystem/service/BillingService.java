@@ -4,9 +4,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import org.hibernate.Hibernate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -14,6 +16,7 @@ import org.springframework.util.StringUtils;
 import jakarta.persistence.EntityNotFoundException;
 import vn.project.ClinicSystem.model.Billing;
 import vn.project.ClinicSystem.model.BillingItem;
+import vn.project.ClinicSystem.model.MedicalService;
 import vn.project.ClinicSystem.model.PatientVisit;
 import vn.project.ClinicSystem.model.Prescription;
 import vn.project.ClinicSystem.model.PrescriptionItem;
@@ -40,19 +43,22 @@ public class BillingService {
     private final ServiceOrderRepository serviceOrderRepository;
     private final PrescriptionRepository prescriptionRepository;
     private final RealTimeEventService realTimeEventService;
+    private final PricingCatalog pricingCatalog;
 
     public BillingService(BillingRepository billingRepository,
             BillingItemRepository billingItemRepository,
             PatientVisitRepository patientVisitRepository,
             ServiceOrderRepository serviceOrderRepository,
             PrescriptionRepository prescriptionRepository,
-            RealTimeEventService realTimeEventService) {
+            RealTimeEventService realTimeEventService,
+            PricingCatalog pricingCatalog) {
         this.billingRepository = billingRepository;
         this.billingItemRepository = billingItemRepository;
         this.patientVisitRepository = patientVisitRepository;
         this.serviceOrderRepository = serviceOrderRepository;
         this.prescriptionRepository = prescriptionRepository;
         this.realTimeEventService = realTimeEventService;
+        this.pricingCatalog = pricingCatalog;
     }
 
     public Billing getById(Long billingId) {
@@ -94,6 +100,17 @@ public class BillingService {
         PatientVisit visit = patientVisitRepository.findById(visitId)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy hồ sơ khám với id: " + visitId));
 
+        Billing billing = buildBilling(visit,
+                serviceOrderRepository.findForBillingByVisitId(visitId),
+                prescriptionRepository.findForBillingByVisitId(visitId));
+
+        return billingRepository.save(billing);
+    }
+
+    /**
+     * Dựng hóa đơn (chưa lưu) cho hồ sơ khám từ phiếu dịch vụ và đơn thuốc đã được nạp sẵn.
+     */
+    public Billing buildBilling(PatientVisit visit, List<ServiceOrder> orders, List<Prescription> prescriptions) {
         Billing billing = new Billing();
         billing.setVisit(visit);
         // visit.setBilling(billing);
@@ -101,17 +118,33 @@ public class BillingService {
         billing.setIssuedAt(LocalDateTime.now());
         billing.setStatus(BillingStatus.UNPAID);
 
-        populateServiceOrderItems(billing, visitId);
-        populateMedicationItems(billing, visitId);
+        // Cả hóa đơn dùng chung một bản chụp bảng giá
+        PricingCatalog.Snapshot prices = pricingCatalog.snapshot();
+        billing.setPricingCatalogVersion(prices.getVersion());
+
+        populateServiceOrderItems(billing, orders, prices);
+        populateMedicationItems(billing, prescriptions, prices);
 
         billing.recalculateTotals();
+        return billing;
+    }
 
-        return billingRepository.save(billing);
+    /**
+     * Nạp hóa đơn để sửa: version được tăng khi commit nên hai giao dịch sửa đồng thời
+     * không thể cùng ghi đè tổng tiền; nếu client gửi version thì phải khớp với bản hiện tại.
+     */
+    private Billing getForUpdate(Long billingId, Long expectedVersion) {
+        Billing billing = billingRepository.findWithLockById(billingId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy hóa đơn với id: " + billingId));
+        if (expectedVersion != null && !expectedVersion.equals(billing.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Billing.class, billingId);
+        }
+        return billing;
     }
 
     @Transactional
     public Billing updateStatus(Long billingId, BillingStatusUpdateRequest request) {
-        Billing billing = getById(billingId);
+        Billing billing = getForUpdate(billingId, request.getVersion());
         billing.setStatus(request.getStatus());
         if (request.getPaymentMethod() != null) {
             billing.setPaymentMethod(normalizeText(request.getPaymentMethod()));
@@ -133,7 +166,7 @@ public class BillingService {
 
     @Transactional
     public Billing addManualItem(Long billingId, BillingItemCreateRequest request) {
-        Billing billing = getById(billingId);
+        Billing billing = getForUpdate(billingId, request.getVersion());
 
         BillingItem item = new BillingItem();
         item.setItemType(request.getItemType());
@@ -142,14 +175,16 @@ public class BillingService {
         item.setUnitPrice(request.getUnitPrice());
         item.recalculateAmount();
 
-        billing.addItem(item);
-        billing.recalculateTotals();
+        // Không chạm vào danh sách items (lazy) để khỏi nạp lại toàn bộ mục chỉ để cộng tổng
+        item.setBilling(billing);
+        billingItemRepository.save(item);
+        billing.applyItemAdded(item);
         return billingRepository.save(billing);
     }
 
     @Transactional
     public BillingItem updateItem(Long billingId, Long itemId, BillingItemUpdateRequest request) {
-        Billing billing = getById(billingId);
+        Billing billing = getForUpdate(billingId, request.getVersion());
         BillingItem item = billingItemRepository.findById(itemId)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy mục hóa đơn với id: " + itemId));
 
@@ -157,6 +192,9 @@ public class BillingService {
             throw new IllegalArgumentException("Mục hóa đơn không thuộc về hóa đơn đã chọn.");
         }
 
+        BillingItemType previousType = item.getItemType();
+        BigDecimal previousAmount = item.getAmount();
+
         if (request.getItemType() != null) {
             item.setItemType(request.getItemType());
         }
@@ -173,15 +211,15 @@ public class BillingService {
         item.recalculateAmount();
         BillingItem savedItem = billingItemRepository.save(item);
 
-        billing.recalculateTotals();
+        billing.applyItemChanged(previousType, previousAmount, savedItem);
         billingRepository.save(billing);
 
         return savedItem;
     }
 
     @Transactional
-    public void deleteItem(Long billingId, Long itemId) {
-        Billing billing = getById(billingId);
+    public void deleteItem(Long billingId, Long itemId, Long expectedVersion) {
+        Billing billing = getForUpdate(billingId, expectedVersion);
         BillingItem item = billingItemRepository.findById(itemId)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy mục hóa đơn với id: " + itemId));
 
@@ -189,15 +227,15 @@ public class BillingService {
             throw new IllegalArgumentException("Mục hóa đơn không thuộc về hóa đơn đã chọn.");
         }
 
-        billing.getItems().remove(item);
+        if (Hibernate.isInitialized(billing.getItems())) {
+            billing.getItems().remove(item);
+        }
         billingItemRepository.delete(item);
-        billing.recalculateTotals();
+        billing.applyItemRemoved(item);
         billingRepository.save(billing);
     }
 
-    private void populateServiceOrderItems(Billing billing, Long visitId) {
-        List<ServiceOrder> orders = serviceOrderRepository.findByVisitId(visitId);
-
+    private void populateServiceOrderItems(Billing billing, List<ServiceOrder> orders, PricingCatalog.Snapshot prices) {
         for (ServiceOrder order : orders) {
             ServiceOrderStatus status = order.getStatus();
             if (status == ServiceOrderStatus.CANCELLED || status == ServiceOrderStatus.PENDING
@@ -205,11 +243,19 @@ public class BillingService {
                 continue;
             }
 
-            if (order.getMedicalService() == null || order.getMedicalService().getBasePrice() == null) {
+            MedicalService medicalService = order.getMedicalService();
+            if (medicalService == null) {
                 continue;
             }
 
-            BigDecimal price = BigDecimal.valueOf(order.getMedicalService().getBasePrice());
+            BigDecimal price = prices.servicePrice(medicalService.getId());
+            if (price == null) {
+                // Dịch vụ chưa có trong bảng giá (vừa tạo ở instance khác): dùng giá trên entity
+                if (medicalService.getBasePrice() == null) {
+                    continue;
+                }
+                price = BigDecimal.valueOf(medicalService.getBasePrice());
+            }
 
             BillingItem item = new BillingItem();
             item.setItemType(BillingItemType.SERVICE);
@@ -224,8 +270,8 @@ public class BillingService {
         }
     }
 
-    private void populateMedicationItems(Billing billing, Long visitId) {
-        List<Prescription> prescriptions = prescriptionRepository.findByVisitIdOrderByIssuedAtDesc(visitId);
+    private void populateMedicationItems(Billing billing, List<Prescription> prescriptions,
+            PricingCatalog.Snapshot prices) {
         for (Prescription prescription : prescriptions) {
             for (PrescriptionItem item : prescription.getItems()) {
                 BillingItem billingItem = new BillingItem();
@@ -246,9 +292,14 @@ public class BillingService {
                 int quantity = item.getQuantity() != null ? item.getQuantity() : 1;
                 billingItem.setQuantity(quantity);
 
-                BigDecimal price = item.getUnitPriceSnapshot() != null
-                        ? item.getUnitPriceSnapshot()
-                        : BigDecimal.ZERO;
+                // Ưu tiên giá chốt lúc kê đơn, sau đó mới tới giá lô thuốc hiện hành
+                BigDecimal price = item.getUnitPriceSnapshot();
+                if (price == null && item.getMedicationBatch() != null) {
+                    price = prices.batchPrice(item.getMedicationBatch().getId());
+                }
+                if (price == null) {
+                    price = BigDecimal.ZERO;
+                }
 
                 billingItem.setUnitPrice(price);
                 billingItem.setPrescriptionItemId(item.getId());
@@ -0,0 +1,160 @@
+package vn.project.ClinicSystem.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.Prescription;
+import vn.project.ClinicSystem.model.ServiceOrder;
+import vn.project.ClinicSystem.model.dto.BulkInvoiceResultDTO;
+import vn.project.ClinicSystem.model.dto.BulkInvoiceResultDTO.VisitFailure;
+import vn.project.ClinicSystem.model.enums.VisitStatus;
+import vn.project.ClinicSystem.repository.BillingRepository;
+import vn.project.ClinicSystem.repository.PatientVisitRepository;
+import vn.project.ClinicSystem.repository.PrescriptionRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository;
+
+/**
+ * Lập hóa đơn hàng loạt cho các hồ sơ khám đã hoàn tất trong ngày nhưng chưa có hóa đơn.
+ * Danh sách hồ sơ được chia nhóm và xử lý song song trên batchExecutor; mỗi nhóm nạp phiếu dịch vụ
+ * và đơn thuốc bằng truy vấn IN rồi ghi hóa đơn trong một transaction (INSERT được gom JDBC batch).
+ */
+@Service
+@Slf4j
+public class BulkInvoiceService {
+    private final PatientVisitRepository patientVisitRepository;
+    private final ServiceOrderRepository serviceOrderRepository;
+    private final PrescriptionRepository prescriptionRepository;
+    private final BillingRepository billingRepository;
+    private final BillingService billingService;
+    private final Executor batchExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final int partitionSize;
+
+    public BulkInvoiceService(PatientVisitRepository patientVisitRepository,
+            ServiceOrderRepository serviceOrderRepository,
+            PrescriptionRepository prescriptionRepository,
+            BillingRepository billingRepository,
+            BillingService billingService,
+            @Qualifier("batchExecutor") Executor batchExecutor,
+            PlatformTransactionManager transactionManager,
+            @Value("${clinicsystem.billing.bulk-partition-size:100}") int partitionSize) {
+        this.patientVisitRepository = patientVisitRepository;
+        this.serviceOrderRepository = serviceOrderRepository;
+        this.prescriptionRepository = prescriptionRepository;
+        this.billingRepository = billingRepository;
+        this.billingService = billingService;
+        this.batchExecutor = batchExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.partitionSize = Math.max(1, partitionSize);
+    }
+
+    public BulkInvoiceResultDTO generateForDay(LocalDate date) {
+        long startedAt = System.nanoTime();
+        LocalDate day = date != null ? date : LocalDate.now();
+        ZoneId zone = ZoneId.systemDefault();
+        Instant from = day.atStartOfDay(zone).toInstant();
+        Instant to = day.plusDays(1).atStartOfDay(zone).toInstant();
+
+        List<Long> visitIds = patientVisitRepository.findUnbilledVisitIds(VisitStatus.COMPLETED, from, to);
+
+        List<CompletableFuture<PartitionOutcome>> futures = new ArrayList<>();
+        for (int start = 0; start < visitIds.size(); start += partitionSize) {
+            List<Long> partition = visitIds.subList(start, Math.min(visitIds.size(), start + partitionSize));
+            futures.add(CompletableFuture.supplyAsync(() -> processPartition(partition), batchExecutor));
+        }
+
+        BulkInvoiceResultDTO result = new BulkInvoiceResultDTO();
+        result.setDate(day);
+        result.setCandidateVisits(visitIds.size());
+        result.setPartitions(futures.size());
+        for (CompletableFuture<PartitionOutcome> future : futures) {
+            PartitionOutcome outcome = future.join();
+            result.setBilled(result.getBilled() + outcome.billed);
+            result.setTotalAmount(result.getTotalAmount().add(outcome.totalAmount));
+            result.getFailures().addAll(outcome.failures);
+        }
+        result.setFailed(result.getFailures().size());
+        result.setDurationMs((System.nanoTime() - startedAt) / 1_000_000);
+        log.info("Lập hóa đơn hàng loạt ngày {}: {} hồ sơ, {} hóa đơn, {} lỗi, {} ms",
+                day, visitIds.size(), result.getBilled(), result.getFailed(), result.getDurationMs());
+        return result;
+    }
+
+    private PartitionOutcome processPartition(List<Long> visitIds) {
+        try {
+            return transactionTemplate.execute(status -> billPartition(visitIds));
+        } catch (RuntimeException ex) {
+            // Cả nhóm bị rollback (vd. một hồ sơ vừa được lập hóa đơn ở nơi khác): lập lại từng hồ sơ
+            log.warn("Không thể lập hóa đơn theo nhóm {} hồ sơ, chuyển sang lập từng hồ sơ", visitIds.size(), ex);
+            return billIndividually(visitIds);
+        }
+    }
+
+    private PartitionOutcome billPartition(List<Long> visitIds) {
+        PartitionOutcome outcome = new PartitionOutcome();
+        List<PatientVisit> visits = patientVisitRepository.findAllById(visitIds);
+        Map<Long, List<ServiceOrder>> ordersByVisit = serviceOrderRepository.findForBillingByVisitIdIn(visitIds)
+                .stream()
+                .collect(Collectors.groupingBy(order -> order.getVisit().getId()));
+        Map<Long, List<Prescription>> prescriptionsByVisit = prescriptionRepository
+                .findForBillingByVisitIdIn(visitIds)
+                .stream()
+                .collect(Collectors.groupingBy(prescription -> prescription.getVisit().getId()));
+
+        List<Billing> billings = new ArrayList<>(visits.size());
+        for (PatientVisit visit : visits) {
+            try {
+                billings.add(billingService.buildBilling(visit,
+                        ordersByVisit.getOrDefault(visit.getId(), List.of()),
+                        prescriptionsByVisit.getOrDefault(visit.getId(), List.of())));
+            } catch (RuntimeException ex) {
+                outcome.failures.add(new VisitFailure(visit.getId(), ex.getMessage()));
+            }
+        }
+        billingRepository.saveAll(billings);
+        billingRepository.flush();
+
+        outcome.billed = billings.size();
+        for (Billing billing : billings) {
+            outcome.totalAmount = outcome.totalAmount.add(billing.getTotalAmount());
+        }
+        return outcome;
+    }
+
+    private PartitionOutcome billIndividually(List<Long> visitIds) {
+        PartitionOutcome outcome = new PartitionOutcome();
+        for (Long visitId : visitIds) {
+            try {
+                Billing billing = billingService.generateForVisit(visitId);
+                outcome.billed++;
+                outcome.totalAmount = outcome.totalAmount.add(billing.getTotalAmount());
+            } catch (RuntimeException ex) {
+                outcome.failures.add(new VisitFailure(visitId, ex.getMessage()));
+            }
+        }
+        return outcome;
+    }
+
+    private static final class PartitionOutcome {
+        int billed;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        final List<VisitFailure> failures = new ArrayList<>();
+    }
+}
@@ -0,0 +1,199 @@
+package vn.project.ClinicSystem.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.dto.CriticalResultAlertDTO;
+import vn.project.ClinicSystem.model.enums.IndicatorResultLevel;
+import vn.project.ClinicSystem.util.TransactionHooks;
+
+/**
+ * Cảnh báo kết quả xét nghiệm nguy kịch. Luồng nhập kết quả chỉ đẩy cảnh báo vào một hàng đợi không khóa
+ * sau khi commit; việc gửi WebSocket do luồng định kỳ đảm nhận nên không làm chậm thao tác nhập.
+ * Cảnh báo chưa được xác nhận sau thời gian chờ sẽ được gửi lại và phát cho toàn bộ nhân viên đang theo dõi,
+ * tối đa số lần leo thang cấu hình.
+ */
+@Service
+@Slf4j
+public class CriticalResultAlertService {
+
+    private final RealTimeEventService realTimeEventService;
+    private final long ackTimeoutMs;
+    private final int maxEscalations;
+
+    private final Queue<Alert> incoming = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Alert> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public CriticalResultAlertService(RealTimeEventService realTimeEventService,
+            @Value("${clinicsystem.critical-results.ack-timeout-ms:300000}") long ackTimeoutMs,
+            @Value("${clinicsystem.critical-results.max-escalations:3}") int maxEscalations) {
+        this.realTimeEventService = realTimeEventService;
+        this.ackTimeoutMs = Math.max(1000, ackTimeoutMs);
+        this.maxEscalations = Math.max(0, maxEscalations);
+    }
+
+    /**
+     * Ghi nhận một kết quả nguy kịch; cảnh báo chỉ vào hàng đợi khi giao dịch nhập kết quả đã commit.
+     */
+    public void raise(Long serviceOrderId, Long visitId, String patientName, Long doctorId, String indicatorName,
+            BigDecimal measuredValue, String unit, IndicatorResultLevel level) {
+        Alert alert = new Alert(sequence.incrementAndGet(), serviceOrderId, visitId, patientName, doctorId,
+                indicatorName, measuredValue, unit, level);
+        TransactionHooks.afterCommit(() -> incoming.offer(alert));
+    }
+
+    public List<CriticalResultAlertDTO> getPendingAlerts() {
+        return pending.values().stream()
+                .sorted(Comparator.comparing((Alert alert) -> alert.raisedAt).thenComparing(alert -> alert.id))
+                .map(Alert::toView)
+                .toList();
+    }
+
+    public CriticalResultAlertDTO acknowledge(Long alertId, String username) {
+        Alert alert = pending.remove(alertId);
+        if (alert == null) {
+            throw new EntityNotFoundException("Không tìm thấy cảnh báo đang chờ xác nhận với id: " + alertId);
+        }
+        alert.acknowledgedBy = username;
+        alert.acknowledgedAt = Instant.now();
+        log.info("Cảnh báo kết quả nguy kịch {} của phiếu {} đã được {} xác nhận", alert.id,
+                alert.serviceOrderId, username);
+        return alert.toView();
+    }
+
+    @Scheduled(fixedDelayString = "${clinicsystem.critical-results.dispatch-ms:200}")
+    public void dispatch() {
+        long now = System.currentTimeMillis();
+        Alert alert;
+        while ((alert = incoming.poll()) != null) {
+            pending.put(alert.id, alert);
+            deliver(alert, now);
+        }
+        for (Alert waiting : pending.values()) {
+            if (waiting.escalations < maxEscalations && now - waiting.lastSentAt >= ackTimeoutMs) {
+                escalate(waiting, now);
+            }
+        }
+    }
+
+    private void deliver(Alert alert, long now) {
+        alert.lastSentAt = now;
+        try {
+            if (alert.doctorId != null) {
+                realTimeEventService.notifyCriticalResult(alert.doctorId, alert.serviceOrderId, alert.title(),
+                        alert.message(), alert.data());
+            } else {
+                realTimeEventService.broadcastCriticalResult(alert.serviceOrderId, alert.title(), alert.message(),
+                        alert.data());
+            }
+        } catch (RuntimeException ex) {
+            // Lần leo thang sau sẽ gửi lại
+            log.warn("Không thể gửi cảnh báo kết quả nguy kịch {}", alert.id, ex);
+        }
+    }
+
+    private void escalate(Alert alert, long now) {
+        alert.escalations++;
+        alert.lastSentAt = now;
+        try {
+            realTimeEventService.broadcastCriticalResult(alert.serviceOrderId,
+                    alert.title() + " - chưa được xác nhận", alert.message(), alert.data());
+            if (alert.doctorId != null) {
+                realTimeEventService.notifyCriticalResult(alert.doctorId, alert.serviceOrderId, alert.title(),
+                        alert.message(), alert.data());
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Không thể leo thang cảnh báo kết quả nguy kịch {}", alert.id, ex);
+        }
+        log.warn("Cảnh báo kết quả nguy kịch {} của phiếu {} chưa được xác nhận, leo thang lần {}", alert.id,
+                alert.serviceOrderId, alert.escalations);
+    }
+
+    /**
+     * Trạng thái gửi chỉ do luồng dispatch cập nhật; thông tin xác nhận ghi một lần khi rời hàng chờ.
+     */
+    private static final class Alert {
+        final long id;
+        final Long serviceOrderId;
+        final Long visitId;
+        final String patientName;
+        final Long doctorId;
+        final String indicatorName;
+        final BigDecimal measuredValue;
+        final String unit;
+        final IndicatorResultLevel level;
+        final Instant raisedAt = Instant.now();
+        volatile int escalations;
+        volatile long lastSentAt;
+        volatile Instant acknowledgedAt;
+        volatile String acknowledgedBy;
+
+        Alert(long id, Long serviceOrderId, Long visitId, String patientName, Long doctorId, String indicatorName,
+                BigDecimal measuredValue, String unit, IndicatorResultLevel level) {
+            this.id = id;
+            this.serviceOrderId = serviceOrderId;
+            this.visitId = visitId;
+            this.patientName = patientName;
+            this.doctorId = doctorId;
+            this.indicatorName = indicatorName;
+            this.measuredValue = measuredValue;
+            this.unit = unit;
+            this.level = level;
+        }
+
+        String title() {
+            return "Kết quả nguy kịch: " + indicatorName;
+        }
+
+        String message() {
+            return "Bệnh nhân " + patientName + " có " + indicatorName + " = " + measuredValue.toPlainString()
+                    + (unit != null ? " " + unit : "")
+                    + (level == IndicatorResultLevel.CRITICAL_LOW ? " (thấp nguy kịch)" : " (cao nguy kịch)");
+        }
+
+        Map<String, Object> data() {
+            Map<String, Object> data = new HashMap<>();
+            data.put("alertId", id);
+            data.put("visitId", visitId);
+            data.put("indicatorName", indicatorName);
+            data.put("measuredValue", measuredValue);
+            data.put("unit", unit);
+            data.put("level", level.name());
+            data.put("escalations", escalations);
+            return data;
+        }
+
+        CriticalResultAlertDTO toView() {
+            CriticalResultAlertDTO view = new CriticalResultAlertDTO();
+            view.setId(id);
+            view.setServiceOrderId(serviceOrderId);
+            view.setVisitId(visitId);
+            view.setPatientName(patientName);
+            view.setIndicatorName(indicatorName);
+            view.setMeasuredValue(measuredValue);
+            view.setUnit(unit);
+            view.setLevel(level);
+            view.setDoctorId(doctorId);
+            view.setRaisedAt(raisedAt);
+            view.setEscalations(escalations);
+            view.setAcknowledgedAt(acknowledgedAt);
+            view.setAcknowledgedBy(acknowledgedBy);
+            return view;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package vn.project.ClinicSystem.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.Prescription;
+import vn.project.ClinicSystem.model.enums.DocumentFormat;
+import vn.project.ClinicSystem.repository.BillingRepository;
+import vn.project.ClinicSystem.repository.PrescriptionRepository;
+
+/**
+ * Render hóa đơn và đơn thuốc ra HTML/PDF bằng Thymeleaf.
+ * Template được parse một lần khi khởi động và nằm trong cache của template engine,
+ * mỗi lần render chỉ còn bước điền dữ liệu (và dựng PDF nếu cần).
+ */
+@Service
+@Transactional(readOnly = true)
+@Slf4j
+public class DocumentRenderingService {
+    static final String INVOICE_TEMPLATE = "documents/invoice";
+    static final String PRESCRIPTION_TEMPLATE = "documents/prescription";
+    private static final String FONT_FAMILY = "DocumentFont";
+    private static final Locale LOCALE = Locale.forLanguageTag("vi-VN");
+
+    private final ITemplateEngine templateEngine;
+    private final BillingRepository billingRepository;
+    private final PrescriptionRepository prescriptionRepository;
+    private final Executor batchExecutor;
+    private final MeterRegistry meterRegistry;
+    private final byte[] pdfFont;
+    private final int zipChunkSize;
+
+    public DocumentRenderingService(ITemplateEngine templateEngine,
+            BillingRepository billingRepository,
+            PrescriptionRepository prescriptionRepository,
+            @Qualifier("batchExecutor") Executor batchExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${clinicsystem.documents.pdf-font:classpath:fonts/DejaVuSans.ttf}") Resource pdfFont,
+            @Value("${clinicsystem.documents.zip-chunk-size:50}") int zipChunkSize) {
+        this.templateEngine = templateEngine;
+        this.billingRepository = billingRepository;
+        this.prescriptionRepository = prescriptionRepository;
+        this.batchExecutor = batchExecutor;
+        this.meterRegistry = meterRegistry;
+        this.pdfFont = loadFont(pdfFont);
+        this.zipChunkSize = Math.max(1, zipChunkSize);
+    }
+
+    /**
+     * Parse sẵn các template để request đầu tiên không phải chịu chi phí đọc và phân tích file.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpTemplates() {
+        try {
+            renderInvoiceHtml(new Billing());
+            renderPrescriptionHtml(new Prescription());
+        } catch (RuntimeException ex) {
+            log.warn("Không thể nạp sẵn template in ấn", ex);
+        }
+    }
+
+    public byte[] renderInvoice(Long billingId, DocumentFormat format) {
+        Billing billing = billingRepository.findForPrintById(billingId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy hóa đơn với id: " + billingId));
+        return render("invoice", format, () -> renderInvoiceHtml(billing));
+    }
+
+    public byte[] renderPrescription(Long prescriptionId, DocumentFormat format) {
+        Prescription prescription = prescriptionRepository.findForPrintById(prescriptionId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy đơn thuốc với id: " + prescriptionId));
+        return render("prescription", format, () -> renderPrescriptionHtml(prescription));
+    }
+
+    /**
+     * Ghi toàn bộ hóa đơn lập trong ngày vào một file zip.
+     * Hóa đơn được nạp và render song song theo từng nhóm, mỗi nhóm ghi xong mới nạp nhóm kế tiếp
+     * nên bộ nhớ chỉ giữ một nhóm tài liệu tại một thời điểm.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int writeDailyInvoices(LocalDate date, DocumentFormat format, OutputStream out) throws IOException {
+        List<Long> ids = billingRepository.findIdsByIssuedAtRange(date.atStartOfDay(),
+                date.plusDays(1).atStartOfDay());
+        String extension = format == DocumentFormat.PDF ? ".pdf" : ".html";
+
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        for (int from = 0; from < ids.size(); from += zipChunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + zipChunkSize, ids.size()));
+            List<Billing> billings = billingRepository.findForPrintByIdIn(chunk);
+
+            List<CompletableFuture<byte[]>> futures = new ArrayList<>(billings.size());
+            for (Billing billing : billings) {
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> render("invoice", format, () -> renderInvoiceHtml(billing)), batchExecutor));
+            }
+            for (int i = 0; i < billings.size(); i++) {
+                byte[] content = futures.get(i).join();
+                zip.putNextEntry(new ZipEntry("hoa-don-" + billings.get(i).getId() + extension));
+                zip.write(content);
+                zip.closeEntry();
+            }
+            zip.flush();
+        }
+        zip.finish();
+        return ids.size();
+    }
+
+    String renderInvoiceHtml(Billing billing) {
+        Context context = new Context(LOCALE);
+        context.setVariable("billing", billing);
+        context.setVariable("patient", billing.getPatient());
+        context.setVariable("items", billing.getItems());
+        return templateEngine.process(INVOICE_TEMPLATE, context);
+    }
+
+    String renderPrescriptionHtml(Prescription prescription) {
+        Context context = new Context(LOCALE);
+        context.setVariable("prescription", prescription);
+        context.setVariable("items", prescription.getItems());
+        if (prescription.getVisit() != null) {
+            context.setVariable("patient", prescription.getVisit().getPatient());
+            context.setVariable("diagnosis", prescription.getVisit().getProvisionalDiagnosis());
+        }
+        if (prescription.getPrescribedBy() != null && prescription.getPrescribedBy().getAccount() != null) {
+            context.setVariable("doctorName", prescription.getPrescribedBy().getAccount().getFullName());
+        }
+        return templateEngine.process(PRESCRIPTION_TEMPLATE, context);
+    }
+
+    private byte[] render(String type, DocumentFormat format, Supplier<String> html) {
+        long start = System.nanoTime();
+        byte[] result = format == DocumentFormat.PDF
+                ? toPdf(html.get())
+                : html.get().getBytes(StandardCharsets.UTF_8);
+        Timer.builder("clinicsystem.document.render")
+                .tag("type", type)
+                .tag("format", format.name())
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    private byte[] toPdf(String html) {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            PdfRendererBuilder builder = new PdfRendererBuilder();
+            builder.useFastMode();
+            if (pdfFont != null) {
+                builder.useFont(() -> new ByteArrayInputStream(pdfFont), FONT_FAMILY);
+            }
+            builder.withHtmlContent(html, null);
+            builder.toStream(out);
+            builder.run();
+            return out.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Không thể tạo file PDF", ex);
+        }
+    }
+
+    // Font mặc định của PDF không có dấu tiếng Việt nên dùng font Unicode đóng gói sẵn (hoặc file: trên máy chủ);
+    // đọc một lần vào bộ nhớ để mỗi lần dựng PDF không phải giải nén lại từ jar
+    private static byte[] loadFont(Resource font) {
+        if (font == null || !font.exists()) {
+            log.warn("Không tìm thấy font in PDF tại {}, PDF có thể hiển thị sai dấu tiếng Việt", font);
+            return null;
+        }
+        try (InputStream in = font.getInputStream()) {
+            return in.readAllBytes();
+        } catch (IOException ex) {
+            log.warn("Không đọc được font in PDF tại {}, PDF có thể hiển thị sai dấu tiếng Việt", font, ex);
+            return null;
+        }
+    }
+}
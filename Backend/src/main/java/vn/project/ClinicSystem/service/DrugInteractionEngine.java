@@ -0,0 +1,266 @@
+package vn.project.ClinicSystem.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.dto.MedicationInteractionResponseDTO;
+import vn.project.ClinicSystem.model.enums.InteractionSeverity;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.util.AhoCorasickMatcher;
+import vn.project.ClinicSystem.util.TextNormalizer;
+
+/**
+ * Kiểm tra tương tác thuốc theo hoạt chất. Bảng hoạt chất và bảng tương tác được nạp một lần từ file dữ liệu
+ * đi kèm: tên hoạt chất (cả tên khác) được dựng thành bộ so khớp Aho-Corasick, còn tương tác được lưu
+ * trong bảng băm theo cặp id hoạt chất không phân biệt thứ tự. Tên thuốc trong kho được ánh xạ
+ * sang hoạt chất qua {@code Medication.activeIngredient}.
+ */
+@Service
+@Slf4j
+public class DrugInteractionEngine {
+    private static final String SEPARATOR = ";";
+    private static final String ALIAS_SEPARATOR = "\\|";
+
+    private final MedicationRepository medicationRepository;
+    private final AhoCorasickMatcher ingredientMatcher;
+    private final Map<Integer, String> ingredientNames = new HashMap<>();
+    private final Map<Long, Interaction> interactions = new HashMap<>();
+    // Tên thuốc đã chuẩn hóa -> id hoạt chất, cho các thuốc mà tên không chứa tên hoạt chất
+    private final Map<String, int[]> medicationIngredients = new ConcurrentHashMap<>();
+
+    public DrugInteractionEngine(MedicationRepository medicationRepository,
+            @Value("${clinicsystem.interactions.ingredients:classpath:data/drug-ingredients.csv}") Resource ingredients,
+            @Value("${clinicsystem.interactions.table:classpath:data/drug-interactions.csv}") Resource table) {
+        this.medicationRepository = medicationRepository;
+        AhoCorasickMatcher.Builder builder = AhoCorasickMatcher.builder();
+        for (String[] row : readRows(ingredients, 2)) {
+            int id = Integer.parseInt(row[0].trim());
+            ingredientNames.put(id, row[1].trim());
+            builder.add(TextNormalizer.fold(row[1]), id);
+            if (row.length > 2) {
+                for (String alias : row[2].split(ALIAS_SEPARATOR)) {
+                    builder.add(TextNormalizer.fold(alias), id);
+                }
+            }
+        }
+        this.ingredientMatcher = builder.build();
+        for (String[] row : readRows(table, 5)) {
+            int first = ingredientId(row[0]);
+            int second = ingredientId(row[1]);
+            interactions.put(pairKey(first, second), new Interaction(ingredientNames.get(first),
+                    ingredientNames.get(second), InteractionSeverity.valueOf(row[2].trim()), row[3].trim(),
+                    row[4].trim()));
+        }
+        log.info("Đã nạp {} hoạt chất và {} cặp tương tác thuốc", ingredientNames.size(), interactions.size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadMedicationCatalog() {
+        try {
+            for (MedicationRepository.IngredientView view : medicationRepository.findAllIngredients()) {
+                registerMedication(view.getName(), view.getActiveIngredient());
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Không thể nạp hoạt chất của danh mục thuốc", ex);
+        }
+    }
+
+    public void registerMedication(String name, String activeIngredient) {
+        String key = TextNormalizer.fold(name);
+        if (key.isEmpty()) {
+            return;
+        }
+        int[] ids = StringUtils.hasText(activeIngredient) ? match(activeIngredient) : new int[0];
+        if (ids.length == 0) {
+            medicationIngredients.remove(key);
+        } else {
+            medicationIngredients.put(key, ids);
+        }
+    }
+
+    public void unregisterMedication(String name) {
+        medicationIngredients.remove(TextNormalizer.fold(name));
+    }
+
+    /**
+     * Id các hoạt chất nhận ra trong một tên thuốc tự do (tên hoạt chất, tên khác hoặc tên thuốc trong kho).
+     */
+    public int[] resolve(String drug) {
+        int[] matched = match(drug);
+        int[] catalog = medicationIngredients.get(TextNormalizer.fold(drug));
+        if (catalog == null) {
+            return matched;
+        }
+        int[] merged = Arrays.copyOf(matched, matched.length + catalog.length);
+        System.arraycopy(catalog, 0, merged, matched.length, catalog.length);
+        return Arrays.stream(merged).distinct().toArray();
+    }
+
+    /**
+     * Mọi cặp thuốc trong danh sách có tương tác, mỗi cặp thuốc báo một lần với tương tác nặng nhất.
+     */
+    public List<Finding> check(List<String> drugs) {
+        List<Finding> findings = new ArrayList<>();
+        if (drugs == null || drugs.size() < 2) {
+            return findings;
+        }
+        int[][] resolved = new int[drugs.size()][];
+        for (int i = 0; i < drugs.size(); i++) {
+            resolved[i] = resolve(drugs.get(i));
+        }
+        for (int i = 0; i < resolved.length; i++) {
+            for (int j = i + 1; j < resolved.length; j++) {
+                Interaction worst = null;
+                for (int first : resolved[i]) {
+                    for (int second : resolved[j]) {
+                        Interaction interaction = first != second ? interactions.get(pairKey(first, second)) : null;
+                        if (interaction != null && (worst == null
+                                || interaction.getSeverity().compareTo(worst.getSeverity()) < 0)) {
+                            worst = interaction;
+                        }
+                    }
+                }
+                if (worst != null) {
+                    findings.add(new Finding(drugs.get(i), drugs.get(j), worst));
+                }
+            }
+        }
+        return findings;
+    }
+
+    private int[] match(String text) {
+        String folded = TextNormalizer.fold(text);
+        if (folded.isEmpty()) {
+            return new int[0];
+        }
+        List<Integer> ids = new ArrayList<>(2);
+        ingredientMatcher.forEachMatch(folded, id -> {
+            if (!ids.contains(id)) {
+                ids.add(id);
+            }
+        });
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private int ingredientId(String value) {
+        int id = Integer.parseInt(value.trim());
+        if (!ingredientNames.containsKey(id)) {
+            throw new IllegalStateException("Bảng tương tác thuốc tham chiếu hoạt chất không tồn tại: " + id);
+        }
+        return id;
+    }
+
+    // Khóa không phụ thuộc thứ tự: (a, b) và (b, a) cho cùng một khóa
+    private static long pairKey(int first, int second) {
+        int low = Math.min(first, second);
+        int high = Math.max(first, second);
+        return ((long) low << 32) | (high & 0xffffffffL);
+    }
+
+    private static List<String[]> readRows(Resource resource, int minColumns) {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] row = line.split(SEPARATOR, -1);
+                if (row.length < minColumns) {
+                    throw new IllegalStateException("Dòng " + lineNumber + " của " + resource.getFilename()
+                            + " thiếu cột");
+                }
+                rows.add(row);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Không thể đọc dữ liệu tương tác thuốc " + resource.getFilename(), ex);
+        }
+        return rows;
+    }
+
+    public static final class Interaction {
+        private final String ingredient1;
+        private final String ingredient2;
+        private final InteractionSeverity severity;
+        private final String description;
+        private final String recommendation;
+
+        Interaction(String ingredient1, String ingredient2, InteractionSeverity severity, String description,
+                String recommendation) {
+            this.ingredient1 = ingredient1;
+            this.ingredient2 = ingredient2;
+            this.severity = severity;
+            this.description = description;
+            this.recommendation = recommendation;
+        }
+
+        public String getIngredient1() {
+            return ingredient1;
+        }
+
+        public String getIngredient2() {
+            return ingredient2;
+        }
+
+        public InteractionSeverity getSeverity() {
+            return severity;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getRecommendation() {
+            return recommendation;
+        }
+    }
+
+    public static final class Finding {
+        private final String drug1;
+        private final String drug2;
+        private final Interaction interaction;
+
+        Finding(String drug1, String drug2, Interaction interaction) {
+            this.drug1 = drug1;
+            this.drug2 = drug2;
+            this.interaction = interaction;
+        }
+
+        public String getDrug1() {
+            return drug1;
+        }
+
+        public String getDrug2() {
+            return drug2;
+        }
+
+        public Interaction getInteraction() {
+            return interaction;
+        }
+
+        public MedicationInteractionResponseDTO.InteractionWarning toWarning() {
+            return new MedicationInteractionResponseDTO.InteractionWarning(drug1, drug2,
+                    interaction.getSeverity().getLabel(), interaction.getDescription(),
+                    interaction.getRecommendation());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package vn.project.ClinicSystem.service;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import vn.project.ClinicSystem.model.IdGenerators;
+
+/**
+ * Cấp dải id từ bảng {@link IdGenerators#TABLE} cho các luồng ghi bằng JDBC (không qua Hibernate).
+ * Quy ước giống optimizer pooled của Hibernate: đọc được giá trị S và tăng thêm n thì dải được dùng là
+ * [S - ALLOCATION_SIZE + 1, S - ALLOCATION_SIZE + n], nên không bao giờ trùng với id Hibernate cấp.
+ */
+@Service
+public class IdBlockAllocator {
+    private static final Pattern TABLE_NAME = Pattern.compile("[a-z_]+");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNewTransaction;
+
+    public IdBlockAllocator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Giữ {@code count} id liên tiếp cho bảng {@code sequenceName} và trả về id đầu tiên.
+     */
+    public long reserve(String sequenceName, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Số lượng id cần cấp phải lớn hơn 0");
+        }
+        Long first = requiresNewTransaction.execute(status -> {
+            Long current = jdbcTemplate.query(
+                    "SELECT " + IdGenerators.VALUE_COLUMN + " FROM " + IdGenerators.TABLE
+                            + " WHERE " + IdGenerators.NAME_COLUMN + " = ? FOR UPDATE",
+                    rs -> rs.next() ? rs.getLong(1) : null,
+                    sequenceName);
+            if (current == null) {
+                seed(sequenceName);
+                current = jdbcTemplate.queryForObject(
+                        "SELECT " + IdGenerators.VALUE_COLUMN + " FROM " + IdGenerators.TABLE
+                                + " WHERE " + IdGenerators.NAME_COLUMN + " = ? FOR UPDATE",
+                        Long.class, sequenceName);
+            }
+            jdbcTemplate.update("UPDATE " + IdGenerators.TABLE + " SET " + IdGenerators.VALUE_COLUMN + " = ?"
+                    + " WHERE " + IdGenerators.NAME_COLUMN + " = ?", current + count, sequenceName);
+            return current - IdGenerators.ALLOCATION_SIZE + 1;
+        });
+        return first;
+    }
+
+    /**
+     * Đưa bộ đếm của bảng lên trên id lớn nhất hiện có (dữ liệu cũ sinh bằng AUTO_INCREMENT).
+     * Tên bộ đếm trùng với tên bảng.
+     */
+    public void seed(String tableName) {
+        String table = tableName.toLowerCase(Locale.ROOT);
+        if (!TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("Tên bảng không hợp lệ: " + tableName);
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        long floor = (maxId != null ? maxId : 0L) + IdGenerators.ALLOCATION_SIZE + 1;
+        jdbcTemplate.update("INSERT INTO " + IdGenerators.TABLE + " (" + IdGenerators.NAME_COLUMN + ", "
+                + IdGenerators.VALUE_COLUMN + ") VALUES (?, ?)"
+                + " ON DUPLICATE KEY UPDATE " + IdGenerators.VALUE_COLUMN
+                + " = GREATEST(" + IdGenerators.VALUE_COLUMN + ", VALUES(" + IdGenerators.VALUE_COLUMN + "))",
+                table, floor);
+    }
+
+    public void ensureTable() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + IdGenerators.TABLE + " ("
+                + IdGenerators.NAME_COLUMN + " VARCHAR(255) NOT NULL PRIMARY KEY, "
+                + IdGenerators.VALUE_COLUMN + " BIGINT)");
+    }
+}
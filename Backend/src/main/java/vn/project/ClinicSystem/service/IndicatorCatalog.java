@@ -0,0 +1,206 @@
+package vn.project.ClinicSystem.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import vn.project.ClinicSystem.model.ServiceIndicator;
+import vn.project.ClinicSystem.model.enums.IndicatorResultLevel;
+import vn.project.ClinicSystem.repository.ServiceIndicatorRepository;
+import vn.project.ClinicSystem.util.TransactionHooks;
+
+/**
+ * Danh mục chỉ số của từng dịch vụ giữ trong bộ nhớ: nạp bằng một truy vấn ở lần dùng đầu tiên,
+ * sau đó nhập kết quả xét nghiệm và kiểm tra chỉ số bắt buộc không cần đọc lại bảng chỉ số.
+ * Mọi thay đổi chỉ số bỏ bản chụp của dịch vụ sau khi commit để lần dùng sau nạp lại; thay đổi từ
+ * instance khác được nhận khi toàn bộ danh mục bị xóa theo chu kỳ.
+ */
+@Service
+public class IndicatorCatalog {
+
+    private final ServiceIndicatorRepository indicatorRepository;
+    private final Map<Long, ServiceIndicators> byService = new ConcurrentHashMap<>();
+    // Tăng mỗi lần bỏ bản chụp; lượt nạp chỉ đưa vào cache khi không có lần bỏ nào xen vào
+    private final AtomicLong generation = new AtomicLong();
+
+    public IndicatorCatalog(ServiceIndicatorRepository indicatorRepository) {
+        this.indicatorRepository = indicatorRepository;
+    }
+
+    public ServiceIndicators forService(Long medicalServiceId) {
+        ServiceIndicators cached = byService.get(medicalServiceId);
+        if (cached != null) {
+            return cached;
+        }
+        // Đọc trên kết nối của người gọi (không mượn thêm kết nối khi đang trong transaction);
+        // bản nạp chỉ vào cache khi không có lần evict nào xen vào
+        long loadedGeneration = generation.get();
+        ServiceIndicators loaded = new ServiceIndicators(medicalServiceId,
+                indicatorRepository.findByMedicalServiceIdOrderByNameAsc(medicalServiceId));
+        // Evict tăng generation trước khi xóa nên bản nạp trước đó không bị đưa lại vào cache
+        ServiceIndicators current = byService.compute(medicalServiceId, (id, existing) -> {
+            if (existing != null || generation.get() != loadedGeneration) {
+                return existing;
+            }
+            return loaded;
+        });
+        return current != null ? current : loaded;
+    }
+
+    public void evict(Long medicalServiceId) {
+        TransactionHooks.afterCommit(() -> {
+            generation.incrementAndGet();
+            byService.remove(medicalServiceId);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${clinicsystem.indicators.refresh-ms:300000}",
+            initialDelayString = "${clinicsystem.indicators.refresh-ms:300000}")
+    public void clear() {
+        generation.incrementAndGet();
+        byService.clear();
+    }
+
+    /**
+     * Bản chụp bất biến các chỉ số của một dịch vụ.
+     */
+    public static final class ServiceIndicators {
+        private final Long medicalServiceId;
+        private final Map<Long, Indicator> indicators;
+        private final Map<String, Indicator> indicatorsByCode;
+        private final List<Indicator> requiredIndicators;
+
+        ServiceIndicators(Long medicalServiceId, List<ServiceIndicator> source) {
+            Map<Long, Indicator> indicators = new LinkedHashMap<>();
+            Map<String, Indicator> byCode = new HashMap<>();
+            List<Indicator> required = new ArrayList<>();
+            for (ServiceIndicator entity : source) {
+                Indicator indicator = new Indicator(entity);
+                indicators.put(indicator.getId(), indicator);
+                if (indicator.getCode() != null) {
+                    byCode.put(indicator.getCode().toUpperCase(Locale.ROOT), indicator);
+                }
+                if (indicator.isRequired()) {
+                    required.add(indicator);
+                }
+            }
+            this.medicalServiceId = medicalServiceId;
+            this.indicators = Collections.unmodifiableMap(indicators);
+            this.indicatorsByCode = Collections.unmodifiableMap(byCode);
+            this.requiredIndicators = List.copyOf(required);
+        }
+
+        public Long getMedicalServiceId() {
+            return medicalServiceId;
+        }
+
+        public Indicator get(Long indicatorId) {
+            return indicatorId != null ? indicators.get(indicatorId) : null;
+        }
+
+        // Mã chỉ số không phân biệt hoa thường, dùng khi nhập kết quả từ máy xét nghiệm
+        public Indicator getByCode(String code) {
+            return code != null ? indicatorsByCode.get(code.trim().toUpperCase(Locale.ROOT)) : null;
+        }
+
+        public List<Indicator> getRequiredIndicators() {
+            return requiredIndicators;
+        }
+
+        public boolean hasRequiredIndicators() {
+            return !requiredIndicators.isEmpty();
+        }
+    }
+
+    public static final class Indicator {
+        private final Long id;
+        private final String code;
+        private final String name;
+        private final String unit;
+        private final BigDecimal normalMin;
+        private final BigDecimal normalMax;
+        private final BigDecimal criticalMin;
+        private final BigDecimal criticalMax;
+        private final boolean required;
+
+        Indicator(ServiceIndicator entity) {
+            this.id = entity.getId();
+            this.code = entity.getCode();
+            this.name = entity.getName();
+            this.unit = entity.getUnit();
+            this.normalMin = entity.getNormalMin();
+            this.normalMax = entity.getNormalMax();
+            this.criticalMin = entity.getCriticalMin();
+            this.criticalMax = entity.getCriticalMax();
+            this.required = entity.isRequired();
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        public BigDecimal getNormalMin() {
+            return normalMin;
+        }
+
+        public BigDecimal getNormalMax() {
+            return normalMax;
+        }
+
+        public BigDecimal getCriticalMin() {
+            return criticalMin;
+        }
+
+        public BigDecimal getCriticalMax() {
+            return criticalMax;
+        }
+
+        public boolean isRequired() {
+            return required;
+        }
+
+        /**
+         * Mức kết quả của một giá trị đo: ngưỡng nguy kịch được xét trước khoảng bình thường.
+         */
+        public IndicatorResultLevel evaluate(BigDecimal value) {
+            if (criticalMin != null && value.compareTo(criticalMin) < 0) {
+                return IndicatorResultLevel.CRITICAL_LOW;
+            }
+            if (criticalMax != null && value.compareTo(criticalMax) > 0) {
+                return IndicatorResultLevel.CRITICAL_HIGH;
+            }
+            if (normalMin != null && value.compareTo(normalMin) < 0) {
+                return IndicatorResultLevel.LOW;
+            }
+            if (normalMax != null && value.compareTo(normalMax) > 0) {
+                return IndicatorResultLevel.HIGH;
+            }
+            if (normalMin == null && normalMax == null) {
+                return IndicatorResultLevel.UNKNOWN;
+            }
+            return IndicatorResultLevel.NORMAL;
+        }
+    }
+}
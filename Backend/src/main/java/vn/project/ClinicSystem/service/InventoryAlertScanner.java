@@ -0,0 +1,268 @@
+package vn.project.ClinicSystem.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.dto.InventoryAlertView;
+import vn.project.ClinicSystem.model.dto.InventoryAlertView.ExpiringBatch;
+import vn.project.ClinicSystem.model.dto.InventoryAlertView.LowStockMedication;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository.ExpiryView;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.repository.MedicationRepository.StockLevelView;
+import vn.project.ClinicSystem.repository.StockMovementRepository;
+
+/**
+ * Quét lô sắp hết hạn và thuốc dưới ngưỡng đặt hàng, giữ danh sách cảnh báo hiện hành trong bộ nhớ.
+ * Lần quét đầu đọc toàn bộ theo index; các lần sau chỉ đọc phần thay đổi kể từ mốc quét trước:
+ * lô vừa lọt vào cửa sổ hạn dùng, lô/thuốc có phát sinh trong sổ kho hoặc vừa được sửa.
+ * Cảnh báo mới của mỗi lần quét được gộp thành một thông báo gửi qua RealTimeEventService.
+ */
+@Service
+@Slf4j
+public class InventoryAlertScanner {
+    private final MedicationBatchRepository medicationBatchRepository;
+    private final MedicationRepository medicationRepository;
+    private final StockMovementRepository stockMovementRepository;
+    private final RealTimeEventService realTimeEventService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int[] horizons;
+    private final int defaultReorderLevel;
+    private final Duration watermarkLag;
+
+    private final Map<Long, ExpiringBatch> expiringBatches = new ConcurrentHashMap<>();
+    private final Map<Long, LowStockMedication> lowStockMedications = new ConcurrentHashMap<>();
+    private Instant watermark;
+    private LocalDate lastScanDate;
+    private volatile Instant scannedAt;
+
+    public InventoryAlertScanner(MedicationBatchRepository medicationBatchRepository,
+            MedicationRepository medicationRepository,
+            StockMovementRepository stockMovementRepository,
+            RealTimeEventService realTimeEventService,
+            PlatformTransactionManager transactionManager,
+            @Value("${clinicsystem.inventory-alert.expiry-horizons-days:30,90}") int[] horizons,
+            @Value("${clinicsystem.inventory-alert.default-reorder-level:20}") int defaultReorderLevel,
+            @Value("${clinicsystem.inventory-alert.watermark-lag-seconds:60}") long watermarkLagSeconds) {
+        this.medicationBatchRepository = medicationBatchRepository;
+        this.medicationRepository = medicationRepository;
+        this.stockMovementRepository = stockMovementRepository;
+        this.realTimeEventService = realTimeEventService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.horizons = Arrays.stream(horizons).filter(days -> days > 0).sorted().distinct().toArray();
+        if (this.horizons.length == 0) {
+            throw new IllegalArgumentException("Cần cấu hình ít nhất một cửa sổ cảnh báo hạn dùng");
+        }
+        this.defaultReorderLevel = Math.max(0, defaultReorderLevel);
+        this.watermarkLag = Duration.ofSeconds(Math.max(0, watermarkLagSeconds));
+    }
+
+    public InventoryAlertView currentAlerts() {
+        InventoryAlertView view = new InventoryAlertView();
+        view.setScannedAt(scannedAt);
+        view.getExpiringBatches().addAll(expiringBatches.values());
+        view.getExpiringBatches().sort(Comparator.comparing(ExpiringBatch::getExpiryDate)
+                .thenComparing(ExpiringBatch::getBatchId));
+        view.getLowStockMedications().addAll(lowStockMedications.values());
+        view.getLowStockMedications().sort(Comparator.comparing(LowStockMedication::getMedicationId));
+        return view;
+    }
+
+    @Scheduled(fixedDelayString = "${clinicsystem.inventory-alert.scan-ms:300000}")
+    public synchronized void scan() {
+        try {
+            Instant startedAt = Instant.now();
+            LocalDate today = LocalDate.now();
+            ScanRows rows = readOnlyTransaction.execute(status -> load(today));
+
+            List<ExpiringBatch> newExpiring = applyExpiry(rows, today);
+            List<LowStockMedication> newLowStock = applyStockLevels(rows);
+
+            // Lùi mốc một khoảng để không bỏ sót phát sinh của transaction commit sau thời điểm quét
+            watermark = startedAt.minus(watermarkLag);
+            lastScanDate = today;
+            scannedAt = startedAt;
+            publish(newExpiring, newLowStock);
+        } catch (RuntimeException ex) {
+            log.warn("Không thể quét cảnh báo tồn kho", ex);
+        }
+    }
+
+    private ScanRows load(LocalDate today) {
+        LocalDate horizonEnd = today.plusDays(maxHorizon());
+        ScanRows rows = new ScanRows();
+        if (watermark == null) {
+            rows.full = true;
+            rows.batches.addAll(medicationBatchRepository.findExpiringUntil(horizonEnd));
+            rows.levels.addAll(medicationRepository.findBelowReorderLevel(defaultReorderLevel));
+            return rows;
+        }
+
+        for (StockMovementRepository.TouchedView touched : stockMovementRepository.findTouchedSince(watermark)) {
+            rows.touchedMedicationIds.add(touched.getMedicationId());
+            if (touched.getBatchId() != null) {
+                rows.touchedBatchIds.add(touched.getBatchId());
+            }
+        }
+        LocalDate previousEnd = lastScanDate.plusDays(maxHorizon());
+        if (horizonEnd.isAfter(previousEnd)) {
+            rows.batches.addAll(medicationBatchRepository.findExpiringBetween(previousEnd, horizonEnd));
+        }
+        // Hai truy vấn riêng (theo id từ sổ kho, theo updated_at) để mỗi câu dùng được index, gộp lại theo id
+        Map<Long, ExpiryView> changedBatches = new LinkedHashMap<>();
+        if (!rows.touchedBatchIds.isEmpty()) {
+            medicationBatchRepository.findExpiryViewsByIds(rows.touchedBatchIds)
+                    .forEach(row -> changedBatches.put(row.getBatchId(), row));
+        }
+        medicationBatchRepository.findExpiryViewsUpdatedSince(watermark)
+                .forEach(row -> changedBatches.putIfAbsent(row.getBatchId(), row));
+        rows.batches.addAll(changedBatches.values());
+
+        Map<Long, StockLevelView> changedLevels = new LinkedHashMap<>();
+        if (!rows.touchedMedicationIds.isEmpty()) {
+            medicationRepository.findStockLevelsByIds(rows.touchedMedicationIds)
+                    .forEach(row -> changedLevels.put(row.getId(), row));
+        }
+        medicationRepository.findStockLevelsUpdatedSince(watermark)
+                .forEach(row -> changedLevels.putIfAbsent(row.getId(), row));
+        rows.levels.addAll(changedLevels.values());
+        return rows;
+    }
+
+    private List<ExpiringBatch> applyExpiry(ScanRows rows, LocalDate today) {
+        if (rows.full) {
+            expiringBatches.clear();
+        }
+        Set<Long> seen = new HashSet<>();
+        for (ExpiryView row : rows.batches) {
+            seen.add(row.getBatchId());
+            int quantity = row.getQuantityOnHand() != null ? row.getQuantityOnHand() : 0;
+            if (quantity <= 0 || horizonFor(row.getExpiryDate(), today) < 0) {
+                expiringBatches.remove(row.getBatchId());
+                continue;
+            }
+            ExpiringBatch previous = expiringBatches.get(row.getBatchId());
+            int horizon = previous != null ? previous.getHorizonDays() : Integer.MAX_VALUE;
+            expiringBatches.put(row.getBatchId(), new ExpiringBatch(row.getBatchId(), row.getBatchCode(),
+                    row.getMedicationId(), row.getMedicationName(), row.getExpiryDate(), quantity, horizon));
+        }
+        // Lô có phát sinh nhưng không còn trong database là lô đã bị xóa
+        for (Long batchId : rows.touchedBatchIds) {
+            if (!seen.contains(batchId)) {
+                expiringBatches.remove(batchId);
+            }
+        }
+
+        // Xếp lại cửa sổ theo ngày hôm nay; lô mới hoặc chuyển sang cửa sổ gần hơn được báo lại
+        List<ExpiringBatch> newlyAlerted = new ArrayList<>();
+        for (ExpiringBatch batch : List.copyOf(expiringBatches.values())) {
+            int horizon = horizonFor(batch.getExpiryDate(), today);
+            if (horizon < batch.getHorizonDays()) {
+                ExpiringBatch updated = new ExpiringBatch(batch.getBatchId(), batch.getBatchCode(),
+                        batch.getMedicationId(), batch.getMedicationName(), batch.getExpiryDate(),
+                        batch.getQuantityOnHand(), horizon);
+                expiringBatches.put(batch.getBatchId(), updated);
+                newlyAlerted.add(updated);
+            }
+        }
+        return newlyAlerted;
+    }
+
+    private List<LowStockMedication> applyStockLevels(ScanRows rows) {
+        if (rows.full) {
+            lowStockMedications.clear();
+        }
+        List<LowStockMedication> newlyAlerted = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (StockLevelView row : rows.levels) {
+            seen.add(row.getId());
+            int stock = row.getStockQuantity() != null ? row.getStockQuantity() : 0;
+            int level = row.getReorderLevel() != null ? row.getReorderLevel() : defaultReorderLevel;
+            if (stock >= level) {
+                lowStockMedications.remove(row.getId());
+                continue;
+            }
+            LowStockMedication alert = new LowStockMedication(row.getId(), row.getName(), stock, level);
+            if (lowStockMedications.put(row.getId(), alert) == null) {
+                newlyAlerted.add(alert);
+            }
+        }
+        for (Long medicationId : rows.touchedMedicationIds) {
+            if (!seen.contains(medicationId)) {
+                lowStockMedications.remove(medicationId);
+            }
+        }
+        return newlyAlerted;
+    }
+
+    private void publish(List<ExpiringBatch> expiring, List<LowStockMedication> lowStock) {
+        if (expiring.isEmpty() && lowStock.isEmpty()) {
+            return;
+        }
+        Map<Integer, Long> byHorizon = new LinkedHashMap<>();
+        expiring.stream()
+                .sorted(Comparator.comparingInt(ExpiringBatch::getHorizonDays))
+                .forEach(batch -> byHorizon.merge(batch.getHorizonDays(), 1L, Long::sum));
+
+        List<String> parts = new ArrayList<>();
+        byHorizon.forEach((horizon, count) -> parts.add(horizon == 0
+                ? count + " lô đã hết hạn"
+                : count + " lô hết hạn trong " + horizon + " ngày"));
+        if (!lowStock.isEmpty()) {
+            parts.add(lowStock.size() + " thuốc dưới ngưỡng đặt hàng");
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("expiringBatches", expiring);
+        data.put("lowStockMedications", lowStock);
+        realTimeEventService.broadcastInventoryAlert("Cảnh báo tồn kho", String.join(", ", parts), data);
+    }
+
+    // Cửa sổ nhỏ nhất chứa ngày hết hạn: 0 nếu đã hết hạn, -1 nếu nằm ngoài mọi cửa sổ
+    private int horizonFor(LocalDate expiryDate, LocalDate today) {
+        if (expiryDate == null) {
+            return -1;
+        }
+        long days = ChronoUnit.DAYS.between(today, expiryDate);
+        if (days < 0) {
+            return 0;
+        }
+        for (int horizon : horizons) {
+            if (days <= horizon) {
+                return horizon;
+            }
+        }
+        return -1;
+    }
+
+    private int maxHorizon() {
+        return horizons[horizons.length - 1];
+    }
+
+    private static final class ScanRows {
+        boolean full;
+        final List<ExpiryView> batches = new ArrayList<>();
+        final List<StockLevelView> levels = new ArrayList<>();
+        final Set<Long> touchedMedicationIds = new HashSet<>();
+        final Set<Long> touchedBatchIds = new HashSet<>();
+    }
+}
@@ -0,0 +1,488 @@
+package vn.project.ClinicSystem.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.dto.LabResultImportReport;
+import vn.project.ClinicSystem.model.dto.LabResultImportReport.IncompleteOrder;
+import vn.project.ClinicSystem.model.dto.LabResultImportReport.RowError;
+import vn.project.ClinicSystem.model.enums.IndicatorResultLevel;
+import vn.project.ClinicSystem.model.enums.ServiceOrderStatus;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository.ImportTargetView;
+import vn.project.ClinicSystem.repository.ServiceOrderResultRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderResultRepository.OrderIndicatorView;
+import vn.project.ClinicSystem.util.CsvReader;
+
+/**
+ * Nhập kết quả xét nghiệm hàng loạt từ tệp xuất của máy xét nghiệm: CSV có dòng tiêu đề, hoặc HL7 v2
+ * (đoạn OBR mang id phiếu, mỗi đoạn OBX là một chỉ số). Tệp được đọc từng dòng và gom thành khối;
+ * mỗi khối tra phiếu bằng một truy vấn, đối chiếu chỉ số với {@link IndicatorCatalog} rồi ghi bằng JDBC batch
+ * trong một transaction. Sau khi đọc hết tệp, phiếu đã đủ chỉ số bắt buộc được chuyển sang có kết quả.
+ */
+@Service
+@Slf4j
+public class LabResultImportService {
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_HL7 = "hl7";
+
+    private static final String DELETE_SQL = "DELETE FROM service_order_results WHERE service_order_id = ? AND indicator_id = ?";
+    private static final String INSERT_SQL = """
+            INSERT INTO service_order_results (id, service_order_id, indicator_id, indicator_name_snapshot, unit_snapshot,
+                measured_value, evaluation, note, recorded_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final String COMPLETE_SQL = """
+            UPDATE service_orders
+            SET status = ?, performed_at = COALESCE(?, performed_at, ?),
+                performed_by_id = COALESCE(performed_by_id, assigned_doctor_id), updated_at = ?
+            WHERE id = ?
+            """;
+    private static final List<String> COLUMNS = List.of(
+            "serviceOrderId", "indicatorId", "indicatorCode", "value", "note", "performedAt");
+    private static final DateTimeFormatter HL7_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmm[ss]");
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_VALUE_DIGITS = 12;
+    private static final int VALUE_SCALE = 4;
+
+    private final ServiceOrderRepository serviceOrderRepository;
+    private final ServiceOrderResultRepository resultRepository;
+    private final IndicatorCatalog indicatorCatalog;
+    private final IdBlockAllocator idBlockAllocator;
+    private final CriticalResultAlertService criticalResultAlertService;
+    private final LabSeriesService labSeriesService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public LabResultImportService(ServiceOrderRepository serviceOrderRepository,
+            ServiceOrderResultRepository resultRepository,
+            IndicatorCatalog indicatorCatalog,
+            IdBlockAllocator idBlockAllocator,
+            CriticalResultAlertService criticalResultAlertService,
+            LabSeriesService labSeriesService,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${clinicsystem.import.chunk-size:1000}") int chunkSize) {
+        this.serviceOrderRepository = serviceOrderRepository;
+        this.resultRepository = resultRepository;
+        this.indicatorCatalog = indicatorCatalog;
+        this.idBlockAllocator = idBlockAllocator;
+        this.criticalResultAlertService = criticalResultAlertService;
+        this.labSeriesService = labSeriesService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public LabResultImportReport importResults(InputStream input, String format) throws IOException {
+        String normalizedFormat = format == null ? FORMAT_CSV : format.trim().toLowerCase(Locale.ROOT);
+        if (!FORMAT_CSV.equals(normalizedFormat) && !FORMAT_HL7.equals(normalizedFormat)) {
+            throw new IllegalArgumentException("Định dạng nhập không được hỗ trợ: " + format);
+        }
+        boolean csv = FORMAT_CSV.equals(normalizedFormat);
+
+        long startedAt = System.nanoTime();
+        LabResultImportReport report = new LabResultImportReport();
+        ImportState state = new ImportState();
+        List<ImportRow> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = null;
+            Hl7Order hl7Order = null;
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && header == null) {
+                    header = parseHeader(line);
+                    continue;
+                }
+                String[] fields = csv ? null : line.split("\\|", -1);
+                if (!csv && !"OBX".equals(fields[0])) {
+                    if ("OBR".equals(fields[0])) {
+                        hl7Order = parseObr(fields);
+                    }
+                    continue;
+                }
+                report.setTotalRows(report.getTotalRows() + 1);
+                ImportRow row;
+                try {
+                    row = csv ? fromCsv(line, header) : fromObx(fields, hl7Order);
+                } catch (IllegalArgumentException ex) {
+                    addError(report, lineNumber, null, null, ex.getMessage());
+                    continue;
+                }
+                row.line = lineNumber;
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, state, report);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, state, report);
+        }
+        completeOrders(state, report);
+        state.patientIds.forEach(labSeriesService::evict);
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        report.setDurationMs(elapsedMs);
+        report.setRowsPerSecond(report.getImportedResults() * 1000 / elapsedMs);
+        log.info("Nhập kết quả xét nghiệm: {} dòng, thành công {}, lỗi {}, {} phiếu ({} đủ chỉ số), {} ms ({} dòng/giây)",
+                report.getTotalRows(), report.getImportedResults(), report.getFailedRows(), report.getOrders(),
+                report.getCompletedOrders(), elapsedMs, report.getRowsPerSecond());
+        return report;
+    }
+
+    private void writeChunk(List<ImportRow> chunk, ImportState state, LabResultImportReport report) {
+        // Một truy vấn cho các phiếu chưa gặp trong khối này
+        Set<Long> unknown = new HashSet<>();
+        for (ImportRow row : chunk) {
+            if (!state.orders.containsKey(row.orderId) && !state.missingOrders.contains(row.orderId)) {
+                unknown.add(row.orderId);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            for (ImportTargetView target : serviceOrderRepository.findImportTargets(unknown)) {
+                state.orders.put(target.getId(), target);
+            }
+            unknown.removeAll(state.orders.keySet());
+            state.missingOrders.addAll(unknown);
+        }
+
+        List<ImportRow> accepted = new ArrayList<>(chunk.size());
+        for (ImportRow row : chunk) {
+            String reference = row.indicatorCode != null ? row.indicatorCode : String.valueOf(row.indicatorId);
+            ImportTargetView order = state.orders.get(row.orderId);
+            if (order == null) {
+                addError(report, row.line, row.orderId, reference, "Không tìm thấy phiếu dịch vụ với id: " + row.orderId);
+                continue;
+            }
+            if (order.getStatus() == ServiceOrderStatus.CANCELLED) {
+                addError(report, row.line, row.orderId, reference, "Không thể nhập kết quả cho phiếu dịch vụ đã hủy.");
+                continue;
+            }
+            IndicatorCatalog.ServiceIndicators catalog = indicatorCatalog.forService(order.getMedicalServiceId());
+            IndicatorCatalog.Indicator indicator = row.indicatorId != null
+                    ? catalog.get(row.indicatorId)
+                    : catalog.getByCode(row.indicatorCode);
+            if (indicator == null) {
+                addError(report, row.line, row.orderId, reference,
+                        "Chỉ số " + reference + " không thuộc dịch vụ của phiếu " + row.orderId);
+                continue;
+            }
+            if (!state.received.computeIfAbsent(row.orderId, id -> new HashSet<>()).add(indicator.getId())) {
+                addError(report, row.line, row.orderId, reference, "Không được nhập trùng một chỉ số hai lần.");
+                continue;
+            }
+            row.indicator = indicator;
+            row.evaluation = indicator.evaluate(row.value);
+            accepted.add(row);
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        long nextId = idBlockAllocator.reserve("service_order_results", accepted.size());
+        for (ImportRow row : accepted) {
+            row.id = nextId++;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        try {
+            // Thay kết quả cũ của cùng chỉ số: nhập lại một tệp không sinh kết quả trùng
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(DELETE_SQL, accepted, accepted.size(), (ps, row) -> {
+                    ps.setLong(1, row.orderId);
+                    ps.setLong(2, row.indicator.getId());
+                });
+                jdbcTemplate.batchUpdate(INSERT_SQL, accepted, accepted.size(), (ps, row) -> {
+                    ps.setLong(1, row.id);
+                    ps.setLong(2, row.orderId);
+                    ps.setLong(3, row.indicator.getId());
+                    ps.setString(4, row.indicator.getName());
+                    ps.setString(5, row.indicator.getUnit());
+                    ps.setBigDecimal(6, row.value);
+                    ps.setString(7, row.evaluation.name());
+                    ps.setString(8, row.note);
+                    ps.setTimestamp(9, now);
+                });
+            });
+        } catch (DataAccessException ex) {
+            // Khối bị rollback toàn bộ, các khối khác vẫn được giữ
+            log.warn("Không thể ghi khối {} kết quả bắt đầu từ dòng {}", accepted.size(), accepted.get(0).line, ex);
+            String message = "Không thể ghi khối dữ liệu: " + ex.getMostSpecificCause().getMessage();
+            for (ImportRow row : accepted) {
+                state.received.get(row.orderId).remove(row.indicator.getId());
+                addError(report, row.line, row.orderId, row.indicator.getCode(), message);
+            }
+            return;
+        }
+
+        report.setImportedResults(report.getImportedResults() + accepted.size());
+        for (ImportRow row : accepted) {
+            ImportTargetView order = state.orders.get(row.orderId);
+            state.patientIds.add(order.getPatientId());
+            if (row.performedAt != null) {
+                state.performedAt.merge(row.orderId, row.performedAt,
+                        (current, next) -> next.isAfter(current) ? next : current);
+            }
+            if (row.evaluation.isCritical()) {
+                report.setCriticalResults(report.getCriticalResults() + 1);
+                criticalResultAlertService.raise(row.orderId, order.getVisitId(), order.getPatientName(),
+                        order.getDoctorId(), row.indicator.getName(), row.value, row.indicator.getUnit(),
+                        row.evaluation);
+            }
+        }
+    }
+
+    // Đối chiếu cuối tệp: phiếu đủ chỉ số bắt buộc (kể cả kết quả đã có từ trước) thì chuyển trạng thái
+    private void completeOrders(ImportState state, LabResultImportReport report) {
+        List<Long> orderIds = state.received.entrySet().stream()
+                .filter(entry -> !entry.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .toList();
+        report.setOrders(orderIds.size());
+        List<Long> completed = new ArrayList<>();
+        for (int start = 0; start < orderIds.size(); start += chunkSize) {
+            List<Long> slice = orderIds.subList(start, Math.min(orderIds.size(), start + chunkSize));
+            Map<Long, Set<Long>> present = new HashMap<>();
+            for (OrderIndicatorView view : resultRepository.findOrderIndicators(slice)) {
+                present.computeIfAbsent(view.getServiceOrderId(), id -> new HashSet<>()).add(view.getIndicatorId());
+            }
+            for (Long orderId : slice) {
+                IndicatorCatalog.ServiceIndicators catalog = indicatorCatalog
+                        .forService(state.orders.get(orderId).getMedicalServiceId());
+                Set<Long> recorded = present.getOrDefault(orderId, Set.of());
+                List<String> missing = catalog.getRequiredIndicators().stream()
+                        .filter(indicator -> !recorded.contains(indicator.getId()))
+                        .map(IndicatorCatalog.Indicator::getName)
+                        .toList();
+                if (missing.isEmpty()) {
+                    completed.add(orderId);
+                } else {
+                    report.getIncompleteOrders().add(new IncompleteOrder(orderId, missing));
+                }
+            }
+        }
+        if (completed.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(COMPLETE_SQL, completed,
+                chunkSize, (ps, orderId) -> {
+                    LocalDateTime performedAt = state.performedAt.get(orderId);
+                    ps.setString(1, ServiceOrderStatus.COMPLETED_WITH_RESULT.name());
+                    ps.setTimestamp(2, performedAt != null ? Timestamp.valueOf(performedAt) : null);
+                    ps.setTimestamp(3, now);
+                    ps.setTimestamp(4, now);
+                    ps.setLong(5, orderId);
+                }));
+        report.setCompletedOrders(completed.size());
+    }
+
+    private Map<String, Integer> parseHeader(String line) {
+        Map<String, Integer> header = CsvReader.parseHeader(line, COLUMNS);
+        if (!header.containsKey("serviceOrderId") || !header.containsKey("value")
+                || (!header.containsKey("indicatorId") && !header.containsKey("indicatorCode"))) {
+            throw new IllegalArgumentException(
+                    "Dòng tiêu đề CSV phải có cột serviceOrderId, value và indicatorCode hoặc indicatorId");
+        }
+        return header;
+    }
+
+    private ImportRow fromCsv(String line, Map<String, Integer> header) {
+        List<String> values = CsvReader.splitLine(line);
+        ImportRow row = new ImportRow();
+        row.orderId = parseId(CsvReader.valueAt(values, header, "serviceOrderId"), "Id phiếu dịch vụ");
+        String indicatorId = clean(CsvReader.valueAt(values, header, "indicatorId"));
+        if (indicatorId != null) {
+            row.indicatorId = parseId(indicatorId, "Id chỉ số");
+        } else {
+            row.indicatorCode = requireText(CsvReader.valueAt(values, header, "indicatorCode"),
+                    "Mã chỉ số không được để trống");
+        }
+        row.value = parseValue(CsvReader.valueAt(values, header, "value"));
+        row.note = limit(clean(CsvReader.valueAt(values, header, "note")), 500);
+        String performedAt = clean(CsvReader.valueAt(values, header, "performedAt"));
+        row.performedAt = performedAt != null ? parseIsoTime(performedAt) : null;
+        return row;
+    }
+
+    // OBR-2: id phiếu dịch vụ, OBR-7: thời điểm thực hiện. OBR lỗi thì từng OBX theo sau báo lỗi với lý do đó
+    private Hl7Order parseObr(String[] fields) {
+        Hl7Order order = new Hl7Order();
+        try {
+            order.orderId = parseId(component(field(fields, 2)), "Id phiếu dịch vụ trong OBR-2");
+            String time = clean(field(fields, 7));
+            order.performedAt = time != null ? parseHl7Time(time) : null;
+        } catch (IllegalArgumentException ex) {
+            order.error = ex.getMessage();
+        }
+        return order;
+    }
+
+    // OBX-2: kiểu giá trị, OBX-3: mã^tên chỉ số, OBX-5: giá trị, OBX-14: thời điểm đo
+    private ImportRow fromObx(String[] fields, Hl7Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Đoạn OBX không nằm sau một đoạn OBR");
+        }
+        if (order.error != null) {
+            throw new IllegalArgumentException(order.error);
+        }
+        String type = clean(field(fields, 2));
+        if (type != null && !"NM".equalsIgnoreCase(type)) {
+            throw new IllegalArgumentException("Chỉ nhận kết quả dạng số (OBX-2 = NM), nhận được: " + type);
+        }
+        ImportRow row = new ImportRow();
+        row.orderId = order.orderId;
+        row.indicatorCode = requireText(component(field(fields, 3)), "Mã chỉ số trong OBX-3 không được để trống");
+        row.value = parseValue(field(fields, 5));
+        String time = clean(field(fields, 14));
+        row.performedAt = time != null ? parseHl7Time(time) : order.performedAt;
+        return row;
+    }
+
+    private BigDecimal parseValue(String raw) {
+        String value = requireText(raw, "Giá trị đo không được để trống");
+        BigDecimal parsed;
+        try {
+            parsed = new BigDecimal(value).setScale(VALUE_SCALE, RoundingMode.HALF_UP);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Giá trị đo không phải số: " + value);
+        }
+        if (parsed.precision() - parsed.scale() > MAX_VALUE_DIGITS) {
+            throw new IllegalArgumentException("Giá trị đo không hợp lệ: " + value);
+        }
+        return parsed.stripTrailingZeros();
+    }
+
+    private Long parseId(String raw, String label) {
+        String value = requireText(raw, label + " không được để trống");
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(label + " không hợp lệ: " + value);
+        }
+    }
+
+    private LocalDateTime parseIsoTime(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Thời điểm thực hiện không đúng định dạng yyyy-MM-ddTHH:mm: " + value);
+        }
+    }
+
+    private LocalDateTime parseHl7Time(String value) {
+        // Bỏ phần lẻ giây và múi giờ nếu có (yyyyMMddHHmmss.SSSS+0700)
+        String trimmed = value.split("[.+-]", 2)[0];
+        try {
+            return LocalDateTime.parse(trimmed, HL7_TIME);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Thời điểm HL7 không đúng định dạng yyyyMMddHHmm[ss]: " + value);
+        }
+    }
+
+    private String field(String[] fields, int index) {
+        return index < fields.length ? fields[index] : null;
+    }
+
+    // Thành phần đầu tiên của trường HL7 (mã trong "GLU^Glucose^L")
+    private String component(String field) {
+        return field != null ? field.split("\\^", -1)[0] : null;
+    }
+
+
+    private String requireText(String value, String message) {
+        String cleaned = clean(value);
+        if (cleaned == null) {
+            throw new IllegalArgumentException(message);
+        }
+        return cleaned;
+    }
+
+    private String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private String limit(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+
+
+    private void addError(LabResultImportReport report, long line, Long orderId, String indicator, String message) {
+        report.setFailedRows(report.getFailedRows() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new RowError(line, orderId, indicator, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    /**
+     * Trạng thái của một lần nhập, giữ qua các khối: chỉ gồm id, không giữ dòng dữ liệu.
+     */
+    private static final class ImportState {
+        final Map<Long, ImportTargetView> orders = new HashMap<>();
+        final Set<Long> missingOrders = new HashSet<>();
+        // Chỉ số đã ghi của từng phiếu trong tệp, để phát hiện trùng và đối chiếu cuối tệp
+        final Map<Long, Set<Long>> received = new LinkedHashMap<>();
+        final Map<Long, LocalDateTime> performedAt = new HashMap<>();
+        final Set<Long> patientIds = new HashSet<>();
+    }
+
+    private static final class Hl7Order {
+        Long orderId;
+        LocalDateTime performedAt;
+        String error;
+    }
+
+    private static final class ImportRow {
+        long line;
+        long id;
+        Long orderId;
+        Long indicatorId;
+        String indicatorCode;
+        BigDecimal value;
+        String note;
+        LocalDateTime performedAt;
+        IndicatorCatalog.Indicator indicator;
+        IndicatorResultLevel evaluation;
+    }
+}
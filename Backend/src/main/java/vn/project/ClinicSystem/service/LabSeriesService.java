@@ -0,0 +1,400 @@
+package vn.project.ClinicSystem.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.persistence.EntityNotFoundException;
+import vn.project.ClinicSystem.model.ServiceOrder;
+import vn.project.ClinicSystem.model.ServiceOrderResult;
+import vn.project.ClinicSystem.model.dto.LabSeriesDTO;
+import vn.project.ClinicSystem.repository.PatientRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderResultRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderResultRepository.SeriesPointView;
+import vn.project.ClinicSystem.util.TransactionHooks;
+
+/**
+ * Chuỗi giá trị chỉ số xét nghiệm theo thời gian của từng bệnh nhân, lưu bằng mảng nguyên thủy
+ * (thời điểm, giá trị, id phiếu) sắp theo thời gian. Chuỗi của một bệnh nhân được dựng bằng một truy vấn
+ * ở lần xem đầu tiên rồi cập nhật tại chỗ khi nhập kết quả; chỉ giữ tối đa số bệnh nhân cấu hình,
+ * bỏ bệnh nhân lâu không xem nhất. Kết quả nhập ở instance khác không tới được cache này nên mỗi chuỗi
+ * chỉ dùng trong thời hạn cấu hình rồi được nạp lại.
+ */
+@Service
+public class LabSeriesService {
+    private static final double MILLIS_PER_DAY = 86_400_000d;
+
+    private final ServiceOrderResultRepository resultRepository;
+    private final PatientRepository patientRepository;
+    private final Map<Long, PatientSeries> cache;
+    private final long ttlNanos;
+    // Tăng mỗi lần ghi; lượt nạp chỉ đưa vào cache khi không có lần ghi nào xen vào
+    private final AtomicLong writeSequence = new AtomicLong();
+
+    public LabSeriesService(ServiceOrderResultRepository resultRepository, PatientRepository patientRepository,
+            @Value("${clinicsystem.lab-series.max-patients:5000}") int maxPatients,
+            @Value("${clinicsystem.lab-series.ttl-seconds:300}") long ttlSeconds) {
+        this.resultRepository = resultRepository;
+        this.patientRepository = patientRepository;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, ttlSeconds));
+        int capacity = Math.max(1, maxPatients);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PatientSeries> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Tóm tắt mọi chỉ số đã có kết quả của bệnh nhân (không kèm dãy điểm).
+     */
+    public List<LabSeriesDTO> listSeries(Long patientId) {
+        PatientSeries patient = load(patientId);
+        List<LabSeriesDTO> result = new ArrayList<>();
+        synchronized (patient) {
+            patient.byIndicator.forEach((indicatorId, series) -> {
+                LabSeriesDTO dto = summarize(patientId, indicatorId, series, 0, series.size);
+                dto.setTimestamps(new long[0]);
+                dto.setValues(new double[0]);
+                result.add(dto);
+            });
+        }
+        result.sort(Comparator.comparing(LabSeriesDTO::getIndicatorName, Comparator.nullsLast(String::compareTo)));
+        return result;
+    }
+
+    /**
+     * Chuỗi của một chỉ số trong khoảng [from, to]; lastN giữ N điểm cuối, maxPoints rút gọn bằng
+     * Largest-Triangle-Three-Buckets để biểu đồ giữ được hình dạng. Thống kê tính trên toàn bộ điểm trong khoảng.
+     */
+    public LabSeriesDTO getSeries(Long patientId, Long indicatorId, Instant from, Instant to, Integer lastN,
+            Integer maxPoints) {
+        PatientSeries patient = load(patientId);
+        synchronized (patient) {
+            Series series = patient.byIndicator.get(indicatorId);
+            if (series == null) {
+                throw new EntityNotFoundException("Bệnh nhân chưa có kết quả cho chỉ số với id: " + indicatorId);
+            }
+            int start = from != null ? series.lowerBound(from.toEpochMilli()) : 0;
+            int end = to != null ? series.upperBound(to.toEpochMilli()) : series.size;
+            if (lastN != null && lastN > 0) {
+                start = Math.max(start, end - lastN);
+            }
+            start = Math.min(start, end);
+
+            LabSeriesDTO dto = summarize(patientId, indicatorId, series, start, end);
+            int count = end - start;
+            if (maxPoints != null && maxPoints > 0 && count > maxPoints) {
+                int[] picked = downsample(series.times, series.values, start, end, maxPoints);
+                long[] times = new long[picked.length];
+                double[] values = new double[picked.length];
+                for (int i = 0; i < picked.length; i++) {
+                    times[i] = series.times[picked[i]];
+                    values[i] = series.values[picked[i]];
+                }
+                dto.setTimestamps(times);
+                dto.setValues(values);
+                dto.setDownsampled(true);
+            } else {
+                dto.setTimestamps(Arrays.copyOfRange(series.times, start, end));
+                dto.setValues(Arrays.copyOfRange(series.values, start, end));
+            }
+            return dto;
+        }
+    }
+
+    /**
+     * Cập nhật chuỗi theo kết quả vừa nhập của một phiếu (thay toàn bộ điểm cũ của phiếu), sau khi commit.
+     */
+    public void recordOrder(ServiceOrder order) {
+        if (order.getPerformedAt() == null) {
+            return;
+        }
+        Long patientId = order.getVisit().getPatient().getId();
+        long orderId = order.getId();
+        long time = toEpochMilli(order.getPerformedAt());
+        List<PendingPoint> points = new ArrayList<>();
+        for (ServiceOrderResult result : order.getIndicatorResults()) {
+            if (result.getIndicator() != null && result.getMeasuredValue() != null) {
+                points.add(new PendingPoint(result.getIndicator().getId(), result.getIndicatorNameSnapshot(),
+                        result.getUnitSnapshot(), result.getMeasuredValue().doubleValue()));
+            }
+        }
+        TransactionHooks.afterCommit(() -> {
+            writeSequence.incrementAndGet();
+            PatientSeries patient;
+            synchronized (cache) {
+                patient = cache.get(patientId);
+            }
+            // Bệnh nhân chưa nạp thì lần xem sau đọc thẳng từ database
+            if (patient != null) {
+                synchronized (patient) {
+                    patient.replaceOrder(orderId, time, points);
+                }
+            }
+        });
+    }
+
+    public void evict(Long patientId) {
+        TransactionHooks.afterCommit(() -> {
+            writeSequence.incrementAndGet();
+            synchronized (cache) {
+                cache.remove(patientId);
+            }
+        });
+    }
+
+    private PatientSeries load(Long patientId) {
+        synchronized (cache) {
+            PatientSeries cached = cache.get(patientId);
+            if (cached != null && isFresh(cached)) {
+                return cached;
+            }
+        }
+        long sequence = writeSequence.get();
+        if (!patientRepository.existsById(patientId)) {
+            throw new EntityNotFoundException("Không tìm thấy bệnh nhân với id: " + patientId);
+        }
+        PatientSeries loaded = new PatientSeries();
+        for (SeriesPointView point : resultRepository.findSeriesPointsByPatientId(patientId)) {
+            loaded.byIndicator
+                    .computeIfAbsent(point.getIndicatorId(), id -> new Series(point.getIndicatorName()))
+                    .insert(toEpochMilli(point.getPerformedAt()), point.getMeasuredValue().doubleValue(),
+                            point.getServiceOrderId(), point.getUnit());
+        }
+        synchronized (cache) {
+            PatientSeries existing = cache.get(patientId);
+            if (existing != null && isFresh(existing)) {
+                return existing;
+            }
+            if (writeSequence.get() == sequence) {
+                cache.put(patientId, loaded);
+            } else if (existing != null) {
+                // Bản cũ đã hết hạn, bản vừa nạp có thể thiếu lần ghi xen vào nên bỏ cả hai
+                cache.remove(patientId);
+            }
+        }
+        return loaded;
+    }
+
+    private boolean isFresh(PatientSeries patient) {
+        return System.nanoTime() - patient.loadedAt < ttlNanos;
+    }
+
+    private static LabSeriesDTO summarize(Long patientId, Long indicatorId, Series series, int start, int end) {
+        LabSeriesDTO dto = new LabSeriesDTO();
+        dto.setPatientId(patientId);
+        dto.setIndicatorId(indicatorId);
+        dto.setIndicatorName(series.name);
+        dto.setUnit(series.unit);
+        dto.setTotalPoints(end - start);
+        if (end <= start) {
+            return dto;
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        // Hồi quy tuyến tính theo ngày, gốc thời gian tại điểm đầu để tránh mất chính xác
+        long origin = series.times[start];
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        for (int i = start; i < end; i++) {
+            double value = series.values[i];
+            double x = (series.times[i] - origin) / MILLIS_PER_DAY;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sumX += x;
+            sumY += value;
+            sumXY += x * value;
+            sumXX += x * x;
+        }
+        int n = end - start;
+        double denominator = n * sumXX - sumX * sumX;
+        dto.setMin(min);
+        dto.setMax(max);
+        dto.setLast(series.values[end - 1]);
+        dto.setLastAt(series.times[end - 1]);
+        dto.setSlopePerDay(n > 1 && denominator != 0 ? (n * sumXY - sumX * sumY) / denominator : null);
+        return dto;
+    }
+
+    // Largest-Triangle-Three-Buckets: giữ điểm đầu, điểm cuối và ở mỗi nhóm điểm tạo tam giác lớn nhất
+    private static int[] downsample(long[] times, double[] values, int start, int end, int threshold) {
+        int count = end - start;
+        if (threshold < 3) {
+            return threshold == 1 ? new int[] { end - 1 } : new int[] { start, end - 1 };
+        }
+        int[] picked = new int[threshold];
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        int anchor = start;
+        picked[0] = start;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int averageStart = start + (int) ((bucket + 1) * bucketSize) + 1;
+            int averageEnd = Math.min(start + (int) ((bucket + 2) * bucketSize) + 1, end);
+            double averageTime = 0;
+            double averageValue = 0;
+            for (int i = averageStart; i < averageEnd; i++) {
+                averageTime += times[i];
+                averageValue += values[i];
+            }
+            int averageLength = Math.max(1, averageEnd - averageStart);
+            averageTime /= averageLength;
+            averageValue /= averageLength;
+
+            int rangeStart = start + (int) (bucket * bucketSize) + 1;
+            int rangeEnd = start + (int) ((bucket + 1) * bucketSize) + 1;
+            double anchorTime = times[anchor];
+            double anchorValue = values[anchor];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                double area = Math.abs((anchorTime - averageTime) * (values[i] - anchorValue)
+                        - (anchorTime - times[i]) * (averageValue - anchorValue));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+            picked[bucket + 1] = next;
+            anchor = next;
+        }
+        picked[threshold - 1] = end - 1;
+        return picked;
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class PendingPoint {
+        final Long indicatorId;
+        final String name;
+        final String unit;
+        final double value;
+
+        PendingPoint(Long indicatorId, String name, String unit, double value) {
+            this.indicatorId = indicatorId;
+            this.name = name;
+            this.unit = unit;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Các chuỗi của một bệnh nhân; mọi truy cập đồng bộ trên chính đối tượng này.
+     */
+    private static final class PatientSeries {
+        final Map<Long, Series> byIndicator = new HashMap<>();
+        final long loadedAt = System.nanoTime();
+
+        void replaceOrder(long orderId, long time, List<PendingPoint> points) {
+            Iterator<Series> iterator = byIndicator.values().iterator();
+            while (iterator.hasNext()) {
+                Series series = iterator.next();
+                series.removeOrder(orderId);
+                if (series.size == 0) {
+                    iterator.remove();
+                }
+            }
+            for (PendingPoint point : points) {
+                byIndicator.computeIfAbsent(point.indicatorId, id -> new Series(point.name))
+                        .insert(time, point.value, orderId, point.unit);
+            }
+        }
+    }
+
+    /**
+     * Ba mảng song song sắp tăng dần theo thời gian; mỗi phiếu có tối đa một điểm trong một chuỗi.
+     */
+    private static final class Series {
+        final String name;
+        String unit;
+        long[] times = new long[8];
+        double[] values = new double[8];
+        long[] orderIds = new long[8];
+        int size;
+
+        Series(String name) {
+            this.name = name;
+        }
+
+        void insert(long time, double value, long orderId, String unit) {
+            if (size == times.length) {
+                int capacity = size * 2;
+                times = Arrays.copyOf(times, capacity);
+                values = Arrays.copyOf(values, capacity);
+                orderIds = Arrays.copyOf(orderIds, capacity);
+            }
+            int position = upperBound(time);
+            int tail = size - position;
+            System.arraycopy(times, position, times, position + 1, tail);
+            System.arraycopy(values, position, values, position + 1, tail);
+            System.arraycopy(orderIds, position, orderIds, position + 1, tail);
+            times[position] = time;
+            values[position] = value;
+            orderIds[position] = orderId;
+            size++;
+            if (unit != null) {
+                this.unit = unit;
+            }
+        }
+
+        void removeOrder(long orderId) {
+            for (int i = 0; i < size; i++) {
+                if (orderIds[i] == orderId) {
+                    int tail = size - i - 1;
+                    System.arraycopy(times, i + 1, times, i, tail);
+                    System.arraycopy(values, i + 1, values, i, tail);
+                    System.arraycopy(orderIds, i + 1, orderIds, i, tail);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        // Vị trí đầu tiên có thời điểm >= time
+        int lowerBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Vị trí đầu tiên có thời điểm > time
+        int upperBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
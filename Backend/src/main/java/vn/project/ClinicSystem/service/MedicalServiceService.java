@@ -24,13 +24,19 @@ public class MedicalServiceService {
     private final MedicalServiceRepository medicalServiceRepository;
     private final ClinicRoomRepository clinicRoomRepository;
     private final Validator validator;
+    private final PricingCatalog pricingCatalog;
+    private final IndicatorCatalog indicatorCatalog;
 
     public MedicalServiceService(MedicalServiceRepository medicalServiceRepository,
             ClinicRoomRepository clinicRoomRepository,
-            Validator validator) {
+            Validator validator,
+            PricingCatalog pricingCatalog,
+            IndicatorCatalog indicatorCatalog) {
         this.medicalServiceRepository = medicalServiceRepository;
         this.clinicRoomRepository = clinicRoomRepository;
         this.validator = validator;
+        this.pricingCatalog = pricingCatalog;
+        this.indicatorCatalog = indicatorCatalog;
     }
 
     public List<MedicalService> findAll() {
@@ -66,7 +72,9 @@ public class MedicalServiceService {
 
         validateBean(service);
         ensureCodeUnique(service.getCode(), null);
-        return medicalServiceRepository.save(service);
+        MedicalService saved = medicalServiceRepository.save(service);
+        pricingCatalog.updateServicePrice(saved.getId(), saved.getBasePrice());
+        return saved;
     }
 
     @Transactional
@@ -90,7 +98,9 @@ public class MedicalServiceService {
         }
 
         validateBean(existing);
-        return medicalServiceRepository.save(existing);
+        MedicalService saved = medicalServiceRepository.save(existing);
+        pricingCatalog.updateServicePrice(saved.getId(), saved.getBasePrice());
+        return saved;
     }
 
     @Transactional
@@ -99,6 +109,8 @@ public class MedicalServiceService {
             throw new EntityNotFoundException("Không tìm thấy dịch vụ với id: " + id);
         }
         medicalServiceRepository.deleteById(id);
+        pricingCatalog.removeService(id);
+        indicatorCatalog.evict(id);
     }
 
     private void ensureCodeUnique(String code, Long currentServiceId) {
@@ -0,0 +1,360 @@
+package vn.project.ClinicSystem.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.dto.MedicationSuggestionDTO;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.repository.PrescriptionItemRepository;
+import vn.project.ClinicSystem.util.TextNormalizer;
+import vn.project.ClinicSystem.util.TransactionHooks;
+
+/**
+ * Gợi ý thuốc khi gõ, tra hoàn toàn trong bộ nhớ. Tên thuốc và hoạt chất đã bỏ dấu được đưa vào một trie
+ * theo từng vị trí đầu từ (gõ "para" ra cả "Hapacol Paracetamol"); mỗi nút giữ sẵn top-K id thuốc
+ * của cả cây con theo số lần được kê, nên một lượt gợi ý chỉ là đi theo tiền tố rồi đọc danh sách ở nút cuối.
+ * Khi danh mục hoặc số lần kê thay đổi, chỉ các nút trên đường đi của thuốc đó được xếp hạng lại.
+ */
+@Service
+@Slf4j
+public class MedicationAutocompleteService {
+    private static final int MAX_KEY_LENGTH = 40;
+    private static final long[] NO_IDS = new long[0];
+
+    private final MedicationRepository medicationRepository;
+    private final PrescriptionItemRepository prescriptionItemRepository;
+    private final int topK;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Comparator<Long> ranking;
+    private Node root = new Node();
+
+    public MedicationAutocompleteService(MedicationRepository medicationRepository,
+            PrescriptionItemRepository prescriptionItemRepository,
+            @Value("${clinicsystem.autocomplete.top-k:10}") int topK) {
+        this.medicationRepository = medicationRepository;
+        this.prescriptionItemRepository = prescriptionItemRepository;
+        this.topK = Math.max(1, topK);
+        this.ranking = Comparator.<Long>comparingLong(id -> -entries.get(id).frequency)
+                .thenComparing(id -> entries.get(id).sortName)
+                .thenComparing(Comparator.naturalOrder());
+    }
+
+    public List<MedicationSuggestionDTO> suggest(String query, int limit) {
+        String prefix = TextNormalizer.fold(query);
+        if (prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            List<MedicationSuggestionDTO> suggestions = new ArrayList<>(Math.min(limit, node.top.length));
+            for (int i = 0; i < node.top.length && suggestions.size() < limit; i++) {
+                suggestions.add(entries.get(node.top[i]).toSuggestion());
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            List<MedicationRepository.SearchView> medications = medicationRepository.findAllForSearch();
+            Map<Long, Long> frequencies = new HashMap<>();
+            for (PrescriptionItemRepository.MedicationCountView row : prescriptionItemRepository.countByMedication()) {
+                frequencies.put(row.getMedicationId(), row.getCount());
+            }
+
+            lock.writeLock().lock();
+            try {
+                entries.clear();
+                root = new Node();
+                for (MedicationRepository.SearchView view : medications) {
+                    Entry entry = new Entry(view.getId(), view.getName(), view.getActiveIngredient(), view.getForm(),
+                            view.getUnit());
+                    entry.frequency = frequencies.getOrDefault(view.getId(), 0L);
+                    entries.put(entry.id, entry);
+                    for (String key : entry.keys) {
+                        insert(key, entry.id);
+                    }
+                }
+                rankSubtree(root);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Đã dựng bộ gợi ý cho {} thuốc", medications.size());
+        } catch (RuntimeException ex) {
+            log.warn("Không thể dựng bộ gợi ý tên thuốc", ex);
+        }
+    }
+
+    // Chỉ cập nhật bộ gợi ý khi thay đổi danh mục đã commit
+    public void upsert(Medication medication) {
+        Entry entry = new Entry(medication.getId(), medication.getName(), medication.getActiveIngredient(),
+                medication.getForm(), medication.getUnit());
+        TransactionHooks.afterCommit(() -> write(() -> {
+            Entry previous = entries.get(entry.id);
+            if (previous != null) {
+                entry.frequency = previous.frequency;
+                detach(previous);
+            }
+            entries.put(entry.id, entry);
+            for (String key : entry.keys) {
+                insert(key, entry.id);
+                rerank(key);
+            }
+        }));
+    }
+
+    public void remove(Long medicationId) {
+        TransactionHooks.afterCommit(() -> write(() -> {
+            Entry previous = entries.get(medicationId);
+            if (previous != null) {
+                // Gỡ khỏi trie trước khi xóa khỏi bảng để bộ so sánh còn đọc được tần suất
+                detach(previous);
+                entries.remove(medicationId);
+            }
+        }));
+    }
+
+    /**
+     * Tăng số lần kê của các thuốc vừa được kê trong một đơn đã commit.
+     */
+    public void recordPrescribed(Collection<Long> medicationIds) {
+        Set<Long> ids = new LinkedHashSet<>(medicationIds);
+        TransactionHooks.afterCommit(() -> write(() -> {
+            for (Long id : ids) {
+                Entry entry = entries.get(id);
+                if (entry != null) {
+                    entry.frequency++;
+                    entry.keys.forEach(this::rerank);
+                }
+            }
+        }));
+    }
+
+    private void insert(String key, long id) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+        node.terminals = add(node.terminals, id);
+    }
+
+    // Gỡ mọi khóa của thuốc khỏi trie, xếp hạng lại đường đi và bỏ các nhánh đã rỗng
+    private void detach(Entry entry) {
+        for (String key : entry.keys) {
+            Node[] path = path(key);
+            if (path == null) {
+                continue;
+            }
+            Node last = path[path.length - 1];
+            last.terminals = without(last.terminals, entry.id);
+            rerank(key);
+        }
+    }
+
+    // Tính lại top-K từ nút sâu nhất lên gốc: top của một nút là top của các con gộp với id kết thúc tại nút
+    private void rerank(String key) {
+        Node[] path = path(key);
+        if (path == null) {
+            return;
+        }
+        for (int depth = path.length - 1; depth >= 0; depth--) {
+            Node node = path[depth];
+            node.top = merge(node);
+            if (depth > 0 && node.top.length == 0) {
+                path[depth - 1].removeChild(key.charAt(depth - 1));
+            }
+        }
+    }
+
+    private void rankSubtree(Node node) {
+        for (Node child : node.children) {
+            rankSubtree(child);
+        }
+        node.top = merge(node);
+    }
+
+    private long[] merge(Node node) {
+        Set<Long> candidates = new LinkedHashSet<>();
+        for (long id : node.terminals) {
+            candidates.add(id);
+        }
+        for (Node child : node.children) {
+            for (long id : child.top) {
+                candidates.add(id);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return NO_IDS;
+        }
+        return candidates.stream()
+                .sorted(ranking)
+                .limit(topK)
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private Node[] path(String key) {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].child(key.charAt(i));
+            if (path[i + 1] == null) {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long[] add(long[] ids, long id) {
+        for (long existing : ids) {
+            if (existing == id) {
+                return ids;
+            }
+        }
+        long[] extended = Arrays.copyOf(ids, ids.length + 1);
+        extended[ids.length] = id;
+        return extended;
+    }
+
+    private static long[] without(long[] ids, long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                long[] reduced = new long[ids.length - 1];
+                System.arraycopy(ids, 0, reduced, 0, i);
+                System.arraycopy(ids, i + 1, reduced, i, ids.length - i - 1);
+                return reduced;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Nút trie gọn: các nhánh con lưu trong hai mảng song song sắp theo ký tự thay cho HashMap.
+     */
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        long[] terminals = NO_IDS;
+        long[] top = NO_IDS;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = new Node();
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+
+        void removeChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+    }
+
+    private static final class Entry {
+        final long id;
+        final String name;
+        final String activeIngredient;
+        final String form;
+        final String unit;
+        final String sortName;
+        final Set<String> keys;
+        long frequency;
+
+        Entry(Long id, String name, String activeIngredient, String form, String unit) {
+            this.id = id;
+            this.name = name;
+            this.activeIngredient = activeIngredient;
+            this.form = form;
+            this.unit = unit;
+            this.sortName = TextNormalizer.fold(name);
+            this.keys = new LinkedHashSet<>();
+            addKeys(keys, name);
+            addKeys(keys, activeIngredient);
+        }
+
+        // Mỗi vị trí đầu từ là một khóa để gõ từ giữa tên vẫn tìm được
+        private static void addKeys(Set<String> keys, String text) {
+            String folded = TextNormalizer.fold(text);
+            if (folded.isEmpty()) {
+                return;
+            }
+            int start = 0;
+            while (start >= 0) {
+                String key = folded.substring(start);
+                keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+                int space = folded.indexOf(' ', start);
+                start = space >= 0 ? space + 1 : -1;
+            }
+        }
+
+        MedicationSuggestionDTO toSuggestion() {
+            return new MedicationSuggestionDTO(id, name, activeIngredient, form, unit);
+        }
+    }
+}
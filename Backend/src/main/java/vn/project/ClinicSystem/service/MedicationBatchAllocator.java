@@ -0,0 +1,102 @@
+package vn.project.ClinicSystem.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.MedicationBatch;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+
+/**
+ * Cấp thuốc theo nguyên tắc hết hạn trước xuất trước (FEFO): chia số lượng yêu cầu cho các lô
+ * còn hạn theo thứ tự ngày hết hạn, mỗi lô được trừ bằng UPDATE có điều kiện.
+ * Phải chạy trong transaction của thao tác kê đơn để khi thiếu hàng mọi lô đã trừ được hoàn lại.
+ */
+@Service
+public class MedicationBatchAllocator {
+    // Lô không ghi hạn dùng được cấp sau cùng
+    private static final Comparator<MedicationBatch> FEFO_ORDER = Comparator.comparing(
+            MedicationBatch::getExpiryDate, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final MedicationBatchRepository batchRepository;
+    private final MedicationRepository medicationRepository;
+
+    public MedicationBatchAllocator(MedicationBatchRepository batchRepository,
+            MedicationRepository medicationRepository) {
+        this.batchRepository = batchRepository;
+        this.medicationRepository = medicationRepository;
+    }
+
+    @Transactional
+    public List<Allocation> allocate(Medication medication, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Cần nhập số lượng thuốc hợp lệ");
+        }
+        List<MedicationBatch> batches = new ArrayList<>(
+                batchRepository.findDispensableBatches(medication.getId(), LocalDate.now()));
+        batches.sort(FEFO_ORDER);
+
+        List<Allocation> allocations = new ArrayList<>();
+        int remaining = quantity;
+        for (MedicationBatch batch : batches) {
+            if (remaining == 0) {
+                break;
+            }
+            int taken = take(batch, remaining);
+            if (taken > 0) {
+                allocations.add(new Allocation(batch, taken));
+                remaining -= taken;
+            }
+        }
+
+        if (remaining > 0) {
+            throw new IllegalStateException("Thuốc " + medication.getName() + " không đủ tồn kho còn hạn (thiếu "
+                    + remaining + ").");
+        }
+        if (medicationRepository.decrementStock(medication.getId(), quantity) == 0) {
+            throw new IllegalStateException("Tồn kho thuốc không đủ.");
+        }
+        medication.setStockQuantity(medicationRepository.findStockQuantity(medication.getId()));
+        return allocations;
+    }
+
+    // Trừ tối đa số cần từ một lô; nếu lô vừa bị lượt khác trừ bớt thì đọc lại tồn thực tế và thử lại
+    private int take(MedicationBatch batch, int wanted) {
+        int available = batch.getQuantityOnHand() != null ? batch.getQuantityOnHand() : 0;
+        while (available > 0) {
+            int amount = Math.min(available, wanted);
+            if (batchRepository.decrementStock(batch.getId(), amount) > 0) {
+                batch.setQuantityOnHand(available - amount);
+                return amount;
+            }
+            Integer current = batchRepository.findQuantityOnHand(batch.getId());
+            available = current != null ? current : 0;
+        }
+        batch.setQuantityOnHand(0);
+        return 0;
+    }
+
+    public static final class Allocation {
+        private final MedicationBatch batch;
+        private final int quantity;
+
+        Allocation(MedicationBatch batch, int quantity) {
+            this.batch = batch;
+            this.quantity = quantity;
+        }
+
+        public MedicationBatch getBatch() {
+            return batch;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
 
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -13,6 +14,7 @@ import vn.project.ClinicSystem.model.Medication;
 import vn.project.ClinicSystem.model.MedicationBatch;
 import vn.project.ClinicSystem.model.dto.MedicationBatchAdjustRequest;
 import vn.project.ClinicSystem.model.dto.MedicationBatchCreateRequest;
+import vn.project.ClinicSystem.model.enums.StockMovementType;
 import vn.project.ClinicSystem.repository.MedicationBatchRepository;
 import vn.project.ClinicSystem.repository.MedicationRepository;
 
@@ -22,11 +24,17 @@ public class MedicationBatchService {
 
     private final MedicationBatchRepository batchRepository;
     private final MedicationRepository medicationRepository;
+    private final PricingCatalog pricingCatalog;
+    private final StockLedgerService stockLedgerService;
 
     public MedicationBatchService(MedicationBatchRepository batchRepository,
-            MedicationRepository medicationRepository) {
+            MedicationRepository medicationRepository,
+            PricingCatalog pricingCatalog,
+            StockLedgerService stockLedgerService) {
         this.batchRepository = batchRepository;
         this.medicationRepository = medicationRepository;
+        this.pricingCatalog = pricingCatalog;
+        this.stockLedgerService = stockLedgerService;
     }
 
     public MedicationBatch getById(Long id) {
@@ -66,6 +74,9 @@ public class MedicationBatchService {
 
         MedicationBatch saved = batchRepository.save(batch);
         increaseMedicationStock(medication, totalUnits);
+        stockLedgerService.record(StockMovementType.RECEIPT, medication.getId(), saved.getId(), totalUnits,
+                saved.getBatchCode());
+        pricingCatalog.updateBatchPrice(saved.getId(), saved.getUnitPrice());
         return saved;
     }
 
@@ -110,21 +121,37 @@ public class MedicationBatchService {
             totalUnits = effectivePackageCount * effectiveUnitsPerPackage;
         }
         if (totalUnits != null) {
-            int delta = totalUnits - batch.getQuantityOnHand();
+            int current = batch.getQuantityOnHand();
+            if (batchRepository.replaceStock(batchId, current, totalUnits) == 0) {
+                throw new ObjectOptimisticLockingFailureException(MedicationBatch.class, batchId);
+            }
             batch.setQuantityOnHand(totalUnits);
-            adjustMedicationStock(batch.getMedication(), delta);
+            adjustMedicationStock(batch.getMedication(), totalUnits - current);
+            stockLedgerService.record(StockMovementType.ADJUST, batch.getMedication().getId(), batchId,
+                    totalUnits - current, batch.getBatchCode());
         }
 
-        return batchRepository.save(batch);
+        MedicationBatch saved = batchRepository.save(batch);
+        if (request.getUnitPrice() != null) {
+            pricingCatalog.updateBatchPrice(saved.getId(), saved.getUnitPrice());
+        }
+        return saved;
     }
 
     @Transactional
     public void delete(Long batchId) {
         MedicationBatch batch = getById(batchId);
         if (batch.getQuantityOnHand() != null && batch.getQuantityOnHand() > 0) {
+            // Lô vừa được cấp thuốc sau khi đọc thì không xóa với số lượng cũ
+            if (batchRepository.replaceStock(batchId, batch.getQuantityOnHand(), 0) == 0) {
+                throw new ObjectOptimisticLockingFailureException(MedicationBatch.class, batchId);
+            }
             adjustMedicationStock(batch.getMedication(), -batch.getQuantityOnHand());
+            stockLedgerService.record(StockMovementType.ADJUST, batch.getMedication().getId(), batchId,
+                    -batch.getQuantityOnHand(), batch.getBatchCode());
         }
         batchRepository.delete(batch);
+        pricingCatalog.removeBatch(batchId);
     }
 
     private void increaseMedicationStock(Medication medication, int amount) {
@@ -135,13 +162,13 @@ public class MedicationBatchService {
         if (delta == 0) {
             return;
         }
-        int current = medication.getStockQuantity() != null ? medication.getStockQuantity() : 0;
-        int updated = current + delta;
-        if (updated < 0) {
+        int updated = delta > 0
+                ? medicationRepository.incrementStock(medication.getId(), delta)
+                : medicationRepository.decrementStock(medication.getId(), -delta);
+        if (updated == 0) {
             throw new IllegalStateException("Tồn kho thuốc không đủ.");
         }
-        medication.setStockQuantity(updated);
-        medicationRepository.save(medication);
+        medication.setStockQuantity(medicationRepository.findStockQuantity(medication.getId()));
     }
 
     private Medication loadMedication(Long id) {
@@ -0,0 +1,227 @@
+package vn.project.ClinicSystem.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.dto.MedicationForecastDTO;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.repository.MedicationRepository.StockLevelView;
+import vn.project.ClinicSystem.repository.PrescriptionItemRepository;
+import vn.project.ClinicSystem.repository.PrescriptionItemRepository.DailyQuantityView;
+
+/**
+ * Dự báo lượng dùng thuốc bằng làm trơn hàm mũ đơn trên số lượng kê mỗi ngày.
+ * Lần chạy đầu gộp lịch sử trong khoảng lookback; sau đó mỗi ngày chỉ gộp thêm các ngày mới
+ * và cập nhật trạng thái làm trơn đang giữ trong bộ nhớ, các thuốc được tính song song theo nhóm.
+ * Ngày kê đơn có thể bị ghi lùi hoặc sửa, nên {@code restateDays} ngày gần nhất luôn được gộp lại:
+ * trạng thái lưu trong bộ nhớ chỉ đi tới trước khoảng đó, dự báo tính trên một bản sao.
+ */
+@Service
+@Slf4j
+public class MedicationForecastService {
+    private static final int PARTITION_SIZE = 500;
+
+    private final PrescriptionItemRepository prescriptionItemRepository;
+    private final MedicationRepository medicationRepository;
+    private final Executor batchExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final double alpha;
+    private final int lookbackDays;
+    private final int leadTimeDays;
+    private final int coverageDays;
+    private final double safetyFactor;
+    private final int restateDays;
+
+    private final Map<Long, SmoothingState> states = new ConcurrentHashMap<>();
+    // Ngày cuối cùng đã gộp vào trạng thái lưu, không bao giờ còn được gộp lại
+    private LocalDate settledThrough;
+    private volatile List<MedicationForecastDTO> forecasts = List.of();
+
+    public MedicationForecastService(PrescriptionItemRepository prescriptionItemRepository,
+            MedicationRepository medicationRepository,
+            @Qualifier("batchExecutor") Executor batchExecutor,
+            PlatformTransactionManager transactionManager,
+            @Value("${clinicsystem.forecast.alpha:0.3}") double alpha,
+            @Value("${clinicsystem.forecast.lookback-days:90}") int lookbackDays,
+            @Value("${clinicsystem.forecast.lead-time-days:7}") int leadTimeDays,
+            @Value("${clinicsystem.forecast.coverage-days:30}") int coverageDays,
+            @Value("${clinicsystem.forecast.safety-factor:1.65}") double safetyFactor,
+            @Value("${clinicsystem.forecast.restate-days:14}") int restateDays) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("Hệ số làm trơn phải nằm trong (0, 1]");
+        }
+        this.prescriptionItemRepository = prescriptionItemRepository;
+        this.medicationRepository = medicationRepository;
+        this.batchExecutor = batchExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.alpha = alpha;
+        this.lookbackDays = Math.max(1, lookbackDays);
+        this.leadTimeDays = Math.max(0, leadTimeDays);
+        this.coverageDays = Math.max(0, coverageDays);
+        this.safetyFactor = Math.max(0, safetyFactor);
+        this.restateDays = Math.max(0, restateDays);
+    }
+
+    /**
+     * Dự báo của mọi thuốc đã từng được kê, thuốc sắp hết trước lên đầu.
+     */
+    public List<MedicationForecastDTO> getForecasts() {
+        return forecasts;
+    }
+
+    public MedicationForecastDTO getForecast(Long medicationId) {
+        return forecasts.stream()
+                .filter(forecast -> forecast.getMedicationId().equals(medicationId))
+                .findFirst()
+                .orElseThrow(() -> new EntityNotFoundException("Chưa có dự báo cho thuốc với id: " + medicationId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${clinicsystem.forecast.cron:0 15 1 * * *}")
+    public synchronized void refresh() {
+        try {
+            long startedAt = System.nanoTime();
+            // Chỉ gộp các ngày đã trọn vẹn để số liệu một ngày không bị tính hai lần
+            LocalDate through = LocalDate.now().minusDays(1);
+            LocalDate from = settledThrough != null
+                    ? settledThrough.plusDays(1)
+                    : through.minusDays(lookbackDays - 1L);
+            LocalDate settleThrough = through.minusDays(restateDays);
+            if (settleThrough.isBefore(from)) {
+                settleThrough = from.minusDays(1);
+            }
+            LocalDate settle = settleThrough;
+
+            Map<Long, Map<LocalDate, Long>> daily = new HashMap<>();
+            List<StockLevelView> levels = readOnlyTransaction.execute(status -> {
+                if (!from.isAfter(through)) {
+                    for (DailyQuantityView row : prescriptionItemRepository.sumDailyQuantities(from.atStartOfDay(),
+                            through.plusDays(1).atStartOfDay())) {
+                        daily.computeIfAbsent(row.getMedicationId(), id -> new HashMap<>())
+                                .put(row.getDay(), row.getQuantity());
+                    }
+                }
+                return medicationRepository.findAllStockLevels();
+            });
+
+            List<CompletableFuture<List<MedicationForecastDTO>>> futures = new ArrayList<>();
+            for (int start = 0; start < levels.size(); start += PARTITION_SIZE) {
+                List<StockLevelView> partition = levels.subList(start, Math.min(levels.size(), start + PARTITION_SIZE));
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> forecastPartition(partition, daily, from, settle, through), batchExecutor));
+            }
+            List<MedicationForecastDTO> result = new ArrayList<>(levels.size());
+            for (CompletableFuture<List<MedicationForecastDTO>> future : futures) {
+                result.addAll(future.join());
+            }
+            result.sort(Comparator.comparing(MedicationForecastDTO::getDaysOfStockRemaining,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+
+            forecasts = List.copyOf(result);
+            settledThrough = settle;
+            log.info("Đã cập nhật dự báo cho {} thuốc (gộp từ {} đến {}) trong {} ms", result.size(), from, through,
+                    (System.nanoTime() - startedAt) / 1_000_000);
+        } catch (RuntimeException ex) {
+            // Trạng thái có thể đã cập nhật dở dang: lần chạy sau gộp lại từ đầu
+            states.clear();
+            settledThrough = null;
+            log.warn("Không thể cập nhật dự báo lượng dùng thuốc", ex);
+        }
+    }
+
+    private List<MedicationForecastDTO> forecastPartition(List<StockLevelView> partition,
+            Map<Long, Map<LocalDate, Long>> daily, LocalDate from, LocalDate settle, LocalDate through) {
+        List<MedicationForecastDTO> result = new ArrayList<>(partition.size());
+        for (StockLevelView level : partition) {
+            Map<LocalDate, Long> quantities = daily.getOrDefault(level.getId(), Map.of());
+            SmoothingState state = states.get(level.getId());
+            if (state == null) {
+                if (quantities.isEmpty()) {
+                    continue;
+                }
+                state = SmoothingState.start(quantities, from, through);
+                states.put(level.getId(), state);
+            }
+            LocalDate day = from;
+            for (; !day.isAfter(settle); day = day.plusDays(1)) {
+                state.observe(quantities.getOrDefault(day, 0L), alpha);
+            }
+            SmoothingState current = state.copy();
+            for (; !day.isAfter(through); day = day.plusDays(1)) {
+                current.observe(quantities.getOrDefault(day, 0L), alpha);
+            }
+            result.add(toForecast(level, current, through));
+        }
+        return result;
+    }
+
+    private MedicationForecastDTO toForecast(StockLevelView level, SmoothingState state, LocalDate through) {
+        int stock = level.getStockQuantity() != null ? level.getStockQuantity() : 0;
+        double rate = state.level;
+        // Tồn an toàn theo độ lệch của sai số dự báo trong thời gian chờ hàng
+        double safetyStock = safetyFactor * Math.sqrt(state.variance * leadTimeDays);
+        int reorderPoint = (int) Math.ceil(rate * leadTimeDays + safetyStock);
+        int target = (int) Math.ceil(rate * (leadTimeDays + coverageDays) + safetyStock);
+
+        MedicationForecastDTO forecast = new MedicationForecastDTO();
+        forecast.setMedicationId(level.getId());
+        forecast.setName(level.getName());
+        forecast.setStockQuantity(stock);
+        forecast.setDailyRate(rate);
+        forecast.setDaysOfStockRemaining(rate > 0 ? stock / rate : null);
+        forecast.setReorderPoint(reorderPoint);
+        forecast.setSuggestedReorderQuantity(stock <= reorderPoint ? Math.max(0, target - stock) : 0);
+        forecast.setDataThrough(through);
+        return forecast;
+    }
+
+    /**
+     * Trạng thái làm trơn của một thuốc: mức dùng mỗi ngày và phương sai sai số (cùng làm trơn hàm mũ).
+     * Mỗi thuốc chỉ do một luồng cập nhật trong một lần chạy.
+     */
+    private static final class SmoothingState {
+        double level;
+        double variance;
+
+        // Khởi tạo bằng trung bình mỗi ngày của khoảng đầu tiên có dữ liệu
+        static SmoothingState start(Map<LocalDate, Long> quantities, LocalDate from, LocalDate through) {
+            long days = Math.max(1, through.toEpochDay() - from.toEpochDay() + 1);
+            long total = quantities.values().stream().mapToLong(Long::longValue).sum();
+            SmoothingState state = new SmoothingState();
+            state.level = (double) total / days;
+            return state;
+        }
+
+        SmoothingState copy() {
+            SmoothingState copy = new SmoothingState();
+            copy.level = level;
+            copy.variance = variance;
+            return copy;
+        }
+
+        void observe(long quantity, double alpha) {
+            double error = quantity - level;
+            level += alpha * error;
+            variance = (1 - alpha) * (variance + alpha * error * error);
+        }
+    }
+}
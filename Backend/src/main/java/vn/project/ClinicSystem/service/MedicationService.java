@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -15,17 +16,29 @@ import jakarta.validation.Validator;
 import vn.project.ClinicSystem.model.Medication;
 import vn.project.ClinicSystem.model.dto.MedicationCreateRequest;
 import vn.project.ClinicSystem.model.dto.MedicationUpdateRequest;
+import vn.project.ClinicSystem.model.enums.StockMovementType;
 import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.util.TransactionHooks;
 
 @Service
 @Transactional(readOnly = true)
 public class MedicationService {
 
+    private static final int MAX_STOCK_ATTEMPTS = 3;
+
     private final MedicationRepository medicationRepository;
+    private final StockLedgerService stockLedgerService;
+    private final DrugInteractionEngine drugInteractionEngine;
+    private final MedicationAutocompleteService autocompleteService;
     private final Validator validator;
 
-    public MedicationService(MedicationRepository medicationRepository, Validator validator) {
+    public MedicationService(MedicationRepository medicationRepository, StockLedgerService stockLedgerService,
+            DrugInteractionEngine drugInteractionEngine, MedicationAutocompleteService autocompleteService,
+            Validator validator) {
         this.medicationRepository = medicationRepository;
+        this.stockLedgerService = stockLedgerService;
+        this.drugInteractionEngine = drugInteractionEngine;
+        this.autocompleteService = autocompleteService;
         this.validator = validator;
     }
 
@@ -50,15 +63,24 @@ public class MedicationService {
         medication.setForm(normalizeText(request.getForm()));
         medication.setUnit(normalizeText(request.getUnit()));
         medication.setStockQuantity(request.getStockQuantity() != null ? request.getStockQuantity() : 0);
+        medication.setReorderLevel(request.getReorderLevel());
 
         ensureNameUnique(medication.getName(), null);
         validateBean(medication);
-        return medicationRepository.save(medication);
+        Medication saved = medicationRepository.save(medication);
+        stockLedgerService.record(StockMovementType.RECEIPT, saved.getId(), null, saved.getStockQuantity(), null);
+        String name = saved.getName();
+        String activeIngredient = saved.getActiveIngredient();
+        // Bảng hoạt chất dùng chung cho mọi request nên chỉ đổi khi thay đổi danh mục đã commit
+        TransactionHooks.afterCommit(() -> drugInteractionEngine.registerMedication(name, activeIngredient));
+        autocompleteService.upsert(saved);
+        return saved;
     }
 
     @Transactional
     public Medication update(Long id, MedicationUpdateRequest request) {
         Medication medication = getById(id);
+        String previousName = medication.getName();
 
         if (request.getName() != null) {
             String normalized = normalizeName(request.getName());
@@ -76,15 +98,29 @@ public class MedicationService {
         if (request.getUnit() != null) {
             medication.setUnit(normalizeText(request.getUnit()));
         }
+        if (request.getReorderLevel() != null) {
+            medication.setReorderLevel(request.getReorderLevel());
+        }
         if (request.getStockQuantity() != null) {
             if (request.getStockQuantity() < 0) {
                 throw new IllegalArgumentException("Tồn kho phải >= 0");
             }
+            int previous = replaceStock(medication.getId(), request.getStockQuantity());
+            stockLedgerService.record(StockMovementType.ADJUST, medication.getId(), null,
+                    request.getStockQuantity() - previous, null);
             medication.setStockQuantity(request.getStockQuantity());
         }
 
         validateBean(medication);
-        return medicationRepository.save(medication);
+        Medication saved = medicationRepository.save(medication);
+        String name = saved.getName();
+        String activeIngredient = saved.getActiveIngredient();
+        TransactionHooks.afterCommit(() -> {
+            drugInteractionEngine.unregisterMedication(previousName);
+            drugInteractionEngine.registerMedication(name, activeIngredient);
+        });
+        autocompleteService.upsert(saved);
+        return saved;
     }
 
     @Transactional
@@ -97,6 +133,25 @@ public class MedicationService {
             throw new IllegalStateException("Không thể xóa thuốc khi vẫn còn lô trong kho.");
         }
         medicationRepository.delete(medication);
+        String name = medication.getName();
+        TransactionHooks.afterCommit(() -> drugInteractionEngine.unregisterMedication(name));
+        autocompleteService.remove(medication.getId());
+    }
+
+    /**
+     * Đặt tồn kho bằng compare-and-set để chênh lệch ghi sổ khớp đúng giá trị bị thay, kể cả khi
+     * có đơn thuốc trừ kho xen giữa lúc đọc và lúc ghi. Trả về tồn kho trước khi đặt.
+     */
+    private int replaceStock(Long medicationId, int quantity) {
+        Integer current = medicationRepository.findStockQuantity(medicationId);
+        for (int attempt = 1; attempt <= MAX_STOCK_ATTEMPTS; attempt++) {
+            int expected = current != null ? current : 0;
+            if (medicationRepository.replaceStock(medicationId, expected, quantity) > 0) {
+                return expected;
+            }
+            current = medicationRepository.findStockQuantityForUpdate(medicationId);
+        }
+        throw new ObjectOptimisticLockingFailureException(Medication.class, medicationId);
     }
 
     private void ensureNameUnique(String name, Long currentMedicationId) {
@@ -0,0 +1,143 @@
+package vn.project.ClinicSystem.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import vn.project.ClinicSystem.model.CodeSequence;
+import vn.project.ClinicSystem.repository.CodeSequenceRepository;
+import vn.project.ClinicSystem.repository.PatientRepository;
+
+/**
+ * Cấp phát mã bệnh nhân dạng BN + 10 chữ số theo khối. Mã cũ sinh ngẫu nhiên có dạng BN + 8 ký tự hex
+ * nên độ dài khác hẳn, dải mã của bộ đếm không bao giờ đụng mã cũ; mã nhập tay cũng không được dùng dạng này.
+ * Mỗi lần hết khối chỉ cần một lượt khóa dòng bộ đếm trong database, các mã trong khối
+ * được phát từ bộ nhớ nên không cần kiểm tra trùng mã. Các mã còn dư khi tắt ứng dụng sẽ bị bỏ qua.
+ */
+@Service
+public class PatientCodeAllocator {
+    static final String SEQUENCE_NAME = "PATIENT_CODE";
+    private static final String PREFIX = "BN";
+    private static final int DIGITS = 10;
+    private static final long MAX_VALUE = 9_999_999_999L;
+    private static final Pattern ALLOCATED_CODE = Pattern.compile(PREFIX + "[0-9]{" + DIGITS + "}");
+    private static final int MAX_INIT_ATTEMPTS = 3;
+
+    private final CodeSequenceRepository codeSequenceRepository;
+    private final PatientRepository patientRepository;
+    private final TransactionTemplate requiresNewTransaction;
+    private final int blockSize;
+    private final AtomicReference<Block> currentBlock = new AtomicReference<>(Block.EMPTY);
+
+    public PatientCodeAllocator(CodeSequenceRepository codeSequenceRepository,
+            PatientRepository patientRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${clinicsystem.patient-code.block-size:50}") int blockSize) {
+        this.codeSequenceRepository = codeSequenceRepository;
+        this.patientRepository = patientRepository;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    public String nextCode() {
+        while (true) {
+            Block block = currentBlock.get();
+            long value = block.next.getAndIncrement();
+            if (value < block.end) {
+                return format(value);
+            }
+            refill(block);
+        }
+    }
+
+    /**
+     * Cấp một dải mã liên tục cho thao tác tạo hàng loạt, không dùng chung khối với {@link #nextCode()}.
+     */
+    public List<String> nextCodes(int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        long start = reserve(count);
+        List<String> codes = new ArrayList<>(count);
+        for (long value = start; value < start + count; value++) {
+            codes.add(format(value));
+        }
+        return codes;
+    }
+
+    /**
+     * Mã thuộc dải do bộ đếm cấp; mã nhập tay dạng này có thể trùng mã sẽ cấp sau nên phải bị từ chối.
+     */
+    public static boolean isAllocatorCode(String code) {
+        return code != null && ALLOCATED_CODE.matcher(code).matches();
+    }
+
+    private synchronized void refill(Block exhausted) {
+        if (currentBlock.get() != exhausted) {
+            return;
+        }
+        long start = reserve(blockSize);
+        currentBlock.set(new Block(start, start + blockSize));
+    }
+
+    private long reserve(int size) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                Long start = requiresNewTransaction.execute(status -> reserveInTransaction(size));
+                return start;
+            } catch (DataIntegrityViolationException ex) {
+                // Hai tiến trình cùng khởi tạo dòng bộ đếm lần đầu: đọc lại dòng vừa được tạo
+                if (attempt >= MAX_INIT_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private Long reserveInTransaction(int size) {
+        CodeSequence sequence = codeSequenceRepository.findForUpdate(SEQUENCE_NAME)
+                .orElseGet(this::initSequence);
+        long start = sequence.getNextValue();
+        if (start + size - 1 > MAX_VALUE) {
+            throw new IllegalStateException("Đã hết dải mã bệnh nhân khả dụng");
+        }
+        sequence.setNextValue(start + size);
+        codeSequenceRepository.saveAndFlush(sequence);
+        return start;
+    }
+
+    private CodeSequence initSequence() {
+        // Dòng bộ đếm bị mất thì tiếp tục sau mã lớn nhất mà chính bộ đếm đã cấp
+        Long maxExisting = patientRepository.findMaxAllocatedCode();
+        CodeSequence sequence = new CodeSequence();
+        sequence.setName(SEQUENCE_NAME);
+        sequence.setNextValue((maxExisting != null ? maxExisting : 0L) + 1);
+        return codeSequenceRepository.saveAndFlush(sequence);
+    }
+
+    private String format(long value) {
+        return PREFIX + String.format("%0" + DIGITS + "d", value);
+    }
+
+    private static final class Block {
+        static final Block EMPTY = new Block(0, 0);
+
+        final AtomicLong next;
+        final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
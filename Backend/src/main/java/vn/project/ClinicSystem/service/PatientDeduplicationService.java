@@ -0,0 +1,293 @@
+package vn.project.ClinicSystem.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.dto.PatientDedupReport;
+import vn.project.ClinicSystem.model.dto.PatientDedupReport.Candidate;
+import vn.project.ClinicSystem.model.dto.PatientMergeResultDTO;
+import vn.project.ClinicSystem.repository.AppointmentRepository;
+import vn.project.ClinicSystem.repository.AppointmentRequestRepository;
+import vn.project.ClinicSystem.repository.BillingRepository;
+import vn.project.ClinicSystem.repository.PatientRepository;
+import vn.project.ClinicSystem.repository.PatientRepository.DedupView;
+import vn.project.ClinicSystem.repository.PatientVisitRepository;
+import vn.project.ClinicSystem.util.PhoneNumbers;
+import vn.project.ClinicSystem.util.StringSimilarity;
+import vn.project.ClinicSystem.util.TextNormalizer;
+
+/**
+ * Dò và gộp hồ sơ bệnh nhân trùng.
+ * Bệnh nhân được chia khối theo số điện thoại, ngày sinh và soundex của họ + tên (đã bỏ dấu);
+ * chỉ so từng cặp trong cùng khối, các khối được chấm điểm song song.
+ */
+@Service
+@Transactional(readOnly = true)
+@Slf4j
+public class PatientDeduplicationService {
+    private static final int SLICE_SIZE = 10_000;
+    private static final int MAX_RESULT_LIMIT = 5_000;
+    private static final double NAME_WEIGHT = 0.5;
+    private static final double DOB_WEIGHT = 0.2;
+    private static final double PHONE_WEIGHT = 0.2;
+    private static final double EMAIL_WEIGHT = 0.1;
+    private static final double MIN_NAME_SIMILARITY = 0.85;
+
+    private final PatientRepository patientRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final PatientVisitRepository patientVisitRepository;
+    private final BillingRepository billingRepository;
+    private final AppointmentRequestRepository appointmentRequestRepository;
+    private final LabSeriesService labSeriesService;
+    private final int maxBlockSize;
+
+    public PatientDeduplicationService(PatientRepository patientRepository,
+            AppointmentRepository appointmentRepository,
+            PatientVisitRepository patientVisitRepository,
+            BillingRepository billingRepository,
+            AppointmentRequestRepository appointmentRequestRepository,
+            LabSeriesService labSeriesService,
+            @Value("${clinicsystem.dedup.max-block-size:2000}") int maxBlockSize) {
+        this.patientRepository = patientRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.patientVisitRepository = patientVisitRepository;
+        this.billingRepository = billingRepository;
+        this.appointmentRequestRepository = appointmentRequestRepository;
+        this.labSeriesService = labSeriesService;
+        this.maxBlockSize = Math.max(2, maxBlockSize);
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PatientDedupReport findDuplicates(double minScore, int limit) {
+        if (minScore <= 0 || minScore > 1) {
+            throw new IllegalArgumentException("Ngưỡng điểm phải nằm trong khoảng (0, 1]");
+        }
+        long startedAt = System.nanoTime();
+        List<DedupEntry> records = loadRecords();
+
+        Map<String, List<Integer>> blocks = new HashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            for (String key : records.get(i).blockingKeys()) {
+                blocks.computeIfAbsent(key, k -> new ArrayList<>(2)).add(i);
+            }
+        }
+
+        AtomicLong comparisons = new AtomicLong();
+        AtomicLong oversized = new AtomicLong();
+        Map<Long, Candidate> found = new ConcurrentHashMap<>();
+        blocks.values().parallelStream()
+                .filter(members -> members.size() > 1)
+                .forEach(members -> {
+                    if (members.size() > maxBlockSize) {
+                        // Khối quá lớn (vd. họ tên quá phổ biến) được bỏ qua, các khóa khác vẫn bắt được cặp trùng
+                        oversized.incrementAndGet();
+                        return;
+                    }
+                    int size = members.size();
+                    comparisons.addAndGet((long) size * (size - 1) / 2);
+                    for (int x = 0; x < size; x++) {
+                        DedupEntry a = records.get(members.get(x));
+                        for (int y = x + 1; y < size; y++) {
+                            DedupEntry b = records.get(members.get(y));
+                            long pairKey = pairKey(members.get(x), members.get(y), records.size());
+                            if (found.containsKey(pairKey)) {
+                                continue;
+                            }
+                            Candidate candidate = score(a, b, minScore);
+                            if (candidate != null) {
+                                found.putIfAbsent(pairKey, candidate);
+                            }
+                        }
+                    }
+                });
+
+        List<Candidate> sorted = found.values().stream()
+                .sorted(Comparator.comparingDouble(Candidate::getScore).reversed()
+                        .thenComparing(Candidate::getPrimaryId))
+                .limit(Math.max(1, Math.min(limit, MAX_RESULT_LIMIT)))
+                .toList();
+
+        PatientDedupReport report = new PatientDedupReport();
+        report.setScannedPatients(records.size());
+        report.setBlocks(blocks.size());
+        report.setSkippedOversizedBlocks(oversized.get());
+        report.setComparisons(comparisons.get());
+        report.setTotalCandidates(found.size());
+        report.setCandidates(new ArrayList<>(sorted));
+        report.setDurationMs((System.nanoTime() - startedAt) / 1_000_000);
+        log.info("Dò trùng bệnh nhân: {} hồ sơ, {} khối, {} phép so, {} cặp nghi trùng, {} ms",
+                records.size(), blocks.size(), comparisons.get(), found.size(), report.getDurationMs());
+        return report;
+    }
+
+    /**
+     * Gộp hồ sơ duplicateId vào targetId: chuyển lịch hẹn, hồ sơ khám, hóa đơn, yêu cầu đặt lịch
+     * sang hồ sơ giữ lại, bổ sung các thông tin còn thiếu rồi xóa hồ sơ trùng.
+     */
+    @Transactional
+    public PatientMergeResultDTO merge(Long targetId, Long duplicateId) {
+        if (targetId == null || duplicateId == null) {
+            throw new IllegalArgumentException("Phải chỉ định hồ sơ giữ lại và hồ sơ trùng");
+        }
+        if (targetId.equals(duplicateId)) {
+            throw new IllegalArgumentException("Không thể gộp một hồ sơ với chính nó");
+        }
+        Patient target = patientRepository.findById(targetId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy bệnh nhân với id: " + targetId));
+        Patient duplicate = patientRepository.findById(duplicateId)
+                .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy bệnh nhân với id: " + duplicateId));
+
+        int appointments = appointmentRepository.reassignPatient(duplicate, target);
+        int visits = patientVisitRepository.reassignPatient(duplicate, target);
+        int billings = billingRepository.reassignPatient(duplicate, target);
+        int requests = appointmentRequestRepository.reassignPatient(duplicate, target);
+
+        if (target.getDateOfBirth() == null) {
+            target.setDateOfBirth(duplicate.getDateOfBirth());
+        }
+        if (target.getPhone() == null) {
+            target.setPhone(duplicate.getPhone());
+        }
+        if (target.getEmail() == null) {
+            target.setEmail(duplicate.getEmail());
+        }
+        if (target.getAddress() == null) {
+            target.setAddress(duplicate.getAddress());
+        }
+        if (target.getGender() == null) {
+            target.setGender(duplicate.getGender());
+        }
+        String mergeNote = "Gộp từ hồ sơ " + duplicate.getCode();
+        String note = target.getNote() == null ? mergeNote : target.getNote() + "; " + mergeNote;
+        target.setNote(note.length() > 255 ? note.substring(0, 255) : note);
+
+        String mergedCode = duplicate.getCode();
+        patientRepository.delete(duplicate);
+        patientRepository.save(target);
+        // Lượt khám của hồ sơ trùng đã chuyển sang hồ sơ giữ lại: dựng lại chuỗi xét nghiệm của cả hai
+        labSeriesService.evict(targetId);
+        labSeriesService.evict(duplicateId);
+        log.info("Đã gộp bệnh nhân {} vào {}: {} lịch hẹn, {} lượt khám, {} hóa đơn, {} yêu cầu",
+                duplicateId, targetId, appointments, visits, billings, requests);
+        return new PatientMergeResultDTO(targetId, duplicateId, mergedCode, appointments, visits, billings, requests);
+    }
+
+    private List<DedupEntry> loadRecords() {
+        List<DedupEntry> records = new ArrayList<>();
+        long afterId = 0L;
+        while (true) {
+            List<DedupView> slice = patientRepository.findDedupSlice(afterId, PageRequest.of(0, SLICE_SIZE));
+            if (slice.isEmpty()) {
+                break;
+            }
+            slice.parallelStream().map(DedupEntry::new).forEachOrdered(records::add);
+            afterId = slice.get(slice.size() - 1).getId();
+            if (slice.size() < SLICE_SIZE) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    private Candidate score(DedupEntry a, DedupEntry b, double minScore) {
+        double nameSimilarity = Math.max(
+                StringSimilarity.jaroWinkler(a.name, b.name),
+                StringSimilarity.jaroWinkler(a.sortedName, b.sortedName));
+        if (nameSimilarity < MIN_NAME_SIMILARITY) {
+            return null;
+        }
+        List<String> matchedOn = new ArrayList<>(4);
+        matchedOn.add("name");
+        double score = NAME_WEIGHT * nameSimilarity;
+        if (a.dateOfBirth != null && b.dateOfBirth != null) {
+            if (!a.dateOfBirth.equals(b.dateOfBirth)) {
+                // Cùng tên nhưng khác ngày sinh gần như chắc chắn là hai người khác nhau
+                return null;
+            }
+            score += DOB_WEIGHT;
+            matchedOn.add("dateOfBirth");
+        }
+        if (a.phone != null && a.phone.equals(b.phone)) {
+            score += PHONE_WEIGHT;
+            matchedOn.add("phone");
+        }
+        if (a.email != null && a.email.equals(b.email)) {
+            score += EMAIL_WEIGHT;
+            matchedOn.add("email");
+        }
+        if (matchedOn.size() == 1 || score < minScore) {
+            return null;
+        }
+        DedupEntry primary = a.id < b.id ? a : b;
+        DedupEntry duplicate = primary == a ? b : a;
+        double rounded = Math.round(score * 1000d) / 1000d;
+        return new Candidate(primary.id, primary.fullName, duplicate.id, duplicate.fullName,
+                primary.dateOfBirth != null ? primary.dateOfBirth : duplicate.dateOfBirth, rounded, matchedOn);
+    }
+
+    private static long pairKey(int first, int second, int size) {
+        int low = Math.min(first, second);
+        int high = Math.max(first, second);
+        return (long) low * size + high;
+    }
+
+    private static final class DedupEntry {
+        final long id;
+        final String fullName;
+        final String name;
+        final String sortedName;
+        final LocalDate dateOfBirth;
+        final String phone;
+        final String email;
+        final String nameKey;
+
+        DedupEntry(DedupView view) {
+            this.id = view.getId();
+            this.fullName = view.getFullName();
+            this.name = TextNormalizer.fold(view.getFullName());
+            String[] tokens = name.isEmpty() ? new String[0] : name.split(" ");
+            String[] sorted = tokens.clone();
+            Arrays.sort(sorted);
+            this.sortedName = String.join(" ", sorted);
+            this.dateOfBirth = view.getDateOfBirth();
+            // Cùng quy tắc với lúc lưu nên 84xxxxxxxxx và 0xxxxxxxxx rơi vào cùng một khối
+            this.phone = PhoneNumbers.normalize(view.getPhone());
+            String mail = view.getEmail() == null ? "" : view.getEmail().trim().toLowerCase(Locale.ROOT);
+            this.email = mail.isEmpty() ? null : mail;
+            // Họ (token đầu) + tên (token cuối) theo thứ tự tiếng Việt
+            this.nameKey = tokens.length == 0 ? null
+                    : TextNormalizer.soundex(tokens[0]) + TextNormalizer.soundex(tokens[tokens.length - 1]);
+        }
+
+        List<String> blockingKeys() {
+            List<String> keys = new ArrayList<>(3);
+            if (phone != null) {
+                keys.add("P" + phone);
+            }
+            if (dateOfBirth != null) {
+                keys.add("D" + dateOfBirth);
+            }
+            if (nameKey != null && !nameKey.isEmpty()) {
+                keys.add("N" + nameKey);
+            }
+            return keys;
+        }
+    }
+}
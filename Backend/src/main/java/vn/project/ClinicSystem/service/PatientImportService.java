@@ -0,0 +1,342 @@
+package vn.project.ClinicSystem.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.dto.PatientImportReport;
+import vn.project.ClinicSystem.model.dto.PatientImportReport.RowError;
+import vn.project.ClinicSystem.repository.PatientRepository;
+import vn.project.ClinicSystem.util.CsvReader;
+import vn.project.ClinicSystem.util.PhoneNumbers;
+
+/**
+ * Nhập bệnh nhân số lượng lớn từ CSV hoặc NDJSON.
+ * Dữ liệu được đọc từng dòng, gom thành từng khối và ghi bằng JDBC batch, mỗi khối một transaction,
+ * nên bộ nhớ chỉ giữ một khối tại một thời điểm và lỗi ở một dòng không làm hỏng cả lần nhập.
+ */
+@Service
+@Slf4j
+public class PatientImportService {
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    private static final String INSERT_SQL = """
+            INSERT INTO patients (id, code, full_name, gender, date_of_birth, phone, email, address, note, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final List<String> COLUMNS = List.of(
+            "code", "fullName", "gender", "dateOfBirth", "phone", "email", "address", "note");
+    private static final DateTimeFormatter DMY = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final PatientRepository patientRepository;
+    private final PatientCodeAllocator patientCodeAllocator;
+    private final IdBlockAllocator idBlockAllocator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public PatientImportService(PatientRepository patientRepository,
+            PatientCodeAllocator patientCodeAllocator,
+            IdBlockAllocator idBlockAllocator,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            @Value("${clinicsystem.import.chunk-size:1000}") int chunkSize) {
+        this.patientRepository = patientRepository;
+        this.patientCodeAllocator = patientCodeAllocator;
+        this.idBlockAllocator = idBlockAllocator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public PatientImportReport importPatients(InputStream input, String format) throws IOException {
+        String normalizedFormat = format == null ? FORMAT_CSV : format.trim().toLowerCase(Locale.ROOT);
+        if (!FORMAT_CSV.equals(normalizedFormat) && !FORMAT_NDJSON.equals(normalizedFormat)) {
+            throw new IllegalArgumentException("Định dạng nhập không được hỗ trợ: " + format);
+        }
+        boolean csv = FORMAT_CSV.equals(normalizedFormat);
+
+        long startedAt = System.nanoTime();
+        PatientImportReport report = new PatientImportReport();
+        // Mã đã gặp trong lần nhập này, để phát hiện trùng giữa các khối
+        Set<String> seenCodes = new HashSet<>();
+        List<ImportRow> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = null;
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && header == null) {
+                    header = parseHeader(line);
+                    continue;
+                }
+                report.setTotalRows(report.getTotalRows() + 1);
+                ImportRow row;
+                try {
+                    row = csv ? fromCsv(line, header) : fromJson(line);
+                    row.line = lineNumber;
+                    validate(row);
+                } catch (IllegalArgumentException ex) {
+                    addError(report, lineNumber, null, ex.getMessage());
+                    continue;
+                }
+                if (row.code != null && !seenCodes.add(row.code)) {
+                    addError(report, lineNumber, row.code, "Mã bệnh nhân bị trùng trong tệp nhập");
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, report);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, report);
+        }
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        report.setDurationMs(elapsedMs);
+        report.setRowsPerSecond(report.getImportedRows() * 1000 / elapsedMs);
+        log.info("Nhập bệnh nhân: {} dòng, thành công {}, lỗi {}, {} ms ({} dòng/giây)",
+                report.getTotalRows(), report.getImportedRows(), report.getFailedRows(),
+                elapsedMs, report.getRowsPerSecond());
+        return report;
+    }
+
+    private void writeChunk(List<ImportRow> chunk, PatientImportReport report) {
+        // Một truy vấn IN cho cả khối thay vì kiểm tra trùng mã từng dòng
+        List<String> suppliedCodes = chunk.stream()
+                .filter(row -> row.code != null)
+                .map(row -> row.code)
+                .toList();
+        Set<String> existing = suppliedCodes.isEmpty()
+                ? Set.of()
+                : new HashSet<>(patientRepository.findExistingCodes(suppliedCodes));
+
+        List<ImportRow> accepted = new ArrayList<>(chunk.size());
+        int missingCodes = 0;
+        for (ImportRow row : chunk) {
+            if (row.code != null && existing.contains(row.code)) {
+                addError(report, row.line, row.code, "Mã bệnh nhân đã tồn tại: " + row.code);
+                continue;
+            }
+            if (row.code == null) {
+                missingCodes++;
+            }
+            accepted.add(row);
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        Iterator<String> codes = patientCodeAllocator.nextCodes(missingCodes).iterator();
+        // Id lấy cùng bộ đếm với Hibernate để không đụng các bản ghi tạo qua JPA
+        long nextId = idBlockAllocator.reserve("patients", accepted.size());
+        for (ImportRow row : accepted) {
+            if (row.code == null) {
+                row.code = codes.next();
+            }
+            row.id = nextId++;
+        }
+
+        Timestamp now = Timestamp.from(Instant.now());
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, accepted,
+                    accepted.size(), (ps, row) -> {
+                        ps.setLong(1, row.id);
+                        ps.setString(2, row.code);
+                        ps.setString(3, row.fullName);
+                        ps.setString(4, row.gender);
+                        if (row.dateOfBirth != null) {
+                            ps.setDate(5, Date.valueOf(row.dateOfBirth));
+                        } else {
+                            ps.setNull(5, Types.DATE);
+                        }
+                        ps.setString(6, row.phone);
+                        ps.setString(7, row.email);
+                        ps.setString(8, row.address);
+                        ps.setString(9, row.note);
+                        ps.setTimestamp(10, now);
+                        ps.setTimestamp(11, now);
+                    }));
+            report.setImportedRows(report.getImportedRows() + accepted.size());
+        } catch (DataAccessException ex) {
+            // Khối bị rollback toàn bộ, các khối khác vẫn được giữ
+            log.warn("Không thể ghi khối {} bệnh nhân bắt đầu từ dòng {}", accepted.size(), accepted.get(0).line, ex);
+            String message = "Không thể ghi khối dữ liệu: " + ex.getMostSpecificCause().getMessage();
+            for (ImportRow row : accepted) {
+                addError(report, row.line, row.code, message);
+            }
+        }
+    }
+
+    private void validate(ImportRow row) {
+        if (row.fullName == null) {
+            throw new IllegalArgumentException("Họ và tên không được để trống");
+        }
+        if (row.fullName.length() > 150) {
+            throw new IllegalArgumentException("Họ và tên không được vượt quá 150 ký tự");
+        }
+        if (row.code != null) {
+            row.code = row.code.toUpperCase(Locale.ROOT);
+            if (row.code.length() > 30) {
+                throw new IllegalArgumentException("Mã bệnh nhân không được vượt quá 30 ký tự");
+            }
+            if (PatientCodeAllocator.isAllocatorCode(row.code)) {
+                throw new IllegalArgumentException("Mã bệnh nhân dạng BN + 10 chữ số do hệ thống tự cấp: " + row.code);
+            }
+        }
+        if (row.phone != null) {
+            String phone = PhoneNumbers.normalize(row.phone);
+            if (phone == null) {
+                throw new IllegalArgumentException("Số điện thoại phải gồm đúng 10 chữ số: " + row.phone);
+            }
+            row.phone = phone;
+        }
+        if (row.dateOfBirth != null && row.dateOfBirth.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("Ngày sinh không hợp lệ");
+        }
+        if (row.email != null && (row.email.length() > 80 || !row.email.contains("@"))) {
+            throw new IllegalArgumentException("Email không hợp lệ: " + row.email);
+        }
+        if (row.gender != null && row.gender.length() > 20) {
+            throw new IllegalArgumentException("Giới tính không được vượt quá 20 ký tự");
+        }
+        if (row.address != null && row.address.length() > 255) {
+            throw new IllegalArgumentException("Địa chỉ không được vượt quá 255 ký tự");
+        }
+        if (row.note != null && row.note.length() > 255) {
+            throw new IllegalArgumentException("Ghi chú không được vượt quá 255 ký tự");
+        }
+    }
+
+    private Map<String, Integer> parseHeader(String line) {
+        Map<String, Integer> header = CsvReader.parseHeader(line, COLUMNS);
+        if (!header.containsKey("fullName")) {
+            throw new IllegalArgumentException("Dòng tiêu đề CSV phải có cột fullName");
+        }
+        return header;
+    }
+
+    private ImportRow fromCsv(String line, Map<String, Integer> header) {
+        List<String> values = CsvReader.splitLine(line);
+        ImportRow row = new ImportRow();
+        row.code = clean(CsvReader.valueAt(values, header, "code"));
+        row.fullName = clean(CsvReader.valueAt(values, header, "fullName"));
+        row.gender = clean(CsvReader.valueAt(values, header, "gender"));
+        row.dateOfBirth = parseDate(clean(CsvReader.valueAt(values, header, "dateOfBirth")));
+        row.phone = clean(CsvReader.valueAt(values, header, "phone"));
+        row.email = clean(CsvReader.valueAt(values, header, "email"));
+        row.address = clean(CsvReader.valueAt(values, header, "address"));
+        row.note = clean(CsvReader.valueAt(values, header, "note"));
+        return row;
+    }
+
+    private ImportRow fromJson(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Dòng JSON không hợp lệ");
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("Mỗi dòng phải là một đối tượng JSON");
+        }
+        ImportRow row = new ImportRow();
+        row.code = clean(text(node, "code"));
+        row.fullName = clean(text(node, "fullName"));
+        row.gender = clean(text(node, "gender"));
+        row.dateOfBirth = parseDate(clean(text(node, "dateOfBirth")));
+        row.phone = clean(text(node, "phone"));
+        row.email = clean(text(node, "email"));
+        row.address = clean(text(node, "address"));
+        row.note = clean(text(node, "note"));
+        return row;
+    }
+
+    private String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+
+    private LocalDate parseDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return value.contains("/") ? LocalDate.parse(value, DMY) : LocalDate.parse(value);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Ngày sinh không đúng định dạng dd/MM/yyyy hoặc yyyy-MM-dd: " + value);
+        }
+    }
+
+    private String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+
+
+    private void addError(PatientImportReport report, long line, String code, String message) {
+        report.setFailedRows(report.getFailedRows() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new RowError(line, code, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private static final class ImportRow {
+        long line;
+        long id;
+        String code;
+        String fullName;
+        String gender;
+        LocalDate dateOfBirth;
+        String phone;
+        String email;
+        String address;
+        String note;
+    }
+}
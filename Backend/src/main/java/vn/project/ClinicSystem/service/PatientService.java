@@ -2,12 +2,12 @@ package vn.project.ClinicSystem.service;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.UUID;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Validator;
@@ -15,6 +15,7 @@ import jakarta.persistence.EntityNotFoundException;
 import vn.project.ClinicSystem.model.AppointmentRequest;
 import vn.project.ClinicSystem.model.Patient;
 import vn.project.ClinicSystem.repository.PatientRepository;
+import vn.project.ClinicSystem.util.PhoneNumbers;
 
 @Service
 @Transactional(readOnly = true)
@@ -22,11 +23,14 @@ public class PatientService {
     private final PatientRepository patientRepository;
     private final Validator validator;
     private final RealTimeEventService realTimeEventService;
+    private final PatientCodeAllocator patientCodeAllocator;
 
-    public PatientService(PatientRepository patientRepository, Validator validator, RealTimeEventService realTimeEventService) {
+    public PatientService(PatientRepository patientRepository, Validator validator,
+            RealTimeEventService realTimeEventService, PatientCodeAllocator patientCodeAllocator) {
         this.patientRepository = patientRepository;
         this.validator = validator;
         this.realTimeEventService = realTimeEventService;
+        this.patientCodeAllocator = patientCodeAllocator;
     }
 
     public List<Patient> findAll() {
@@ -69,7 +73,15 @@ public class PatientService {
         if (patient == null) {
             throw new IllegalArgumentException("Thông tin bệnh nhân không được để trống");
         }
+        patient.setPhone(normalizePhone(patient.getPhone()));
+        if (!StringUtils.hasText(patient.getCode())) {
+            // Mã cấp từ bộ đếm luôn duy nhất nên không cần kiểm tra trùng
+            patient.setCode(patientCodeAllocator.nextCode());
+            validateBean(patient);
+            return patientRepository.save(patient);
+        }
         patient.setCode(normalizeCode(patient.getCode()));
+        rejectAllocatorCode(patient.getCode());
         validateBean(patient);
         validateUniqueCode(patient.getCode(), null);
         return patientRepository.save(patient);
@@ -84,6 +96,7 @@ public class PatientService {
 
         if (changes.getCode() != null && !normalizeCode(changes.getCode()).equalsIgnoreCase(existing.getCode())) {
             String normalized = normalizeCode(changes.getCode());
+            rejectAllocatorCode(normalized);
             validateUniqueCode(normalized, existing.getId());
             existing.setCode(normalized);
         }
@@ -97,7 +110,7 @@ public class PatientService {
             existing.setDateOfBirth(changes.getDateOfBirth());
         }
         if (changes.getPhone() != null) {
-            existing.setPhone(changes.getPhone());
+            existing.setPhone(normalizePhone(changes.getPhone()));
         }
         if (changes.getEmail() != null) {
             existing.setEmail(changes.getEmail());
@@ -130,10 +143,9 @@ public class PatientService {
             throw new IllegalArgumentException("Yêu cầu đặt lịch không được null");
         }
         Patient patient = new Patient();
-        patient.setCode(generateUniqueCode());
         patient.setFullName(request.getFullName());
         patient.setDateOfBirth(request.getDateOfBirth());
-        String normalizedPhone = normalizePhone(request.getPhone());
+        String normalizedPhone = PhoneNumbers.normalize(request.getPhone());
         if (normalizedPhone != null) {
             patient.setPhone(normalizedPhone);
         }
@@ -142,6 +154,13 @@ public class PatientService {
         return create(patient);
     }
 
+    private void rejectAllocatorCode(String code) {
+        if (PatientCodeAllocator.isAllocatorCode(code)) {
+            throw new IllegalArgumentException(
+                    "Mã bệnh nhân dạng BN + 10 chữ số do hệ thống tự cấp, không được nhập tay: " + code);
+        }
+    }
+
     private void validateUniqueCode(String code, Long currentId) {
         patientRepository.findByCode(code).ifPresent(existing -> {
             boolean sameRecord = currentId != null && existing.getId().equals(currentId);
@@ -165,23 +184,10 @@ public class PatientService {
         return code.trim().toUpperCase();
     }
 
-    private String generateUniqueCode() {
-        String code;
-        do {
-            code = "BN" + UUID.randomUUID().toString().replaceAll("-", "").substring(0, 8).toUpperCase();
-        } while (patientRepository.existsByCodeIgnoreCase(code));
-        return code;
-    }
-
+    // Số không chuẩn hóa được giữ nguyên để kiểm tra bean báo lỗi định dạng
     private String normalizePhone(String phone) {
-        if (phone == null) {
-            return null;
-        }
-        String digits = phone.replaceAll("\\D", "");
-        if (digits.length() == 10) {
-            return digits;
-        }
-        return null;
+        String normalized = PhoneNumbers.normalize(phone);
+        return normalized != null ? normalized : phone;
     }
 
     private String buildAutoNote(AppointmentRequest request) {
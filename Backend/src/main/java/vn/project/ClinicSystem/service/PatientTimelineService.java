@@ -0,0 +1,254 @@
+package vn.project.ClinicSystem.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import jakarta.persistence.EntityNotFoundException;
+import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.Prescription;
+import vn.project.ClinicSystem.model.PrescriptionItem;
+import vn.project.ClinicSystem.model.ServiceOrder;
+import vn.project.ClinicSystem.model.ServiceOrderResult;
+import vn.project.ClinicSystem.model.dto.PatientTimelineDTO;
+import vn.project.ClinicSystem.model.dto.PatientTimelineDTO.BillingEntry;
+import vn.project.ClinicSystem.model.dto.PatientTimelineDTO.IndicatorResultEntry;
+import vn.project.ClinicSystem.model.dto.PatientTimelineDTO.PrescriptionEntry;
+import vn.project.ClinicSystem.model.dto.PatientTimelineDTO.PrescriptionItemEntry;
+import vn.project.ClinicSystem.model.dto.PatientTimelineDTO.ServiceOrderEntry;
+import vn.project.ClinicSystem.model.dto.PatientTimelineDTO.TimelineEntry;
+import vn.project.ClinicSystem.repository.AppointmentRepository;
+import vn.project.ClinicSystem.repository.AppointmentRepository.TimelineAppointmentView;
+import vn.project.ClinicSystem.repository.PatientRepository;
+import vn.project.ClinicSystem.repository.PatientVisitRepository;
+import vn.project.ClinicSystem.repository.PrescriptionRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository;
+
+/**
+ * Dựng dòng thời gian khám chữa bệnh của một bệnh nhân bằng một số truy vấn cố định:
+ * lịch hẹn, hồ sơ khám (kèm hóa đơn), phiếu dịch vụ và đơn thuốc theo danh sách hồ sơ.
+ * Kết quả sắp xếp mới nhất trước và phân trang bằng cursor.
+ */
+@Service
+@Transactional(readOnly = true)
+public class PatientTimelineService {
+    private static final String TYPE_APPOINTMENT = "APPOINTMENT";
+    private static final String TYPE_VISIT = "VISIT";
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 200;
+    private static final LocalDateTime EARLIEST = LocalDate.of(1900, 1, 1).atStartOfDay();
+    private static final LocalDateTime LATEST = LocalDate.of(9999, 1, 1).atStartOfDay();
+
+    private static final Comparator<TimelineEntry> ORDER = Comparator
+            .comparing(TimelineEntry::getOccurredAt, Comparator.reverseOrder())
+            .thenComparing(TimelineEntry::getType)
+            .thenComparing(TimelineEntry::getId, Comparator.reverseOrder());
+
+    private final PatientRepository patientRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final PatientVisitRepository patientVisitRepository;
+    private final ServiceOrderRepository serviceOrderRepository;
+    private final PrescriptionRepository prescriptionRepository;
+
+    public PatientTimelineService(PatientRepository patientRepository,
+            AppointmentRepository appointmentRepository,
+            PatientVisitRepository patientVisitRepository,
+            ServiceOrderRepository serviceOrderRepository,
+            PrescriptionRepository prescriptionRepository) {
+        this.patientRepository = patientRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.patientVisitRepository = patientVisitRepository;
+        this.serviceOrderRepository = serviceOrderRepository;
+        this.prescriptionRepository = prescriptionRepository;
+    }
+
+    public PatientTimelineDTO getTimeline(Long patientId, LocalDate from, LocalDate to, String cursor, Integer limit) {
+        if (!patientRepository.existsById(patientId)) {
+            throw new EntityNotFoundException("Không tìm thấy bệnh nhân với id: " + patientId);
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Ngày bắt đầu phải trước ngày kết thúc");
+        }
+
+        int pageSize = resolveLimit(limit);
+        TimelineEntry after = decodeCursor(cursor);
+
+        LocalDateTime windowStart = from != null ? from.atStartOfDay() : EARLIEST;
+        LocalDateTime windowEnd = to != null ? to.plusDays(1).atStartOfDay().minusNanos(1) : LATEST;
+        if (after != null && after.getOccurredAt().isBefore(windowEnd)) {
+            windowEnd = after.getOccurredAt();
+        }
+
+        // Mỗi nguồn lấy dư một bản ghi để biết còn trang sau hay không
+        Pageable fetch = PageRequest.of(0, pageSize + 1);
+        List<TimelineAppointmentView> appointments = appointmentRepository
+                .findTimelineAppointments(patientId, windowStart, windowEnd, fetch);
+        List<PatientVisit> visits = patientVisitRepository
+                .findTimelineVisits(patientId, toInstant(windowStart), toInstant(windowEnd), fetch);
+
+        List<TimelineEntry> merged = new ArrayList<>(appointments.size() + visits.size());
+        appointments.forEach(view -> merged.add(toEntry(view)));
+        Map<Long, TimelineEntry> visitEntries = new LinkedHashMap<>();
+        for (PatientVisit visit : visits) {
+            TimelineEntry entry = toEntry(visit);
+            visitEntries.put(visit.getId(), entry);
+            merged.add(entry);
+        }
+
+        List<TimelineEntry> page = merged.stream()
+                .filter(entry -> after == null || ORDER.compare(entry, after) > 0)
+                .sorted(ORDER)
+                .toList();
+        boolean hasMore = page.size() > pageSize
+                || appointments.size() > pageSize
+                || visits.size() > pageSize;
+        if (page.size() > pageSize) {
+            page = page.subList(0, pageSize);
+        }
+
+        List<Long> pageVisitIds = page.stream()
+                .filter(entry -> TYPE_VISIT.equals(entry.getType()))
+                .map(TimelineEntry::getId)
+                .toList();
+        if (!pageVisitIds.isEmpty()) {
+            attachServiceOrders(visitEntries, pageVisitIds);
+            attachPrescriptions(visitEntries, pageVisitIds);
+        }
+
+        String nextCursor = hasMore && !page.isEmpty() ? encodeCursor(page.get(page.size() - 1)) : null;
+        return new PatientTimelineDTO(patientId, page, nextCursor, hasMore);
+    }
+
+    private void attachServiceOrders(Map<Long, TimelineEntry> visitEntries, List<Long> visitIds) {
+        for (ServiceOrder order : serviceOrderRepository.findByVisitIdIn(visitIds)) {
+            TimelineEntry entry = visitEntries.get(order.getVisit().getId());
+            if (entry == null) {
+                continue;
+            }
+            ServiceOrderEntry orderEntry = new ServiceOrderEntry();
+            orderEntry.setId(order.getId());
+            if (order.getMedicalService() != null) {
+                orderEntry.setMedicalServiceId(order.getMedicalService().getId());
+                orderEntry.setMedicalServiceName(order.getMedicalService().getName());
+            }
+            orderEntry.setStatus(order.getStatus().name());
+            orderEntry.setPerformedAt(order.getPerformedAt());
+            orderEntry.setResultNote(order.getResultNote());
+            for (ServiceOrderResult result : order.getIndicatorResults()) {
+                orderEntry.getResults().add(new IndicatorResultEntry(
+                        result.getIndicator().getId(),
+                        result.getIndicatorNameSnapshot(),
+                        result.getUnitSnapshot(),
+                        result.getMeasuredValue(),
+                        result.getEvaluation().name()));
+            }
+            entry.getServiceOrders().add(orderEntry);
+        }
+    }
+
+    private void attachPrescriptions(Map<Long, TimelineEntry> visitEntries, List<Long> visitIds) {
+        for (Prescription prescription : prescriptionRepository.findByVisitIdInOrderByIssuedAtDesc(visitIds)) {
+            TimelineEntry entry = visitEntries.get(prescription.getVisit().getId());
+            if (entry == null) {
+                continue;
+            }
+            PrescriptionEntry prescriptionEntry = new PrescriptionEntry();
+            prescriptionEntry.setId(prescription.getId());
+            prescriptionEntry.setIssuedAt(prescription.getIssuedAt());
+            prescriptionEntry.setNotes(prescription.getNotes());
+            for (PrescriptionItem item : prescription.getItems()) {
+                prescriptionEntry.getItems().add(new PrescriptionItemEntry(
+                        item.getId(),
+                        item.getMedication() != null ? item.getMedication().getId() : null,
+                        item.getMedicationName(),
+                        item.getDosage(),
+                        item.getFrequency(),
+                        item.getDuration(),
+                        item.getQuantity(),
+                        item.getAmount()));
+            }
+            entry.getPrescriptions().add(prescriptionEntry);
+        }
+    }
+
+    private TimelineEntry toEntry(TimelineAppointmentView view) {
+        TimelineEntry entry = new TimelineEntry();
+        entry.setType(TYPE_APPOINTMENT);
+        entry.setId(view.getId());
+        entry.setOccurredAt(view.getScheduledAt());
+        entry.setStatus(view.getStatus() != null ? view.getStatus().name() : null);
+        entry.setReason(view.getReason());
+        entry.setDuration(view.getDuration());
+        entry.setDoctorId(view.getDoctorId());
+        entry.setDoctorSpecialty(view.getDoctorSpecialty());
+        entry.setClinicRoomName(view.getClinicRoomName());
+        return entry;
+    }
+
+    private TimelineEntry toEntry(PatientVisit visit) {
+        TimelineEntry entry = new TimelineEntry();
+        entry.setType(TYPE_VISIT);
+        entry.setId(visit.getId());
+        entry.setOccurredAt(LocalDateTime.ofInstant(visit.getCreatedAt(), ZoneId.systemDefault()));
+        entry.setStatus(visit.getStatus().name());
+        entry.setAppointmentId(visit.getPrimaryAppointment() != null ? visit.getPrimaryAppointment().getId() : null);
+        entry.setProvisionalDiagnosis(visit.getProvisionalDiagnosis());
+        entry.setClinicalNote(visit.getClinicalNote());
+        entry.setServiceOrders(new ArrayList<>());
+        entry.setPrescriptions(new ArrayList<>());
+        Billing billing = visit.getBilling();
+        if (billing != null) {
+            entry.setBilling(new BillingEntry(billing.getId(), billing.getStatus().name(),
+                    billing.getTotalAmount(), billing.getIssuedAt()));
+        }
+        return entry;
+    }
+
+    private int resolveLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    private Instant toInstant(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private String encodeCursor(TimelineEntry entry) {
+        String raw = entry.getOccurredAt() + "|" + entry.getType() + "|" + entry.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private TimelineEntry decodeCursor(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            TimelineEntry entry = new TimelineEntry();
+            entry.setOccurredAt(LocalDateTime.parse(parts[0]));
+            entry.setType(parts[1]);
+            entry.setId(Long.valueOf(parts[2]));
+            return entry;
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Cursor không hợp lệ");
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package vn.project.ClinicSystem.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,15 +34,17 @@ import vn.project.ClinicSystem.model.PrescriptionItem;
 import vn.project.ClinicSystem.model.ServiceOrder;
 import vn.project.ClinicSystem.model.dto.PrescriptionCreateRequest;
 import vn.project.ClinicSystem.model.dto.PrescriptionItemRequest;
+import vn.project.ClinicSystem.model.dto.PrescriptionSummaryDTO;
 import vn.project.ClinicSystem.model.dto.PrescriptionUpdateRequest;
+import vn.project.ClinicSystem.model.enums.InteractionSeverity;
 import vn.project.ClinicSystem.model.enums.ServiceOrderStatus;
+import vn.project.ClinicSystem.model.enums.StockMovementType;
 import vn.project.ClinicSystem.model.enums.VisitStatus;
 import vn.project.ClinicSystem.repository.DoctorRepository;
 import vn.project.ClinicSystem.repository.MedicationBatchRepository;
 import vn.project.ClinicSystem.repository.MedicationRepository;
 import vn.project.ClinicSystem.repository.PatientVisitRepository;
 import vn.project.ClinicSystem.repository.PrescriptionRepository;
-import vn.project.ClinicSystem.repository.ServiceIndicatorRepository;
 import vn.project.ClinicSystem.repository.ServiceOrderRepository;
 
 @Service
@@ -46,7 +57,11 @@ public class PrescriptionService {
     private final MedicationRepository medicationRepository;
     private final MedicationBatchRepository medicationBatchRepository;
     private final ServiceOrderRepository serviceOrderRepository;
-    private final ServiceIndicatorRepository serviceIndicatorRepository;
+    private final IndicatorCatalog indicatorCatalog;
+    private final MedicationBatchAllocator batchAllocator;
+    private final StockLedgerService stockLedgerService;
+    private final DrugInteractionEngine drugInteractionEngine;
+    private final MedicationAutocompleteService autocompleteService;
     private final Validator validator;
 
     public PrescriptionService(PrescriptionRepository prescriptionRepository,
@@ -55,7 +70,11 @@ public class PrescriptionService {
             MedicationRepository medicationRepository,
             MedicationBatchRepository medicationBatchRepository,
             ServiceOrderRepository serviceOrderRepository,
-            ServiceIndicatorRepository serviceIndicatorRepository,
+            IndicatorCatalog indicatorCatalog,
+            MedicationBatchAllocator batchAllocator,
+            StockLedgerService stockLedgerService,
+            DrugInteractionEngine drugInteractionEngine,
+            MedicationAutocompleteService autocompleteService,
             Validator validator) {
         this.prescriptionRepository = prescriptionRepository;
         this.patientVisitRepository = patientVisitRepository;
@@ -63,41 +82,72 @@ public class PrescriptionService {
         this.medicationRepository = medicationRepository;
         this.medicationBatchRepository = medicationBatchRepository;
         this.serviceOrderRepository = serviceOrderRepository;
-        this.serviceIndicatorRepository = serviceIndicatorRepository;
+        this.indicatorCatalog = indicatorCatalog;
+        this.batchAllocator = batchAllocator;
+        this.stockLedgerService = stockLedgerService;
+        this.drugInteractionEngine = drugInteractionEngine;
+        this.autocompleteService = autocompleteService;
         this.validator = validator;
     }
 
     public Prescription getById(Long id) {
-        Prescription prescription = prescriptionRepository.findById(id)
+        return prescriptionRepository.findDetailedById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy đơn thuốc với id: " + id));
-        hydratePrescription(prescription);
-        return prescription;
     }
 
-    public List<Prescription> findAll() {
-        List<Prescription> prescriptions = prescriptionRepository.findAll();
-        prescriptions.forEach(this::hydratePrescription);
-        return prescriptions;
+    /**
+     * Duyệt mọi đơn thuốc dưới dạng tóm tắt theo luồng, không giữ cả bảng trong bộ nhớ.
+     * Consumer không được truy vấn thêm trên cùng kết nối khi luồng còn mở.
+     */
+    public void forEachSummary(Consumer<PrescriptionSummaryDTO> consumer) {
+        try (Stream<PrescriptionSummaryDTO> summaries = prescriptionRepository.streamSummaries()) {
+            summaries.forEach(consumer);
+        }
+    }
+
+    /**
+     * Xuất tóm tắt mọi đơn thuốc ra CSV theo luồng, trả về số đơn đã ghi.
+     */
+    public long exportSummariesCsv(Writer writer) throws IOException {
+        writer.write("id,visitId,patientName,doctorName,issuedAt,itemCount,totalAmount\n");
+        long[] rows = new long[1];
+        try {
+            forEachSummary(summary -> {
+                try {
+                    writer.write(toCsvRow(summary));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        writer.flush();
+        return rows[0];
     }
 
     public Page<Prescription> findAll(Pageable pageable) {
-        Page<Prescription> prescriptions = prescriptionRepository.findAll(pageable);
-        prescriptions.getContent().forEach(this::hydratePrescription);
-        return prescriptions;
+        return loadPage(prescriptionRepository.findPageIds(pageable));
+    }
+
+    public Page<PrescriptionSummaryDTO> findSummaries(Pageable pageable) {
+        return prescriptionRepository.findSummaries(pageable);
     }
 
     public List<Prescription> findByVisit(Long visitId) {
         ensureVisitExists(visitId);
-        List<Prescription> prescriptions = prescriptionRepository.findByVisitIdOrderByIssuedAtDesc(visitId);
-        prescriptions.forEach(this::hydratePrescription);
-        return prescriptions;
+        return prescriptionRepository.findByVisitIdOrderByIssuedAtDesc(visitId);
     }
 
     public Page<Prescription> findByVisit(Long visitId, Pageable pageable) {
         ensureVisitExists(visitId);
-        Page<Prescription> prescriptions = prescriptionRepository.findByVisitIdOrderByIssuedAtDesc(visitId, pageable);
-        prescriptions.getContent().forEach(this::hydratePrescription);
-        return prescriptions;
+        return loadPage(prescriptionRepository.findPageIdsByVisitId(visitId, pageable));
+    }
+
+    public Page<PrescriptionSummaryDTO> findSummariesByVisit(Long visitId, Pageable pageable) {
+        ensureVisitExists(visitId);
+        return prescriptionRepository.findSummariesByVisitId(visitId, pageable);
     }
 
     @Transactional
@@ -122,9 +172,14 @@ public class PrescriptionService {
         }
 
         applyItems(prescription, request.getItems());
+        checkInteractions(prescription, Boolean.TRUE.equals(request.getAcknowledgeInteractions()));
         validateBean(prescription);
         Prescription saved = prescriptionRepository.save(prescription);
-        hydratePrescription(saved);
+        // Dòng kê tên thuốc tự do không có thuốc trong danh mục nên không tính tần suất
+        autocompleteService.recordPrescribed(saved.getItems().stream()
+                .filter(item -> item.getMedication() != null)
+                .map(item -> item.getMedication().getId())
+                .toList());
         return saved;
     }
 
@@ -148,11 +203,11 @@ public class PrescriptionService {
                 throw new IllegalArgumentException("Đơn thuốc phải có ít nhất 1 thuốc");
             }
             applyItems(prescription, request.getItems());
+            checkInteractions(prescription, Boolean.TRUE.equals(request.getAcknowledgeInteractions()));
         }
 
         validateBean(prescription);
         Prescription saved = prescriptionRepository.save(prescription);
-        hydratePrescription(saved);
         return saved;
     }
 
@@ -165,7 +220,8 @@ public class PrescriptionService {
     }
 
     private void applyItems(Prescription prescription, List<PrescriptionItemRequest> itemRequests) {
-        prescription.getItems().forEach(this::returnStockForItem);
+        String reference = stockReference(prescription);
+        prescription.getItems().forEach(item -> returnStockForItem(item, reference));
         prescription.clearItems();
 
         for (PrescriptionItemRequest itemRequest : itemRequests) {
@@ -209,23 +265,20 @@ public class PrescriptionService {
             if (quantity == null || quantity <= 0) {
                 throw new IllegalArgumentException("Cần nhập số lượng thuốc hợp lệ");
             }
-            item.setQuantity(quantity);
 
-            BigDecimal unitPrice = BigDecimal.ZERO;
             if (batch != null) {
-                if (batch.getQuantityOnHand() < quantity) {
-                    throw new IllegalStateException("Lô thuốc " + batch.getBatchCode() + " không đủ tồn kho.");
+                deductBatchStock(batch, quantity, reference);
+                prescription.addItem(priceItem(item, batch, quantity));
+            } else if (medication != null) {
+                // Không chọn lô: cấp theo lô hết hạn trước, mỗi lô được dùng thành một dòng riêng
+                for (MedicationBatchAllocator.Allocation allocation : batchAllocator.allocate(medication, quantity)) {
+                    stockLedgerService.record(StockMovementType.DISPENSE, medication.getId(),
+                            allocation.getBatch().getId(), -allocation.getQuantity(), reference);
+                    prescription.addItem(priceItem(copyItem(item), allocation.getBatch(), allocation.getQuantity()));
                 }
-                deductBatchStock(batch, quantity);
-                unitPrice = batch.getUnitPrice();
-                item.setExpiryDateSnapshot(batch.getExpiryDate());
+            } else {
+                prescription.addItem(priceItem(item, null, quantity));
             }
-
-            unitPrice = unitPrice.setScale(2, RoundingMode.HALF_UP);
-            item.setUnitPriceSnapshot(unitPrice);
-            item.setAmount(unitPrice.multiply(BigDecimal.valueOf(quantity)));
-
-            prescription.addItem(item);
         }
 
         if (prescription.getItems().isEmpty()) {
@@ -233,12 +286,37 @@ public class PrescriptionService {
         }
     }
 
+    private PrescriptionItem priceItem(PrescriptionItem item, MedicationBatch batch, int quantity) {
+        BigDecimal unitPrice = BigDecimal.ZERO;
+        if (batch != null) {
+            item.setMedicationBatch(batch);
+            unitPrice = batch.getUnitPrice();
+            item.setExpiryDateSnapshot(batch.getExpiryDate());
+        }
+
+        unitPrice = unitPrice.setScale(2, RoundingMode.HALF_UP);
+        item.setQuantity(quantity);
+        item.setUnitPriceSnapshot(unitPrice);
+        item.setAmount(unitPrice.multiply(BigDecimal.valueOf(quantity)));
+        return item;
+    }
+
+    private PrescriptionItem copyItem(PrescriptionItem source) {
+        PrescriptionItem copy = new PrescriptionItem();
+        copy.setMedication(source.getMedication());
+        copy.setMedicationName(source.getMedicationName());
+        copy.setDosage(source.getDosage());
+        copy.setFrequency(source.getFrequency());
+        copy.setDuration(source.getDuration());
+        copy.setInstruction(source.getInstruction());
+        return copy;
+    }
+
     private void ensureServiceOrdersReadyForPrescription(Long visitId) {
         List<ServiceOrder> orders = serviceOrderRepository.findByVisitId(visitId);
         if (orders.isEmpty()) {
             return;
         }
-        Map<Long, Boolean> requiredIndicatorCache = new HashMap<>();
         for (ServiceOrder order : orders) {
             ServiceOrderStatus status = order.getStatus();
             if (status == ServiceOrderStatus.PENDING
@@ -247,7 +325,7 @@ public class PrescriptionService {
                 throw new IllegalStateException(
                         "Phiếu dịch vụ " + order.getMedicalService().getName() + " chưa hoàn tất.");
             }
-            if (requiresIndicatorResults(order, requiredIndicatorCache)
+            if (requiresIndicatorResults(order)
                     && status != ServiceOrderStatus.COMPLETED_WITH_RESULT) {
                 throw new IllegalStateException(
                         "Phiếu dịch vụ " + order.getMedicalService().getName()
@@ -256,10 +334,8 @@ public class PrescriptionService {
         }
     }
 
-    private boolean requiresIndicatorResults(ServiceOrder order, Map<Long, Boolean> cache) {
-        Long serviceId = order.getMedicalService().getId();
-        return cache.computeIfAbsent(serviceId,
-                id -> !serviceIndicatorRepository.findByMedicalServiceIdAndRequiredTrue(id).isEmpty());
+    private boolean requiresIndicatorResults(ServiceOrder order) {
+        return indicatorCatalog.forService(order.getMedicalService().getId()).hasRequiredIndicators();
     }
 
     private PatientVisit loadVisit(Long visitId) {
@@ -306,48 +382,74 @@ public class PrescriptionService {
         return input.trim();
     }
 
-    private void hydratePrescription(Prescription prescription) {
-        if (prescription == null) {
-            return;
+    // Nạp chi tiết cho một trang id, giữ nguyên thứ tự của trang
+    private Page<Prescription> loadPage(Page<Long> ids) {
+        if (ids.isEmpty()) {
+            return new PageImpl<>(List.of(), ids.getPageable(), ids.getTotalElements());
         }
-        prescription.getItems().forEach(item -> {
-            if (item.getMedication() != null) {
-                item.getMedication().getName();
+        Map<Long, Prescription> loaded = prescriptionRepository.findDetailedByIdIn(ids.getContent()).stream()
+                .collect(Collectors.toMap(Prescription::getId, Function.identity()));
+        return ids.map(loaded::get);
+    }
+
+    /**
+     * Gắn cảnh báo tương tác giữa các thuốc trong đơn; cặp chống chỉ định phối hợp bị từ chối
+     * (rollback cả phần tồn kho đã trừ) trừ khi bác sĩ đã xác nhận.
+     */
+    private void checkInteractions(Prescription prescription, boolean acknowledged) {
+        Set<String> drugs = new LinkedHashSet<>();
+        for (PrescriptionItem item : prescription.getItems()) {
+            Medication medication = item.getMedication();
+            if (medication != null && StringUtils.hasText(medication.getActiveIngredient())) {
+                drugs.add(medication.getName() + " (" + medication.getActiveIngredient() + ")");
+            } else if (StringUtils.hasText(item.getMedicationName())) {
+                drugs.add(item.getMedicationName());
             }
-            if (item.getMedicationBatch() != null) {
-                item.getMedicationBatch().getBatchCode();
+        }
+        for (DrugInteractionEngine.Finding finding : drugInteractionEngine.check(List.copyOf(drugs))) {
+            if (finding.getInteraction().getSeverity() == InteractionSeverity.CONTRAINDICATED && !acknowledged) {
+                throw new IllegalStateException("Chống chỉ định phối hợp " + finding.getDrug1() + " và "
+                        + finding.getDrug2() + ": " + finding.getInteraction().getDescription());
             }
-        });
+            prescription.getInteractionWarnings().add(finding.toWarning());
+        }
     }
 
-    private void returnStockForItem(PrescriptionItem item) {
+    private String stockReference(Prescription prescription) {
+        return prescription.getVisit() != null ? "VISIT-" + prescription.getVisit().getId() : null;
+    }
+
+    private void returnStockForItem(PrescriptionItem item, String reference) {
         if (item.getMedicationBatch() != null && item.getQuantity() != null) {
             MedicationBatch batch = item.getMedicationBatch();
-            batch.setQuantityOnHand(batch.getQuantityOnHand() + item.getQuantity());
-            medicationBatchRepository.save(batch);
+            medicationBatchRepository.incrementStock(batch.getId(), item.getQuantity());
+            batch.setQuantityOnHand(medicationBatchRepository.findQuantityOnHand(batch.getId()));
             if (batch.getMedication() != null) {
                 Medication med = batch.getMedication();
-                int current = med.getStockQuantity() != null ? med.getStockQuantity() : 0;
-                med.setStockQuantity(current + item.getQuantity());
-                medicationRepository.save(med);
+                medicationRepository.incrementStock(med.getId(), item.getQuantity());
+                med.setStockQuantity(medicationRepository.findStockQuantity(med.getId()));
+                stockLedgerService.record(StockMovementType.RETURN, med.getId(), batch.getId(), item.getQuantity(),
+                        reference);
             }
         }
     }
 
-    private void deductBatchStock(MedicationBatch batch, int quantity) {
-        if (batch.getQuantityOnHand() < quantity) {
+    /**
+     * Trừ tồn kho bằng UPDATE có điều kiện nên hai lượt cấp thuốc đồng thời không thể cùng trừ
+     * quá số còn lại; lỗi ở bước trừ tồn thuốc sẽ rollback cả phần đã trừ của lô.
+     */
+    private void deductBatchStock(MedicationBatch batch, int quantity, String reference) {
+        if (medicationBatchRepository.decrementStock(batch.getId(), quantity) == 0) {
             throw new IllegalStateException("Lô thuốc " + batch.getBatchCode() + " không đủ tồn kho.");
         }
-        batch.setQuantityOnHand(batch.getQuantityOnHand() - quantity);
-        medicationBatchRepository.save(batch);
+        batch.setQuantityOnHand(medicationBatchRepository.findQuantityOnHand(batch.getId()));
         Medication med = batch.getMedication();
         if (med != null) {
-            int current = med.getStockQuantity() != null ? med.getStockQuantity() : 0;
-            if (current < quantity) {
+            if (medicationRepository.decrementStock(med.getId(), quantity) == 0) {
                 throw new IllegalStateException("Tồn kho thuốc không đủ.");
             }
-            med.setStockQuantity(current - quantity);
-            medicationRepository.save(med);
+            med.setStockQuantity(medicationRepository.findStockQuantity(med.getId()));
+            stockLedgerService.record(StockMovementType.DISPENSE, med.getId(), batch.getId(), -quantity, reference);
         }
     }
 
@@ -357,4 +459,27 @@ public class PrescriptionService {
             throw new ConstraintViolationException(violations);
         }
     }
+
+    private static String toCsvRow(PrescriptionSummaryDTO summary) {
+        return String.join(",",
+                csvField(summary.getId()),
+                csvField(summary.getVisitId()),
+                csvField(summary.getPatientName()),
+                csvField(summary.getDoctorName()),
+                csvField(summary.getIssuedAt()),
+                csvField(summary.getItemCount()),
+                csvField(summary.getTotalAmount() != null ? summary.getTotalAmount().toPlainString() : null))
+                + "\n";
+    }
+
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
 }
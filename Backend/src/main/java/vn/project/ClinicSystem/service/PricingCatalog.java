@@ -0,0 +1,149 @@
+package vn.project.ClinicSystem.service;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.repository.MedicalServiceRepository;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.util.TransactionHooks;
+
+/**
+ * Bảng giá dịch vụ và lô thuốc giữ trong bộ nhớ để lập hóa đơn không phải đọc giá từ database.
+ * Mỗi lần đổi giá tạo một bản chụp mới và thay nguyên khối, nên một hóa đơn luôn dùng
+ * một bảng giá nhất quán và ghi lại được phiên bản của bảng giá đó.
+ * Giá đổi ở instance khác được nhận ở lượt nạp lại kế tiếp, nên chu kỳ nạp lại giới hạn độ trễ
+ * của cả giá dịch vụ lẫn giá lô thuốc.
+ */
+@Service
+@Slf4j
+public class PricingCatalog {
+    private static final int MAX_RELOAD_ATTEMPTS = 3;
+
+    private final MedicalServiceRepository medicalServiceRepository;
+    private final MedicationBatchRepository medicationBatchRepository;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.EMPTY);
+
+    public PricingCatalog(MedicalServiceRepository medicalServiceRepository,
+            MedicationBatchRepository medicationBatchRepository) {
+        this.medicalServiceRepository = medicalServiceRepository;
+        this.medicationBatchRepository = medicationBatchRepository;
+    }
+
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Nạp lại toàn bộ bảng giá; chạy định kỳ để nhận thay đổi từ instance khác hoặc sửa trực tiếp trong database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${clinicsystem.pricing.refresh-ms:60000}",
+            initialDelayString = "${clinicsystem.pricing.refresh-ms:60000}")
+    public void reload() {
+        for (int attempt = 1; attempt <= MAX_RELOAD_ATTEMPTS; attempt++) {
+            Snapshot before = current.get();
+
+            Map<Long, BigDecimal> services = new HashMap<>();
+            for (MedicalServiceRepository.ServicePriceView view : medicalServiceRepository.findAllPrices()) {
+                services.put(view.getId(), BigDecimal.valueOf(view.getBasePrice()));
+            }
+            Map<Long, BigDecimal> batches = new HashMap<>();
+            for (MedicationBatchRepository.BatchPriceView view : medicationBatchRepository.findAllPrices()) {
+                batches.put(view.getId(), view.getUnitPrice());
+            }
+
+            // Có giá vừa đổi trong lúc đang đọc thì đọc lại, tránh ghi đè bằng dữ liệu cũ
+            Snapshot loaded = new Snapshot(nextVersion(before), services, batches);
+            if (current.compareAndSet(before, loaded)) {
+                log.info("Đã nạp bảng giá phiên bản {}: {} dịch vụ, {} lô thuốc",
+                        loaded.getVersion(), services.size(), batches.size());
+                return;
+            }
+        }
+        log.warn("Bảng giá thay đổi liên tục trong lúc nạp lại, giữ nguyên bản hiện tại");
+    }
+
+    // Chỉ công bố giá mới khi giao dịch đổi giá đã commit
+    public void updateServicePrice(Long serviceId, Long basePrice) {
+        BigDecimal price = basePrice != null ? BigDecimal.valueOf(basePrice) : null;
+        TransactionHooks.afterCommit(() -> apply(snapshot -> snapshot.withServicePrice(serviceId, price)));
+    }
+
+    public void updateBatchPrice(Long batchId, BigDecimal unitPrice) {
+        TransactionHooks.afterCommit(() -> apply(snapshot -> snapshot.withBatchPrice(batchId, unitPrice)));
+    }
+
+    public void removeService(Long serviceId) {
+        updateServicePrice(serviceId, null);
+    }
+
+    public void removeBatch(Long batchId) {
+        updateBatchPrice(batchId, null);
+    }
+
+    private void apply(UnaryOperator<Snapshot> change) {
+        current.updateAndGet(change);
+    }
+
+    // Phiên bản tăng dần và không lặp lại sau khi khởi động lại ứng dụng
+    private static long nextVersion(Snapshot previous) {
+        return Math.max(previous.getVersion() + 1, System.currentTimeMillis());
+    }
+
+    /**
+     * Bản chụp bất biến của bảng giá.
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0L, Map.of(), Map.of());
+
+        private final long version;
+        private final Map<Long, BigDecimal> servicePrices;
+        private final Map<Long, BigDecimal> batchPrices;
+
+        public Snapshot(long version, Map<Long, BigDecimal> servicePrices, Map<Long, BigDecimal> batchPrices) {
+            this.version = version;
+            this.servicePrices = Collections.unmodifiableMap(new HashMap<>(servicePrices));
+            this.batchPrices = Collections.unmodifiableMap(new HashMap<>(batchPrices));
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public BigDecimal servicePrice(Long serviceId) {
+            return serviceId != null ? servicePrices.get(serviceId) : null;
+        }
+
+        public BigDecimal batchPrice(Long batchId) {
+            return batchId != null ? batchPrices.get(batchId) : null;
+        }
+
+        Snapshot withServicePrice(Long serviceId, BigDecimal price) {
+            return new Snapshot(nextVersion(this), with(servicePrices, serviceId, price), batchPrices);
+        }
+
+        Snapshot withBatchPrice(Long batchId, BigDecimal price) {
+            return new Snapshot(nextVersion(this), servicePrices, with(batchPrices, batchId, price));
+        }
+
+        private static Map<Long, BigDecimal> with(Map<Long, BigDecimal> source, Long id, BigDecimal price) {
+            Map<Long, BigDecimal> copy = new HashMap<>(source);
+            if (price == null) {
+                copy.remove(id);
+            } else {
+                copy.put(id, price);
+            }
+            return copy;
+        }
+    }
+}
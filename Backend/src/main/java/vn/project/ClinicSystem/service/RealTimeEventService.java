@@ -1,5 +1,7 @@
 package vn.project.ClinicSystem.service;
 
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
@@ -166,6 +168,48 @@ public class RealTimeEventService {
         messagingTemplate.convertAndSend("/topic/notifications", wsMessage);
     }
     
+    // Inventory Events
+    public void broadcastInventoryAlert(String title, String message, Map<String, Object> data) {
+        WebSocketMessage wsMessage = new WebSocketMessage(
+            "INVENTORY_ALERT", 
+            title, 
+            message
+        );
+        wsMessage.setRelatedEntityType("MEDICATION");
+        wsMessage.setData(data);
+        
+        messagingTemplate.convertAndSend("/topic/inventory-alerts", wsMessage);
+    }
+    
+    // Critical Result Events
+    public void notifyCriticalResult(Long doctorId, Long serviceOrderId, String title, String message,
+            Map<String, Object> data) {
+        WebSocketMessage wsMessage = new WebSocketMessage(
+            "CRITICAL_RESULT", 
+            title, 
+            message,
+            doctorId.toString()
+        );
+        wsMessage.setRelatedEntityType("SERVICE_ORDER");
+        wsMessage.setRelatedEntityId(serviceOrderId);
+        wsMessage.setData(data);
+        
+        sendNotificationToUser(doctorId, wsMessage);
+    }
+    
+    public void broadcastCriticalResult(Long serviceOrderId, String title, String message, Map<String, Object> data) {
+        WebSocketMessage wsMessage = new WebSocketMessage(
+            "CRITICAL_RESULT_ESCALATED", 
+            title, 
+            message
+        );
+        wsMessage.setRelatedEntityType("SERVICE_ORDER");
+        wsMessage.setRelatedEntityId(serviceOrderId);
+        wsMessage.setData(data);
+        
+        messagingTemplate.convertAndSend("/topic/critical-results", wsMessage);
+    }
+    
     // Helper methods
     private void sendNotificationToUser(Long userId, WebSocketMessage message) {
         messagingTemplate.convertAndSendToUser(
@@ -23,13 +23,16 @@ public class ServiceIndicatorService {
 
     private final ServiceIndicatorRepository indicatorRepository;
     private final MedicalServiceRepository medicalServiceRepository;
+    private final IndicatorCatalog indicatorCatalog;
     private final Validator validator;
 
     public ServiceIndicatorService(ServiceIndicatorRepository indicatorRepository,
             MedicalServiceRepository medicalServiceRepository,
+            IndicatorCatalog indicatorCatalog,
             Validator validator) {
         this.indicatorRepository = indicatorRepository;
         this.medicalServiceRepository = medicalServiceRepository;
+        this.indicatorCatalog = indicatorCatalog;
         this.validator = validator;
     }
 
@@ -61,7 +64,9 @@ public class ServiceIndicatorService {
 
         ensureCodeUnique(service.getId(), indicator.getCode(), null);
         validateBean(indicator);
-        return indicatorRepository.save(indicator);
+        ServiceIndicator saved = indicatorRepository.save(indicator);
+        indicatorCatalog.evict(service.getId());
+        return saved;
     }
 
     @Transactional
@@ -98,15 +103,17 @@ public class ServiceIndicatorService {
         }
 
         validateBean(indicator);
-        return indicatorRepository.save(indicator);
+        ServiceIndicator saved = indicatorRepository.save(indicator);
+        indicatorCatalog.evict(indicator.getMedicalService().getId());
+        return saved;
     }
 
     @Transactional
     public void delete(Long id) {
-        if (!indicatorRepository.existsById(id)) {
-            throw new EntityNotFoundException("Không tìm thấy chỉ số với id: " + id);
-        }
-        indicatorRepository.deleteById(id);
+        ServiceIndicator indicator = getById(id);
+        Long medicalServiceId = indicator.getMedicalService().getId();
+        indicatorRepository.delete(indicator);
+        indicatorCatalog.evict(medicalServiceId);
     }
 
     private void ensureServiceExists(Long serviceId) {
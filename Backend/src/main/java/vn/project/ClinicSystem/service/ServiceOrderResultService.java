@@ -1,6 +1,5 @@
 package vn.project.ClinicSystem.service;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -14,12 +13,10 @@ import org.springframework.transaction.annotation.Transactional;
 import jakarta.persistence.EntityNotFoundException;
 import vn.project.ClinicSystem.model.Doctor;
 import vn.project.ClinicSystem.model.MedicalService;
-import vn.project.ClinicSystem.model.ServiceIndicator;
 import vn.project.ClinicSystem.model.ServiceOrder;
 import vn.project.ClinicSystem.model.ServiceOrderResult;
 import vn.project.ClinicSystem.model.dto.ServiceOrderResultEntryRequest;
 import vn.project.ClinicSystem.model.dto.ServiceOrderResultRequest;
-import vn.project.ClinicSystem.model.enums.IndicatorResultLevel;
 import vn.project.ClinicSystem.model.enums.ServiceOrderStatus;
 import vn.project.ClinicSystem.repository.DoctorRepository;
 import vn.project.ClinicSystem.repository.ServiceIndicatorRepository;
@@ -32,17 +29,26 @@ public class ServiceOrderResultService {
 
     private final ServiceOrderRepository serviceOrderRepository;
     private final ServiceIndicatorRepository indicatorRepository;
+    private final IndicatorCatalog indicatorCatalog;
     private final ServiceOrderResultRepository resultRepository;
     private final DoctorRepository doctorRepository;
+    private final CriticalResultAlertService criticalResultAlertService;
+    private final LabSeriesService labSeriesService;
 
     public ServiceOrderResultService(ServiceOrderRepository serviceOrderRepository,
             ServiceIndicatorRepository indicatorRepository,
+            IndicatorCatalog indicatorCatalog,
             ServiceOrderResultRepository resultRepository,
-            DoctorRepository doctorRepository) {
+            DoctorRepository doctorRepository,
+            CriticalResultAlertService criticalResultAlertService,
+            LabSeriesService labSeriesService) {
         this.serviceOrderRepository = serviceOrderRepository;
         this.indicatorRepository = indicatorRepository;
+        this.indicatorCatalog = indicatorCatalog;
         this.resultRepository = resultRepository;
         this.doctorRepository = doctorRepository;
+        this.criticalResultAlertService = criticalResultAlertService;
+        this.labSeriesService = labSeriesService;
     }
 
     public List<ServiceOrderResult> findResults(Long serviceOrderId) {
@@ -59,12 +65,13 @@ public class ServiceOrderResultService {
             throw new IllegalStateException("Không thể nhập kết quả cho phiếu dịch vụ đã hủy.");
         }
 
-        Map<Long, ServiceIndicator> indicatorsById = loadIndicatorsMap(medicalService.getId(), request.getIndicators());
-        ensureRequiredIndicatorsFilled(medicalService.getId(), request.getIndicators());
+        IndicatorCatalog.ServiceIndicators catalog = indicatorCatalog.forService(medicalService.getId());
+        Map<Long, IndicatorCatalog.Indicator> indicatorsById = loadIndicatorsMap(catalog, request.getIndicators());
+        ensureRequiredIndicatorsFilled(catalog, request.getIndicators());
 
         order.clearIndicatorResults();
         request.getIndicators().forEach(entry -> {
-            ServiceIndicator indicator = indicatorsById.get(entry.getIndicatorId());
+            IndicatorCatalog.Indicator indicator = indicatorsById.get(entry.getIndicatorId());
             ServiceOrderResult result = buildResult(indicator, entry);
             order.addIndicatorResult(result);
         });
@@ -82,51 +89,69 @@ public class ServiceOrderResultService {
         order.setPerformedAt(request.getPerformedAt() != null ? request.getPerformedAt() : LocalDateTime.now());
         order.setStatus(ServiceOrderStatus.COMPLETED_WITH_RESULT);
 
-        return serviceOrderRepository.save(order);
+        ServiceOrder saved = serviceOrderRepository.save(order);
+        raiseCriticalAlerts(saved);
+        labSeriesService.recordOrder(saved);
+        return saved;
     }
 
-    private ServiceOrderResult buildResult(ServiceIndicator indicator, ServiceOrderResultEntryRequest entry) {
+    // Báo cho bác sĩ chỉ định (hoặc người thực hiện nếu phiếu chưa có bác sĩ chỉ định)
+    private void raiseCriticalAlerts(ServiceOrder order) {
+        Doctor doctor = order.getAssignedDoctor() != null ? order.getAssignedDoctor() : order.getPerformedBy();
+        for (ServiceOrderResult result : order.getIndicatorResults()) {
+            if (!result.getEvaluation().isCritical()) {
+                continue;
+            }
+            criticalResultAlertService.raise(order.getId(), order.getVisit().getId(),
+                    order.getVisit().getPatient().getFullName(), doctor != null ? doctor.getId() : null,
+                    result.getIndicatorNameSnapshot(), result.getMeasuredValue(), result.getUnitSnapshot(),
+                    result.getEvaluation());
+        }
+    }
+
+    private ServiceOrderResult buildResult(IndicatorCatalog.Indicator indicator, ServiceOrderResultEntryRequest entry) {
         ServiceOrderResult result = new ServiceOrderResult();
-        result.setIndicator(indicator);
+        // Chỉ cần khóa ngoại nên dùng tham chiếu, không đọc lại chỉ số từ database
+        result.setIndicator(indicatorRepository.getReferenceById(indicator.getId()));
         result.setIndicatorNameSnapshot(indicator.getName());
         result.setUnitSnapshot(indicator.getUnit());
         result.setMeasuredValue(entry.getValue().stripTrailingZeros());
-        result.setEvaluation(evaluate(indicator, entry.getValue()));
+        result.setEvaluation(indicator.evaluate(entry.getValue()));
         result.setNote(entry.getNote() != null ? entry.getNote().trim() : null);
         return result;
     }
 
-    private Map<Long, ServiceIndicator> loadIndicatorsMap(Long medicalServiceId,
+    private Map<Long, IndicatorCatalog.Indicator> loadIndicatorsMap(IndicatorCatalog.ServiceIndicators catalog,
             List<ServiceOrderResultEntryRequest> entries) {
-        Set<Long> indicatorIds = new HashSet<>();
+        Map<Long, IndicatorCatalog.Indicator> map = new HashMap<>();
         for (ServiceOrderResultEntryRequest entry : entries) {
-            if (!indicatorIds.add(entry.getIndicatorId())) {
+            Long id = entry.getIndicatorId();
+            if (map.containsKey(id)) {
                 throw new IllegalArgumentException("Không được nhập trùng một chỉ số hai lần.");
             }
-        }
-
-        Map<Long, ServiceIndicator> map = new HashMap<>();
-        for (Long id : indicatorIds) {
-            ServiceIndicator indicator = indicatorRepository.findById(id)
-                    .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy chỉ số với id: " + id));
-            if (!indicator.getMedicalService().getId().equals(medicalServiceId)) {
-                throw new IllegalArgumentException("Chỉ số " + indicator.getCode()
-                        + " không thuộc dịch vụ có id: " + medicalServiceId);
+            IndicatorCatalog.Indicator indicator = catalog.get(id);
+            if (indicator == null) {
+                // Không có trong danh mục của dịch vụ: hoặc không tồn tại, hoặc thuộc dịch vụ khác
+                if (!indicatorRepository.existsById(id)) {
+                    throw new IllegalArgumentException("Không tìm thấy chỉ số với id: " + id);
+                }
+                throw new IllegalArgumentException("Chỉ số với id " + id
+                        + " không thuộc dịch vụ có id: " + catalog.getMedicalServiceId());
             }
             map.put(id, indicator);
         }
         return map;
     }
 
-    private void ensureRequiredIndicatorsFilled(Long serviceId, List<ServiceOrderResultEntryRequest> entries) {
-        List<ServiceIndicator> requiredIndicators = indicatorRepository.findByMedicalServiceIdAndRequiredTrue(serviceId);
-        if (requiredIndicators.isEmpty()) {
+    private void ensureRequiredIndicatorsFilled(IndicatorCatalog.ServiceIndicators catalog,
+            List<ServiceOrderResultEntryRequest> entries) {
+        if (!catalog.hasRequiredIndicators()) {
             return;
         }
         Set<Long> provided = new HashSet<>();
         entries.forEach(entry -> provided.add(entry.getIndicatorId()));
 
-        for (ServiceIndicator indicator : requiredIndicators) {
+        for (IndicatorCatalog.Indicator indicator : catalog.getRequiredIndicators()) {
             if (!provided.contains(indicator.getId())) {
                 throw new IllegalArgumentException(
                         "Thiếu kết quả cho chỉ số bắt buộc: " + indicator.getName());
@@ -134,22 +159,6 @@ public class ServiceOrderResultService {
         }
     }
 
-    private IndicatorResultLevel evaluate(ServiceIndicator indicator, BigDecimal value) {
-        BigDecimal min = indicator.getNormalMin();
-        BigDecimal max = indicator.getNormalMax();
-
-        if (min != null && value.compareTo(min) < 0) {
-            return IndicatorResultLevel.LOW;
-        }
-        if (max != null && value.compareTo(max) > 0) {
-            return IndicatorResultLevel.HIGH;
-        }
-        if (min == null && max == null) {
-            return IndicatorResultLevel.UNKNOWN;
-        }
-        return IndicatorResultLevel.NORMAL;
-    }
-
     private ServiceOrder loadOrder(Long id) {
         return serviceOrderRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Không tìm thấy phiếu dịch vụ với id: " + id));
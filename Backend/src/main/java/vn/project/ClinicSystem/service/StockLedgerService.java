@@ -0,0 +1,187 @@
+package vn.project.ClinicSystem.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.MedicationBatch;
+import vn.project.ClinicSystem.model.StockMovement;
+import vn.project.ClinicSystem.model.StockSnapshot;
+import vn.project.ClinicSystem.model.enums.StockMovementType;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.repository.StockMovementRepository;
+import vn.project.ClinicSystem.repository.StockSnapshotRepository;
+
+/**
+ * Sổ kho chỉ ghi thêm. Các dòng phát sinh trong một transaction được gom lại và ghi một lượt
+ * (JDBC batch) ngay trước khi commit, nên sổ kho và bộ đếm tồn kho luôn commit cùng nhau.
+ */
+@Service
+@Transactional(readOnly = true)
+@Slf4j
+public class StockLedgerService {
+    static final String OPENING_REFERENCE = "OPENING";
+
+    private final StockMovementRepository stockMovementRepository;
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final MedicationRepository medicationRepository;
+    private final MedicationBatchRepository medicationBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration snapshotLag;
+
+    public StockLedgerService(StockMovementRepository stockMovementRepository,
+            StockSnapshotRepository stockSnapshotRepository,
+            MedicationRepository medicationRepository,
+            MedicationBatchRepository medicationBatchRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${clinicsystem.stock.snapshot-lag-minutes:5}") long snapshotLagMinutes) {
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockSnapshotRepository = stockSnapshotRepository;
+        this.medicationRepository = medicationRepository;
+        this.medicationBatchRepository = medicationBatchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotLag = Duration.ofMinutes(Math.max(0, snapshotLagMinutes));
+    }
+
+    public void record(StockMovementType type, Long medicationId, Long batchId, int quantity, String reference) {
+        if (quantity == 0 || medicationId == null) {
+            return;
+        }
+        StockMovement movement = StockMovement.of(type, medicationId, batchId, quantity, reference);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stockMovementRepository.save(movement);
+            return;
+        }
+        pendingMovements().add(movement);
+    }
+
+    /**
+     * Tồn kho của thuốc tại thời điểm {@code at}: snapshot gần nhất trước đó cộng phần đuôi của sổ kho.
+     */
+    public long stockAt(Long medicationId, Instant at) {
+        if (!medicationRepository.existsById(medicationId)) {
+            throw new EntityNotFoundException("Không tìm thấy thuốc với id: " + medicationId);
+        }
+        return stockSnapshotRepository.findFirstByMedicationIdAndAsOfLessThanEqualOrderByAsOfDesc(medicationId, at)
+                .map(snapshot -> snapshot.getQuantity()
+                        + stockMovementRepository.sumQuantity(medicationId, snapshot.getAsOf(), at))
+                .orElseGet(() -> stockMovementRepository.sumQuantity(medicationId, Instant.EPOCH, at));
+    }
+
+    /**
+     * Chụp tồn kho mọi thuốc: snapshot trước cộng các dòng phát sinh đến {@code now - lag}.
+     * Độ trễ để các transaction đang chạy kịp commit dòng sổ kho có occurredAt cũ hơn thời điểm chụp.
+     */
+    @Scheduled(cron = "${clinicsystem.stock.snapshot-cron:0 30 0 * * *}")
+    @Transactional
+    public int takeSnapshots() {
+        Instant asOf = Instant.now().minus(snapshotLag);
+        Instant previousAsOf = stockSnapshotRepository.findLatestAsOf();
+        if (previousAsOf != null && !previousAsOf.isBefore(asOf)) {
+            return 0;
+        }
+
+        Map<Long, Long> quantities = new HashMap<>();
+        Instant from = Instant.EPOCH;
+        if (previousAsOf != null) {
+            from = previousAsOf;
+            for (StockSnapshot previous : stockSnapshotRepository.findByAsOf(previousAsOf)) {
+                quantities.put(previous.getMedicationId(), previous.getQuantity());
+            }
+        }
+        for (StockMovementRepository.QuantityView tail : stockMovementRepository.sumByMedication(from, asOf)) {
+            quantities.merge(tail.getMedicationId(), tail.getQuantity(), Long::sum);
+        }
+
+        Instant now = Instant.now();
+        List<StockSnapshot> snapshots = new ArrayList<>(quantities.size());
+        quantities.forEach((medicationId, quantity) -> {
+            StockSnapshot snapshot = new StockSnapshot();
+            snapshot.setMedicationId(medicationId);
+            snapshot.setQuantity(quantity);
+            snapshot.setAsOf(asOf);
+            snapshot.setCreatedAt(now);
+            snapshots.add(snapshot);
+        });
+        stockSnapshotRepository.saveAll(snapshots);
+        log.info("Đã chụp tồn kho {} thuốc tại {}", snapshots.size(), asOf);
+        return snapshots.size();
+    }
+
+    /**
+     * Thuốc chưa có dòng sổ kho nào (dữ liệu có từ trước khi dùng sổ kho) được ghi số dư đầu kỳ
+     * bằng tồn kho hiện tại của từng lô, phần chênh với tồn kho thuốc ghi không gắn lô.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recordOpeningBalances() {
+        try {
+            Set<Long> tracked = new HashSet<>(stockMovementRepository.findMedicationIdsWithMovements());
+            int opened = 0;
+            for (Long medicationId : medicationRepository.findAllIds()) {
+                if (!tracked.contains(medicationId)) {
+                    transactionTemplate.executeWithoutResult(status -> openBalance(medicationId));
+                    opened++;
+                }
+            }
+            if (opened > 0) {
+                log.info("Đã ghi số dư đầu kỳ sổ kho cho {} thuốc", opened);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Không thể ghi số dư đầu kỳ sổ kho", ex);
+        }
+    }
+
+    private void openBalance(Long medicationId) {
+        int batchTotal = 0;
+        for (MedicationBatch batch : medicationBatchRepository.findByMedicationIdOrderByExpiryDateAsc(medicationId)) {
+            int quantity = batch.getQuantityOnHand() != null ? batch.getQuantityOnHand() : 0;
+            record(StockMovementType.ADJUST, medicationId, batch.getId(), quantity, OPENING_REFERENCE);
+            batchTotal += quantity;
+        }
+        Integer stock = medicationRepository.findStockQuantity(medicationId);
+        int remainder = (stock != null ? stock : 0) - batchTotal;
+        record(StockMovementType.ADJUST, medicationId, null, remainder, OPENING_REFERENCE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<StockMovement> pendingMovements() {
+        Object key = StockLedgerService.class;
+        List<StockMovement> pending = (List<StockMovement>) TransactionSynchronizationManager.getResource(key);
+        if (pending != null) {
+            return pending;
+        }
+        List<StockMovement> created = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(key, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                stockMovementRepository.saveAll(created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            }
+        });
+        return created;
+    }
+}
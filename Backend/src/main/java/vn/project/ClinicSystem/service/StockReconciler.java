@@ -0,0 +1,118 @@
+package vn.project.ClinicSystem.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.MedicationBatch;
+import vn.project.ClinicSystem.model.dto.StockReconciliationReport;
+import vn.project.ClinicSystem.model.dto.StockReconciliationReport.Mismatch;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.repository.StockMovementRepository;
+
+/**
+ * Đối chiếu sổ kho với bộ đếm tồn kho. Mỗi thuốc được kiểm tra trên batchExecutor trong một
+ * transaction chỉ đọc riêng, nên tồn kho thuốc, tồn từng lô và sổ kho được đọc trên cùng một ảnh dữ liệu.
+ */
+@Service
+@Slf4j
+public class StockReconciler {
+    private final MedicationRepository medicationRepository;
+    private final MedicationBatchRepository medicationBatchRepository;
+    private final StockMovementRepository stockMovementRepository;
+    private final StockLedgerService stockLedgerService;
+    private final Executor batchExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public StockReconciler(MedicationRepository medicationRepository,
+            MedicationBatchRepository medicationBatchRepository,
+            StockMovementRepository stockMovementRepository,
+            StockLedgerService stockLedgerService,
+            @Qualifier("batchExecutor") Executor batchExecutor,
+            PlatformTransactionManager transactionManager) {
+        this.medicationRepository = medicationRepository;
+        this.medicationBatchRepository = medicationBatchRepository;
+        this.stockMovementRepository = stockMovementRepository;
+        this.stockLedgerService = stockLedgerService;
+        this.batchExecutor = batchExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Scheduled(cron = "${clinicsystem.stock.reconcile-cron:0 0 1 * * *}")
+    public void scheduledReconcile() {
+        StockReconciliationReport report = reconcile();
+        if (!report.getMismatches().isEmpty()) {
+            log.warn("Đối chiếu sổ kho phát hiện {} chỗ lệch trên {} thuốc", report.getMismatches().size(),
+                    report.getCheckedMedications());
+        }
+    }
+
+    public StockReconciliationReport reconcile() {
+        long startedAt = System.nanoTime();
+        List<Long> medicationIds = medicationRepository.findAllIds();
+
+        List<CompletableFuture<List<Mismatch>>> futures = new ArrayList<>(medicationIds.size());
+        for (Long medicationId : medicationIds) {
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> readOnlyTransaction.execute(status -> check(medicationId)), batchExecutor));
+        }
+
+        StockReconciliationReport report = new StockReconciliationReport();
+        report.setCheckedAt(Instant.now());
+        report.setCheckedMedications(medicationIds.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                report.getMismatches().addAll(futures.get(i).join());
+            } catch (RuntimeException ex) {
+                report.setFailed(report.getFailed() + 1);
+                log.warn("Không thể đối chiếu sổ kho cho thuốc {}", medicationIds.get(i), ex);
+            }
+        }
+        report.setDurationMs((System.nanoTime() - startedAt) / 1_000_000);
+        return report;
+    }
+
+    List<Mismatch> check(Long medicationId) {
+        List<Mismatch> mismatches = new ArrayList<>();
+
+        Integer counter = medicationRepository.findStockQuantity(medicationId);
+        long counterQuantity = counter != null ? counter : 0;
+        long ledgerQuantity = stockLedgerService.stockAt(medicationId, Instant.now());
+        if (counterQuantity != ledgerQuantity) {
+            mismatches.add(new Mismatch(medicationId, null, counterQuantity, ledgerQuantity));
+        }
+
+        Map<Long, Long> ledgerByBatch = new HashMap<>();
+        for (StockMovementRepository.BatchQuantityView row : stockMovementRepository.sumByBatch(medicationId)) {
+            ledgerByBatch.put(row.getBatchId(), row.getQuantity());
+        }
+        for (MedicationBatch batch : medicationBatchRepository.findByMedicationIdOrderByExpiryDateAsc(medicationId)) {
+            long onHand = batch.getQuantityOnHand() != null ? batch.getQuantityOnHand() : 0;
+            long ledger = ledgerByBatch.getOrDefault(batch.getId(), 0L);
+            ledgerByBatch.remove(batch.getId());
+            if (onHand != ledger) {
+                mismatches.add(new Mismatch(medicationId, batch.getId(), onHand, ledger));
+            }
+        }
+        // Lô đã xóa phải có tổng phát sinh bằng 0
+        ledgerByBatch.forEach((batchId, ledger) -> {
+            if (ledger != 0) {
+                mismatches.add(new Mismatch(medicationId, batchId, 0, ledger));
+            }
+        });
+        return mismatches;
+    }
+}
@@ -1,7 +1,13 @@
 package vn.project.ClinicSystem.service;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -29,6 +35,10 @@ import vn.project.ClinicSystem.repository.ServiceOrderRepository;
 @Transactional(readOnly = true)
 public class VisitService {
 
+    // Phiếu ở các trạng thái này chặn việc hoàn tất hồ sơ khám
+    private static final Set<ServiceOrderStatus> UNFINISHED_ORDER_STATUSES = EnumSet.of(
+            ServiceOrderStatus.PENDING, ServiceOrderStatus.SCHEDULED, ServiceOrderStatus.IN_PROGRESS);
+
     private final PatientVisitRepository patientVisitRepository;
     private final ServiceOrderRepository serviceOrderRepository;
     private final AppointmentService appointmentService;
@@ -106,11 +116,24 @@ public class VisitService {
             throw new IllegalStateException("Hồ sơ khám không ở trạng thái mở");
         }
 
-        List<ServiceOrder> createdOrders = new ArrayList<>();
+        // Một truy vấn cho mỗi loại thực thể, không phụ thuộc số dịch vụ được chỉ định
+        Set<Long> serviceIds = new HashSet<>();
+        Set<Long> doctorIds = new HashSet<>();
+        for (ServiceOrderCreateRequest item : requests) {
+            serviceIds.add(item.getMedicalServiceId());
+            doctorIds.add(item.getAssignedDoctorId());
+        }
+        Map<Long, MedicalService> services = medicalServiceRepository.findAllById(serviceIds).stream()
+                .collect(Collectors.toMap(MedicalService::getId, Function.identity()));
+        Map<Long, Doctor> doctors = doctorRepository.findAllById(doctorIds).stream()
+                .collect(Collectors.toMap(Doctor::getId, Function.identity()));
+
+        List<ServiceOrder> orders = new ArrayList<>(requests.size());
         for (ServiceOrderCreateRequest item : requests) {
-            createdOrders.add(createSingleOrder(visit, item));
+            orders.add(buildOrder(visit, item, services, doctors));
         }
-        return createdOrders;
+        // Id cấp theo khối và hibernate.jdbc.batch_size nên saveAll được ghi thành các lệnh INSERT batch
+        return serviceOrderRepository.saveAll(orders);
     }
 
     @Transactional
@@ -118,15 +141,9 @@ public class VisitService {
         PatientVisit visit = getById(visitId);
 
         if (request.getStatus() == VisitStatus.COMPLETED) {
-            boolean hasPending = !serviceOrderRepository.findByVisitIdAndStatus(visitId, ServiceOrderStatus.PENDING)
-                    .isEmpty();
-            boolean hasScheduled = !serviceOrderRepository
-                    .findByVisitIdAndStatus(visitId, ServiceOrderStatus.SCHEDULED)
-                    .isEmpty();
-            boolean hasInProgress = !serviceOrderRepository
-                    .findByVisitIdAndStatus(visitId, ServiceOrderStatus.IN_PROGRESS)
-                    .isEmpty();
-            if (hasPending || hasScheduled || hasInProgress) {
+            boolean hasUnfinished = serviceOrderRepository.countByStatus(visitId).stream()
+                    .anyMatch(count -> UNFINISHED_ORDER_STATUSES.contains(count.getStatus()) && count.getTotal() > 0);
+            if (hasUnfinished) {
                 throw new IllegalStateException("Không thể hoàn tất hồ sơ khi vẫn còn phiếu dịch vụ chưa xử lý.");
             }
         }
@@ -146,16 +163,18 @@ public class VisitService {
         return serviceOrderRepository.save(order);
     }
 
-    private ServiceOrder createSingleOrder(PatientVisit visit,
-            ServiceOrderCreateRequest request) {
+    private ServiceOrder buildOrder(PatientVisit visit, ServiceOrderCreateRequest request,
+            Map<Long, MedicalService> services, Map<Long, Doctor> doctors) {
 
-        MedicalService medicalService = medicalServiceRepository.findById(request.getMedicalServiceId())
-                .orElseThrow(() -> new EntityNotFoundException(
-                        "Không tìm thấy dịch vụ với id: " + request.getMedicalServiceId()));
+        MedicalService medicalService = services.get(request.getMedicalServiceId());
+        if (medicalService == null) {
+            throw new EntityNotFoundException("Không tìm thấy dịch vụ với id: " + request.getMedicalServiceId());
+        }
 
-        Doctor doctor = doctorRepository.findById(request.getAssignedDoctorId())
-                .orElseThrow(() -> new EntityNotFoundException(
-                        "Không tìm thấy bác sĩ với id: " + request.getAssignedDoctorId()));
+        Doctor doctor = doctors.get(request.getAssignedDoctorId());
+        if (doctor == null) {
+            throw new EntityNotFoundException("Không tìm thấy bác sĩ với id: " + request.getAssignedDoctorId());
+        }
 
         ServiceOrder order = new ServiceOrder();
         order.setVisit(visit);
@@ -163,8 +182,7 @@ public class VisitService {
         order.setAssignedDoctor(doctor);
         order.setStatus(ServiceOrderStatus.PENDING);
         order.setNote(request.getNote());
-
-        return serviceOrderRepository.save(order);
+        return order;
     }
 
     private void ensureVisitExists(Long visitId) {
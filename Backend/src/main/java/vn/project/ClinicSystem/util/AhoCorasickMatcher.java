@@ -0,0 +1,156 @@
+package vn.project.ClinicSystem.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Tìm đồng thời nhiều từ khóa trong một lần duyệt chuỗi (Aho-Corasick), chỉ nhận khớp trọn từ.
+ * Từ khóa và chuỗi cần tìm phải đã qua {@link TextNormalizer#fold(String)}: chỉ gồm a-z, 0-9 và dấu cách.
+ * Bảng chuyển trạng thái được dựng đầy đủ nên mỗi ký tự chỉ tốn một lần tra mảng.
+ */
+public final class AhoCorasickMatcher {
+    private static final int ALPHABET = 37;
+    private static final int SPACE = 36;
+
+    private final int[][] transitions;
+    private final int[][] outputs;
+    private final int[] patternLengths;
+    private final int[] patternValues;
+
+    private AhoCorasickMatcher(int[][] transitions, int[][] outputs, int[] patternLengths, int[] patternValues) {
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.patternLengths = patternLengths;
+        this.patternValues = patternValues;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gọi {@code consumer} với giá trị của mọi từ khóa xuất hiện trọn từ trong {@code folded}.
+     */
+    public void forEachMatch(String folded, IntConsumer consumer) {
+        int state = 0;
+        int length = folded.length();
+        for (int i = 0; i < length; i++) {
+            int symbol = symbol(folded.charAt(i));
+            if (symbol < 0) {
+                state = 0;
+                continue;
+            }
+            state = transitions[state][symbol];
+            for (int pattern : outputs[state]) {
+                int start = i - patternLengths[pattern] + 1;
+                boolean wordStart = start == 0 || folded.charAt(start - 1) == ' ';
+                boolean wordEnd = i == length - 1 || folded.charAt(i + 1) == ' ';
+                if (wordStart && wordEnd) {
+                    consumer.accept(patternValues[pattern]);
+                }
+            }
+        }
+    }
+
+    private static int symbol(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c >= '0' && c <= '9') {
+            return 26 + (c - '0');
+        }
+        return c == ' ' ? SPACE : -1;
+    }
+
+    public static final class Builder {
+        private final List<int[]> children = new ArrayList<>();
+        private final List<int[]> nodeOutputs = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+        private final List<Integer> values = new ArrayList<>();
+
+        private Builder() {
+            addNode();
+        }
+
+        public Builder add(String foldedPattern, int value) {
+            if (foldedPattern == null || foldedPattern.isEmpty()) {
+                return this;
+            }
+            int node = 0;
+            for (int i = 0; i < foldedPattern.length(); i++) {
+                int symbol = symbol(foldedPattern.charAt(i));
+                if (symbol < 0) {
+                    throw new IllegalArgumentException("Từ khóa chưa được chuẩn hóa: " + foldedPattern);
+                }
+                if (children.get(node)[symbol] == 0) {
+                    children.get(node)[symbol] = addNode();
+                }
+                node = children.get(node)[symbol];
+            }
+            int pattern = lengths.size();
+            lengths.add(foldedPattern.length());
+            values.add(value);
+            int[] existing = nodeOutputs.get(node);
+            int[] extended = Arrays.copyOf(existing, existing.length + 1);
+            extended[existing.length] = pattern;
+            nodeOutputs.set(node, extended);
+            return this;
+        }
+
+        public AhoCorasickMatcher build() {
+            int size = children.size();
+            int[][] transitions = new int[size][];
+            int[][] outputs = new int[size][];
+            int[] fail = new int[size];
+            for (int node = 0; node < size; node++) {
+                transitions[node] = children.get(node).clone();
+                outputs[node] = nodeOutputs.get(node);
+            }
+
+            // Duyệt theo chiều rộng: liên kết lỗi của một nút luôn trỏ tới nút nông hơn đã xử lý xong
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int child = transitions[0][symbol];
+                if (child != 0) {
+                    queue.add(child);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                    int child = children.get(node)[symbol];
+                    if (child == 0) {
+                        transitions[node][symbol] = transitions[fail[node]][symbol];
+                        continue;
+                    }
+                    fail[child] = transitions[fail[node]][symbol];
+                    outputs[child] = merge(outputs[child], outputs[fail[child]]);
+                    queue.add(child);
+                }
+            }
+
+            int[] patternLengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+            int[] patternValues = values.stream().mapToInt(Integer::intValue).toArray();
+            return new AhoCorasickMatcher(transitions, outputs, patternLengths, patternValues);
+        }
+
+        private int addNode() {
+            children.add(new int[ALPHABET]);
+            nodeOutputs.add(new int[0]);
+            return children.size() - 1;
+        }
+
+        private static int[] merge(int[] own, int[] inherited) {
+            if (inherited.length == 0) {
+                return own;
+            }
+            int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+            System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package vn.project.ClinicSystem.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Đọc tệp CSV nhập hàng loạt từng dòng: tách trường theo RFC 4180 và ánh xạ dòng tiêu đề về tên cột.
+ */
+public final class CsvReader {
+
+    private CsvReader() {
+    }
+
+    /**
+     * Tách một dòng CSV theo RFC 4180 (hỗ trợ trường trong dấu nháy kép và "" để thoát dấu nháy).
+     */
+    public static List<String> splitLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Dòng CSV thiếu dấu nháy đóng");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    /**
+     * Vị trí của từng cột đã biết trong dòng tiêu đề; tên cột khớp dạng camelCase hoặc snake_case,
+     * không phân biệt hoa thường. Cột lạ bị bỏ qua.
+     */
+    public static Map<String, Integer> parseHeader(String line, List<String> columns) {
+        List<String> names = splitLine(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim();
+            for (String column : columns) {
+                if (column.equalsIgnoreCase(name) || toSnakeCase(column).equalsIgnoreCase(name)) {
+                    header.put(column, i);
+                }
+            }
+        }
+        return header;
+    }
+
+    // Dòng thiếu trường ở cuối trả về null như cột không có trong tiêu đề
+    public static String valueAt(List<String> values, Map<String, Integer> header, String column) {
+        Integer index = header.get(column);
+        return index != null && index < values.size() ? values.get(index) : null;
+    }
+
+    private static String toSnakeCase(String camel) {
+        return camel.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,23 @@
+package vn.project.ClinicSystem.util;
+
+/**
+ * Chuẩn hóa số điện thoại Việt Nam về dạng 10 chữ số bắt đầu bằng 0, dùng chung cho mọi đường nhập
+ * bệnh nhân (API, nhập hàng loạt, yêu cầu đặt lịch) và khi so khớp hồ sơ trùng.
+ */
+public final class PhoneNumbers {
+
+    private PhoneNumbers() {
+    }
+
+    // Bỏ ký tự không phải số, đổi tiền tố quốc gia 84 thành 0; trả về null nếu không đủ 10 chữ số
+    public static String normalize(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceAll("\\D", "");
+        if (digits.length() == 11 && digits.startsWith("84")) {
+            digits = "0" + digits.substring(2);
+        }
+        return digits.length() == 10 ? digits : null;
+    }
+}
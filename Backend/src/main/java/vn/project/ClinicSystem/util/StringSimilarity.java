@@ -0,0 +1,77 @@
+package vn.project.ClinicSystem.util;
+
+/**
+ * Độ tương đồng chuỗi dùng cho so khớp tên.
+ */
+public final class StringSimilarity {
+    private static final double WINKLER_BOOST_THRESHOLD = 0.7;
+    private static final double WINKLER_SCALING = 0.1;
+    private static final int MAX_PREFIX = 4;
+
+    private StringSimilarity() {
+    }
+
+    /**
+     * Jaro-Winkler trong khoảng [0, 1], 1 là trùng khớp hoàn toàn.
+     */
+    public static double jaroWinkler(String a, String b) {
+        if (a == null || b == null) {
+            return 0d;
+        }
+        if (a.equals(b)) {
+            return a.isEmpty() ? 0d : 1d;
+        }
+        int lengthA = a.length();
+        int lengthB = b.length();
+        if (lengthA == 0 || lengthB == 0) {
+            return 0d;
+        }
+
+        int window = Math.max(0, Math.max(lengthA, lengthB) / 2 - 1);
+        boolean[] matchedA = new boolean[lengthA];
+        boolean[] matchedB = new boolean[lengthB];
+        int matches = 0;
+        for (int i = 0; i < lengthA; i++) {
+            int from = Math.max(0, i - window);
+            int to = Math.min(lengthB - 1, i + window);
+            for (int j = from; j <= to; j++) {
+                if (!matchedB[j] && a.charAt(i) == b.charAt(j)) {
+                    matchedA[i] = true;
+                    matchedB[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0d;
+        }
+
+        int transpositions = 0;
+        int k = 0;
+        for (int i = 0; i < lengthA; i++) {
+            if (!matchedA[i]) {
+                continue;
+            }
+            while (!matchedB[k]) {
+                k++;
+            }
+            if (a.charAt(i) != b.charAt(k)) {
+                transpositions++;
+            }
+            k++;
+        }
+
+        double m = matches;
+        double jaro = (m / lengthA + m / lengthB + (m - transpositions / 2d) / m) / 3d;
+        if (jaro < WINKLER_BOOST_THRESHOLD) {
+            return jaro;
+        }
+        int prefix = 0;
+        int limit = Math.min(MAX_PREFIX, Math.min(lengthA, lengthB));
+        while (prefix < limit && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * WINKLER_SCALING * (1d - jaro);
+    }
+}
@@ -0,0 +1,78 @@
+package vn.project.ClinicSystem.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hóa chuỗi tiếng Việt cho so khớp: bỏ dấu, đổi đ thành d, chữ thường, gộp khoảng trắng.
+ */
+public final class TextNormalizer {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9 ]");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private TextNormalizer() {
+    }
+
+    public static String fold(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+        stripped = NON_ALNUM.matcher(stripped).replaceAll(" ");
+        return SPACES.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    /**
+     * Mã Soundex 4 ký tự của một từ đã bỏ dấu; trả về chuỗi rỗng nếu không có chữ cái.
+     */
+    public static String soundex(String word) {
+        if (word == null || word.isEmpty()) {
+            return "";
+        }
+        char[] code = { '0', '0', '0', '0' };
+        int length = 0;
+        char previous = 0;
+        for (int i = 0; i < word.length() && length < 4; i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            if (c < 'a' || c > 'z') {
+                continue;
+            }
+            char digit = soundexDigit(c);
+            if (length == 0) {
+                code[length++] = Character.toUpperCase(c);
+            } else if (digit != '0' && digit != previous) {
+                code[length++] = digit;
+            }
+            // h và w không ngắt chuỗi phụ âm trùng mã, nguyên âm thì có
+            if (c != 'h' && c != 'w') {
+                previous = digit;
+            }
+        }
+        return length == 0 ? "" : new String(code);
+    }
+
+    private static char soundexDigit(char c) {
+        switch (c) {
+            case 'b', 'f', 'p', 'v':
+                return '1';
+            case 'c', 'g', 'j', 'k', 'q', 's', 'x', 'z':
+                return '2';
+            case 'd', 't':
+                return '3';
+            case 'l':
+                return '4';
+            case 'm', 'n':
+                return '5';
+            case 'r':
+                return '6';
+            default:
+                return '0';
+        }
+    }
+}
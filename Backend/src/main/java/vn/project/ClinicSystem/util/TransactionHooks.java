@@ -0,0 +1,28 @@
+package vn.project.ClinicSystem.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hoãn thay đổi trạng thái trong bộ nhớ (cache, chỉ mục, hàng chờ) tới khi giao dịch hiện tại commit,
+ * để rollback không để lại dữ liệu chưa từng được ghi.
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    // Không có giao dịch thì chạy ngay
+    public static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,180 @@
+package vn.project.ClinicSystem.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import jakarta.persistence.EntityManagerFactory;
+import vn.project.ClinicSystem.model.Appointment;
+import vn.project.ClinicSystem.model.ClinicRoom;
+import vn.project.ClinicSystem.model.Doctor;
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.MedicationBatch;
+import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.Prescription;
+import vn.project.ClinicSystem.model.PrescriptionItem;
+import vn.project.ClinicSystem.model.User;
+
+/**
+ * Đơn thuốc trả thẳng entity ra JSON nên mọi quan hệ được serialize phải nạp sẵn trong entity graph;
+ * số câu lệnh không được tăng theo số đơn.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.data.jpa.repositories.enabled=false" })
+class PrescriptionRepositoryTest {
+
+    @TestConfiguration
+    @EnableJpaRepositories(basePackageClasses = PrescriptionRepository.class, includeFilters = @Filter(
+            type = FilterType.ASSIGNABLE_TYPE, classes = PrescriptionRepository.class))
+    static class Repositories {
+    }
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private ClinicRoom room;
+    private int sequence;
+
+    @BeforeEach
+    void init() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        room = new ClinicRoom();
+        room.setCode("P-01");
+        room.setName("Phòng khám nội");
+        entityManager.persist(room);
+    }
+
+    @Test
+    void findDetailedByIdIn_shouldLoadSerializedGraphWithSameStatementsForOneOrManyPrescriptions() {
+        List<Long> one = List.of(prescription());
+        List<Long> many = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            many.add(prescription());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        long oneStatements = countStatements(one);
+        long manyStatements = countStatements(many);
+
+        assertThat(manyStatements).isEqualTo(oneStatements).isEqualTo(1);
+    }
+
+    @Test
+    void findDetailedById_shouldLoadSerializedGraph() {
+        Long id = prescription();
+        entityManager.flush();
+        entityManager.clear();
+
+        Prescription prescription = prescriptionRepository.findDetailedById(id).orElseThrow();
+
+        assertLoaded(prescription);
+    }
+
+    private long countStatements(List<Long> ids) {
+        statistics.clear();
+        List<Prescription> prescriptions = prescriptionRepository.findDetailedByIdIn(ids);
+        prescriptions.forEach(this::assertLoaded);
+        long statements = statistics.getPrepareStatementCount();
+        entityManager.clear();
+
+        assertThat(prescriptions).hasSize(ids.size());
+        return statements;
+    }
+
+    private void assertLoaded(Prescription prescription) {
+        PatientVisit visit = prescription.getVisit();
+        Appointment appointment = visit.getPrimaryAppointment();
+        assertThat(Hibernate.isInitialized(prescription.getItems())).isTrue();
+        assertThat(Hibernate.isInitialized(prescription.getItems().get(0).getMedicationBatch())).isTrue();
+        assertThat(Hibernate.isInitialized(visit)).isTrue();
+        assertThat(Hibernate.isInitialized(visit.getPatient())).isTrue();
+        assertThat(Hibernate.isInitialized(appointment)).isTrue();
+        assertThat(Hibernate.isInitialized(appointment.getDoctor())).isTrue();
+        assertThat(Hibernate.isInitialized(appointment.getClinicRoom())).isTrue();
+        assertThat(Hibernate.isInitialized(prescription.getPrescribedBy())).isTrue();
+        assertThat(prescription.getPrescribedBy().getAccount().getFullName()).startsWith("Bác sĩ");
+    }
+
+    private Long prescription() {
+        int n = ++sequence;
+        User account = new User();
+        account.setEmail("bs" + n + "@clinic.vn");
+        account.setFullName("Bác sĩ " + n);
+        entityManager.persist(account);
+
+        Doctor doctor = new Doctor();
+        doctor.setSpecialty("Nội tổng quát");
+        doctor.setLicenseNumber("GP-" + n);
+        doctor.setAccount(account);
+        entityManager.persist(doctor);
+
+        Patient patient = new Patient();
+        patient.setCode("BN-T" + n);
+        patient.setFullName("Bệnh nhân " + n);
+        entityManager.persist(patient);
+
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setClinicRoom(room);
+        appointment.setScheduledAt(LocalDateTime.now());
+        entityManager.persist(appointment);
+
+        PatientVisit visit = new PatientVisit();
+        visit.setPatient(patient);
+        visit.setPrimaryAppointment(appointment);
+        entityManager.persist(visit);
+
+        Medication medication = new Medication();
+        medication.setName("Thuốc " + n);
+        entityManager.persist(medication);
+
+        MedicationBatch batch = new MedicationBatch();
+        batch.setMedication(medication);
+        batch.setBatchCode("LO-" + n);
+        batch.setUnitPrice(new BigDecimal("1000"));
+        batch.setQuantityOnHand(100);
+        entityManager.persist(batch);
+
+        Prescription prescription = new Prescription();
+        prescription.setVisit(visit);
+        prescription.setPrescribedBy(doctor);
+        PrescriptionItem item = new PrescriptionItem();
+        item.setMedication(medication);
+        item.setMedicationBatch(batch);
+        item.setMedicationName(medication.getName());
+        item.setDosage("1 viên");
+        item.setFrequency("Ngày 2 lần");
+        item.setQuantity(2);
+        item.setUnitPriceSnapshot(new BigDecimal("1000"));
+        item.setAmount(new BigDecimal("2000"));
+        prescription.addItem(item);
+        entityManager.persist(prescription);
+        return prescription.getId();
+    }
+}
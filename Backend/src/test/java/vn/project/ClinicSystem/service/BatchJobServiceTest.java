@@ -0,0 +1,107 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import vn.project.ClinicSystem.model.BatchJob;
+import vn.project.ClinicSystem.model.enums.BatchJobStatus;
+import vn.project.ClinicSystem.repository.BatchJobRepository;
+
+@ExtendWith(MockitoExtension.class)
+class BatchJobServiceTest {
+    private static final String JOB_TYPE = "TEST";
+
+    @Mock
+    private BatchJobRepository batchJobRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BatchJob stored;
+
+    @BeforeEach
+    void init() {
+        when(batchJobRepository.save(any(BatchJob.class))).thenAnswer(inv -> {
+            stored = inv.getArgument(0, BatchJob.class);
+            if (stored.getId() == null) {
+                stored.setId(1L);
+            }
+            return stored;
+        });
+    }
+
+    @Test
+    void submit_shouldMarkJobFailedWhenQueueIsFullInsteadOfRunningOnCaller() {
+        List<Thread> ranOn = new ArrayList<>();
+        Executor full = task -> {
+            throw new TaskRejectedException("Hàng đợi đầy");
+        };
+        BatchJobService service = service(full);
+        service.registerHandler(JOB_TYPE, handler(ranOn));
+        when(batchJobRepository.findById(1L)).thenAnswer(inv -> Optional.of(stored));
+
+        BatchJob job = service.submit(JOB_TYPE, List.of("a", "b", "c"));
+
+        assertThat(job.getStatus()).isEqualTo(BatchJobStatus.FAILED);
+        assertThat(job.getFailedChunk()).isZero();
+        assertThat(job.getLastError()).contains("Hàng đợi");
+        // Không khối nào được chạy, kể cả trên luồng gọi
+        assertThat(ranOn).isEmpty();
+    }
+
+    @Test
+    void restart_shouldRunFromLastCommittedChunkOnceQueueHasRoom() {
+        List<Thread> ranOn = new ArrayList<>();
+        BatchJobService service = service(Runnable::run);
+        service.registerHandler(JOB_TYPE, handler(ranOn));
+        BatchJob failed = new BatchJob();
+        failed.setId(1L);
+        failed.setJobType(JOB_TYPE);
+        failed.setStatus(BatchJobStatus.FAILED);
+        failed.setPayload("[\"a\",\"b\",\"c\"]");
+        failed.setChunkSize(1);
+        failed.setTotalItems(3);
+        failed.setTotalChunks(3);
+        failed.setCommittedChunks(1);
+        stored = failed;
+        when(batchJobRepository.findById(1L)).thenAnswer(inv -> Optional.of(stored));
+
+        service.restart(1L);
+
+        assertThat(stored.getStatus()).isEqualTo(BatchJobStatus.COMPLETED);
+        assertThat(ranOn).hasSize(2);
+    }
+
+    private BatchJobService service(Executor executor) {
+        return new BatchJobService(batchJobRepository, new ObjectMapper(), executor, transactionManager, 1, 1, 0);
+    }
+
+    private static BatchJobHandler<String> handler(List<Thread> ranOn) {
+        return new BatchJobHandler<>() {
+            @Override
+            public Class<String> itemType() {
+                return String.class;
+            }
+
+            @Override
+            public void processChunk(List<String> items) {
+                ranOn.add(Thread.currentThread());
+            }
+        };
+    }
+}
@@ -0,0 +1,186 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import jakarta.persistence.EntityManagerFactory;
+import vn.project.ClinicSystem.model.Appointment;
+import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.ClinicRoom;
+import vn.project.ClinicSystem.model.Doctor;
+import vn.project.ClinicSystem.model.MedicalService;
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.MedicationBatch;
+import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.Prescription;
+import vn.project.ClinicSystem.model.PrescriptionItem;
+import vn.project.ClinicSystem.model.ServiceOrder;
+import vn.project.ClinicSystem.model.enums.ServiceOrderStatus;
+import vn.project.ClinicSystem.repository.BillingItemRepository;
+import vn.project.ClinicSystem.repository.BillingRepository;
+import vn.project.ClinicSystem.repository.MedicalServiceRepository;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.repository.PatientVisitRepository;
+import vn.project.ClinicSystem.repository.PrescriptionRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository;
+
+/**
+ * Đếm câu lệnh SQL thật khi lập hóa đơn: lazy load xảy ra bên trong Hibernate nên chỉ thống kê
+ * của Hibernate mới phát hiện được N+1, đếm lời gọi repository thì không.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.data.jpa.repositories.enabled=false" })
+@Import({ BillingService.class, PricingCatalog.class })
+class BillingQueryCountTest {
+
+    // Chỉ nạp các repository mà hóa đơn dùng để lỗi truy vấn ở repository khác không làm hỏng phép đo
+    @TestConfiguration
+    @EnableJpaRepositories(basePackageClasses = BillingRepository.class, includeFilters = @Filter(
+            type = FilterType.ASSIGNABLE_TYPE, classes = { BillingRepository.class, BillingItemRepository.class,
+                    PatientVisitRepository.class, ServiceOrderRepository.class, PrescriptionRepository.class,
+                    MedicalServiceRepository.class, MedicationBatchRepository.class }))
+    static class Repositories {
+    }
+
+    @Autowired
+    private BillingService billingService;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @MockitoBean
+    private RealTimeEventService realTimeEventService;
+
+    private Statistics statistics;
+    private ClinicRoom room;
+    private Doctor doctor;
+    private int sequence;
+
+    @BeforeEach
+    void init() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        room = new ClinicRoom();
+        room.setCode("P-01");
+        room.setName("Phòng xét nghiệm");
+        entityManager.persist(room);
+        doctor = new Doctor();
+        doctor.setSpecialty("Nội tổng quát");
+        doctor.setLicenseNumber("GP-0001");
+        entityManager.persist(doctor);
+    }
+
+    @Test
+    void generateForVisit_shouldIssueSameStatementsForOneOrTwentyOrders() {
+        // Lượt đầu cấp trước khối id cho hóa đơn và dòng hóa đơn, không tính vào phép đo
+        billingService.generateForVisit(visitWith(1, 1));
+        Long small = visitWith(1, 1);
+        Long large = visitWith(20, 10);
+        entityManager.flush();
+        entityManager.clear();
+
+        long smallStatements = countStatements(small, 2);
+        long largeStatements = countStatements(large, 30);
+
+        assertThat(largeStatements).isEqualTo(smallStatements);
+        // Hóa đơn cũ theo hồ sơ, hồ sơ khám (kèm kiểm tra billing một-một), phiếu dịch vụ, đơn thuốc,
+        // rồi một lệnh insert hóa đơn và một lệnh insert theo lô cho các dòng
+        assertThat(largeStatements).isLessThanOrEqualTo(7);
+    }
+
+    private long countStatements(Long visitId, int expectedItems) {
+        statistics.clear();
+        Billing billing = billingService.generateForVisit(visitId);
+        entityManager.flush();
+        long statements = statistics.getPrepareStatementCount();
+        entityManager.clear();
+
+        assertThat(billing.getItems()).hasSize(expectedItems);
+        assertThat(statistics.getEntityFetchCount()).isZero();
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+        return statements;
+    }
+
+    private Long visitWith(int orders, int medications) {
+        int n = ++sequence;
+        Patient patient = new Patient();
+        patient.setCode("BN-T" + n);
+        patient.setFullName("Bệnh nhân " + n);
+        entityManager.persist(patient);
+
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setClinicRoom(room);
+        appointment.setScheduledAt(LocalDateTime.now());
+        entityManager.persist(appointment);
+
+        PatientVisit visit = new PatientVisit();
+        visit.setPatient(patient);
+        visit.setPrimaryAppointment(appointment);
+        entityManager.persist(visit);
+
+        for (int i = 0; i < orders; i++) {
+            MedicalService service = new MedicalService();
+            service.setCode("DV-" + n + "-" + i);
+            service.setName("Dịch vụ " + i);
+            service.setBasePrice(10_000L);
+            service.setClinicRoom(room);
+            entityManager.persist(service);
+
+            ServiceOrder order = new ServiceOrder();
+            order.setVisit(visit);
+            order.setMedicalService(service);
+            order.setAssignedDoctor(doctor);
+            order.setStatus(ServiceOrderStatus.COMPLETED);
+            entityManager.persist(order);
+        }
+
+        Prescription prescription = new Prescription();
+        prescription.setVisit(visit);
+        prescription.setPrescribedBy(doctor);
+        for (int i = 0; i < medications; i++) {
+            Medication medication = new Medication();
+            medication.setName("Thuốc " + n + "-" + i);
+            entityManager.persist(medication);
+
+            MedicationBatch batch = new MedicationBatch();
+            batch.setMedication(medication);
+            batch.setBatchCode("LO-" + n + "-" + i);
+            batch.setUnitPrice(new BigDecimal("1000"));
+            batch.setQuantityOnHand(100);
+            entityManager.persist(batch);
+
+            PrescriptionItem item = new PrescriptionItem();
+            item.setMedication(medication);
+            item.setMedicationBatch(batch);
+            item.setMedicationName(medication.getName());
+            item.setDosage("1 viên");
+            item.setFrequency("Ngày 2 lần");
+            item.setQuantity(2);
+            item.setUnitPriceSnapshot(new BigDecimal("1000"));
+            item.setAmount(new BigDecimal("2000"));
+            prescription.addItem(item);
+        }
+        entityManager.persist(prescription);
+        return visit.getId();
+    }
+}
@@ -1,15 +1,18 @@
 package vn.project.ClinicSystem.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
-
-
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -18,13 +21,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.BillingItem;
+import vn.project.ClinicSystem.model.MedicalService;
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.MedicationBatch;
 import vn.project.ClinicSystem.model.Patient;
 import vn.project.ClinicSystem.model.PatientVisit;
 import vn.project.ClinicSystem.model.Prescription;
 import vn.project.ClinicSystem.model.PrescriptionItem;
 import vn.project.ClinicSystem.model.ServiceOrder;
+import vn.project.ClinicSystem.model.dto.BillingItemCreateRequest;
+import vn.project.ClinicSystem.model.dto.BillingItemUpdateRequest;
 import vn.project.ClinicSystem.model.enums.BillingItemType;
 import vn.project.ClinicSystem.model.enums.ServiceOrderStatus;
 import vn.project.ClinicSystem.repository.BillingItemRepository;
@@ -46,6 +56,8 @@ class BillingServiceTest {
     private ServiceOrderRepository serviceOrderRepository;
     @Mock
     private PrescriptionRepository prescriptionRepository;
+    @Mock
+    private PricingCatalog pricingCatalog;
 
     @InjectMocks
     private BillingService billingService;
@@ -60,6 +72,8 @@ class BillingServiceTest {
         visit = new PatientVisit();
         visit.setId(2L);
         visit.setPatient(patient);
+
+        lenient().when(pricingCatalog.snapshot()).thenReturn(PricingCatalog.Snapshot.EMPTY);
     }
 
     @Test
@@ -86,8 +100,8 @@ class BillingServiceTest {
 
         when(billingRepository.findByVisitId(2L)).thenReturn(Optional.empty());
         when(patientVisitRepository.findById(2L)).thenReturn(Optional.of(visit));
-        when(serviceOrderRepository.findByVisitId(2L)).thenReturn(List.of(serviceOrder));
-        when(prescriptionRepository.findByVisitIdOrderByIssuedAtDesc(2L)).thenReturn(List.of(prescription));
+        when(serviceOrderRepository.findForBillingByVisitId(2L)).thenReturn(List.of(serviceOrder));
+        when(prescriptionRepository.findForBillingByVisitId(2L)).thenReturn(List.of(prescription));
         when(billingRepository.save(any(Billing.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0, Billing.class));
 
@@ -115,4 +129,91 @@ class BillingServiceTest {
         verify(billingRepository).save(any(Billing.class));
         verify(patientVisitRepository).findById(2L);
     }
+
+    @Test
+    void updateItem_shouldApplyDeltaToTotalsWithoutRescanningItems() {
+        Billing billing = new Billing();
+        billing.setId(7L);
+        billing.setVersion(3L);
+        billing.setServiceTotal(new BigDecimal("300000"));
+        billing.setOtherTotal(new BigDecimal("50000"));
+        billing.setTotalAmount(new BigDecimal("350000"));
+
+        BillingItem item = new BillingItem();
+        item.setId(70L);
+        item.setBilling(billing);
+        item.setItemType(BillingItemType.OTHER);
+        item.setQuantity(1);
+        item.setUnitPrice(new BigDecimal("50000"));
+        item.recalculateAmount();
+
+        BillingItemUpdateRequest request = new BillingItemUpdateRequest();
+        request.setItemType(BillingItemType.SERVICE);
+        request.setQuantity(2);
+        request.setVersion(3L);
+
+        when(billingRepository.findWithLockById(7L)).thenReturn(Optional.of(billing));
+        when(billingItemRepository.findById(70L)).thenReturn(Optional.of(item));
+        when(billingItemRepository.save(any(BillingItem.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, BillingItem.class));
+
+        billingService.updateItem(7L, 70L, request);
+
+        assertThat(billing.getOtherTotal()).isEqualByComparingTo("0");
+        assertThat(billing.getServiceTotal()).isEqualByComparingTo("400000");
+        assertThat(billing.getTotalAmount()).isEqualByComparingTo("400000");
+        verify(billingRepository).save(billing);
+    }
+
+    @Test
+    void addManualItem_shouldRejectStaleVersion() {
+        Billing billing = new Billing();
+        billing.setId(7L);
+        billing.setVersion(4L);
+
+        BillingItemCreateRequest request = new BillingItemCreateRequest();
+        request.setItemType(BillingItemType.OTHER);
+        request.setDescription("Phí khám ngoài giờ");
+        request.setQuantity(1);
+        request.setUnitPrice(new BigDecimal("100000"));
+        request.setVersion(3L);
+
+        when(billingRepository.findWithLockById(7L)).thenReturn(Optional.of(billing));
+
+        assertThatThrownBy(() -> billingService.addManualItem(7L, request))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verifyNoMoreInteractions(billingItemRepository);
+    }
+
+    @Test
+    void buildBilling_shouldResolvePricesFromCatalogAndStampVersion() {
+        ServiceOrder serviceOrder = new ServiceOrder();
+        serviceOrder.setId(30L);
+        serviceOrder.setStatus(ServiceOrderStatus.COMPLETED);
+        MedicalService medicalService = new MedicalService();
+        medicalService.setId(40L);
+        medicalService.setName("Siêu âm bụng");
+        medicalService.setBasePrice(150_000L);
+        serviceOrder.setMedicalService(medicalService);
+
+        MedicationBatch batch = new MedicationBatch();
+        batch.setId(60L);
+        PrescriptionItem prescriptionItem = new PrescriptionItem();
+        prescriptionItem.setMedicationName("Paracetamol");
+        prescriptionItem.setMedicationBatch(batch);
+        prescriptionItem.setQuantity(3);
+        Prescription prescription = new Prescription();
+        prescription.setItems(new ArrayList<>(List.of(prescriptionItem)));
+
+        PricingCatalog.Snapshot prices = new PricingCatalog.Snapshot(42L,
+                Map.of(40L, new BigDecimal("180000")), Map.of(60L, new BigDecimal("2000")));
+        when(pricingCatalog.snapshot()).thenReturn(prices);
+
+        Billing billing = billingService.buildBilling(visit, List.of(serviceOrder), List.of(prescription));
+
+        assertThat(billing.getPricingCatalogVersion()).isEqualTo(42L);
+        assertThat(billing.getServiceTotal()).isEqualByComparingTo("180000");
+        assertThat(billing.getMedicationTotal()).isEqualByComparingTo("6000");
+        assertThat(billing.getTotalAmount()).isEqualByComparingTo("186000");
+    }
 }
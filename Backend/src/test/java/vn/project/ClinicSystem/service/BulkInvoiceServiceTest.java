@@ -0,0 +1,143 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.dto.BulkInvoiceResultDTO;
+import vn.project.ClinicSystem.model.dto.BulkInvoiceResultDTO.VisitFailure;
+import vn.project.ClinicSystem.model.enums.VisitStatus;
+import vn.project.ClinicSystem.repository.BillingRepository;
+import vn.project.ClinicSystem.repository.PatientVisitRepository;
+import vn.project.ClinicSystem.repository.PrescriptionRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository;
+
+@ExtendWith(MockitoExtension.class)
+class BulkInvoiceServiceTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 1);
+
+    @Mock
+    private PatientVisitRepository patientVisitRepository;
+    @Mock
+    private ServiceOrderRepository serviceOrderRepository;
+    @Mock
+    private PrescriptionRepository prescriptionRepository;
+    @Mock
+    private BillingRepository billingRepository;
+    @Mock
+    private BillingService billingService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Captor
+    private ArgumentCaptor<List<Billing>> saved;
+
+    @BeforeEach
+    void init() {
+        when(patientVisitRepository.findUnbilledVisitIds(eq(VisitStatus.COMPLETED), any(), any()))
+                .thenReturn(List.of(1L, 2L, 3L));
+        lenient().when(patientVisitRepository.findAllById(anyList())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(BulkInvoiceServiceTest::visit).toList();
+        });
+        lenient().when(billingService.buildBilling(any(), anyList(), anyList())).thenAnswer(invocation -> {
+            PatientVisit visit = invocation.getArgument(0);
+            if (visit.getId() == 2L) {
+                throw new IllegalStateException("Hồ sơ khám chưa có chỉ định nào để lập hóa đơn");
+            }
+            return billing(visit.getId());
+        });
+    }
+
+    @Test
+    void generateForDay_shouldBillRestOfPartitionWhenOneVisitFailsToBuild() {
+        BulkInvoiceResultDTO result = service(3).generateForDay(DAY);
+
+        assertThat(result.getPartitions()).isEqualTo(1);
+        assertThat(result.getBilled()).isEqualTo(2);
+        assertThat(result.getTotalAmount()).isEqualByComparingTo("40000");
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getFailures()).extracting(VisitFailure::getVisitId).containsExactly(2L);
+        verify(billingRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(billing -> billing.getVisit().getId()).containsExactly(1L, 3L);
+        verify(billingService, never()).generateForVisit(any());
+    }
+
+    @Test
+    void generateForDay_shouldFallBackToOneByOneWhenPartitionRollsBack() {
+        // Hồ sơ 3 vừa được lập hóa đơn ở nơi khác: cả nhóm rollback khi ghi
+        doThrow(new DataIntegrityViolationException("Duplicate entry for visit_id"))
+                .when(billingRepository).flush();
+        when(billingService.generateForVisit(1L)).thenReturn(billing(1L));
+        when(billingService.generateForVisit(2L))
+                .thenThrow(new IllegalStateException("Hồ sơ khám chưa có chỉ định nào để lập hóa đơn"));
+        when(billingService.generateForVisit(3L)).thenReturn(billing(3L));
+
+        BulkInvoiceResultDTO result = service(3).generateForDay(DAY);
+
+        assertThat(result.getBilled()).isEqualTo(2);
+        assertThat(result.getTotalAmount()).isEqualByComparingTo("40000");
+        // Lỗi của hồ sơ 2 ở lượt theo nhóm bị bỏ cùng lượt đó, chỉ báo một lần từ lượt lập từng hồ sơ
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getFailures()).extracting(VisitFailure::getVisitId).containsExactly(2L);
+        assertThat(result.getFailures().get(0).getMessage()).contains("chưa có chỉ định");
+    }
+
+    @Test
+    void generateForDay_shouldOnlyFallBackForPartitionThatRolledBack() {
+        doThrow(new DataIntegrityViolationException("Duplicate entry for visit_id"))
+                .doNothing()
+                .when(billingRepository).flush();
+        when(billingService.generateForVisit(1L)).thenReturn(billing(1L));
+        when(billingService.generateForVisit(2L))
+                .thenThrow(new IllegalStateException("Hồ sơ khám chưa có chỉ định nào để lập hóa đơn"));
+
+        // Nhóm [1, 2] rollback và lập lại từng hồ sơ; nhóm [3] ghi bình thường
+        BulkInvoiceResultDTO result = service(2).generateForDay(DAY);
+
+        assertThat(result.getPartitions()).isEqualTo(2);
+        assertThat(result.getBilled()).isEqualTo(2);
+        assertThat(result.getFailures()).extracting(VisitFailure::getVisitId).containsExactly(2L);
+        verify(billingService, never()).generateForVisit(3L);
+    }
+
+    private BulkInvoiceService service(int partitionSize) {
+        return new BulkInvoiceService(patientVisitRepository, serviceOrderRepository, prescriptionRepository,
+                billingRepository, billingService, Runnable::run, transactionManager, partitionSize);
+    }
+
+    private static PatientVisit visit(Long id) {
+        PatientVisit visit = new PatientVisit();
+        visit.setId(id);
+        return visit;
+    }
+
+    private static Billing billing(Long visitId) {
+        Billing billing = new Billing();
+        billing.setVisit(visit(visitId));
+        billing.setTotalAmount(new BigDecimal("20000"));
+        return billing;
+    }
+}
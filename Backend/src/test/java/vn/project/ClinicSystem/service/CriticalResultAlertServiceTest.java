@@ -0,0 +1,75 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import jakarta.persistence.EntityNotFoundException;
+import vn.project.ClinicSystem.model.dto.CriticalResultAlertDTO;
+import vn.project.ClinicSystem.model.enums.IndicatorResultLevel;
+
+@ExtendWith(MockitoExtension.class)
+class CriticalResultAlertServiceTest {
+
+    @Mock
+    private RealTimeEventService realTimeEventService;
+
+    private CriticalResultAlertService alertService;
+
+    @BeforeEach
+    void setUp() {
+        alertService = new CriticalResultAlertService(realTimeEventService, 60_000, 3);
+    }
+
+    @Test
+    void dispatch_shouldDeliverToAssignedDoctorAndKeepAlertPending() {
+        alertService.raise(10L, 20L, "Nguyễn Văn A", 7L, "Kali", new BigDecimal("6.8"), "mmol/L",
+                IndicatorResultLevel.CRITICAL_HIGH);
+
+        alertService.dispatch();
+
+        verify(realTimeEventService).notifyCriticalResult(eq(7L), eq(10L), anyString(), anyString(), anyMap());
+        verify(realTimeEventService, never()).broadcastCriticalResult(any(), anyString(), anyString(), anyMap());
+        assertThat(alertService.getPendingAlerts())
+                .extracting(CriticalResultAlertDTO::getServiceOrderId)
+                .containsExactly(10L);
+    }
+
+    @Test
+    void dispatch_shouldBroadcastWhenOrderHasNoDoctor() {
+        alertService.raise(11L, 21L, "Trần Thị B", null, "Glucose", new BigDecimal("1.9"), "mmol/L",
+                IndicatorResultLevel.CRITICAL_LOW);
+
+        alertService.dispatch();
+
+        verify(realTimeEventService).broadcastCriticalResult(eq(11L), anyString(), anyString(), anyMap());
+    }
+
+    @Test
+    void acknowledge_shouldRemovePendingAlertOnlyOnce() {
+        alertService.raise(12L, 22L, "Lê Văn C", 7L, "Kali", new BigDecimal("2.1"), "mmol/L",
+                IndicatorResultLevel.CRITICAL_LOW);
+        alertService.dispatch();
+        Long alertId = alertService.getPendingAlerts().get(0).getId();
+
+        CriticalResultAlertDTO acknowledged = alertService.acknowledge(alertId, "doctor@clinic.vn");
+
+        assertThat(acknowledged.getAcknowledgedBy()).isEqualTo("doctor@clinic.vn");
+        assertThat(alertService.getPendingAlerts()).isEmpty();
+        assertThatThrownBy(() -> alertService.acknowledge(alertId, "doctor@clinic.vn"))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+}
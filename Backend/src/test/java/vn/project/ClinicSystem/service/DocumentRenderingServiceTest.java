@@ -0,0 +1,187 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ClassPathResource;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.BillingItem;
+import vn.project.ClinicSystem.model.Doctor;
+import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.Prescription;
+import vn.project.ClinicSystem.model.PrescriptionItem;
+import vn.project.ClinicSystem.model.User;
+import vn.project.ClinicSystem.model.enums.DocumentFormat;
+import vn.project.ClinicSystem.repository.BillingRepository;
+import vn.project.ClinicSystem.repository.PrescriptionRepository;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentRenderingServiceTest {
+    private static final String PATIENT_NAME = "Nguyễn Thị Hằng";
+
+    @Mock
+    private BillingRepository billingRepository;
+    @Mock
+    private PrescriptionRepository prescriptionRepository;
+
+    private DocumentRenderingService service;
+
+    @BeforeEach
+    void init() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        service = new DocumentRenderingService(templateEngine, billingRepository, prescriptionRepository,
+                Runnable::run, new SimpleMeterRegistry(), new ClassPathResource("fonts/DejaVuSans.ttf"), 2);
+    }
+
+    @Test
+    void renderInvoice_shouldKeepVietnameseTextInHtmlAndPdf() throws IOException {
+        when(billingRepository.findForPrintById(1L)).thenReturn(Optional.of(billing(1L)));
+
+        String html = new String(service.renderInvoice(1L, DocumentFormat.HTML), StandardCharsets.UTF_8);
+        assertThat(html).contains("HÓA ĐƠN THANH TOÁN", PATIENT_NAME, "Khám nội tổng quát", "150.000 đ");
+
+        String pdf = pdfText(service.renderInvoice(1L, DocumentFormat.PDF));
+        assertThat(pdf).contains("HÓA ĐƠN THANH TOÁN", PATIENT_NAME, "Khám nội tổng quát");
+    }
+
+    @Test
+    void renderPrescription_shouldKeepVietnameseTextInHtmlAndPdf() throws IOException {
+        when(prescriptionRepository.findForPrintById(5L)).thenReturn(Optional.of(prescription()));
+
+        String html = new String(service.renderPrescription(5L, DocumentFormat.HTML), StandardCharsets.UTF_8);
+        assertThat(html).contains("ĐƠN THUỐC", PATIENT_NAME, "Viêm họng cấp", "BS. Trần Đức Minh",
+                "Uống sau ăn", "Lời dặn: Tái khám sau 5 ngày");
+
+        String pdf = pdfText(service.renderPrescription(5L, DocumentFormat.PDF));
+        assertThat(pdf).contains("ĐƠN THUỐC", PATIENT_NAME, "Viêm họng cấp", "Uống sau ăn");
+    }
+
+    @Test
+    void writeDailyInvoices_shouldWriteOneZipEntryPerBilling() throws IOException {
+        LocalDate day = LocalDate.of(2025, 3, 1);
+        when(billingRepository.findIdsByIssuedAtRange(day.atStartOfDay(), day.plusDays(1).atStartOfDay()))
+                .thenReturn(List.of(11L, 12L, 13L));
+        when(billingRepository.findForPrintByIdIn(any())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(DocumentRenderingServiceTest::billing).toList();
+        });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = service.writeDailyInvoices(day, DocumentFormat.HTML, out);
+
+        assertThat(written).isEqualTo(3);
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()),
+                StandardCharsets.UTF_8)) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+                assertThat(new String(zip.readAllBytes(), StandardCharsets.UTF_8)).contains(PATIENT_NAME);
+            }
+        }
+        assertThat(entries).containsExactly("hoa-don-11.html", "hoa-don-12.html", "hoa-don-13.html");
+    }
+
+    private static String pdfText(byte[] pdf) throws IOException {
+        assertThat(new String(pdf, 0, 5, StandardCharsets.US_ASCII)).isEqualTo("%PDF-");
+        try (PDDocument document = PDDocument.load(pdf)) {
+            // Font Unicode phải được nhúng, nếu không ký tự có dấu bị thay bằng dấu #
+            PDPage page = document.getPage(0);
+            List<String> fonts = new ArrayList<>();
+            page.getResources().getFontNames().forEach(name -> {
+                try {
+                    fonts.add(page.getResources().getFont(name).getName());
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            assertThat(fonts).anyMatch(font -> font.contains("DejaVuSans"));
+            return new PDFTextStripper().getText(document);
+        }
+    }
+
+    private static Billing billing(Long id) {
+        Patient patient = new Patient();
+        patient.setCode("BN0000000001");
+        patient.setFullName(PATIENT_NAME);
+
+        BillingItem item = new BillingItem();
+        item.setDescription("Khám nội tổng quát");
+        item.setQuantity(1);
+        item.setUnitPrice(new BigDecimal("150000"));
+        item.setAmount(new BigDecimal("150000"));
+
+        Billing billing = new Billing();
+        billing.setId(id);
+        billing.setPatient(patient);
+        billing.setIssuedAt(LocalDateTime.of(2025, 3, 1, 9, 30));
+        billing.getItems().add(item);
+        billing.setServiceTotal(new BigDecimal("150000"));
+        billing.setTotalAmount(new BigDecimal("150000"));
+        return billing;
+    }
+
+    private static Prescription prescription() {
+        Patient patient = new Patient();
+        patient.setCode("BN0000000001");
+        patient.setFullName(PATIENT_NAME);
+        PatientVisit visit = new PatientVisit();
+        visit.setPatient(patient);
+        visit.setProvisionalDiagnosis("Viêm họng cấp");
+
+        User account = new User();
+        account.setFullName("BS. Trần Đức Minh");
+        Doctor doctor = new Doctor();
+        doctor.setAccount(account);
+
+        PrescriptionItem item = new PrescriptionItem();
+        item.setMedicationName("Paracetamol");
+        item.setDosage("500mg");
+        item.setQuantity(10);
+        item.setFrequency("3 lần/ngày");
+        item.setDuration("5 ngày");
+        item.setInstruction("Uống sau ăn");
+
+        Prescription prescription = new Prescription();
+        prescription.setId(5L);
+        prescription.setVisit(visit);
+        prescription.setPrescribedBy(doctor);
+        prescription.setIssuedAt(LocalDateTime.of(2025, 3, 1, 10, 0));
+        prescription.setNotes("Tái khám sau 5 ngày");
+        prescription.getItems().add(item);
+        return prescription;
+    }
+}
@@ -0,0 +1,58 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ClassPathResource;
+
+import vn.project.ClinicSystem.model.enums.InteractionSeverity;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+
+@ExtendWith(MockitoExtension.class)
+class DrugInteractionEngineTest {
+
+    @Mock
+    private MedicationRepository medicationRepository;
+
+    private DrugInteractionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new DrugInteractionEngine(medicationRepository,
+                new ClassPathResource("data/drug-ingredients.csv"),
+                new ClassPathResource("data/drug-interactions.csv"));
+    }
+
+    @Test
+    void check_shouldFindInteractionRegardlessOfOrderAndAlias() {
+        List<DrugInteractionEngine.Finding> findings = engine.check(List.of("Aspirin 81mg", "Coumadin 5 mg"));
+
+        assertThat(findings).hasSize(1);
+        assertThat(findings.get(0).getDrug1()).isEqualTo("Aspirin 81mg");
+        assertThat(findings.get(0).getInteraction().getSeverity()).isEqualTo(InteractionSeverity.MAJOR);
+    }
+
+    @Test
+    void check_shouldOnlyMatchWholeWords() {
+        assertThat(engine.resolve("Kaliclorid")).isEmpty();
+        assertThat(engine.check(List.of("Simvastatin 20mg", "Clarithromycin 500mg", "Paracetamol")))
+                .extracting(finding -> finding.getInteraction().getSeverity())
+                .containsExactly(InteractionSeverity.CONTRAINDICATED);
+    }
+
+    @Test
+    void check_shouldResolveCatalogMedicationThroughActiveIngredient() {
+        engine.registerMedication("Cardiomagnyl", "Acid acetylsalicylic, magnesi hydroxyd");
+
+        assertThat(engine.check(List.of("Cardiomagnyl", "Warfarin"))).hasSize(1);
+
+        engine.unregisterMedication("Cardiomagnyl");
+        assertThat(engine.check(List.of("Cardiomagnyl", "Warfarin"))).isEmpty();
+    }
+}
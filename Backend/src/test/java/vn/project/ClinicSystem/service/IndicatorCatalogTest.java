@@ -0,0 +1,81 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.project.ClinicSystem.model.ServiceIndicator;
+import vn.project.ClinicSystem.repository.ServiceIndicatorRepository;
+
+@ExtendWith(MockitoExtension.class)
+class IndicatorCatalogTest {
+    private static final Long SERVICE_ID = 4L;
+
+    @Mock
+    private ServiceIndicatorRepository indicatorRepository;
+
+    private IndicatorCatalog catalog;
+
+    @BeforeEach
+    void init() {
+        catalog = new IndicatorCatalog(indicatorRepository);
+    }
+
+    @Test
+    void forService_shouldLoadOnceAndServeFromMemory() {
+        when(indicatorRepository.findByMedicalServiceIdOrderByNameAsc(SERVICE_ID))
+                .thenReturn(List.of(indicator(1L, "GLU")));
+
+        catalog.forService(SERVICE_ID);
+        IndicatorCatalog.ServiceIndicators indicators = catalog.forService(SERVICE_ID);
+
+        assertThat(indicators.getByCode("glu").getId()).isEqualTo(1L);
+        verify(indicatorRepository, times(1)).findByMedicalServiceIdOrderByNameAsc(SERVICE_ID);
+    }
+
+    @Test
+    void forService_shouldNotCacheSnapshotLoadedBeforeConcurrentEvict() {
+        when(indicatorRepository.findByMedicalServiceIdOrderByNameAsc(SERVICE_ID))
+                .thenAnswer(inv -> {
+                    // Chỉ số bị sửa và evict trong lúc lượt nạp này đang đọc dữ liệu cũ
+                    catalog.evict(SERVICE_ID);
+                    return List.of(indicator(1L, "GLU"));
+                })
+                .thenReturn(List.of(indicator(1L, "GLU"), indicator(2L, "HBA1C")));
+
+        IndicatorCatalog.ServiceIndicators stale = catalog.forService(SERVICE_ID);
+        IndicatorCatalog.ServiceIndicators fresh = catalog.forService(SERVICE_ID);
+
+        assertThat(stale.get(2L)).isNull();
+        assertThat(fresh.get(2L)).isNotNull();
+    }
+
+    @Test
+    void clear_shouldForceReloadOfEveryService() {
+        when(indicatorRepository.findByMedicalServiceIdOrderByNameAsc(SERVICE_ID))
+                .thenReturn(List.of(indicator(1L, "GLU")));
+
+        catalog.forService(SERVICE_ID);
+        catalog.clear();
+        catalog.forService(SERVICE_ID);
+
+        verify(indicatorRepository, times(2)).findByMedicalServiceIdOrderByNameAsc(SERVICE_ID);
+    }
+
+    private static ServiceIndicator indicator(Long id, String code) {
+        ServiceIndicator indicator = new ServiceIndicator();
+        indicator.setId(id);
+        indicator.setCode(code);
+        indicator.setName(code);
+        return indicator;
+    }
+}
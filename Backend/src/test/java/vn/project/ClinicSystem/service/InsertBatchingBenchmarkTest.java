@@ -0,0 +1,254 @@
+package vn.project.ClinicSystem.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.Appointment;
+import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.ClinicRoom;
+import vn.project.ClinicSystem.model.Doctor;
+import vn.project.ClinicSystem.model.MedicalService;
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.MedicationBatch;
+import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.Prescription;
+import vn.project.ClinicSystem.model.PrescriptionItem;
+import vn.project.ClinicSystem.model.ServiceIndicator;
+import vn.project.ClinicSystem.model.ServiceOrder;
+import vn.project.ClinicSystem.model.dto.ServiceOrderResultEntryRequest;
+import vn.project.ClinicSystem.model.dto.ServiceOrderResultRequest;
+import vn.project.ClinicSystem.model.enums.ServiceOrderStatus;
+
+/**
+ * Đo số lượt gửi lệnh JDBC khi ghi nhiều dòng con, so lượt chạy mô phỏng IDENTITY (mỗi INSERT
+ * một lượt) với id dạng bảng + hibernate.jdbc.batch_size (các INSERT được gom batch).
+ * Cần MySQL thật, chạy bằng: ./gradlew test -Dclinicsystem.benchmark=true --tests InsertBatchingBenchmarkTest
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@EnabledIfSystemProperty(named = "clinicsystem.benchmark", matches = "true")
+@Slf4j
+class InsertBatchingBenchmarkTest {
+    private static final int CHILD_ROWS = 200;
+
+    @Autowired
+    private BillingService billingService;
+
+    @Autowired
+    private ServiceOrderResultService serviceOrderResultService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Test
+    void generateForVisitBatchesBillingItems() {
+        Measurement baseline = measure(1, createFixture(), fixture -> {
+            Billing billing = billingService.generateForVisit(fixture.visitId);
+            assertEquals(CHILD_ROWS * 2, billing.getItems().size());
+        });
+        Measurement batched = measure(null, createFixture(), fixture -> {
+            Billing billing = billingService.generateForVisit(fixture.visitId);
+            assertEquals(CHILD_ROWS * 2, billing.getItems().size());
+        });
+
+        report("BillingService.generateForVisit", baseline, batched);
+    }
+
+    @Test
+    void recordResultsBatchesIndicatorResults() {
+        Measurement baseline = measure(1, createFixture(), this::recordResults);
+        Measurement batched = measure(null, createFixture(), this::recordResults);
+
+        report("ServiceOrderResultService.recordResults", baseline, batched);
+    }
+
+    private void recordResults(Fixture fixture) {
+        ServiceOrderResultRequest request = new ServiceOrderResultRequest();
+        request.setPerformedAt(LocalDateTime.now());
+        List<ServiceOrderResultEntryRequest> entries = new ArrayList<>();
+        for (Long indicatorId : fixture.indicatorIds) {
+            ServiceOrderResultEntryRequest entry = new ServiceOrderResultEntryRequest();
+            entry.setIndicatorId(indicatorId);
+            entry.setValue(BigDecimal.valueOf(5));
+            entries.add(entry);
+        }
+        request.setIndicators(entries);
+        serviceOrderResultService.recordResults(fixture.firstOrderId, request);
+    }
+
+    /**
+     * Chạy thao tác trong một transaction và đo tới lúc flush xong. batchSize = 1 tái hiện IDENTITY:
+     * Hibernate phải lấy id sinh ra sau từng INSERT nên tắt batch, mỗi dòng một lượt gửi lệnh.
+     * batchSize = null dùng hibernate.jdbc.batch_size của cấu hình với id dạng bảng.
+     */
+    private Measurement measure(Integer batchSize, Fixture fixture, Consumer<Fixture> operation) {
+        Statistics statistics = statistics();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        return tx.execute(status -> {
+            em.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            statistics.clear();
+            long started = System.nanoTime();
+            operation.accept(fixture);
+            em.flush();
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+            return new Measurement(statistics.getEntityInsertCount(), statistics.getPrepareStatementCount(),
+                    elapsedMs);
+        });
+    }
+
+    private void report(String operation, Measurement baseline, Measurement batched) {
+        log.info("{}: {} entity inserts; IDENTITY baseline {} JDBC statements, {} ms; "
+                + "id dạng bảng + batch {} JDBC statements, {} ms",
+                operation, batched.inserts, baseline.statements, baseline.elapsedMs, batched.statements,
+                batched.elapsedMs);
+        assertTrue(batched.inserts >= CHILD_ROWS, "Benchmark phải ghi đủ số dòng con");
+        assertEquals(baseline.inserts, batched.inserts, "Hai lượt đo phải ghi cùng số dòng");
+        assertTrue(baseline.statements >= baseline.inserts, "Baseline phải gửi mỗi INSERT một lượt");
+        assertTrue(batched.statements < baseline.statements, "INSERT phải được gom batch so với baseline");
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        return statistics;
+    }
+
+    private Fixture createFixture() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        return tx.execute(status -> {
+            String suffix = Long.toString(System.nanoTime());
+
+            ClinicRoom room = new ClinicRoom();
+            room.setCode("BM-" + suffix);
+            room.setName("Benchmark room");
+            em.persist(room);
+
+            Doctor doctor = new Doctor();
+            doctor.setSpecialty("Benchmark");
+            doctor.setLicenseNumber("BM-" + suffix);
+            em.persist(doctor);
+
+            Patient patient = new Patient();
+            patient.setCode("BM" + suffix);
+            patient.setFullName("Benchmark Patient");
+            em.persist(patient);
+
+            Appointment appointment = new Appointment();
+            appointment.setPatient(patient);
+            appointment.setDoctor(doctor);
+            appointment.setClinicRoom(room);
+            appointment.setScheduledAt(LocalDateTime.now());
+            em.persist(appointment);
+
+            PatientVisit visit = new PatientVisit();
+            visit.setPatient(patient);
+            visit.setPrimaryAppointment(appointment);
+            em.persist(visit);
+
+            MedicalService service = new MedicalService();
+            service.setCode("BM-" + suffix);
+            service.setName("Benchmark service");
+            service.setBasePrice(100_000L);
+            service.setClinicRoom(room);
+            em.persist(service);
+
+            Fixture fixture = new Fixture();
+            for (int i = 0; i < CHILD_ROWS; i++) {
+                ServiceIndicator indicator = new ServiceIndicator();
+                indicator.setMedicalService(service);
+                indicator.setCode("I" + i);
+                indicator.setName("Indicator " + i);
+                indicator.setNormalMin(BigDecimal.ONE);
+                indicator.setNormalMax(BigDecimal.TEN);
+                em.persist(indicator);
+                fixture.indicatorIds.add(indicator.getId());
+
+                ServiceOrder order = new ServiceOrder();
+                order.setVisit(visit);
+                order.setMedicalService(service);
+                order.setAssignedDoctor(doctor);
+                order.setStatus(ServiceOrderStatus.COMPLETED);
+                em.persist(order);
+                if (fixture.firstOrderId == null) {
+                    fixture.firstOrderId = order.getId();
+                }
+            }
+
+            Medication medication = new Medication();
+            medication.setName("Benchmark medication " + suffix);
+            em.persist(medication);
+            MedicationBatch batch = new MedicationBatch();
+            batch.setMedication(medication);
+            batch.setUnitPrice(BigDecimal.valueOf(1_000));
+            batch.setQuantityOnHand(0);
+            em.persist(batch);
+
+            Prescription prescription = new Prescription();
+            prescription.setVisit(visit);
+            prescription.setPrescribedBy(doctor);
+            for (int i = 0; i < CHILD_ROWS; i++) {
+                PrescriptionItem item = new PrescriptionItem();
+                item.setMedication(medication);
+                item.setMedicationBatch(batch);
+                item.setMedicationName(medication.getName());
+                item.setDosage("1 viên");
+                item.setFrequency("2 lần/ngày");
+                item.setQuantity(1);
+                item.setUnitPriceSnapshot(batch.getUnitPrice());
+                item.setAmount(batch.getUnitPrice());
+                prescription.addItem(item);
+            }
+            em.persist(prescription);
+            em.flush();
+            fixture.visitId = visit.getId();
+            return fixture;
+        });
+    }
+
+    private static final class Measurement {
+        final long inserts;
+        final long statements;
+        final long elapsedMs;
+
+        Measurement(long inserts, long statements, long elapsedMs) {
+            this.inserts = inserts;
+            this.statements = statements;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private static final class Fixture {
+        Long visitId;
+        Long firstOrderId;
+        final List<Long> indicatorIds = new ArrayList<>();
+    }
+}
@@ -0,0 +1,205 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import vn.project.ClinicSystem.model.dto.InventoryAlertView;
+import vn.project.ClinicSystem.model.dto.InventoryAlertView.ExpiringBatch;
+import vn.project.ClinicSystem.model.dto.InventoryAlertView.LowStockMedication;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository.ExpiryView;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.repository.MedicationRepository.StockLevelView;
+import vn.project.ClinicSystem.repository.StockMovementRepository;
+import vn.project.ClinicSystem.repository.StockMovementRepository.TouchedView;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryAlertScannerTest {
+    private static final Duration LAG = Duration.ofSeconds(60);
+
+    @Mock
+    private MedicationBatchRepository medicationBatchRepository;
+    @Mock
+    private MedicationRepository medicationRepository;
+    @Mock
+    private StockMovementRepository stockMovementRepository;
+    @Mock
+    private RealTimeEventService realTimeEventService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private InventoryAlertScanner scanner;
+    private LocalDate today;
+
+    @BeforeEach
+    void init() {
+        scanner = new InventoryAlertScanner(medicationBatchRepository, medicationRepository, stockMovementRepository,
+                realTimeEventService, transactionManager, new int[] { 90, 30 }, 20, LAG.toSeconds());
+        today = LocalDate.now();
+    }
+
+    @Test
+    void scan_shouldReadOnlyChangesSinceLaggedWatermarkAfterFirstFullScan() {
+        Instant before = Instant.now();
+        scanner.scan();
+        Instant after = Instant.now();
+        verify(medicationBatchRepository).findExpiringUntil(today.plusDays(90));
+        verify(medicationRepository).findBelowReorderLevel(20);
+
+        scanner.scan();
+        scanner.scan();
+
+        ArgumentCaptor<Instant> watermarks = ArgumentCaptor.forClass(Instant.class);
+        verify(stockMovementRepository, times(2)).findTouchedSince(watermarks.capture());
+        Instant first = watermarks.getAllValues().get(0);
+        assertThat(first).isBetween(before.minus(LAG), after.minus(LAG));
+        assertThat(watermarks.getAllValues().get(1)).isAfterOrEqualTo(first);
+        verify(medicationBatchRepository).findExpiryViewsUpdatedSince(first);
+        verify(medicationRepository).findStockLevelsUpdatedSince(first);
+        // Không có phát sinh trong sổ kho thì không chạy truy vấn theo id
+        verify(medicationBatchRepository, never()).findExpiryViewsByIds(any());
+        verify(medicationRepository, never()).findStockLevelsByIds(any());
+        verify(medicationBatchRepository, times(1)).findExpiringUntil(any());
+    }
+
+    @Test
+    void scan_shouldRealertBatchThatMovesToNearerHorizon() {
+        when(medicationBatchRepository.findExpiringUntil(today.plusDays(90)))
+                .thenReturn(List.of(batch(7L, today.plusDays(60), 10)));
+        scanner.scan();
+        assertThat(scanner.currentAlerts().getExpiringBatches()).extracting(ExpiringBatch::getHorizonDays)
+                .containsExactly(90);
+
+        // Hạn dùng được sửa lại: lô rơi từ cửa sổ 90 ngày vào cửa sổ 30 ngày
+        when(medicationBatchRepository.findExpiryViewsUpdatedSince(any()))
+                .thenReturn(List.of(batch(7L, today.plusDays(10), 10)));
+        scanner.scan();
+
+        assertThat(scanner.currentAlerts().getExpiringBatches()).extracting(ExpiringBatch::getHorizonDays)
+                .containsExactly(30);
+        verify(realTimeEventService).broadcastInventoryAlert(anyString(), eq("1 lô hết hạn trong 90 ngày"), anyMap());
+        verify(realTimeEventService).broadcastInventoryAlert(anyString(), eq("1 lô hết hạn trong 30 ngày"), anyMap());
+
+        // Không có gì đổi thì không báo lại
+        when(medicationBatchRepository.findExpiryViewsUpdatedSince(any())).thenReturn(List.of());
+        scanner.scan();
+        verify(realTimeEventService, times(2)).broadcastInventoryAlert(anyString(), anyString(), anyMap());
+    }
+
+    @Test
+    void scan_shouldDropBatchAndMedicationTouchedInLedgerButNoLongerInDatabase() {
+        when(medicationBatchRepository.findExpiringUntil(any()))
+                .thenReturn(List.of(batch(7L, today.plusDays(10), 10), batch(8L, today.plusDays(20), 5)));
+        when(medicationRepository.findBelowReorderLevel(20)).thenReturn(List.of(level(1L, 3)));
+        scanner.scan();
+        assertThat(scanner.currentAlerts().getExpiringBatches()).hasSize(2);
+        assertThat(scanner.currentAlerts().getLowStockMedications()).hasSize(1);
+
+        // Lô 7 và thuốc 1 bị xóa; lô 8 có phát sinh và cũng vừa được sửa (gộp một dòng theo id)
+        when(stockMovementRepository.findTouchedSince(any())).thenReturn(List.of(touched(1L, 7L), touched(1L, 8L)));
+        when(medicationBatchRepository.findExpiryViewsByIds(Set.of(7L, 8L)))
+                .thenReturn(List.of(batch(8L, today.plusDays(20), 4)));
+        when(medicationBatchRepository.findExpiryViewsUpdatedSince(any()))
+                .thenReturn(List.of(batch(8L, today.plusDays(20), 4)));
+        scanner.scan();
+
+        InventoryAlertView alerts = scanner.currentAlerts();
+        assertThat(alerts.getExpiringBatches()).extracting(ExpiringBatch::getBatchId).containsExactly(8L);
+        assertThat(alerts.getExpiringBatches()).extracting(ExpiringBatch::getQuantityOnHand).containsExactly(4);
+        assertThat(alerts.getLowStockMedications()).extracting(LowStockMedication::getMedicationId).isEmpty();
+        verify(medicationRepository).findStockLevelsByIds(Set.of(1L));
+    }
+
+    private static ExpiryView batch(Long id, LocalDate expiryDate, int quantity) {
+        return new ExpiryView() {
+            @Override
+            public Long getBatchId() {
+                return id;
+            }
+
+            @Override
+            public String getBatchCode() {
+                return "LO-" + id;
+            }
+
+            @Override
+            public Long getMedicationId() {
+                return 1L;
+            }
+
+            @Override
+            public String getMedicationName() {
+                return "Paracetamol";
+            }
+
+            @Override
+            public LocalDate getExpiryDate() {
+                return expiryDate;
+            }
+
+            @Override
+            public Integer getQuantityOnHand() {
+                return quantity;
+            }
+        };
+    }
+
+    private static StockLevelView level(Long id, int stock) {
+        return new StockLevelView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return "Paracetamol";
+            }
+
+            @Override
+            public Integer getStockQuantity() {
+                return stock;
+            }
+
+            @Override
+            public Integer getReorderLevel() {
+                return null;
+            }
+        };
+    }
+
+    private static TouchedView touched(Long medicationId, Long batchId) {
+        return new TouchedView() {
+            @Override
+            public Long getMedicationId() {
+                return medicationId;
+            }
+
+            @Override
+            public Long getBatchId() {
+                return batchId;
+            }
+        };
+    }
+}
@@ -0,0 +1,320 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import vn.project.ClinicSystem.model.ServiceIndicator;
+import vn.project.ClinicSystem.model.dto.LabResultImportReport;
+import vn.project.ClinicSystem.model.enums.IndicatorResultLevel;
+import vn.project.ClinicSystem.model.enums.ServiceOrderStatus;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository.ImportTargetView;
+import vn.project.ClinicSystem.repository.ServiceOrderResultRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderResultRepository.OrderIndicatorView;
+
+@ExtendWith(MockitoExtension.class)
+class LabResultImportServiceTest {
+
+    private static final long SERVICE_ID = 9L;
+    private static final long GLU = 1L;
+    private static final long URE = 2L;
+
+    @Mock
+    private ServiceOrderRepository serviceOrderRepository;
+    @Mock
+    private ServiceOrderResultRepository resultRepository;
+    @Mock
+    private IndicatorCatalog indicatorCatalog;
+    @Mock
+    private IdBlockAllocator idBlockAllocator;
+    @Mock
+    private CriticalResultAlertService criticalResultAlertService;
+    @Mock
+    private LabSeriesService labSeriesService;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // Tham số từng câu lệnh batch đã gửi, theo từ khóa đầu câu SQL (DELETE, INSERT, UPDATE)
+    private final Map<String, List<Map<Integer, Object>>> statements = new HashMap<>();
+    private final AtomicInteger failingInserts = new AtomicInteger();
+    private final AtomicLong nextId = new AtomicLong(1000);
+
+    @BeforeEach
+    void init() throws Exception {
+        lenient().when(indicatorCatalog.forService(SERVICE_ID)).thenReturn(new IndicatorCatalog.ServiceIndicators(
+                SERVICE_ID, List.of(
+                        indicator(GLU, "GLU", "Glucose", "3.9", "6.4", "2.5", "25"),
+                        indicator(URE, "URE", "Ure", "2.5", "7.5", null, null))));
+        lenient().when(idBlockAllocator.reserve(eq("service_order_results"), anyInt()))
+                .thenAnswer(invocation -> nextId.getAndAdd(invocation.getArgument(1, Integer.class)));
+        lenient().when(serviceOrderRepository.findImportTargets(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .filter(id -> id < 900)
+                    .map(id -> target(id, id == 300 ? ServiceOrderStatus.CANCELLED : ServiceOrderStatus.IN_PROGRESS))
+                    .toList();
+        });
+        lenient().doAnswer(invocation -> {
+            String sql = invocation.getArgument(0, String.class).trim();
+            String kind = sql.substring(0, sql.indexOf(' '));
+            if (kind.equals("INSERT") && failingInserts.getAndDecrement() > 0) {
+                throw new DataIntegrityViolationException("Duplicate entry");
+            }
+            Collection<Object> rows = invocation.getArgument(1);
+            ParameterizedPreparedStatementSetter<Object> setter = invocation.getArgument(3);
+            for (Object row : rows) {
+                Map<Integer, Object> params = new HashMap<>();
+                PreparedStatement ps = mock(PreparedStatement.class, call -> {
+                    if (call.getMethod().getName().startsWith("set")) {
+                        params.put(call.getArgument(0, Integer.class), call.getArgument(1));
+                    }
+                    return null;
+                });
+                setter.setValues(ps, row);
+                statements.computeIfAbsent(kind, key -> new ArrayList<>()).add(params);
+            }
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<Object>>any());
+    }
+
+    @Test
+    void importCsv_shouldHonourQuotedFieldsAndReportRowErrors() throws IOException {
+        LabResultImportReport report = service(100).importResults(csv(
+                "service_order_id,indicator_code,value,note",
+                "100,glu,5.20,\"Lấy mẫu lúc đói, \"\"lần 2\"\"\"",
+                "100,URE,abc,",
+                "999,GLU,5,",
+                "300,GLU,5,",
+                "100,XYZ,1,",
+                "100,URE,4,\"không đóng nháy"), LabResultImportService.FORMAT_CSV);
+
+        assertThat(report.getTotalRows()).isEqualTo(6);
+        assertThat(report.getImportedResults()).isEqualTo(1);
+        assertThat(report.getFailedRows()).isEqualTo(5);
+        assertThat(report.getErrors()).extracting(LabResultImportReport.RowError::getLine)
+                .containsExactlyInAnyOrder(3L, 4L, 5L, 6L, 7L);
+        assertThat(report.getErrors()).extracting(LabResultImportReport.RowError::getMessage)
+                .anySatisfy(message -> assertThat(message).contains("thiếu dấu nháy đóng"))
+                .anySatisfy(message -> assertThat(message).contains("đã hủy"))
+                .anySatisfy(message -> assertThat(message).contains("Không tìm thấy phiếu dịch vụ với id: 999"));
+
+        Map<Integer, Object> insert = statements.get("INSERT").get(0);
+        assertThat(insert.get(1)).isEqualTo(1000L);
+        assertThat(insert.get(3)).isEqualTo(GLU);
+        assertThat((BigDecimal) insert.get(6)).isEqualByComparingTo("5.2");
+        assertThat(insert.get(7)).isEqualTo(IndicatorResultLevel.NORMAL.name());
+        assertThat(insert.get(8)).isEqualTo("Lấy mẫu lúc đói, \"lần 2\"");
+    }
+
+    @Test
+    void importHl7_shouldRejectObxWithoutObrAndRaiseCriticalAlerts() throws IOException {
+        LabResultImportReport report = service(100).importResults(hl7(
+                "MSH|^~\\&|ANALYZER|LAB|||20250301083000||ORU^R01|1|P|2.5",
+                "OBX|1|NM|GLU^Glucose||5.0|mmol/L",
+                "OBR|1|100||GLU^Glucose|||202503010800",
+                "OBX|1|NM|GLU^Glucose||30.5|mmol/L",
+                "OBX|2|ST|URE^Ure||cao|mmol/L",
+                "OBR|2|abc",
+                "OBX|1|NM|URE^Ure||4|mmol/L"), LabResultImportService.FORMAT_HL7);
+
+        assertThat(report.getTotalRows()).isEqualTo(4);
+        assertThat(report.getImportedResults()).isEqualTo(1);
+        assertThat(report.getCriticalResults()).isEqualTo(1);
+        assertThat(report.getErrors()).extracting(LabResultImportReport.RowError::getMessage)
+                .containsExactly(
+                        "Đoạn OBX không nằm sau một đoạn OBR",
+                        "Chỉ nhận kết quả dạng số (OBX-2 = NM), nhận được: ST",
+                        "Id phiếu dịch vụ trong OBR-2 không hợp lệ: abc");
+        verify(criticalResultAlertService).raise(eq(100L), eq(10L), eq("Nguyễn Văn A"), eq(3L), eq("Glucose"),
+                any(BigDecimal.class), eq("mmol/L"), eq(IndicatorResultLevel.CRITICAL_HIGH));
+        verify(labSeriesService).evict(20L);
+    }
+
+    @Test
+    void import_shouldRejectDuplicateIndicatorWithinFileAcrossChunks() throws IOException {
+        LabResultImportReport report = service(1).importResults(csv(
+                "serviceOrderId,indicatorId,value",
+                "100,1,5",
+                "100,2,4",
+                "100,1,6"), LabResultImportService.FORMAT_CSV);
+
+        assertThat(report.getImportedResults()).isEqualTo(2);
+        assertThat(report.getErrors()).singleElement()
+                .satisfies(error -> {
+                    assertThat(error.getLine()).isEqualTo(4L);
+                    assertThat(error.getMessage()).contains("trùng");
+                });
+        assertThat(statements.get("INSERT")).hasSize(2);
+    }
+
+    @Test
+    void import_shouldReleaseIndicatorsOfFailedChunkSoLaterRowsCanRetry() throws IOException {
+        failingInserts.set(1);
+        when(resultRepository.findOrderIndicators(anyCollection())).thenReturn(List.of());
+
+        LabResultImportReport report = service(2).importResults(csv(
+                "serviceOrderId,indicatorCode,value",
+                "100,GLU,5",
+                "100,URE,4",
+                "100,GLU,5.5"), LabResultImportService.FORMAT_CSV);
+
+        assertThat(report.getFailedRows()).isEqualTo(2);
+        assertThat(report.getErrors()).allSatisfy(error -> assertThat(error.getMessage())
+                .startsWith("Không thể ghi khối dữ liệu"));
+        // Dòng GLU ở khối sau không bị coi là trùng vì khối trước đã rollback
+        assertThat(report.getImportedResults()).isEqualTo(1);
+        assertThat(statements.get("INSERT")).singleElement()
+                .satisfies(params -> assertThat((BigDecimal) params.get(6)).isEqualByComparingTo("5.5"));
+        assertThat(report.getOrders()).isEqualTo(1);
+        assertThat(report.getCompletedOrders()).isZero();
+        assertThat(report.getIncompleteOrders()).singleElement()
+                .satisfies(order -> assertThat(order.getMissingIndicators()).containsExactly("Glucose", "Ure"));
+    }
+
+    @Test
+    void import_shouldCompleteOrdersWhoseMissingIndicatorsWereRecordedBefore() throws IOException {
+        // Phiếu 100 đã có URE từ lần nhập trước; phiếu 200 chưa có
+        when(resultRepository.findOrderIndicators(anyCollection())).thenReturn(List.of(
+                result(100L, GLU), result(100L, URE), result(200L, GLU)));
+
+        LabResultImportReport report = service(100).importResults(csv(
+                "serviceOrderId,indicatorCode,value,performedAt",
+                "100,GLU,5,2025-03-01T08:15",
+                "200,GLU,5,"), LabResultImportService.FORMAT_CSV);
+
+        assertThat(report.getOrders()).isEqualTo(2);
+        assertThat(report.getCompletedOrders()).isEqualTo(1);
+        assertThat(report.getIncompleteOrders()).singleElement().satisfies(order -> {
+            assertThat(order.getServiceOrderId()).isEqualTo(200L);
+            assertThat(order.getMissingIndicators()).containsExactly("Ure");
+        });
+        assertThat(statements.get("UPDATE")).singleElement().satisfies(params -> {
+            assertThat(params.get(1)).isEqualTo(ServiceOrderStatus.COMPLETED_WITH_RESULT.name());
+            assertThat(params.get(2)).hasToString("2025-03-01 08:15:00.0");
+            assertThat(params.get(5)).isEqualTo(100L);
+        });
+        assertThat(statements.get("DELETE")).hasSize(2);
+        verify(criticalResultAlertService, never()).raise(anyLong(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    private LabResultImportService service(int chunkSize) {
+        return new LabResultImportService(serviceOrderRepository, resultRepository, indicatorCatalog,
+                idBlockAllocator, criticalResultAlertService, labSeriesService, jdbcTemplate, transactionManager,
+                chunkSize);
+    }
+
+    private static ByteArrayInputStream csv(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Máy xét nghiệm thường phân tách đoạn HL7 bằng CR
+    private static ByteArrayInputStream hl7(String... segments) {
+        return new ByteArrayInputStream(String.join("\r", segments).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ServiceIndicator indicator(Long id, String code, String name, String normalMin, String normalMax,
+            String criticalMin, String criticalMax) {
+        ServiceIndicator indicator = new ServiceIndicator();
+        indicator.setId(id);
+        indicator.setCode(code);
+        indicator.setName(name);
+        indicator.setUnit("mmol/L");
+        indicator.setNormalMin(new BigDecimal(normalMin));
+        indicator.setNormalMax(new BigDecimal(normalMax));
+        indicator.setCriticalMin(criticalMin != null ? new BigDecimal(criticalMin) : null);
+        indicator.setCriticalMax(criticalMax != null ? new BigDecimal(criticalMax) : null);
+        indicator.setRequired(true);
+        return indicator;
+    }
+
+    private static ImportTargetView target(Long id, ServiceOrderStatus status) {
+        return new ImportTargetView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getMedicalServiceId() {
+                return SERVICE_ID;
+            }
+
+            @Override
+            public ServiceOrderStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public Long getVisitId() {
+                return 10L;
+            }
+
+            @Override
+            public Long getPatientId() {
+                return 20L;
+            }
+
+            @Override
+            public String getPatientName() {
+                return "Nguyễn Văn A";
+            }
+
+            @Override
+            public Long getDoctorId() {
+                return 3L;
+            }
+        };
+    }
+
+    private static OrderIndicatorView result(Long serviceOrderId, Long indicatorId) {
+        return new OrderIndicatorView() {
+            @Override
+            public Long getServiceOrderId() {
+                return serviceOrderId;
+            }
+
+            @Override
+            public Long getIndicatorId() {
+                return indicatorId;
+            }
+        };
+    }
+}
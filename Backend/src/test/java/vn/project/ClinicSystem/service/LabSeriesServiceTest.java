@@ -0,0 +1,189 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.ServiceIndicator;
+import vn.project.ClinicSystem.model.ServiceOrder;
+import vn.project.ClinicSystem.model.ServiceOrderResult;
+import vn.project.ClinicSystem.model.dto.LabSeriesDTO;
+import vn.project.ClinicSystem.repository.PatientRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderResultRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderResultRepository.SeriesPointView;
+
+@ExtendWith(MockitoExtension.class)
+class LabSeriesServiceTest {
+    private static final Long PATIENT_ID = 1L;
+    private static final Long INDICATOR_ID = 9L;
+    private static final LocalDateTime DAY_ONE = LocalDateTime.of(2025, 1, 1, 8, 0);
+
+    @Mock
+    private ServiceOrderResultRepository resultRepository;
+    @Mock
+    private PatientRepository patientRepository;
+
+    private LabSeriesService service;
+
+    @BeforeEach
+    void init() {
+        service = new LabSeriesService(resultRepository, patientRepository, 10, 300);
+        when(patientRepository.existsById(PATIENT_ID)).thenReturn(true);
+    }
+
+    @Test
+    void getSeries_shouldIncludeBothRangeBoundsAndComputeTrend() {
+        // Ngày 1..5 với giá trị 10, 12, 14, 16, 18
+        givenPoints(5, day -> 10 + 2 * day);
+
+        LabSeriesDTO dto = service.getSeries(PATIENT_ID, INDICATOR_ID, instant(1), instant(3), null, null);
+
+        assertThat(dto.getValues()).containsExactly(12, 14, 16);
+        assertThat(dto.getTotalPoints()).isEqualTo(3);
+        assertThat(dto.getMin()).isEqualTo(12);
+        assertThat(dto.getMax()).isEqualTo(16);
+        assertThat(dto.getLast()).isEqualTo(16);
+        assertThat(dto.getSlopePerDay()).isEqualTo(2.0);
+        assertThat(dto.isDownsampled()).isFalse();
+    }
+
+    @Test
+    void getSeries_shouldKeepLastNPointsInsideRange() {
+        givenPoints(6, day -> day);
+
+        assertThat(service.getSeries(PATIENT_ID, INDICATOR_ID, null, instant(4), 2, null).getValues())
+                .containsExactly(3, 4);
+        assertThat(service.getSeries(PATIENT_ID, INDICATOR_ID, instant(3), null, 10, null).getValues())
+                .containsExactly(3, 4, 5);
+    }
+
+    @Test
+    void getSeries_shouldDownsampleKeepingEndpointsAndPeak() {
+        givenPoints(10, day -> day == 4 ? 100 : day);
+
+        LabSeriesDTO one = service.getSeries(PATIENT_ID, INDICATOR_ID, null, null, null, 1);
+        LabSeriesDTO two = service.getSeries(PATIENT_ID, INDICATOR_ID, null, null, null, 2);
+        LabSeriesDTO three = service.getSeries(PATIENT_ID, INDICATOR_ID, null, null, null, 3);
+
+        assertThat(one.getValues()).containsExactly(9);
+        assertThat(two.getValues()).containsExactly(0, 9);
+        assertThat(three.getValues()).containsExactly(0, 100, 9);
+        assertThat(three.getTimestamps()).containsExactly(millis(0), millis(4), millis(9));
+        assertThat(three.isDownsampled()).isTrue();
+        // Thống kê vẫn tính trên toàn bộ điểm
+        assertThat(three.getTotalPoints()).isEqualTo(10);
+        assertThat(three.getMax()).isEqualTo(100);
+    }
+
+    @Test
+    void recordOrder_shouldReplacePreviousPointsOfSameOrder() {
+        givenPoints(2, day -> day);
+        service.getSeries(PATIENT_ID, INDICATOR_ID, null, null, null, null);
+
+        service.recordOrder(order(50L, 5, 40));
+        service.recordOrder(order(50L, 3, 30));
+
+        LabSeriesDTO dto = service.getSeries(PATIENT_ID, INDICATOR_ID, null, null, null, null);
+        assertThat(dto.getValues()).containsExactly(0, 1, 30);
+        assertThat(dto.getTimestamps()).containsExactly(millis(0), millis(1), millis(3));
+        verify(resultRepository, times(1)).findSeriesPointsByPatientId(PATIENT_ID);
+    }
+
+    @Test
+    void getSeries_shouldReloadAfterTtlSoOtherInstancesWritesBecomeVisible() {
+        service = new LabSeriesService(resultRepository, patientRepository, 10, 0);
+        givenPoints(2, day -> day);
+
+        service.getSeries(PATIENT_ID, INDICATOR_ID, null, null, null, null);
+        service.getSeries(PATIENT_ID, INDICATOR_ID, null, null, null, null);
+
+        verify(resultRepository, times(2)).findSeriesPointsByPatientId(PATIENT_ID);
+    }
+
+    private void givenPoints(int days, IntToDoubleFunction value) {
+        List<SeriesPointView> points = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            points.add(point(day + 1L, DAY_ONE.plusDays(day), value.applyAsDouble(day)));
+        }
+        when(resultRepository.findSeriesPointsByPatientId(PATIENT_ID)).thenReturn(points);
+    }
+
+    private static ServiceOrder order(Long id, int day, double value) {
+        Patient patient = new Patient();
+        patient.setId(PATIENT_ID);
+        PatientVisit visit = new PatientVisit();
+        visit.setPatient(patient);
+        ServiceIndicator indicator = new ServiceIndicator();
+        indicator.setId(INDICATOR_ID);
+        ServiceOrderResult result = new ServiceOrderResult();
+        result.setIndicator(indicator);
+        result.setIndicatorNameSnapshot("Glucose");
+        result.setMeasuredValue(BigDecimal.valueOf(value));
+
+        ServiceOrder order = new ServiceOrder();
+        order.setId(id);
+        order.setVisit(visit);
+        order.setPerformedAt(DAY_ONE.plusDays(day));
+        order.getIndicatorResults().add(result);
+        return order;
+    }
+
+    private static Instant instant(int day) {
+        return DAY_ONE.plusDays(day).atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static long millis(int day) {
+        return instant(day).toEpochMilli();
+    }
+
+    private static SeriesPointView point(Long orderId, LocalDateTime performedAt, double value) {
+        return new SeriesPointView() {
+            @Override
+            public Long getIndicatorId() {
+                return INDICATOR_ID;
+            }
+
+            @Override
+            public String getIndicatorName() {
+                return "Glucose";
+            }
+
+            @Override
+            public String getUnit() {
+                return "mmol/L";
+            }
+
+            @Override
+            public Long getServiceOrderId() {
+                return orderId;
+            }
+
+            @Override
+            public LocalDateTime getPerformedAt() {
+                return performedAt;
+            }
+
+            @Override
+            public BigDecimal getMeasuredValue() {
+                return BigDecimal.valueOf(value);
+            }
+        };
+    }
+}
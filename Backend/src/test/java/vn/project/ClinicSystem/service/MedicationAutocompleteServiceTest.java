@@ -0,0 +1,146 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.dto.MedicationSuggestionDTO;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.repository.PrescriptionItemRepository;
+
+@ExtendWith(MockitoExtension.class)
+class MedicationAutocompleteServiceTest {
+
+    @Mock
+    private MedicationRepository medicationRepository;
+    @Mock
+    private PrescriptionItemRepository prescriptionItemRepository;
+
+    private MedicationAutocompleteService build(int topK, List<MedicationRepository.SearchView> medications,
+            List<PrescriptionItemRepository.MedicationCountView> counts) {
+        when(medicationRepository.findAllForSearch()).thenReturn(medications);
+        when(prescriptionItemRepository.countByMedication()).thenReturn(counts);
+        MedicationAutocompleteService service = new MedicationAutocompleteService(medicationRepository,
+                prescriptionItemRepository, topK);
+        service.rebuild();
+        return service;
+    }
+
+    @Test
+    void suggest_shouldMatchAnyWordIgnoringDiacriticsAndRankByFrequency() {
+        MedicationAutocompleteService service = build(10,
+                List.of(view(1L, "Hapacol 500", "Paracetamol"),
+                        view(2L, "Panadol Extra", "Paracetamol, Caffeine"),
+                        view(3L, "Pharmaton", "Nhân sâm")),
+                List.of(count(2L, 7L), count(1L, 3L)));
+
+        assertThat(ids(service.suggest("PARA", 10))).containsExactly(2L, 1L);
+        assertThat(ids(service.suggest("nhan", 10))).containsExactly(3L);
+        assertThat(ids(service.suggest("pa", 10))).containsExactly(2L, 1L);
+        assertThat(ids(service.suggest("ph", 10))).containsExactly(3L);
+        assertThat(service.suggest("xyz", 10)).isEmpty();
+        assertThat(service.suggest("  ", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_shouldKeepOnlyTopKPerNodeAndRespectLimit() {
+        MedicationAutocompleteService service = build(2,
+                List.of(view(1L, "Amoxicillin 250", null),
+                        view(2L, "Amoxicillin 500", null),
+                        view(3L, "Ampicillin", null)),
+                List.of(count(3L, 5L)));
+
+        assertThat(ids(service.suggest("am", 10))).containsExactly(3L, 1L);
+        assertThat(ids(service.suggest("am", 1))).containsExactly(3L);
+        assertThat(ids(service.suggest("amox", 10))).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void recordPrescribed_shouldReRankAlongPaths() {
+        MedicationAutocompleteService service = build(10,
+                List.of(view(1L, "Cefuroxim", null), view(2L, "Cefixim", null)),
+                List.of());
+        assertThat(ids(service.suggest("cef", 10))).containsExactly(2L, 1L);
+
+        service.recordPrescribed(List.of(1L, 1L));
+
+        assertThat(ids(service.suggest("cef", 10))).containsExactly(1L, 2L);
+        assertThat(ids(service.suggest("c", 10))).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void upsertAndRemove_shouldReplaceKeysAndPruneEmptyBranches() {
+        MedicationAutocompleteService service = build(10,
+                List.of(view(1L, "Loratadin", null), view(2L, "Losartan", null)),
+                List.of(count(1L, 4L)));
+
+        Medication renamed = new Medication();
+        renamed.setId(1L);
+        renamed.setName("Lotrimin");
+        service.upsert(renamed);
+
+        assertThat(service.suggest("lora", 10)).isEmpty();
+        assertThat(ids(service.suggest("lot", 10))).containsExactly(1L);
+        // Tần suất cũ được giữ khi sửa thuốc nên vẫn đứng trước "Losartan"
+        assertThat(ids(service.suggest("lo", 10))).containsExactly(1L, 2L);
+
+        service.remove(2L);
+
+        assertThat(service.suggest("los", 10)).isEmpty();
+        assertThat(ids(service.suggest("lo", 10))).containsExactly(1L);
+    }
+
+    private static List<Long> ids(List<MedicationSuggestionDTO> suggestions) {
+        return suggestions.stream().map(MedicationSuggestionDTO::getId).toList();
+    }
+
+    private static MedicationRepository.SearchView view(Long id, String name, String activeIngredient) {
+        return new MedicationRepository.SearchView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getActiveIngredient() {
+                return activeIngredient;
+            }
+
+            @Override
+            public String getForm() {
+                return null;
+            }
+
+            @Override
+            public String getUnit() {
+                return null;
+            }
+        };
+    }
+
+    private static PrescriptionItemRepository.MedicationCountView count(Long medicationId, Long count) {
+        return new PrescriptionItemRepository.MedicationCountView() {
+            @Override
+            public Long getMedicationId() {
+                return medicationId;
+            }
+
+            @Override
+            public Long getCount() {
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.MedicationBatch;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+
+@ExtendWith(MockitoExtension.class)
+class MedicationBatchAllocatorTest {
+
+    @Mock
+    private MedicationBatchRepository medicationBatchRepository;
+    @Mock
+    private MedicationRepository medicationRepository;
+
+    @InjectMocks
+    private MedicationBatchAllocator allocator;
+
+    private Medication medication;
+
+    @BeforeEach
+    void setUp() {
+        medication = new Medication();
+        medication.setId(1L);
+        medication.setName("Amoxicillin");
+        medication.setStockQuantity(60);
+    }
+
+    @Test
+    void allocate_shouldSplitAcrossBatchesByEarliestExpiry() {
+        MedicationBatch late = batch(11L, LocalDate.now().plusMonths(6), 40);
+        MedicationBatch noExpiry = batch(12L, null, 10);
+        MedicationBatch early = batch(10L, LocalDate.now().plusDays(10), 10);
+
+        when(medicationBatchRepository.findDispensableBatches(eq(1L), any(LocalDate.class)))
+                .thenReturn(List.of(noExpiry, early, late));
+        when(medicationBatchRepository.decrementStock(10L, 10)).thenReturn(1);
+        when(medicationBatchRepository.decrementStock(11L, 15)).thenReturn(1);
+        when(medicationRepository.decrementStock(1L, 25)).thenReturn(1);
+        when(medicationRepository.findStockQuantity(1L)).thenReturn(35);
+
+        List<MedicationBatchAllocator.Allocation> allocations = allocator.allocate(medication, 25);
+
+        assertThat(allocations).extracting(a -> a.getBatch().getId()).containsExactly(10L, 11L);
+        assertThat(allocations).extracting(MedicationBatchAllocator.Allocation::getQuantity).containsExactly(10, 15);
+        assertThat(medication.getStockQuantity()).isEqualTo(35);
+        verify(medicationBatchRepository, never()).decrementStock(eq(12L), anyInt());
+    }
+
+    @Test
+    void allocate_shouldReReadBatchWhenConcurrentDispenseWinsTheRow() {
+        MedicationBatch first = batch(10L, LocalDate.now().plusDays(5), 10);
+        MedicationBatch second = batch(11L, LocalDate.now().plusDays(30), 20);
+
+        when(medicationBatchRepository.findDispensableBatches(eq(1L), any(LocalDate.class)))
+                .thenReturn(List.of(first, second));
+        // Lượt khác vừa lấy 6 viên từ lô đầu: lần trừ 10 thất bại, đọc lại còn 4
+        when(medicationBatchRepository.decrementStock(10L, 10)).thenReturn(0);
+        when(medicationBatchRepository.findQuantityOnHand(10L)).thenReturn(4);
+        when(medicationBatchRepository.decrementStock(10L, 4)).thenReturn(1);
+        when(medicationBatchRepository.decrementStock(11L, 6)).thenReturn(1);
+        when(medicationRepository.decrementStock(1L, 10)).thenReturn(1);
+        when(medicationRepository.findStockQuantity(1L)).thenReturn(44);
+
+        List<MedicationBatchAllocator.Allocation> allocations = allocator.allocate(medication, 10);
+
+        assertThat(allocations).extracting(MedicationBatchAllocator.Allocation::getQuantity).containsExactly(4, 6);
+    }
+
+    @Test
+    void allocate_shouldFailWhenNonExpiredStockIsInsufficient() {
+        MedicationBatch only = batch(10L, LocalDate.now().plusDays(5), 5);
+
+        when(medicationBatchRepository.findDispensableBatches(eq(1L), any(LocalDate.class)))
+                .thenReturn(List.of(only));
+        when(medicationBatchRepository.decrementStock(10L, 5)).thenReturn(1);
+
+        assertThatThrownBy(() -> allocator.allocate(medication, 8))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("thiếu 3");
+        verify(medicationRepository, never()).decrementStock(any(), anyInt());
+    }
+
+    private MedicationBatch batch(Long id, LocalDate expiry, int quantity) {
+        MedicationBatch batch = new MedicationBatch();
+        batch.setId(id);
+        batch.setMedication(medication);
+        batch.setExpiryDate(expiry);
+        batch.setQuantityOnHand(quantity);
+        batch.setUnitPrice(new BigDecimal("1500"));
+        return batch;
+    }
+}
@@ -1,7 +1,10 @@
 package vn.project.ClinicSystem.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -14,10 +17,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import vn.project.ClinicSystem.model.Medication;
 import vn.project.ClinicSystem.model.MedicationBatch;
 import vn.project.ClinicSystem.model.dto.MedicationBatchAdjustRequest;
 import vn.project.ClinicSystem.model.dto.MedicationBatchCreateRequest;
+import vn.project.ClinicSystem.model.enums.StockMovementType;
 import vn.project.ClinicSystem.repository.MedicationBatchRepository;
 import vn.project.ClinicSystem.repository.MedicationRepository;
 
@@ -30,6 +35,12 @@ class MedicationBatchServiceTest {
     @Mock
     private MedicationRepository medicationRepository;
 
+    @Mock
+    private PricingCatalog pricingCatalog;
+
+    @Mock
+    private StockLedgerService stockLedgerService;
+
     @InjectMocks
     private MedicationBatchService medicationBatchService;
 
@@ -56,6 +67,8 @@ class MedicationBatchServiceTest {
         when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
         when(medicationBatchRepository.save(any(MedicationBatch.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0, MedicationBatch.class));
+        when(medicationRepository.incrementStock(1L, 100)).thenReturn(1);
+        when(medicationRepository.findStockQuantity(1L)).thenReturn(110);
 
         MedicationBatch batch = medicationBatchService.create(request);
 
@@ -67,7 +80,9 @@ class MedicationBatchServiceTest {
         assertThat(medication.getStockQuantity()).isEqualTo(110); // 10 + 100
 
         verify(medicationBatchRepository).save(any(MedicationBatch.class));
-        verify(medicationRepository).save(medication);
+        verify(medicationRepository).incrementStock(1L, 100);
+        verify(pricingCatalog).updateBatchPrice(batch.getId(), batch.getUnitPrice());
+        verify(stockLedgerService).record(StockMovementType.RECEIPT, 1L, batch.getId(), 100, "FER-2401");
     }
 
     @Test
@@ -85,6 +100,9 @@ class MedicationBatchServiceTest {
         request.setTotalUnits(null); // => service sẽ tính 4*15 = 60
 
         when(medicationBatchRepository.findById(5L)).thenReturn(Optional.of(existingBatch));
+        when(medicationBatchRepository.replaceStock(5L, 50, 60)).thenReturn(1);
+        when(medicationRepository.incrementStock(1L, 10)).thenReturn(1);
+        when(medicationRepository.findStockQuantity(1L)).thenReturn(20);
         when(medicationBatchRepository.save(any(MedicationBatch.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0, MedicationBatch.class));
 
@@ -97,6 +115,26 @@ class MedicationBatchServiceTest {
         // stock ban đầu 10, batch cũ 50 -> sau update tăng thêm +10 (60-50)
         assertThat(medication.getStockQuantity()).isEqualTo(20);
 
-        verify(medicationRepository).save(medication);
+        verify(medicationBatchRepository).replaceStock(5L, 50, 60);
+        verify(medicationRepository).incrementStock(1L, 10);
+        verify(stockLedgerService).record(StockMovementType.ADJUST, 1L, 5L, 10, null);
+    }
+
+    @Test
+    void update_shouldRejectStockReplaceWhenBatchChangedConcurrently() {
+        MedicationBatch existingBatch = new MedicationBatch();
+        existingBatch.setId(5L);
+        existingBatch.setMedication(medication);
+        existingBatch.setQuantityOnHand(50);
+
+        MedicationBatchAdjustRequest request = new MedicationBatchAdjustRequest();
+        request.setTotalUnits(60);
+
+        when(medicationBatchRepository.findById(5L)).thenReturn(Optional.of(existingBatch));
+        when(medicationBatchRepository.replaceStock(5L, 50, 60)).thenReturn(0);
+
+        assertThatThrownBy(() -> medicationBatchService.update(5L, request))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(medicationRepository, never()).incrementStock(any(), anyInt());
     }
 }
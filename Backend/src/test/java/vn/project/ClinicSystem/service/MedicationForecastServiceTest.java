@@ -0,0 +1,163 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import vn.project.ClinicSystem.model.dto.MedicationForecastDTO;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+import vn.project.ClinicSystem.repository.MedicationRepository.StockLevelView;
+import vn.project.ClinicSystem.repository.PrescriptionItemRepository;
+import vn.project.ClinicSystem.repository.PrescriptionItemRepository.DailyQuantityView;
+
+@ExtendWith(MockitoExtension.class)
+class MedicationForecastServiceTest {
+    private static final Long MEDICATION_ID = 3L;
+    private static final LocalDate YESTERDAY = LocalDate.now().minusDays(1);
+
+    @Mock
+    private PrescriptionItemRepository prescriptionItemRepository;
+    @Mock
+    private MedicationRepository medicationRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // Số lượng kê theo ngày như trong cơ sở dữ liệu tại thời điểm truy vấn
+    private final Map<LocalDate, Long> issued = new HashMap<>();
+
+    @BeforeEach
+    void init() {
+        when(medicationRepository.findAllStockLevels()).thenReturn(List.of(stockLevel(50)));
+        when(prescriptionItemRepository.sumDailyQuantities(any(), any())).thenAnswer(inv -> rows(
+                inv.getArgument(0, LocalDateTime.class).toLocalDate(),
+                inv.getArgument(1, LocalDateTime.class).toLocalDate()));
+    }
+
+    @Test
+    void refresh_shouldForecastFromSmoothedDailyUsage() {
+        for (int i = 0; i < 30; i++) {
+            issued.put(YESTERDAY.minusDays(i), 10L);
+        }
+        MedicationForecastService service = service();
+
+        service.refresh();
+
+        MedicationForecastDTO forecast = service.getForecast(MEDICATION_ID);
+        assertThat(forecast.getDailyRate()).isCloseTo(10.0, within(0.5));
+        assertThat(forecast.getDaysOfStockRemaining()).isCloseTo(5.0, within(0.5));
+        // Tồn 50 dưới điểm đặt hàng (7 ngày chờ x 10): đề xuất bù đủ thêm 30 ngày
+        assertThat(forecast.getReorderPoint()).isGreaterThanOrEqualTo(69);
+        assertThat(forecast.getSuggestedReorderQuantity()).isGreaterThanOrEqualTo(69 + 300 - 50);
+        assertThat(forecast.getDataThrough()).isEqualTo(YESTERDAY);
+    }
+
+    @Test
+    void refresh_shouldCountBackdatedPrescriptionsInsideRestateWindow() {
+        for (int i = 0; i < 30; i++) {
+            issued.put(YESTERDAY.minusDays(i), 5L);
+        }
+        MedicationForecastService service = service();
+        service.refresh();
+        double before = service.getForecast(MEDICATION_ID).getDailyRate();
+
+        // Đơn ghi lùi ngày kê về 3 ngày trước sau khi đã gộp
+        issued.merge(YESTERDAY.minusDays(3), 40L, Long::sum);
+        service.refresh();
+
+        MedicationForecastService rebuilt = service();
+        rebuilt.refresh();
+        double after = service.getForecast(MEDICATION_ID).getDailyRate();
+        assertThat(after).isGreaterThan(before);
+        assertThat(after).isCloseTo(rebuilt.getForecast(MEDICATION_ID).getDailyRate(), within(1e-9));
+        verify(prescriptionItemRepository).sumDailyQuantities(YESTERDAY.minusDays(13).atStartOfDay(),
+                YESTERDAY.plusDays(1).atStartOfDay());
+    }
+
+    @Test
+    void refresh_shouldNotDoubleCountWhenRunAgainWithSameData() {
+        for (int i = 0; i < 30; i++) {
+            issued.put(YESTERDAY.minusDays(i), (long) (i % 4));
+        }
+        MedicationForecastService service = service();
+        service.refresh();
+        MedicationForecastDTO first = service.getForecast(MEDICATION_ID);
+
+        service.refresh();
+
+        assertThat(service.getForecast(MEDICATION_ID).getDailyRate()).isCloseTo(first.getDailyRate(), within(1e-9));
+    }
+
+    private MedicationForecastService service() {
+        return new MedicationForecastService(prescriptionItemRepository, medicationRepository, Runnable::run,
+                transactionManager, 0.3, 90, 7, 30, 1.65, 14);
+    }
+
+    private List<DailyQuantityView> rows(LocalDate from, LocalDate to) {
+        List<DailyQuantityView> rows = new ArrayList<>();
+        issued.forEach((day, quantity) -> {
+            if (!day.isBefore(from) && day.isBefore(to)) {
+                rows.add(dailyQuantity(day, quantity));
+            }
+        });
+        return rows;
+    }
+
+    private static DailyQuantityView dailyQuantity(LocalDate day, Long quantity) {
+        return new DailyQuantityView() {
+            @Override
+            public Long getMedicationId() {
+                return MEDICATION_ID;
+            }
+
+            @Override
+            public LocalDate getDay() {
+                return day;
+            }
+
+            @Override
+            public Long getQuantity() {
+                return quantity;
+            }
+        };
+    }
+
+    private static StockLevelView stockLevel(int stock) {
+        return new StockLevelView() {
+            @Override
+            public Long getId() {
+                return MEDICATION_ID;
+            }
+
+            @Override
+            public String getName() {
+                return "Paracetamol 500mg";
+            }
+
+            @Override
+            public Integer getStockQuantity() {
+                return stock;
+            }
+
+            @Override
+            public Integer getReorderLevel() {
+                return null;
+            }
+        };
+    }
+}
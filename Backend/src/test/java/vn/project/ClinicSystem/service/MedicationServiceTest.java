@@ -0,0 +1,114 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.validation.Validator;
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.dto.MedicationUpdateRequest;
+import vn.project.ClinicSystem.model.enums.StockMovementType;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+
+@ExtendWith(MockitoExtension.class)
+class MedicationServiceTest {
+
+    @Mock
+    private MedicationRepository medicationRepository;
+    @Mock
+    private StockLedgerService stockLedgerService;
+    @Mock
+    private DrugInteractionEngine drugInteractionEngine;
+    @Mock
+    private MedicationAutocompleteService autocompleteService;
+    @Mock
+    private Validator validator;
+
+    @InjectMocks
+    private MedicationService medicationService;
+
+    private Medication medication;
+
+    @BeforeEach
+    void init() {
+        medication = new Medication();
+        medication.setId(1L);
+        medication.setName("Ferrovit");
+        medication.setStockQuantity(10);
+    }
+
+    @Test
+    void update_shouldRecordDeltaAgainstStockActuallyReplaced() {
+        when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
+        when(medicationRepository.save(any(Medication.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(medicationRepository.findStockQuantity(1L)).thenReturn(10);
+        // Một đơn thuốc vừa trừ 4 giữa lúc đọc và lúc ghi
+        when(medicationRepository.replaceStock(1L, 10, 25)).thenReturn(0);
+        when(medicationRepository.findStockQuantityForUpdate(1L)).thenReturn(6);
+        when(medicationRepository.replaceStock(1L, 6, 25)).thenReturn(1);
+
+        Medication updated = medicationService.update(1L, stockRequest(25));
+
+        assertThat(updated.getStockQuantity()).isEqualTo(25);
+        verify(stockLedgerService).record(StockMovementType.ADJUST, 1L, null, 19, null);
+    }
+
+    @Test
+    void update_shouldFailWhenStockKeepsChanging() {
+        when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
+        when(medicationRepository.findStockQuantity(1L)).thenReturn(10);
+        when(medicationRepository.replaceStock(eq(1L), anyInt(), eq(25))).thenReturn(0);
+        when(medicationRepository.findStockQuantityForUpdate(1L)).thenReturn(9, 8, 7);
+
+        assertThatThrownBy(() -> medicationService.update(1L, stockRequest(25)))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(stockLedgerService, never()).record(any(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void update_shouldReplaceInteractionEntryOnlyAfterCommit() {
+        medication.setActiveIngredient("Sắt fumarat");
+        MedicationUpdateRequest request = new MedicationUpdateRequest();
+        request.setName("Ferrovit Plus");
+        when(medicationRepository.findById(1L)).thenReturn(Optional.of(medication));
+        when(medicationRepository.findByNameIgnoreCase("Ferrovit Plus")).thenReturn(Optional.empty());
+        when(medicationRepository.save(any(Medication.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            medicationService.update(1L, request);
+            verifyNoInteractions(drugInteractionEngine);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(drugInteractionEngine).unregisterMedication("Ferrovit");
+        verify(drugInteractionEngine).registerMedication("Ferrovit Plus", "Sắt fumarat");
+    }
+
+    private static MedicationUpdateRequest stockRequest(int quantity) {
+        MedicationUpdateRequest request = new MedicationUpdateRequest();
+        request.setStockQuantity(quantity);
+        return request;
+    }
+}
@@ -0,0 +1,72 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import vn.project.ClinicSystem.model.CodeSequence;
+import vn.project.ClinicSystem.repository.CodeSequenceRepository;
+import vn.project.ClinicSystem.repository.PatientRepository;
+
+@ExtendWith(MockitoExtension.class)
+class PatientCodeAllocatorTest {
+
+    @Mock
+    private CodeSequenceRepository codeSequenceRepository;
+    @Mock
+    private PatientRepository patientRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PatientCodeAllocator allocator;
+
+    @BeforeEach
+    void init() {
+        allocator = new PatientCodeAllocator(codeSequenceRepository, patientRepository, transactionManager, 3);
+        lenient().when(codeSequenceRepository.saveAndFlush(any(CodeSequence.class)))
+                .thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    void nextCode_shouldSeedFromAllocatedCodesOnlyAndUseDistinctWidth() {
+        when(codeSequenceRepository.findForUpdate(PatientCodeAllocator.SEQUENCE_NAME)).thenReturn(Optional.empty());
+        when(patientRepository.findMaxAllocatedCode()).thenReturn(41L);
+
+        assertThat(allocator.nextCode()).isEqualTo("BN0000000042");
+        assertThat(allocator.nextCode()).isEqualTo("BN0000000043");
+    }
+
+    @Test
+    void nextCodes_shouldReserveFromExistingCounterWithoutScanningPatients() {
+        CodeSequence sequence = new CodeSequence();
+        sequence.setName(PatientCodeAllocator.SEQUENCE_NAME);
+        sequence.setNextValue(7L);
+        when(codeSequenceRepository.findForUpdate(PatientCodeAllocator.SEQUENCE_NAME))
+                .thenReturn(Optional.of(sequence));
+
+        assertThat(allocator.nextCodes(2)).containsExactly("BN0000000007", "BN0000000008");
+        assertThat(sequence.getNextValue()).isEqualTo(9L);
+        verify(patientRepository, never()).findMaxAllocatedCode();
+    }
+
+    @Test
+    void isAllocatorCode_shouldNotMatchLegacyRandomCodes() {
+        assertThat(PatientCodeAllocator.isAllocatorCode("BN0000000042")).isTrue();
+        // Mã cũ BN + 8 ký tự hex, kể cả khi toàn chữ số, không thuộc dải của bộ đếm
+        assertThat(PatientCodeAllocator.isAllocatorCode("BN12345678")).isFalse();
+        assertThat(PatientCodeAllocator.isAllocatorCode("BN1A2B3C4D")).isFalse();
+        assertThat(PatientCodeAllocator.isAllocatorCode(null)).isFalse();
+    }
+}
@@ -0,0 +1,142 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.project.ClinicSystem.model.dto.PatientDedupReport;
+import vn.project.ClinicSystem.model.dto.PatientDedupReport.Candidate;
+import vn.project.ClinicSystem.repository.AppointmentRepository;
+import vn.project.ClinicSystem.repository.AppointmentRequestRepository;
+import vn.project.ClinicSystem.repository.BillingRepository;
+import vn.project.ClinicSystem.repository.PatientRepository;
+import vn.project.ClinicSystem.repository.PatientRepository.DedupView;
+import vn.project.ClinicSystem.repository.PatientVisitRepository;
+
+@ExtendWith(MockitoExtension.class)
+class PatientDeduplicationServiceTest {
+    private static final LocalDate DOB = LocalDate.of(1990, 1, 1);
+
+    @Mock
+    private PatientRepository patientRepository;
+    @Mock
+    private AppointmentRepository appointmentRepository;
+    @Mock
+    private PatientVisitRepository patientVisitRepository;
+    @Mock
+    private BillingRepository billingRepository;
+    @Mock
+    private AppointmentRequestRepository appointmentRequestRepository;
+    @Mock
+    private LabSeriesService labSeriesService;
+
+    @Test
+    void findDuplicates_shouldScoreSameNameDobAndNormalizedPhone() {
+        givenPatients(
+                view(1L, "Nguyễn Văn An", DOB, "0912 345 678", "an@example.com"),
+                view(2L, "NGUYEN VAN AN", DOB, "+84912345678", null),
+                // Đảo thứ tự họ tên vẫn khớp nhờ so tên đã sắp xếp
+                view(3L, "Văn An Nguyễn", null, "0912345678", "AN@example.com"));
+
+        PatientDedupReport report = service(100).findDuplicates(0.6, 10);
+
+        assertThat(report.getScannedPatients()).isEqualTo(3);
+        assertThat(report.getCandidates()).extracting(Candidate::getPrimaryId, Candidate::getDuplicateId,
+                Candidate::getScore).containsExactly(
+                        tuple(1L, 2L, 0.9),
+                        tuple(1L, 3L, 0.8),
+                        tuple(2L, 3L, 0.7));
+        assertThat(report.getCandidates().get(0).getMatchedOn()).containsExactly("name", "dateOfBirth", "phone");
+        assertThat(report.getCandidates().get(1).getMatchedOn()).containsExactly("name", "phone", "email");
+        assertThat(report.getCandidates().get(1).getDateOfBirth()).isEqualTo(DOB);
+    }
+
+    @Test
+    void findDuplicates_shouldRejectNameOnlyMatchesAndConflictingBirthDates() {
+        givenPatients(
+                view(1L, "Trần Thị Bình", DOB, "0911111111", null),
+                // Cùng số điện thoại nhưng khác ngày sinh: hai người khác nhau (vd. mẹ và con)
+                view(2L, "Trần Thị Bình", DOB.plusYears(25), "0911111111", null),
+                // Chỉ giống tên, không trùng thông tin nào khác
+                view(3L, "Tran Thi Binh", null, "0922222222", null),
+                // Cùng ngày sinh nhưng tên khác xa
+                view(4L, "Lê Hoàng Nam", DOB, null, null));
+
+        PatientDedupReport report = service(100).findDuplicates(0.5, 10);
+
+        assertThat(report.getCandidates()).isEmpty();
+    }
+
+    @Test
+    void findDuplicates_shouldCompareOnlyWithinBlocksAndSkipOversizedOnes() {
+        givenPatients(
+                view(1L, "Phạm Minh Châu", DOB, null, null),
+                view(2L, "Phạm Minh Chau", DOB, null, null),
+                view(3L, "Đỗ Quốc Huy", DOB, null, null),
+                view(4L, "Hoàng Thu Trang", LocalDate.of(1985, 5, 5), "0933333333", null));
+
+        // Khối ngày sinh có 3 hồ sơ vượt giới hạn 2 nên bị bỏ; cặp 1-2 vẫn bắt được qua khối họ + tên
+        PatientDedupReport report = service(2).findDuplicates(0.6, 10);
+
+        assertThat(report.getSkippedOversizedBlocks()).isEqualTo(1);
+        assertThat(report.getComparisons()).isEqualTo(1);
+        assertThat(report.getCandidates()).extracting(Candidate::getPrimaryId, Candidate::getDuplicateId)
+                .containsExactly(tuple(1L, 2L));
+        assertThat(report.getCandidates().get(0).getScore()).isEqualTo(0.7);
+    }
+
+    @Test
+    void findDuplicates_shouldRejectScoreOutsideRange() {
+        assertThatThrownBy(() -> service(100).findDuplicates(0, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service(100).findDuplicates(1.5, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void givenPatients(DedupView... views) {
+        when(patientRepository.findDedupSlice(eq(0L), any())).thenReturn(List.of(views));
+    }
+
+    private PatientDeduplicationService service(int maxBlockSize) {
+        return new PatientDeduplicationService(patientRepository, appointmentRepository, patientVisitRepository,
+                billingRepository, appointmentRequestRepository, labSeriesService, maxBlockSize);
+    }
+
+    private static DedupView view(Long id, String fullName, LocalDate dateOfBirth, String phone, String email) {
+        return new DedupView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getFullName() {
+                return fullName;
+            }
+
+            @Override
+            public LocalDate getDateOfBirth() {
+                return dateOfBirth;
+            }
+
+            @Override
+            public String getPhone() {
+                return phone;
+            }
+
+            @Override
+            public String getEmail() {
+                return email;
+            }
+        };
+    }
+}
@@ -0,0 +1,197 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import vn.project.ClinicSystem.model.dto.PatientImportReport;
+import vn.project.ClinicSystem.model.dto.PatientImportReport.RowError;
+import vn.project.ClinicSystem.repository.PatientRepository;
+
+@ExtendWith(MockitoExtension.class)
+class PatientImportServiceTest {
+    // Vị trí tham số trong câu INSERT
+    private static final int CODE = 2;
+    private static final int FULL_NAME = 3;
+    private static final int PHONE = 6;
+    private static final int NOTE = 9;
+
+    @Mock
+    private PatientRepository patientRepository;
+    @Mock
+    private PatientCodeAllocator patientCodeAllocator;
+    @Mock
+    private IdBlockAllocator idBlockAllocator;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // Tham số của từng dòng đã ghi thành công
+    private final List<Map<Integer, Object>> inserted = new ArrayList<>();
+    private final AtomicInteger failingChunks = new AtomicInteger();
+    private final AtomicLong nextId = new AtomicLong(500);
+    private final AtomicLong nextCode = new AtomicLong(1);
+
+    @BeforeEach
+    void init() {
+        lenient().when(idBlockAllocator.reserve(eq("patients"), anyInt()))
+                .thenAnswer(invocation -> nextId.getAndAdd(invocation.getArgument(1, Integer.class)));
+        lenient().when(patientCodeAllocator.nextCodes(anyInt())).thenAnswer(invocation -> IntStream
+                .range(0, invocation.getArgument(0, Integer.class))
+                .mapToObj(i -> String.format("BN%010d", nextCode.getAndIncrement()))
+                .toList());
+        lenient().when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+                any())).thenAnswer(invocation -> {
+                    if (failingChunks.getAndDecrement() > 0) {
+                        throw new DataIntegrityViolationException("Duplicate entry");
+                    }
+                    Collection<Object> rows = invocation.getArgument(1);
+                    ParameterizedPreparedStatementSetter<Object> setter = invocation.getArgument(3);
+                    for (Object row : rows) {
+                        Map<Integer, Object> params = new HashMap<>();
+                        PreparedStatement ps = mock(PreparedStatement.class, call -> {
+                            if (call.getMethod().getName().startsWith("set")) {
+                                params.put(call.getArgument(0, Integer.class), call.getArgument(1));
+                            }
+                            return null;
+                        });
+                        setter.setValues(ps, row);
+                        inserted.add(params);
+                    }
+                    return new int[0][];
+                });
+    }
+
+    @Test
+    void importCsv_shouldHonourQuotedFieldsAndNormalizePhone() throws IOException {
+        PatientImportReport report = service(100).importPatients(input(
+                "code,full_name,phone,note",
+                "KH-01,\"Nguyễn Văn A\",+84 912 345 678,\"Dị ứng, \"\"penicillin\"\"\""),
+                PatientImportService.FORMAT_CSV);
+
+        assertThat(report.getImportedRows()).isEqualTo(1);
+        assertThat(report.getFailedRows()).isZero();
+        Map<Integer, Object> row = inserted.get(0);
+        assertThat(row.get(CODE)).isEqualTo("KH-01");
+        assertThat(row.get(FULL_NAME)).isEqualTo("Nguyễn Văn A");
+        assertThat(row.get(PHONE)).isEqualTo("0912345678");
+        assertThat(row.get(NOTE)).isEqualTo("Dị ứng, \"penicillin\"");
+    }
+
+    @Test
+    void importCsv_shouldReportBadRowsAndKeepTheRest() throws IOException {
+        when(patientRepository.findExistingCodes(anyCollection())).thenReturn(List.of("KH-09"));
+
+        PatientImportReport report = service(100).importPatients(input(
+                "code,fullName,phone,dateOfBirth",
+                "KH-01,Trần Thị B,0912345678,01/02/1990",
+                ",,0912345678,",
+                "KH-02,Lê Văn C,12345,",
+                "KH-03,Phạm Văn D,,31-12-1990",
+                "KH-01,Trùng Mã,,",
+                "BN0000000042,Mã Hệ Thống,,",
+                "KH-09,Đã Có,,",
+                "KH-04,\"Không đóng nháy,,"), PatientImportService.FORMAT_CSV);
+
+        assertThat(report.getTotalRows()).isEqualTo(8);
+        assertThat(report.getImportedRows()).isEqualTo(1);
+        assertThat(report.getFailedRows()).isEqualTo(7);
+        assertThat(report.getErrors()).extracting(RowError::getLine)
+                .containsExactlyInAnyOrder(3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(report.getErrors()).extracting(RowError::getMessage)
+                .anySatisfy(message -> assertThat(message).contains("Họ và tên không được để trống"))
+                .anySatisfy(message -> assertThat(message).contains("10 chữ số"))
+                .anySatisfy(message -> assertThat(message).contains("dd/MM/yyyy"))
+                .anySatisfy(message -> assertThat(message).contains("trùng trong tệp"))
+                .anySatisfy(message -> assertThat(message).contains("hệ thống tự cấp"))
+                .anySatisfy(message -> assertThat(message).contains("đã tồn tại: KH-09"))
+                .anySatisfy(message -> assertThat(message).contains("thiếu dấu nháy đóng"));
+    }
+
+    @Test
+    void importNdjson_shouldAllocateCodesOnlyForRowsWithoutOne() throws IOException {
+        PatientImportReport report = service(100).importPatients(input(
+                "{\"fullName\":\"Bệnh nhân 1\"}",
+                "{\"fullName\":\"Bệnh nhân 2\",\"code\":\"kh-7\"}",
+                "{\"fullName\":\"Bệnh nhân 3\",\"code\":null}",
+                "không phải json"), PatientImportService.FORMAT_NDJSON);
+
+        assertThat(report.getImportedRows()).isEqualTo(3);
+        assertThat(report.getErrors()).extracting(RowError::getMessage).containsExactly("Dòng JSON không hợp lệ");
+        verify(patientCodeAllocator).nextCodes(2);
+        assertThat(inserted).extracting(row -> row.get(CODE))
+                .containsExactly("BN0000000001", "KH-7", "BN0000000002");
+        assertThat(inserted).extracting(row -> row.get(1)).containsExactly(500L, 501L, 502L);
+    }
+
+    @Test
+    void importCsv_shouldReportEveryRowOfRolledBackChunkAndContinue() throws IOException {
+        failingChunks.set(1);
+
+        PatientImportReport report = service(2).importPatients(input(
+                "fullName",
+                "Bệnh nhân 1",
+                "Bệnh nhân 2",
+                "Bệnh nhân 3"), PatientImportService.FORMAT_CSV);
+
+        assertThat(report.getImportedRows()).isEqualTo(1);
+        assertThat(report.getFailedRows()).isEqualTo(2);
+        assertThat(report.getErrors()).extracting(RowError::getLine).containsExactly(2L, 3L);
+        assertThat(report.getErrors()).allSatisfy(error -> assertThat(error.getMessage())
+                .startsWith("Không thể ghi khối dữ liệu"));
+        assertThat(inserted).extracting(row -> row.get(FULL_NAME)).containsExactly("Bệnh nhân 3");
+    }
+
+    @Test
+    void importCsv_shouldRequireFullNameColumnAndKnownFormat() {
+        assertThatThrownBy(() -> service(100).importPatients(input("code,phone", "KH-01,0912345678"),
+                PatientImportService.FORMAT_CSV))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("fullName");
+        assertThatThrownBy(() -> service(100).importPatients(input("x"), "xlsx"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private PatientImportService service(int chunkSize) {
+        return new PatientImportService(patientRepository, patientCodeAllocator, idBlockAllocator, jdbcTemplate,
+                transactionManager, new ObjectMapper(), chunkSize);
+    }
+
+    private static ByteArrayInputStream input(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,224 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import vn.project.ClinicSystem.model.Appointment;
+import vn.project.ClinicSystem.model.AppointmentRequest;
+import vn.project.ClinicSystem.model.Billing;
+import vn.project.ClinicSystem.model.ClinicRoom;
+import vn.project.ClinicSystem.model.Doctor;
+import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.dto.PatientMergeResultDTO;
+import vn.project.ClinicSystem.repository.AppointmentRepository;
+import vn.project.ClinicSystem.repository.AppointmentRequestRepository;
+import vn.project.ClinicSystem.repository.BillingRepository;
+import vn.project.ClinicSystem.repository.PatientRepository;
+import vn.project.ClinicSystem.repository.PatientVisitRepository;
+
+/**
+ * Gộp hồ sơ trên database thật: mọi khóa ngoại trỏ tới hồ sơ trùng phải chuyển sang hồ sơ giữ lại
+ * trước khi xóa, nếu sót một bảng thì lệnh xóa vi phạm ràng buộc hoặc dữ liệu bị mồ côi.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.data.jpa.repositories.enabled=false" })
+@Import(PatientDeduplicationService.class)
+class PatientMergeTest {
+
+    @TestConfiguration
+    @EnableJpaRepositories(basePackageClasses = PatientRepository.class, includeFilters = @Filter(
+            type = FilterType.ASSIGNABLE_TYPE, classes = { PatientVisitRepository.class, BillingRepository.class,
+                    AppointmentRequestRepository.class }))
+    static class Repositories {
+
+        // PatientRepository và AppointmentRepository còn phương thức dẫn xuất không khởi tạo được
+        // (countByCreatedDateBetween, countByAppointmentDate): chỉ chạy CRUD và câu JPQL đã khai báo
+        @Bean
+        PatientRepository patientRepository(EntityManager entityManager) {
+            return declaredQueriesOnly(PatientRepository.class, Patient.class, entityManager);
+        }
+
+        @Bean
+        AppointmentRepository appointmentRepository(EntityManager entityManager) {
+            return declaredQueriesOnly(AppointmentRepository.class, Appointment.class, entityManager);
+        }
+
+        private static <R> R declaredQueriesOnly(Class<R> type, Class<?> entity, EntityManager entityManager) {
+            SimpleJpaRepository<?, ?> crud = new SimpleJpaRepository<>(entity, entityManager);
+            return mock(type, invocation -> {
+                Method method = invocation.getMethod();
+                Query query = method.getAnnotation(Query.class);
+                if (query == null) {
+                    try {
+                        return SimpleJpaRepository.class.getMethod(method.getName(), method.getParameterTypes())
+                                .invoke(crud, invocation.getArguments());
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                }
+                if (!method.isAnnotationPresent(Modifying.class)) {
+                    throw new IllegalStateException("Chưa hỗ trợ truy vấn đọc: " + method.getName());
+                }
+                jakarta.persistence.Query update = entityManager.createQuery(query.value());
+                Parameter[] parameters = method.getParameters();
+                for (int i = 0; i < parameters.length; i++) {
+                    update.setParameter(parameters[i].getAnnotation(Param.class).value(), invocation.getArgument(i));
+                }
+                return update.executeUpdate();
+            });
+        }
+    }
+
+    @Autowired
+    private PatientDeduplicationService deduplicationService;
+    @Autowired
+    private TestEntityManager entityManager;
+    @MockitoBean
+    private LabSeriesService labSeriesService;
+
+    private ClinicRoom room;
+    private Doctor doctor;
+
+    @BeforeEach
+    void init() {
+        room = new ClinicRoom();
+        room.setCode("P-01");
+        room.setName("Phòng khám nội");
+        entityManager.persist(room);
+        doctor = new Doctor();
+        doctor.setSpecialty("Nội tổng quát");
+        doctor.setLicenseNumber("GP-0001");
+        entityManager.persist(doctor);
+    }
+
+    @Test
+    void merge_shouldMoveEveryReferenceToTargetAndDeleteDuplicate() {
+        Patient target = patient("BN0000000001", null, null);
+        Patient duplicate = patient("BN0000000002", "0912345678", LocalDate.of(1990, 1, 1));
+        PatientVisit visit = visitWithBilling(duplicate);
+        visitWithBilling(target);
+        request(duplicate);
+        request(duplicate);
+        entityManager.flush();
+        entityManager.clear();
+
+        PatientMergeResultDTO result = deduplicationService.merge(target.getId(), duplicate.getId());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(result.getMergedCode()).isEqualTo("BN0000000002");
+        assertThat(result.getAppointments()).isEqualTo(1);
+        assertThat(result.getVisits()).isEqualTo(1);
+        assertThat(result.getBillings()).isEqualTo(1);
+        assertThat(result.getAppointmentRequests()).isEqualTo(2);
+
+        assertThat(countReferences("Appointment a WHERE a.patient.id", duplicate.getId())).isZero();
+        assertThat(countReferences("PatientVisit v WHERE v.patient.id", duplicate.getId())).isZero();
+        assertThat(countReferences("Billing b WHERE b.patient.id", duplicate.getId())).isZero();
+        assertThat(countReferences("AppointmentRequest r WHERE r.patient.id", duplicate.getId())).isZero();
+        assertThat(countReferences("Appointment a WHERE a.patient.id", target.getId())).isEqualTo(2);
+        assertThat(countReferences("PatientVisit v WHERE v.patient.id", target.getId())).isEqualTo(2);
+        assertThat(countReferences("Billing b WHERE b.patient.id", target.getId())).isEqualTo(2);
+        assertThat(countReferences("AppointmentRequest r WHERE r.patient.id", target.getId())).isEqualTo(2);
+        assertThat(entityManager.find(PatientVisit.class, visit.getId()).getPatient().getId())
+                .isEqualTo(target.getId());
+
+        assertThat(entityManager.find(Patient.class, duplicate.getId())).isNull();
+        Patient kept = entityManager.find(Patient.class, target.getId());
+        assertThat(kept.getPhone()).isEqualTo("0912345678");
+        assertThat(kept.getDateOfBirth()).isEqualTo(LocalDate.of(1990, 1, 1));
+        assertThat(kept.getNote()).isEqualTo("Gộp từ hồ sơ BN0000000002");
+        verify(labSeriesService).evict(target.getId());
+        verify(labSeriesService).evict(duplicate.getId());
+    }
+
+    @Test
+    void merge_shouldRejectSelfMergeAndMissingPatients() {
+        Patient target = patient("BN0000000001", null, null);
+        Long targetId = target.getId();
+
+        assertThatThrownBy(() -> deduplicationService.merge(targetId, targetId))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> deduplicationService.merge(targetId, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> deduplicationService.merge(targetId, 999_999L))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining("999999");
+        assertThatThrownBy(() -> deduplicationService.merge(999_999L, targetId))
+                .isInstanceOf(EntityNotFoundException.class);
+        assertThat(entityManager.find(Patient.class, targetId)).isNotNull();
+    }
+
+    private long countReferences(String fromWhere, Long patientId) {
+        return entityManager.getEntityManager()
+                .createQuery("SELECT COUNT(*) FROM " + fromWhere + " = :id", Long.class)
+                .setParameter("id", patientId)
+                .getSingleResult();
+    }
+
+    private Patient patient(String code, String phone, LocalDate dateOfBirth) {
+        Patient patient = new Patient();
+        patient.setCode(code);
+        patient.setFullName("Nguyễn Văn An");
+        patient.setPhone(phone);
+        patient.setDateOfBirth(dateOfBirth);
+        return entityManager.persist(patient);
+    }
+
+    private PatientVisit visitWithBilling(Patient patient) {
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setDoctor(doctor);
+        appointment.setClinicRoom(room);
+        appointment.setScheduledAt(LocalDateTime.now());
+        entityManager.persist(appointment);
+
+        PatientVisit visit = new PatientVisit();
+        visit.setPatient(patient);
+        visit.setPrimaryAppointment(appointment);
+        entityManager.persist(visit);
+
+        Billing billing = new Billing();
+        billing.setVisit(visit);
+        billing.setPatient(patient);
+        entityManager.persist(billing);
+        return visit;
+    }
+
+    private void request(Patient patient) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setFullName(patient.getFullName());
+        request.setPhone("0912345678");
+        request.setPatient(patient);
+        entityManager.persist(request);
+    }
+}
@@ -1,16 +1,22 @@
 package vn.project.ClinicSystem.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -30,12 +36,14 @@ import vn.project.ClinicSystem.model.PatientVisit;
 import vn.project.ClinicSystem.model.Prescription;
 import vn.project.ClinicSystem.model.dto.PrescriptionCreateRequest;
 import vn.project.ClinicSystem.model.dto.PrescriptionItemRequest;
+import vn.project.ClinicSystem.model.dto.PrescriptionSummaryDTO;
+import vn.project.ClinicSystem.model.dto.PrescriptionUpdateRequest;
+import vn.project.ClinicSystem.model.enums.InteractionSeverity;
 import vn.project.ClinicSystem.repository.DoctorRepository;
 import vn.project.ClinicSystem.repository.MedicationBatchRepository;
 import vn.project.ClinicSystem.repository.MedicationRepository;
 import vn.project.ClinicSystem.repository.PatientVisitRepository;
 import vn.project.ClinicSystem.repository.PrescriptionRepository;
-import vn.project.ClinicSystem.repository.ServiceIndicatorRepository;
 import vn.project.ClinicSystem.repository.ServiceOrderRepository;
 
 @ExtendWith(MockitoExtension.class)
@@ -54,7 +62,15 @@ class PrescriptionServiceTest {
     @Mock
     private ServiceOrderRepository serviceOrderRepository;
     @Mock
-    private ServiceIndicatorRepository serviceIndicatorRepository;
+    private IndicatorCatalog indicatorCatalog;
+    @Mock
+    private MedicationBatchAllocator batchAllocator;
+    @Mock
+    private StockLedgerService stockLedgerService;
+    @Mock
+    private DrugInteractionEngine drugInteractionEngine;
+    @Mock
+    private MedicationAutocompleteService autocompleteService;
     @Mock
     private Validator validator;
 
@@ -116,8 +132,10 @@ class PrescriptionServiceTest {
         when(medicationBatchRepository.findById(7L)).thenReturn(Optional.of(batch));
         when(prescriptionRepository.save(any(Prescription.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0, Prescription.class));
-        when(medicationBatchRepository.save(any(MedicationBatch.class))).thenReturn(batch);
-        when(medicationRepository.save(any(Medication.class))).thenReturn(medication);
+        when(medicationBatchRepository.decrementStock(7L, 10)).thenReturn(1);
+        when(medicationBatchRepository.findQuantityOnHand(7L)).thenReturn(30);
+        when(medicationRepository.decrementStock(5L, 10)).thenReturn(1);
+        when(medicationRepository.findStockQuantity(5L)).thenReturn(90);
         when(validator.validate(any(Prescription.class))).thenReturn(Set.<ConstraintViolation<Prescription>>of());
 
         Prescription saved = prescriptionService.create(request);
@@ -134,7 +152,119 @@ class PrescriptionServiceTest {
         assertThat(medication.getStockQuantity()).isEqualTo(90);
 
         verify(prescriptionRepository).save(any(Prescription.class));
-        verify(medicationBatchRepository).save(eq(batch));
-        verify(medicationRepository).save(eq(medication));
+        verify(medicationBatchRepository).decrementStock(eq(7L), eq(10));
+        verify(medicationRepository).decrementStock(eq(5L), eq(10));
+        verify(medicationBatchRepository, never()).save(any(MedicationBatch.class));
+        verify(medicationRepository, never()).save(any(Medication.class));
+    }
+
+    @Test
+    void create_shouldAcceptFreeTextItemWithoutCatalogMedication() {
+        PrescriptionItemRequest itemRequest = new PrescriptionItemRequest();
+        itemRequest.setMedicationName("Siro ho thảo dược");
+        itemRequest.setQuantity(1);
+        itemRequest.setDosage("10 ml");
+        itemRequest.setFrequency("Ngày 3 lần");
+
+        PrescriptionCreateRequest request = new PrescriptionCreateRequest();
+        request.setVisitId(1L);
+        request.setItems(Collections.singletonList(itemRequest));
+
+        when(patientVisitRepository.findById(1L)).thenReturn(Optional.of(visit));
+        when(serviceOrderRepository.findByVisitId(1L)).thenReturn(Collections.emptyList());
+        when(prescriptionRepository.save(any(Prescription.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, Prescription.class));
+        when(validator.validate(any(Prescription.class))).thenReturn(Set.<ConstraintViolation<Prescription>>of());
+
+        Prescription saved = prescriptionService.create(request);
+
+        assertThat(saved.getItems()).hasSize(1);
+        assertThat(saved.getItems().get(0).getMedication()).isNull();
+        assertThat(saved.getItems().get(0).getMedicationName()).isEqualTo("Siro ho thảo dược");
+        assertThat(saved.getItems().get(0).getAmount()).isEqualByComparingTo("0");
+        // Dòng tự do không có id thuốc để tính tần suất gợi ý
+        verify(autocompleteService).recordPrescribed(Collections.emptyList());
+        verify(medicationBatchRepository, never()).decrementStock(any(), anyInt());
+    }
+
+    @Test
+    void create_shouldRejectWhenConditionalBatchDecrementMatchesNoRow() {
+        PrescriptionItemRequest itemRequest = new PrescriptionItemRequest();
+        itemRequest.setBatchId(7L);
+        itemRequest.setQuantity(10);
+        itemRequest.setDosage("1 viên");
+        itemRequest.setFrequency("Ngày 2 lần");
+
+        PrescriptionCreateRequest request = new PrescriptionCreateRequest();
+        request.setVisitId(1L);
+        request.setItems(Collections.singletonList(itemRequest));
+
+        when(patientVisitRepository.findById(1L)).thenReturn(Optional.of(visit));
+        when(serviceOrderRepository.findByVisitId(1L)).thenReturn(Collections.emptyList());
+        when(medicationBatchRepository.findById(7L)).thenReturn(Optional.of(batch));
+        // Lô đã bị lượt cấp thuốc khác trừ hết sau khi đọc: UPDATE có điều kiện không khớp dòng nào
+        when(medicationBatchRepository.decrementStock(7L, 10)).thenReturn(0);
+
+        assertThatThrownBy(() -> prescriptionService.create(request))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("không đủ tồn kho");
+        verify(medicationRepository, never()).decrementStock(any(), anyInt());
+        verify(prescriptionRepository, never()).save(any(Prescription.class));
+    }
+
+    @Test
+    void exportSummariesCsv_shouldStreamRowsAndQuoteSpecialCharacters() throws Exception {
+        when(prescriptionRepository.streamSummaries()).thenReturn(Stream.of(
+                new PrescriptionSummaryDTO(2L, 1L, "Nguyễn Văn \"A\", con", "BS Lan",
+                        LocalDateTime.of(2025, 3, 1, 8, 30), 2L, new BigDecimal("15000.00")),
+                new PrescriptionSummaryDTO(1L, 1L, "Trần B", null,
+                        LocalDateTime.of(2025, 2, 28, 9, 0), 0L, null)));
+        StringWriter out = new StringWriter();
+
+        long rows = prescriptionService.exportSummariesCsv(out);
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(out.toString()).isEqualTo(
+                "id,visitId,patientName,doctorName,issuedAt,itemCount,totalAmount\n"
+                        + "2,1,\"Nguyễn Văn \"\"A\"\", con\",BS Lan,2025-03-01T08:30,2,15000.00\n"
+                        + "1,1,Trần B,,2025-02-28T09:00,0,\n");
+    }
+
+    @Test
+    void update_shouldCheckInteractionsOfReplacedItems() {
+        Prescription existing = new Prescription();
+        existing.setId(2L);
+        existing.setVisit(visit);
+        when(prescriptionRepository.findDetailedById(2L)).thenReturn(Optional.of(existing));
+        DrugInteractionEngine.Finding finding = new DrugInteractionEngine.Finding("Warfarin", "Aspirin",
+                new DrugInteractionEngine.Interaction("warfarin", "aspirin", InteractionSeverity.CONTRAINDICATED,
+                        "Tăng nguy cơ chảy máu", "Không phối hợp"));
+        when(drugInteractionEngine.check(List.of("Warfarin", "Aspirin"))).thenReturn(List.of(finding));
+
+        PrescriptionUpdateRequest request = new PrescriptionUpdateRequest();
+        request.setItems(List.of(freeTextItem("Warfarin"), freeTextItem("Aspirin")));
+
+        assertThatThrownBy(() -> prescriptionService.update(2L, request))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Chống chỉ định");
+        verify(prescriptionRepository, never()).save(any(Prescription.class));
+
+        request.setAcknowledgeInteractions(true);
+        when(prescriptionRepository.save(any(Prescription.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, Prescription.class));
+        when(validator.validate(any(Prescription.class))).thenReturn(Set.<ConstraintViolation<Prescription>>of());
+
+        Prescription saved = prescriptionService.update(2L, request);
+
+        assertThat(saved.getInteractionWarnings()).hasSize(1);
+    }
+
+    private static PrescriptionItemRequest freeTextItem(String name) {
+        PrescriptionItemRequest item = new PrescriptionItemRequest();
+        item.setMedicationName(name);
+        item.setQuantity(1);
+        item.setDosage("1 viên");
+        item.setFrequency("Ngày 1 lần");
+        return item;
     }
 }
@@ -0,0 +1,95 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import vn.project.ClinicSystem.repository.MedicalServiceRepository;
+import vn.project.ClinicSystem.repository.MedicalServiceRepository.ServicePriceView;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository.BatchPriceView;
+
+@ExtendWith(MockitoExtension.class)
+class PricingCatalogTest {
+
+    @Mock
+    private MedicalServiceRepository medicalServiceRepository;
+    @Mock
+    private MedicationBatchRepository medicationBatchRepository;
+
+    private PricingCatalog catalog;
+
+    @BeforeEach
+    void init() {
+        catalog = new PricingCatalog(medicalServiceRepository, medicationBatchRepository);
+    }
+
+    @Test
+    void reload_shouldKeyServiceAndBatchPricesInOneSnapshot() {
+        when(medicalServiceRepository.findAllPrices()).thenReturn(List.of(servicePrice(4L, 150_000L)));
+        when(medicationBatchRepository.findAllPrices()).thenReturn(List.of(batchPrice(9L, "2500")));
+
+        catalog.reload();
+
+        PricingCatalog.Snapshot snapshot = catalog.snapshot();
+        assertThat(snapshot.servicePrice(4L)).isEqualByComparingTo("150000");
+        assertThat(snapshot.batchPrice(9L)).isEqualByComparingTo("2500");
+        assertThat(snapshot.getVersion()).isPositive();
+    }
+
+    @Test
+    void updateServicePrice_shouldPublishNewSnapshotOnlyAfterCommit() {
+        PricingCatalog.Snapshot before = catalog.snapshot();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            catalog.updateServicePrice(4L, 180_000L);
+            assertThat(catalog.snapshot()).isSameAs(before);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(catalog.snapshot().servicePrice(4L)).isEqualByComparingTo("180000");
+        assertThat(catalog.snapshot().getVersion()).isGreaterThan(before.getVersion());
+    }
+
+    private static ServicePriceView servicePrice(Long id, Long price) {
+        return new ServicePriceView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getBasePrice() {
+                return price;
+            }
+        };
+    }
+
+    private static BatchPriceView batchPrice(Long id, String price) {
+        return new BatchPriceView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public BigDecimal getUnitPrice() {
+                return new BigDecimal(price);
+            }
+        };
+    }
+}
@@ -0,0 +1,181 @@
+package vn.project.ClinicSystem.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import vn.project.ClinicSystem.model.Appointment;
+import vn.project.ClinicSystem.model.ClinicRoom;
+import vn.project.ClinicSystem.model.Doctor;
+import vn.project.ClinicSystem.model.Medication;
+import vn.project.ClinicSystem.model.MedicationBatch;
+import vn.project.ClinicSystem.model.Patient;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.dto.PrescriptionCreateRequest;
+import vn.project.ClinicSystem.model.dto.PrescriptionItemRequest;
+import vn.project.ClinicSystem.repository.MedicationBatchRepository;
+import vn.project.ClinicSystem.repository.MedicationRepository;
+
+/**
+ * Nhiều luồng cùng kê đơn từ một lô thuốc: tồn kho không bao giờ âm và số đã trừ
+ * khớp đúng số đơn kê thành công.
+ * Cần MySQL thật, chạy bằng: ./gradlew test -Dclinicsystem.stress=true --tests StockDispensingStressTest
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "clinicsystem.stress", matches = "true")
+@Slf4j
+class StockDispensingStressTest {
+    private static final int INITIAL_STOCK = 100;
+    private static final int QUANTITY_PER_DISPENSE = 3;
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 10;
+
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    @Autowired
+    private MedicationBatchRepository medicationBatchRepository;
+
+    @Autowired
+    private MedicationRepository medicationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Test
+    void concurrentDispensingNeverOversellsBatch() throws Exception {
+        Fixture fixture = createFixture();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    try {
+                        prescriptionService.create(request(fixture));
+                        succeeded.incrementAndGet();
+                    } catch (IllegalStateException ex) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+
+        int batchStock = medicationBatchRepository.findQuantityOnHand(fixture.batchId);
+        int medicationStock = medicationRepository.findStockQuantity(fixture.medicationId);
+        int dispensed = succeeded.get() * QUANTITY_PER_DISPENSE;
+        log.info("Kê đơn thành công {}, bị từ chối {}, tồn lô {}, tồn thuốc {}",
+                succeeded.get(), rejected.get(), batchStock, medicationStock);
+
+        assertTrue(batchStock >= 0, "Tồn kho lô không được âm");
+        assertEquals(INITIAL_STOCK - dispensed, batchStock);
+        assertEquals(INITIAL_STOCK - dispensed, medicationStock);
+        assertEquals(INITIAL_STOCK / QUANTITY_PER_DISPENSE, succeeded.get());
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD, succeeded.get() + rejected.get());
+    }
+
+    private PrescriptionCreateRequest request(Fixture fixture) {
+        PrescriptionItemRequest item = new PrescriptionItemRequest();
+        item.setBatchId(fixture.batchId);
+        item.setQuantity(QUANTITY_PER_DISPENSE);
+        item.setDosage("1 viên");
+        item.setFrequency("2 lần/ngày");
+
+        PrescriptionCreateRequest request = new PrescriptionCreateRequest();
+        request.setVisitId(fixture.visitId);
+        request.setItems(List.of(item));
+        return request;
+    }
+
+    private Fixture createFixture() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        return tx.execute(status -> {
+            String suffix = Long.toString(System.nanoTime());
+
+            ClinicRoom room = new ClinicRoom();
+            room.setCode("ST-" + suffix);
+            room.setName("Stress room");
+            em.persist(room);
+
+            Doctor doctor = new Doctor();
+            doctor.setSpecialty("Stress");
+            doctor.setLicenseNumber("ST-" + suffix);
+            em.persist(doctor);
+
+            Patient patient = new Patient();
+            patient.setCode("ST" + suffix);
+            patient.setFullName("Stress Patient");
+            em.persist(patient);
+
+            Appointment appointment = new Appointment();
+            appointment.setPatient(patient);
+            appointment.setDoctor(doctor);
+            appointment.setClinicRoom(room);
+            appointment.setScheduledAt(LocalDateTime.now());
+            em.persist(appointment);
+
+            PatientVisit visit = new PatientVisit();
+            visit.setPatient(patient);
+            visit.setPrimaryAppointment(appointment);
+            em.persist(visit);
+
+            Medication medication = new Medication();
+            medication.setName("Stress medication " + suffix);
+            medication.setStockQuantity(INITIAL_STOCK);
+            em.persist(medication);
+
+            MedicationBatch batch = new MedicationBatch();
+            batch.setMedication(medication);
+            batch.setBatchCode("ST-" + suffix);
+            batch.setUnitPrice(BigDecimal.valueOf(1_000));
+            batch.setQuantityOnHand(INITIAL_STOCK);
+            em.persist(batch);
+            em.flush();
+
+            Fixture fixture = new Fixture();
+            fixture.visitId = visit.getId();
+            fixture.medicationId = medication.getId();
+            fixture.batchId = batch.getId();
+            return fixture;
+        });
+    }
+
+    private static final class Fixture {
+        Long visitId;
+        Long medicationId;
+        Long batchId;
+    }
+}
@@ -0,0 +1,159 @@
+package vn.project.ClinicSystem.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import jakarta.persistence.EntityNotFoundException;
+import vn.project.ClinicSystem.model.Doctor;
+import vn.project.ClinicSystem.model.MedicalService;
+import vn.project.ClinicSystem.model.PatientVisit;
+import vn.project.ClinicSystem.model.ServiceOrder;
+import vn.project.ClinicSystem.model.dto.PatientVisitStatusUpdateRequest;
+import vn.project.ClinicSystem.model.dto.ServiceOrderCreateRequest;
+import vn.project.ClinicSystem.model.enums.ServiceOrderStatus;
+import vn.project.ClinicSystem.model.enums.VisitStatus;
+import vn.project.ClinicSystem.repository.DoctorRepository;
+import vn.project.ClinicSystem.repository.MedicalServiceRepository;
+import vn.project.ClinicSystem.repository.PatientVisitRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository;
+import vn.project.ClinicSystem.repository.ServiceOrderRepository.StatusCountView;
+
+@ExtendWith(MockitoExtension.class)
+class VisitServiceTest {
+    private static final Long VISIT_ID = 10L;
+
+    @Mock
+    private PatientVisitRepository patientVisitRepository;
+    @Mock
+    private ServiceOrderRepository serviceOrderRepository;
+    @Mock
+    private AppointmentService appointmentService;
+    @Mock
+    private MedicalServiceRepository medicalServiceRepository;
+    @Mock
+    private DoctorRepository doctorRepository;
+
+    private VisitService visitService;
+    private PatientVisit visit;
+
+    @BeforeEach
+    void init() {
+        visitService = new VisitService(patientVisitRepository, serviceOrderRepository, appointmentService,
+                medicalServiceRepository, doctorRepository);
+        visit = new PatientVisit();
+        visit.setId(VISIT_ID);
+        visit.setStatus(VisitStatus.OPEN);
+        when(patientVisitRepository.findById(VISIT_ID)).thenReturn(Optional.of(visit));
+    }
+
+    @Test
+    void createServiceOrders_shouldLoadEachKindOnceAndSaveInOneBatch() {
+        when(medicalServiceRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(service(1L), service(2L)));
+        when(doctorRepository.findAllById(Set.of(7L))).thenReturn(List.of(doctor(7L)));
+        when(serviceOrderRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<ServiceOrder> orders = visitService.createServiceOrders(VISIT_ID,
+                List.of(request(1L, 7L), request(2L, 7L), request(1L, 7L)));
+
+        assertThat(orders).extracting(order -> order.getMedicalService().getId()).containsExactly(1L, 2L, 1L);
+        assertThat(orders).allSatisfy(order -> {
+            assertThat(order.getVisit()).isSameAs(visit);
+            assertThat(order.getAssignedDoctor().getId()).isEqualTo(7L);
+            assertThat(order.getStatus()).isEqualTo(ServiceOrderStatus.PENDING);
+        });
+    }
+
+    @Test
+    void createServiceOrders_shouldRejectUnknownServiceOrDoctorWithoutSaving() {
+        when(medicalServiceRepository.findAllById(any())).thenReturn(List.of(service(1L)));
+        when(doctorRepository.findAllById(any())).thenReturn(List.of(doctor(7L)));
+
+        assertThatThrownBy(() -> visitService.createServiceOrders(VISIT_ID,
+                List.of(request(1L, 7L), request(99L, 7L))))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessage("Không tìm thấy dịch vụ với id: 99");
+        assertThatThrownBy(() -> visitService.createServiceOrders(VISIT_ID,
+                List.of(request(1L, 7L), request(1L, 88L))))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessage("Không tìm thấy bác sĩ với id: 88");
+        verify(serviceOrderRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void updateStatus_shouldBlockCompletionWhileGroupedCountHasUnfinishedOrders() {
+        when(serviceOrderRepository.countByStatus(VISIT_ID)).thenReturn(List.of(
+                count(ServiceOrderStatus.COMPLETED, 3), count(ServiceOrderStatus.IN_PROGRESS, 1)));
+
+        assertThatThrownBy(() -> visitService.updateStatus(VISIT_ID, statusUpdate(VisitStatus.COMPLETED)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("phiếu dịch vụ chưa xử lý");
+        assertThat(visit.getStatus()).isEqualTo(VisitStatus.OPEN);
+        verify(patientVisitRepository, never()).save(any());
+    }
+
+    @Test
+    void updateStatus_shouldCompleteWhenOnlyFinishedOrCancelledOrdersRemain() {
+        when(serviceOrderRepository.countByStatus(VISIT_ID)).thenReturn(List.of(
+                count(ServiceOrderStatus.COMPLETED, 2), count(ServiceOrderStatus.COMPLETED_WITH_RESULT, 1),
+                count(ServiceOrderStatus.CANCELLED, 1)));
+        when(patientVisitRepository.save(visit)).thenReturn(visit);
+
+        PatientVisit updated = visitService.updateStatus(VISIT_ID, statusUpdate(VisitStatus.COMPLETED));
+
+        assertThat(updated.getStatus()).isEqualTo(VisitStatus.COMPLETED);
+    }
+
+    private static ServiceOrderCreateRequest request(Long serviceId, Long doctorId) {
+        ServiceOrderCreateRequest request = new ServiceOrderCreateRequest();
+        request.setMedicalServiceId(serviceId);
+        request.setAssignedDoctorId(doctorId);
+        return request;
+    }
+
+    private static PatientVisitStatusUpdateRequest statusUpdate(VisitStatus status) {
+        PatientVisitStatusUpdateRequest request = new PatientVisitStatusUpdateRequest();
+        request.setStatus(status);
+        return request;
+    }
+
+    private static MedicalService service(Long id) {
+        MedicalService service = new MedicalService();
+        service.setId(id);
+        return service;
+    }
+
+    private static Doctor doctor(Long id) {
+        Doctor doctor = new Doctor();
+        doctor.setId(id);
+        return doctor;
+    }
+
+    private static StatusCountView count(ServiceOrderStatus status, long total) {
+        return new StatusCountView() {
+            @Override
+            public ServiceOrderStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public long getTotal() {
+                return total;
+            }
+        };
+    }
+}
@@ -0,0 +1,27 @@
+package vn.project.ClinicSystem.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+class StringSimilarityTest {
+
+    @Test
+    void jaroWinkler_shouldMatchReferenceValues() {
+        assertThat(StringSimilarity.jaroWinkler("martha", "marhta")).isCloseTo(0.961, within(0.001));
+        assertThat(StringSimilarity.jaroWinkler("dwayne", "duane")).isCloseTo(0.840, within(0.001));
+        assertThat(StringSimilarity.jaroWinkler("dixon", "dicksonx")).isCloseTo(0.813, within(0.001));
+        assertThat(StringSimilarity.jaroWinkler("nguyen van an", "nguyen van anh"))
+                .isGreaterThan(StringSimilarity.jaroWinkler("nguyen van an", "tran thi binh"));
+    }
+
+    @Test
+    void jaroWinkler_shouldHandleIdenticalEmptyAndNull() {
+        assertThat(StringSimilarity.jaroWinkler("an", "an")).isEqualTo(1d);
+        assertThat(StringSimilarity.jaroWinkler("", "")).isZero();
+        assertThat(StringSimilarity.jaroWinkler("an", "")).isZero();
+        assertThat(StringSimilarity.jaroWinkler(null, "an")).isZero();
+        assertThat(StringSimilarity.jaroWinkler("abc", "xyz")).isZero();
+    }
+}
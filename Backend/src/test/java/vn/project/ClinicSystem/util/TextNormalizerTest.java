@@ -0,0 +1,27 @@
+package vn.project.ClinicSystem.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class TextNormalizerTest {
+
+    @Test
+    void fold_shouldStripVietnameseMarksAndCollapsePunctuation() {
+        assertThat(TextNormalizer.fold("  Đặng Thị Ánh   Nguyệt! ")).isEqualTo("dang thi anh nguyet");
+        assertThat(TextNormalizer.fold("NGUYỄN-VĂN.AN")).isEqualTo("nguyen van an");
+        assertThat(TextNormalizer.fold(null)).isEmpty();
+    }
+
+    @Test
+    void soundex_shouldGroupSimilarSoundingWords() {
+        assertThat(TextNormalizer.soundex("Robert")).isEqualTo("R163");
+        assertThat(TextNormalizer.soundex("Rupert")).isEqualTo("R163");
+        // Phụ âm đầu cùng mã với ký tự kế tiếp, h không ngắt chuỗi phụ âm trùng mã
+        assertThat(TextNormalizer.soundex("Pfister")).isEqualTo("P236");
+        assertThat(TextNormalizer.soundex("Ashcraft")).isEqualTo("A261");
+        assertThat(TextNormalizer.soundex("nguyen")).isEqualTo(TextNormalizer.soundex("nguyn"));
+        assertThat(TextNormalizer.soundex("123")).isEmpty();
+        assertThat(TextNormalizer.soundex(null)).isEmpty();
+    }
+}